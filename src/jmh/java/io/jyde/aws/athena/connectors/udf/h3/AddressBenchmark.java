@@ -0,0 +1,170 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.amazonaws.athena.connector.lambda.data.FieldResolver;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A batch of addresses through {@link H3AthenaUDFHandler#processRows}, whose kernels read and write
+ * the bytes of the vectors, against the row-at-a-time path of the <code>UserDefinedFunctionHandler
+ * </code>, with a <code>String</code> per address read and written, and against the same batch of
+ * <code>BIGINT</code> indexes.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddressBenchmark {
+    static final int ROW_COUNT = 4096;
+    /** The resolution of the parents, and the <code>k</code> of the rings. */
+    static final int ARG = 2;
+
+    @State(Scope.Thread)
+    public static class AddressState {
+        BlockAllocatorImpl allocator;
+        Block cells;
+        Block addresses;
+        Method toParent;
+        Method toParentAddress;
+        Method kRing;
+        Method kRingAddress;
+        Schema cellSchema;
+        Schema addressSchema;
+        Schema cellsSchema;
+        Schema addressesSchema;
+
+        @Setup(Level.Trial)
+        public void setup(CellState s) throws NoSuchMethodException {
+            allocator = new BlockAllocatorImpl();
+            cells =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addBigIntField("h3")
+                                    .addIntField("arg")
+                                    .build());
+            addresses =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addStringField("h3")
+                                    .addIntField("arg")
+                                    .build());
+            for (int row = 0; row < ROW_COUNT; row++) {
+                cells.setValue("h3", row, s.cells[row]);
+                cells.setValue("arg", row, ARG);
+                addresses.setValue("h3", row, s.addresses[row]);
+                addresses.setValue("arg", row, ARG);
+            }
+            cells.setRowCount(ROW_COUNT);
+            addresses.setRowCount(ROW_COUNT);
+
+            toParent =
+                    H3AthenaUDFHandler.class.getMethod("h3_to_parent", Long.class, Integer.class);
+            toParentAddress =
+                    H3AthenaUDFHandler.class.getMethod(
+                            "h3_to_parent_address", String.class, Integer.class);
+            kRing = H3AthenaUDFHandler.class.getMethod("k_ring", Long.class, Integer.class);
+            kRingAddress =
+                    H3AthenaUDFHandler.class.getMethod("k_ring", String.class, Integer.class);
+            cellSchema = SchemaBuilder.newBuilder().addBigIntField("out").build();
+            addressSchema = SchemaBuilder.newBuilder().addStringField("out").build();
+            cellsSchema =
+                    SchemaBuilder.newBuilder()
+                            .addListField("out", Types.MinorType.BIGINT.getType())
+                            .build();
+            addressesSchema =
+                    SchemaBuilder.newBuilder()
+                            .addListField("out", Types.MinorType.VARCHAR.getType())
+                            .build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            cells.close();
+            addresses.close();
+            allocator.close();
+        }
+    }
+
+    @Benchmark
+    public int h3_to_parent_batch(CellState s, AddressState a) throws Exception {
+        try (Block output = s.handler.processRows(a.allocator, a.toParent, a.cells, a.cellSchema)) {
+            return output.getRowCount();
+        }
+    }
+
+    @Benchmark
+    public int h3_to_parent_address_batch(CellState s, AddressState a) throws Exception {
+        try (Block output =
+                s.handler.processRows(
+                        a.allocator, a.toParentAddress, a.addresses, a.addressSchema)) {
+            return output.getRowCount();
+        }
+    }
+
+    @Benchmark
+    public int h3_to_parent_address_rows(CellState s, AddressState a) throws Exception {
+        FieldVector in = a.addresses.getFieldVector("h3");
+        try (Block output = a.allocator.createBlock(a.addressSchema)) {
+            for (int row = 0; row < ROW_COUNT; row++) {
+                output.setValue(
+                        "out",
+                        row,
+                        s.handler.h3_to_parent_address(in.getObject(row).toString(), ARG));
+            }
+            output.setRowCount(ROW_COUNT);
+            return output.getRowCount();
+        }
+    }
+
+    @Benchmark
+    public int k_ring_batch(CellState s, AddressState a) throws Exception {
+        try (Block output = s.handler.processRows(a.allocator, a.kRing, a.cells, a.cellsSchema)) {
+            return output.getRowCount();
+        }
+    }
+
+    @Benchmark
+    public int k_ring_address_batch(CellState s, AddressState a) throws Exception {
+        try (Block output =
+                s.handler.processRows(
+                        a.allocator, a.kRingAddress, a.addresses, a.addressesSchema)) {
+            return output.getRowCount();
+        }
+    }
+
+    @Benchmark
+    public int k_ring_address_rows(CellState s, AddressState a) throws Exception {
+        FieldVector in = a.addresses.getFieldVector("h3");
+        try (Block output = a.allocator.createBlock(a.addressesSchema)) {
+            for (int row = 0; row < ROW_COUNT; row++) {
+                output.setComplexValue(
+                        "out",
+                        row,
+                        FieldResolver.DEFAULT,
+                        s.handler.k_ring(in.getObject(row).toString(), ARG));
+            }
+            output.setRowCount(ROW_COUNT);
+            return output.getRowCount();
+        }
+    }
+}
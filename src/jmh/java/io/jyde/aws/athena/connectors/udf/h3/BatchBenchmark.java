@@ -0,0 +1,164 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.amazonaws.athena.connector.lambda.data.FieldResolver;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A batch of recurring cells, the parents of the points as after a <code>GROUP BY h3_to_parent(h3,
+ * 7)</code>, through {@link H3AthenaUDFHandler#processRows}, which evaluates each distinct cell
+ * once, against calling the UDF method on every row and writing its result as the row-at-a-time
+ * path of the <code>UserDefinedFunctionHandler</code> does.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+    static final int PARENT_RES = 7;
+    static final int ROW_COUNT = 4096;
+    static final String UNIT = "m2";
+
+    @State(Scope.Thread)
+    public static class BatchState {
+        @Param({"0", "64"})
+        public int cacheMegabytes;
+
+        H3AthenaUDFHandler handler;
+        BlockAllocatorImpl allocator;
+        Long[] parents;
+        Block cells;
+        Block cellsAndUnits;
+        Method cellArea;
+        Schema cellAreaSchema;
+        Method h3ToGeoBoundary;
+        Schema h3ToGeoBoundarySchema;
+        Method h3ToGeoBoundaryCoords;
+        Schema h3ToGeoBoundaryCoordsSchema;
+
+        @Setup(Level.Trial)
+        public void setup(CellState s) throws IOException, NoSuchMethodException {
+            handler =
+                    new H3AthenaUDFHandler(
+                            H3Core.newInstance(),
+                            IndexingEngine.JNI,
+                            new ResultCache(cacheMegabytes));
+            allocator = new BlockAllocatorImpl();
+            cells = allocator.createBlock(SchemaBuilder.newBuilder().addBigIntField("h3").build());
+            cellsAndUnits =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addBigIntField("h3")
+                                    .addStringField("unit")
+                                    .build());
+            parents = new Long[ROW_COUNT];
+            for (int row = 0; row < ROW_COUNT; row++) {
+                parents[row] = s.handler.h3_to_parent(s.cells[row], PARENT_RES);
+                cells.setValue("h3", row, parents[row]);
+                cellsAndUnits.setValue("h3", row, parents[row]);
+                cellsAndUnits.setValue("unit", row, UNIT);
+            }
+            cells.setRowCount(ROW_COUNT);
+            cellsAndUnits.setRowCount(ROW_COUNT);
+
+            cellArea = H3AthenaUDFHandler.class.getMethod("cell_area", Long.class, String.class);
+            cellAreaSchema = SchemaBuilder.newBuilder().addFloat8Field("out").build();
+            h3ToGeoBoundary = H3AthenaUDFHandler.class.getMethod("h3_to_geo_boundary", Long.class);
+            h3ToGeoBoundarySchema =
+                    SchemaBuilder.newBuilder()
+                            .addListField("out", Types.MinorType.VARCHAR.getType())
+                            .build();
+            h3ToGeoBoundaryCoords =
+                    H3AthenaUDFHandler.class.getMethod("h3_to_geo_boundary_coords", Long.class);
+            h3ToGeoBoundaryCoordsSchema =
+                    SchemaBuilder.newBuilder()
+                            .addListField("out", Types.MinorType.FLOAT8.getType())
+                            .build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            cells.close();
+            cellsAndUnits.close();
+            allocator.close();
+        }
+    }
+
+    @Benchmark
+    public int cell_area_batch(BatchState b) throws Exception {
+        try (Block output =
+                b.handler.processRows(b.allocator, b.cellArea, b.cellsAndUnits, b.cellAreaSchema)) {
+            return output.getRowCount();
+        }
+    }
+
+    @Benchmark
+    public int cell_area_rows(BatchState b) throws Exception {
+        try (Block output = b.allocator.createBlock(b.cellAreaSchema)) {
+            for (int row = 0; row < ROW_COUNT; row++) {
+                output.setValue("out", row, b.handler.cell_area(b.parents[row], UNIT));
+            }
+            output.setRowCount(ROW_COUNT);
+            return output.getRowCount();
+        }
+    }
+
+    @Benchmark
+    public int h3_to_geo_boundary_batch(BatchState b) throws Exception {
+        try (Block output =
+                b.handler.processRows(
+                        b.allocator, b.h3ToGeoBoundary, b.cells, b.h3ToGeoBoundarySchema)) {
+            return output.getRowCount();
+        }
+    }
+
+    /** The boundary as coordinates, rather than as WKT Points for Athena to parse again. */
+    @Benchmark
+    public int h3_to_geo_boundary_coords_batch(BatchState b) throws Exception {
+        try (Block output =
+                b.handler.processRows(
+                        b.allocator,
+                        b.h3ToGeoBoundaryCoords,
+                        b.cells,
+                        b.h3ToGeoBoundaryCoordsSchema)) {
+            return output.getRowCount();
+        }
+    }
+
+    @Benchmark
+    public int h3_to_geo_boundary_rows(BatchState b) throws Exception {
+        try (Block output = b.allocator.createBlock(b.h3ToGeoBoundarySchema)) {
+            for (int row = 0; row < ROW_COUNT; row++) {
+                output.setComplexValue(
+                        "out",
+                        row,
+                        FieldResolver.DEFAULT,
+                        b.handler.h3_to_geo_boundary(b.parents[row]));
+            }
+            output.setRowCount(ROW_COUNT);
+            return output.getRowCount();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Deterministic input distributions for the benchmarks. */
+final class BenchmarkData {
+    /** Number of inputs per benchmark state. A power of two, so cursors can wrap with a mask. */
+    static final int SIZE = 1 << 14;
+
+    static final long SEED = 42L;
+
+    /** Centers of large cities, as (lat, lng), used for dense, HRSL-like point clouds. */
+    private static final double[][] CITIES = {
+        {52.520, 13.405}, // Berlin
+        {6.524, 3.379}, // Lagos
+        {19.076, 72.878}, // Mumbai
+        {-23.551, -46.633}, // Sao Paulo
+        {-6.208, 106.846}, // Jakarta
+        {19.433, -99.133}, // Mexico City
+        {30.044, 31.236}, // Cairo
+        {23.811, 90.413}, // Dhaka
+    };
+
+    /** Standard deviation, in degrees, of urban points around their city center. */
+    private static final double URBAN_SIGMA_DEGREES = 0.05;
+
+    /** Standard deviation, in degrees, of clustered planet points around their city center. */
+    private static final double PLANET_SIGMA_DEGREES = 2;
+
+    /** Share of planet points in clusters, the rest being uniform. */
+    private static final double PLANET_CLUSTERED = 0.8;
+
+    private BenchmarkData() {}
+
+    /**
+     * Returns <code>count</code> points as <code>{lats, lngs}</code>, in degrees.
+     *
+     * @param distribution How the points are spread over the globe.
+     * @param count Number of points.
+     */
+    static double[][] points(PointDistribution distribution, int count) {
+        Random random = new Random(SEED);
+        double[] lats = new double[count];
+        double[] lngs = new double[count];
+        for (int i = 0; i < count; i++) {
+            if (distribution == PointDistribution.URBAN) {
+                double[] city = CITIES[random.nextInt(CITIES.length)];
+                lats[i] = city[0] + random.nextGaussian() * URBAN_SIGMA_DEGREES;
+                lngs[i] = city[1] + random.nextGaussian() * URBAN_SIGMA_DEGREES;
+            } else if (distribution == PointDistribution.PLANET
+                    && random.nextDouble() < PLANET_CLUSTERED) {
+                double[] city = CITIES[random.nextInt(CITIES.length)];
+                lats[i] = city[0] + random.nextGaussian() * PLANET_SIGMA_DEGREES;
+                lngs[i] = city[1] + random.nextGaussian() * PLANET_SIGMA_DEGREES;
+            } else {
+                lats[i] = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+                lngs[i] = 360 * random.nextDouble() - 180;
+            }
+        }
+        return new double[][] {lats, lngs};
+    }
+
+    /**
+     * Returns a closed ring of WKT Points approximating a circle around Berlin, with some noise on
+     * the radius so the outline is not convex.
+     */
+    static List<String> polygon(PolygonSize size) {
+        Random random = new Random(SEED);
+        double lat = CITIES[0][0];
+        double lng = CITIES[0][1];
+        List<String> points = new ArrayList<>(size.vertices);
+        for (int i = 0; i < size.vertices; i++) {
+            double angle = 2 * Math.PI * i / size.vertices;
+            double radius = size.radiusDegrees * (0.85 + 0.15 * random.nextDouble());
+            points.add(wktPoint(lat + radius * Math.sin(angle), lng + radius * Math.cos(angle)));
+        }
+        return points;
+    }
+
+    /** Returns a hole in the middle of {@link #polygon(PolygonSize)}. */
+    static List<String> hole(PolygonSize size) {
+        double lat = CITIES[0][0];
+        double lng = CITIES[0][1];
+        double radius = size.radiusDegrees / 10;
+        List<String> points = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            double angle = 2 * Math.PI * i / 16;
+            points.add(wktPoint(lat + radius * Math.sin(angle), lng + radius * Math.cos(angle)));
+        }
+        return points;
+    }
+
+    static String wktPoint(double lat, double lng) {
+        return "POINT (" + lng + " " + lat + ")";
+    }
+}
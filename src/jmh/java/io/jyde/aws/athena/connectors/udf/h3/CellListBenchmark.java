@@ -0,0 +1,168 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.amazonaws.athena.connector.lambda.data.FieldResolver;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A batch of distinct cells through the UDFs that return lists of indexes, written to the output
+ * list without boxing by {@link H3AthenaUDFHandler#processRows}, against calling the UDF method on
+ * every row and writing its <code>List&lt;Long&gt;</code> as the row-at-a-time path of the <code>
+ * UserDefinedFunctionHandler</code> does. Run with <code>-prof gc</code> for the allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CellListBenchmark {
+    static final int ROW_COUNT = 4096;
+    static final int K = 10;
+    static final int PARENT_RES = 7;
+
+    @State(Scope.Thread)
+    public static class ListState {
+        H3AthenaUDFHandler handler;
+        BlockAllocatorImpl allocator;
+        Long[] cells;
+        Long[] farCells;
+        Long[] parents;
+        int childRes;
+        Block cellsAndK;
+        Block cellPairs;
+        Block parentsAndRes;
+        Schema outputSchema;
+
+        @Setup(Level.Trial)
+        public void setup(CellState s) throws IOException {
+            handler =
+                    new H3AthenaUDFHandler(
+                            H3Core.newInstance(),
+                            IndexingEngine.JNI,
+                            new ResultCache(0),
+                            BatchExecutor.SEQUENTIAL);
+            allocator = new BlockAllocatorImpl();
+            cellsAndK =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addBigIntField("h3")
+                                    .addIntField("k")
+                                    .build());
+            cellPairs =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addBigIntField("start")
+                                    .addBigIntField("end")
+                                    .build());
+            parentsAndRes =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addBigIntField("h3")
+                                    .addIntField("res")
+                                    .build());
+            cells = new Long[ROW_COUNT];
+            farCells = new Long[ROW_COUNT];
+            parents = new Long[ROW_COUNT];
+            childRes = s.res;
+            for (int row = 0; row < ROW_COUNT; row++) {
+                cells[row] = s.cells[row];
+                farCells[row] = s.farCells[row];
+                parents[row] = handler.h3_to_parent(s.cells[row], PARENT_RES);
+                cellsAndK.setValue("h3", row, cells[row]);
+                cellsAndK.setValue("k", row, K);
+                cellPairs.setValue("start", row, cells[row]);
+                cellPairs.setValue("end", row, farCells[row]);
+                parentsAndRes.setValue("h3", row, parents[row]);
+                parentsAndRes.setValue("res", row, s.res);
+            }
+            cellsAndK.setRowCount(ROW_COUNT);
+            cellPairs.setRowCount(ROW_COUNT);
+            parentsAndRes.setRowCount(ROW_COUNT);
+            outputSchema =
+                    SchemaBuilder.newBuilder()
+                            .addListField("out", Types.MinorType.BIGINT.getType())
+                            .build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            cellsAndK.close();
+            cellPairs.close();
+            parentsAndRes.close();
+            allocator.close();
+        }
+
+        int batch(Block input, String name, Class<?>... parameterTypes) throws Exception {
+            Method method = H3AthenaUDFHandler.class.getMethod(name, parameterTypes);
+            try (Block output = handler.processRows(allocator, method, input, outputSchema)) {
+                return output.getRowCount();
+            }
+        }
+
+        int rows(RowFunction function) throws Exception {
+            try (Block output = allocator.createBlock(outputSchema)) {
+                for (int row = 0; row < ROW_COUNT; row++) {
+                    output.setComplexValue("out", row, FieldResolver.DEFAULT, function.apply(row));
+                }
+                output.setRowCount(ROW_COUNT);
+                return output.getRowCount();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface RowFunction {
+        List<Long> apply(int row) throws Exception;
+    }
+
+    @Benchmark
+    public int k_ring_batch(ListState l) throws Exception {
+        return l.batch(l.cellsAndK, "k_ring", Long.class, Integer.class);
+    }
+
+    @Benchmark
+    public int k_ring_rows(ListState l) throws Exception {
+        return l.rows(row -> l.handler.k_ring(l.cells[row], K));
+    }
+
+    @Benchmark
+    public int h3_line_batch(ListState l) throws Exception {
+        return l.batch(l.cellPairs, "h3_line", Long.class, Long.class);
+    }
+
+    @Benchmark
+    public int h3_line_rows(ListState l) throws Exception {
+        return l.rows(row -> l.handler.h3_line(l.cells[row], l.farCells[row]));
+    }
+
+    @Benchmark
+    public int h3_to_children_batch(ListState l) throws Exception {
+        return l.batch(l.parentsAndRes, "h3_to_children", Long.class, Integer.class);
+    }
+
+    @Benchmark
+    public int h3_to_children_rows(ListState l) throws Exception {
+        return l.rows(row -> l.handler.h3_to_children(l.parents[row], l.childRes));
+    }
+}
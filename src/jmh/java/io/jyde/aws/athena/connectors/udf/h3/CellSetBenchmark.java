@@ -0,0 +1,116 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.util.GeoCoord;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cell set UDFs on the cells of a large polygon with and without its hole, against the same
+ * operations on the arrays of <code>polyfill</code>, and the dissolving of the cells back into a
+ * <code>MULTIPOLYGON</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CellSetBenchmark {
+
+    /** The cells of the polygon, of its outline alone, and their cell sets. */
+    @State(Scope.Thread)
+    public static class SetState {
+        List<Long> cells;
+        List<Long> outlineCells;
+        byte[] set;
+        byte[] outlineSet;
+        Long[] probes;
+        H3Core h3Core;
+        private int cursor;
+
+        @Setup(Level.Trial)
+        public void setup(PolygonState p) throws IOException {
+            h3Core = H3Core.newInstance();
+            cells = p.handler.polyfill(p.points, p.holes, p.res);
+            outlineCells = p.handler.polyfill(p.points, null, p.res);
+            set = p.handler.h3_cell_set(cells);
+            outlineSet = p.handler.h3_cell_set(outlineCells);
+            probes = outlineCells.toArray(new Long[0]);
+        }
+
+        int next() {
+            cursor = cursor + 1 == probes.length ? 0 : cursor + 1;
+            return cursor;
+        }
+    }
+
+    @Benchmark
+    public byte[] h3_cell_set(SetState s, PolygonState p) {
+        return p.handler.h3_cell_set(s.cells);
+    }
+
+    @Benchmark
+    public List<Long> compact(SetState s, PolygonState p) {
+        return p.handler.compact(s.cells);
+    }
+
+    @Benchmark
+    public byte[] h3_cell_set_union(SetState s, PolygonState p) {
+        return p.handler.h3_cell_set_union(s.set, s.outlineSet);
+    }
+
+    @Benchmark
+    public byte[] h3_cell_set_intersect(SetState s, PolygonState p) {
+        return p.handler.h3_cell_set_intersect(s.set, s.outlineSet);
+    }
+
+    @Benchmark
+    public byte[] h3_cell_set_difference(SetState s, PolygonState p) {
+        return p.handler.h3_cell_set_difference(s.outlineSet, s.set);
+    }
+
+    /** The difference of the arrays, as a query on <code>ARRAY(BIGINT)</code> would compute it. */
+    @Benchmark
+    public Set<Long> difference_Arrays(SetState s) {
+        Set<Long> difference = new HashSet<>(s.outlineCells);
+        difference.removeAll(s.cells);
+        return difference;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Boolean h3_cell_set_contains(SetState s, PolygonState p) {
+        return p.handler.h3_cell_set_contains(s.probes[s.next()], s.set);
+    }
+
+    @Benchmark
+    public String h3_set_to_multipolygon(SetState s, PolygonState p) {
+        return p.handler.h3_set_to_multipolygon(s.cells);
+    }
+
+    @Benchmark
+    public byte[] h3_set_to_multipolygon_wkb(SetState s, PolygonState p) {
+        return p.handler.h3_set_to_multipolygon_wkb(s.cells);
+    }
+
+    /** The same polygons from the H3 library, before writing them. */
+    @Benchmark
+    public List<List<List<GeoCoord>>> h3SetToMultiPolygon(SetState s) {
+        return s.h3Core.h3SetToMultiPolygon(s.cells, false);
+    }
+}
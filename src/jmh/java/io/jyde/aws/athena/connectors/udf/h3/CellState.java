@@ -0,0 +1,81 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.util.List;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Points, cells and edges derived from a {@link PointDistribution}, in the boxed types the UDFs
+ * take. Benchmarks cycle through the inputs with {@link #next()}.
+ */
+@State(Scope.Thread)
+public class CellState {
+    @Param({"URBAN", "GLOBAL"})
+    public PointDistribution distribution;
+
+    @Param({"9"})
+    public int res;
+
+    /** Grid distance between a cell and its paired cell in {@link #farCells}. */
+    static final int PAIR_DISTANCE = 5;
+
+    H3AthenaUDFHandler handler;
+
+    Double[] lats;
+    Double[] lngs;
+    String[] wktPoints;
+    Long[] cells;
+    String[] addresses;
+    Long[] neighbors;
+    String[] neighborAddresses;
+    Long[] farCells;
+    String[] farAddresses;
+    Long[] edges;
+    String[] edgeAddresses;
+
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        handler = new H3AthenaUDFHandler();
+        H3Core h3Core = H3Core.newInstance();
+
+        double[][] points = BenchmarkData.points(distribution, BenchmarkData.SIZE);
+        lats = new Double[BenchmarkData.SIZE];
+        lngs = new Double[BenchmarkData.SIZE];
+        wktPoints = new String[BenchmarkData.SIZE];
+        cells = new Long[BenchmarkData.SIZE];
+        addresses = new String[BenchmarkData.SIZE];
+        neighbors = new Long[BenchmarkData.SIZE];
+        neighborAddresses = new String[BenchmarkData.SIZE];
+        farCells = new Long[BenchmarkData.SIZE];
+        farAddresses = new String[BenchmarkData.SIZE];
+        edges = new Long[BenchmarkData.SIZE];
+        edgeAddresses = new String[BenchmarkData.SIZE];
+        for (int i = 0; i < BenchmarkData.SIZE; i++) {
+            lats[i] = points[0][i];
+            lngs[i] = points[1][i];
+            wktPoints[i] = BenchmarkData.wktPoint(lats[i], lngs[i]);
+            cells[i] = h3Core.geoToH3(lats[i], lngs[i], res);
+            addresses[i] = h3Core.h3ToString(cells[i]);
+            List<Long> ring = h3Core.kRing(cells[i], PAIR_DISTANCE);
+            neighbors[i] = ring.get(1);
+            neighborAddresses[i] = h3Core.h3ToString(neighbors[i]);
+            farCells[i] = ring.get(ring.size() - 1);
+            farAddresses[i] = h3Core.h3ToString(farCells[i]);
+            edges[i] = h3Core.getH3UnidirectionalEdge(cells[i], neighbors[i]);
+            edgeAddresses[i] = h3Core.h3ToString(edges[i]);
+        }
+    }
+
+    /** Returns the index of the next input. */
+    int next() {
+        return cursor++ & (BenchmarkData.SIZE - 1);
+    }
+}
@@ -0,0 +1,93 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Unidirectional edge UDFs. */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EdgeBenchmark {
+    @Benchmark
+    public Long get_h3_unidirectional_edge(CellState s) {
+        int i = s.next();
+        return s.handler.get_h3_unidirectional_edge(s.cells[i], s.neighbors[i]);
+    }
+
+    @Benchmark
+    public String get_h3_unidirectional_edge_address(CellState s) {
+        int i = s.next();
+        return s.handler.get_h3_unidirectional_edge(s.addresses[i], s.neighborAddresses[i]);
+    }
+
+    @Benchmark
+    public Boolean h3_unidirectional_edge_is_valid(CellState s) {
+        return s.handler.h3_unidirectional_edge_is_valid(s.edges[s.next()]);
+    }
+
+    @Benchmark
+    public Boolean h3_unidirectional_edge_is_valid_address(CellState s) {
+        return s.handler.h3_unidirectional_edge_is_valid(s.edgeAddresses[s.next()]);
+    }
+
+    @Benchmark
+    public Long get_origin_h3_index_from_unidirectional_edge(CellState s) {
+        return s.handler.get_origin_h3_index_from_unidirectional_edge(s.edges[s.next()]);
+    }
+
+    @Benchmark
+    public String get_origin_h3_index_from_unidirectional_edge_address(CellState s) {
+        return s.handler.get_origin_h3_index_from_unidirectional_edge(s.edgeAddresses[s.next()]);
+    }
+
+    @Benchmark
+    public Long get_destination_h3_index_from_unidirectional_edge(CellState s) {
+        return s.handler.get_destination_h3_index_from_unidirectional_edge(s.edges[s.next()]);
+    }
+
+    @Benchmark
+    public String get_destination_h3_index_from_unidirectional_edge_address(CellState s) {
+        return s.handler.get_destination_h3_index_from_unidirectional_edge(
+                s.edgeAddresses[s.next()]);
+    }
+
+    @Benchmark
+    public List<Long> get_h3_indexes_from_unidirectional_edge(CellState s) {
+        return s.handler.get_h3_indexes_from_unidirectional_edge(s.edges[s.next()]);
+    }
+
+    @Benchmark
+    public List<String> get_h3_indexes_from_unidirectional_edge_address(CellState s) {
+        return s.handler.get_h3_indexes_from_unidirectional_edge(s.edgeAddresses[s.next()]);
+    }
+
+    @Benchmark
+    public List<Long> get_h3_unidirectional_edges_from_hexagon(CellState s) {
+        return s.handler.get_h3_unidirectional_edges_from_hexagon(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public List<String> get_h3_unidirectional_edges_from_hexagon_address(CellState s) {
+        return s.handler.get_h3_unidirectional_edges_from_hexagon(s.addresses[s.next()]);
+    }
+
+    @Benchmark
+    public List<String> get_h3_unidirectional_edge_boundary(CellState s) {
+        return s.handler.get_h3_unidirectional_edge_boundary(s.edges[s.next()]);
+    }
+
+    @Benchmark
+    public List<String> get_h3_unidirectional_edge_boundary_address(CellState s) {
+        return s.handler.get_h3_unidirectional_edge_boundary(s.edgeAddresses[s.next()]);
+    }
+}
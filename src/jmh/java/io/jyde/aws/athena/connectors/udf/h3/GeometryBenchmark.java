@@ -0,0 +1,99 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.util.GeoCoord;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading the input of <code>polyfill</code>: a polygon with a hole as arrays of WKT Points, as a
+ * WKT <code>POLYGON</code>, and as WKB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeometryBenchmark {
+    @State(Scope.Thread)
+    public static class GeometryState {
+        @Param({"CITY", "COUNTRY"})
+        public PolygonSize size;
+
+        List<String> points;
+        List<String> hole;
+        String wkt;
+        byte[] wkb;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            points = BenchmarkData.polygon(size);
+            hole = BenchmarkData.hole(size);
+            List<GeoCoord> pointCoords = toGeoCoords(points);
+            List<GeoCoord> holeCoords = toGeoCoords(hole);
+            wkt = "POLYGON (" + ring(pointCoords) + ", " + ring(holeCoords) + ")";
+            ByteBuffer buffer =
+                    ByteBuffer.allocate(17 + 16 * (pointCoords.size() + holeCoords.size() + 2))
+                            .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put((byte) 1).putInt(3).putInt(2);
+            for (List<GeoCoord> ring : Arrays.asList(pointCoords, holeCoords)) {
+                buffer.putInt(ring.size() + 1);
+                for (GeoCoord coord : ring) {
+                    buffer.putDouble(coord.lng).putDouble(coord.lat);
+                }
+                buffer.putDouble(ring.get(0).lng).putDouble(ring.get(0).lat);
+            }
+            wkb = buffer.array();
+        }
+
+        private static List<GeoCoord> toGeoCoords(List<String> wktPoints) {
+            return wktPoints.stream().map(WKTPoints::toGeoCoord).collect(Collectors.toList());
+        }
+
+        private static String ring(List<GeoCoord> coords) {
+            StringBuilder sb = new StringBuilder("(");
+            for (GeoCoord coord : coords) {
+                WKTPoints.appendCoordinate(sb, coord.lng);
+                sb.append(' ');
+                WKTPoints.appendCoordinate(sb, coord.lat);
+                sb.append(", ");
+            }
+            WKTPoints.appendCoordinate(sb, coords.get(0).lng);
+            sb.append(' ');
+            WKTPoints.appendCoordinate(sb, coords.get(0).lat);
+            return sb.append(')').toString();
+        }
+    }
+
+    @Benchmark
+    public int wkt_points(GeometryState g) {
+        return GeometryState.toGeoCoords(g.points).size()
+                + GeometryState.toGeoCoords(g.hole).size();
+    }
+
+    @Benchmark
+    public List<Polygons.Polygon> wkt_polygon(GeometryState g) {
+        return Polygons.fromWKT(g.wkt);
+    }
+
+    @Benchmark
+    public List<Polygons.Polygon> wkb_polygon(GeometryState g) {
+        return Polygons.fromWKB(g.wkb);
+    }
+}
@@ -0,0 +1,98 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** {@link H3Index} against the {@link H3Core} methods it replaces, on primitive cells. */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class H3IndexBenchmark {
+    static final int PARENT_RES = 7;
+    static final int CHILD_RES = 13;
+
+    @State(Scope.Thread)
+    public static class H3CoreState {
+        H3Core h3Core;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            h3Core = H3Core.newInstance();
+        }
+    }
+
+    @Benchmark
+    public int h3GetResolution(H3CoreState h, CellState s) {
+        return h.h3Core.h3GetResolution(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public int getResolution(CellState s) {
+        return H3Index.getResolution(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public int h3GetBaseCell(H3CoreState h, CellState s) {
+        return h.h3Core.h3GetBaseCell(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public int getBaseCell(CellState s) {
+        return H3Index.getBaseCell(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public long h3ToParent(H3CoreState h, CellState s) {
+        return h.h3Core.h3ToParent(s.cells[s.next()], PARENT_RES);
+    }
+
+    @Benchmark
+    public long toParent(CellState s) {
+        return H3Index.toParent(s.cells[s.next()], PARENT_RES);
+    }
+
+    @Benchmark
+    public long h3ToCenterChild(H3CoreState h, CellState s) {
+        return h.h3Core.h3ToCenterChild(s.cells[s.next()], CHILD_RES);
+    }
+
+    @Benchmark
+    public long toCenterChild(CellState s) {
+        return H3Index.toCenterChild(s.cells[s.next()], CHILD_RES);
+    }
+
+    @Benchmark
+    public boolean h3IsResClassIII(H3CoreState h, CellState s) {
+        return h.h3Core.h3IsResClassIII(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public boolean isResClassIII(CellState s) {
+        return H3Index.isResClassIII(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public boolean h3IsValid(H3CoreState h, CellState s) {
+        return h.h3Core.h3IsValid(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public boolean isValid(CellState s) {
+        return H3Index.isValid(s.cells[s.next()]);
+    }
+}
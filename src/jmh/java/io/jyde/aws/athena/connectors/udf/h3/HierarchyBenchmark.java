@@ -0,0 +1,95 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Parent, children and compaction UDFs. */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HierarchyBenchmark {
+    static final int PARENT_RES = 7;
+    static final int CHILD_RES = 11;
+
+    /** Sets of cells that compact to a single parent, and the compacted parents. */
+    @State(Scope.Thread)
+    public static class CompactState {
+        List<Long> children;
+        List<String> childAddresses;
+        List<Long> compacted;
+        List<String> compactedAddresses;
+
+        @Setup(Level.Trial)
+        public void setup(CellState s) {
+            Long parent = s.handler.h3_to_parent(s.cells[0], PARENT_RES);
+            children = s.handler.h3_to_children(parent, CHILD_RES);
+            childAddresses = s.handler.h3_to_children(s.handler.h3_to_string(parent), CHILD_RES);
+            compacted = s.handler.k_ring(parent, 2);
+            compactedAddresses = s.handler.k_ring(s.handler.h3_to_string(parent), 2);
+        }
+    }
+
+    @Benchmark
+    public Long h3_to_parent(CellState s) {
+        return s.handler.h3_to_parent(s.cells[s.next()], PARENT_RES);
+    }
+
+    @Benchmark
+    public String h3_to_parent_address(CellState s) {
+        return s.handler.h3_to_parent_address(s.addresses[s.next()], PARENT_RES);
+    }
+
+    @Benchmark
+    public List<Long> h3_to_children(CellState s) {
+        return s.handler.h3_to_children(s.cells[s.next()], s.res + 2);
+    }
+
+    @Benchmark
+    public List<String> h3_to_children_address(CellState s) {
+        return s.handler.h3_to_children(s.addresses[s.next()], s.res + 2);
+    }
+
+    @Benchmark
+    public Long h3_to_center_child(CellState s) {
+        return s.handler.h3_to_center_child(s.cells[s.next()], 15);
+    }
+
+    @Benchmark
+    public String h3_to_center_child_address(CellState s) {
+        return s.handler.h3_to_center_child(s.addresses[s.next()], 15);
+    }
+
+    @Benchmark
+    public List<Long> compact(CompactState c, CellState s) {
+        return s.handler.compact(c.children);
+    }
+
+    @Benchmark
+    public List<String> compact_address(CompactState c, CellState s) {
+        return s.handler.compact_address(c.childAddresses);
+    }
+
+    @Benchmark
+    public List<Long> uncompact(CompactState c, CellState s) {
+        return s.handler.uncompact(c.compacted, PARENT_RES + 2);
+    }
+
+    @Benchmark
+    public List<String> uncompact_address(CompactState c, CellState s) {
+        return s.handler.uncompact_address(c.compactedAddresses, PARENT_RES + 2);
+    }
+}
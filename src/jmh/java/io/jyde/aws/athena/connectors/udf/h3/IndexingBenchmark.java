@@ -0,0 +1,119 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Conversions between coordinates, indexes and addresses. */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexingBenchmark {
+    static final List<Integer> MULTI_RESOLUTIONS = Arrays.asList(7, 9, 11, 15);
+
+    /** A handler using each {@link IndexingEngine}. */
+    @State(Scope.Thread)
+    public static class EngineState {
+        @Param({"jni", "java"})
+        public String engine;
+
+        H3AthenaUDFHandler handler;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            handler = new H3AthenaUDFHandler(H3Core.newInstance(), IndexingEngine.fromName(engine));
+        }
+    }
+
+    @Benchmark
+    public Long geo_to_h3_engine(EngineState e, CellState s) {
+        int i = s.next();
+        return e.handler.geo_to_h3(s.lats[i], s.lngs[i], s.res);
+    }
+
+    @Benchmark
+    public Long geo_to_h3(CellState s) {
+        int i = s.next();
+        return s.handler.geo_to_h3(s.lats[i], s.lngs[i], s.res);
+    }
+
+    @Benchmark
+    public List<Long> geo_to_h3_multi(CellState s) {
+        int i = s.next();
+        return s.handler.geo_to_h3_multi(s.lats[i], s.lngs[i], MULTI_RESOLUTIONS);
+    }
+
+    /** The indexes of {@link #geo_to_h3_multi} as separate calls. */
+    @Benchmark
+    public long geo_to_h3_each(CellState s) {
+        int i = s.next();
+        long sum = 0;
+        for (Integer res : MULTI_RESOLUTIONS) {
+            sum += s.handler.geo_to_h3(s.lats[i], s.lngs[i], res);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public String geo_to_h3_address(CellState s) {
+        int i = s.next();
+        return s.handler.geo_to_h3_address(s.lats[i], s.lngs[i], s.res);
+    }
+
+    @Benchmark
+    public String h3_to_geo(CellState s) {
+        return s.handler.h3_to_geo(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public String h3_to_geo_address(CellState s) {
+        return s.handler.h3_to_geo(s.addresses[s.next()]);
+    }
+
+    @Benchmark
+    public List<String> h3_to_geo_boundary(CellState s) {
+        return s.handler.h3_to_geo_boundary(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public List<String> h3_to_geo_boundary_address(CellState s) {
+        return s.handler.h3_to_geo_boundary(s.addresses[s.next()]);
+    }
+
+    @Benchmark
+    public List<Double> h3_to_geo_coords(CellState s) {
+        return s.handler.h3_to_geo_coords(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public List<Double> h3_to_geo_boundary_coords(CellState s) {
+        return s.handler.h3_to_geo_boundary_coords(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public String h3_to_string(CellState s) {
+        return s.handler.h3_to_string(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public Long string_to_h3(CellState s) {
+        return s.handler.string_to_h3(s.addresses[s.next()]);
+    }
+}
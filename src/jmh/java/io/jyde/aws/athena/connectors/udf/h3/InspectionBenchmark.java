@@ -0,0 +1,80 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Index inspection UDFs. */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InspectionBenchmark {
+    @Benchmark
+    public Boolean h3_is_valid(CellState s) {
+        return s.handler.h3_is_valid(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public Boolean h3_is_valid_address(CellState s) {
+        return s.handler.h3_is_valid(s.addresses[s.next()]);
+    }
+
+    @Benchmark
+    public Integer h3_get_base_cell(CellState s) {
+        return s.handler.h3_get_base_cell(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public Integer h3_get_base_cell_address(CellState s) {
+        return s.handler.h3_get_base_cell(s.addresses[s.next()]);
+    }
+
+    @Benchmark
+    public Boolean h3_is_pentagon(CellState s) {
+        return s.handler.h3_is_pentagon(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public Boolean h3_is_pentagon_address(CellState s) {
+        return s.handler.h3_is_pentagon(s.addresses[s.next()]);
+    }
+
+    @Benchmark
+    public Integer h3_get_resolution(CellState s) {
+        return s.handler.h3_get_resolution(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public Integer h3_get_resolution_address(CellState s) {
+        return s.handler.h3_get_resolution(s.addresses[s.next()]);
+    }
+
+    @Benchmark
+    public Boolean h3_is_res_class_iii(CellState s) {
+        return s.handler.h3_is_res_class_iii(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public Boolean h3_is_res_class_iii_address(CellState s) {
+        return s.handler.h3_is_res_class_iii(s.addresses[s.next()]);
+    }
+
+    @Benchmark
+    public List<Integer> h3_get_faces(CellState s) {
+        return s.handler.h3_get_faces(s.cells[s.next()]);
+    }
+
+    @Benchmark
+    public List<Integer> h3_get_faces_address(CellState s) {
+        return s.handler.h3_get_faces(s.addresses[s.next()]);
+    }
+}
@@ -0,0 +1,89 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Area, length, distance and grid-wide UDFs. */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MeasurementBenchmark {
+    @Benchmark
+    public Double cell_area(CellState s) {
+        return s.handler.cell_area(s.cells[s.next()], "m2");
+    }
+
+    @Benchmark
+    public Double cell_area_address(CellState s) {
+        return s.handler.cell_area(s.addresses[s.next()], "m2");
+    }
+
+    @Benchmark
+    public Double exact_edge_length(CellState s) {
+        return s.handler.exact_edge_length(s.edges[s.next()], "m");
+    }
+
+    @Benchmark
+    public Double exact_edge_length_address(CellState s) {
+        return s.handler.exact_edge_length(s.edgeAddresses[s.next()], "m");
+    }
+
+    @Benchmark
+    public Double point_dist(CellState s) {
+        int i = s.next();
+        return s.handler.point_dist(
+                s.wktPoints[i], s.wktPoints[(i + 1) & (BenchmarkData.SIZE - 1)], "m");
+    }
+
+    @Benchmark
+    public Double point_dist_coords(CellState s) {
+        int i = s.next();
+        int j = (i + 1) & (BenchmarkData.SIZE - 1);
+        return s.handler.point_dist(s.lats[i], s.lngs[i], s.lats[j], s.lngs[j], "m");
+    }
+
+    @Benchmark
+    public Double hex_area(CellState s) {
+        return s.handler.hex_area(s.res, "m2");
+    }
+
+    @Benchmark
+    public Double edge_length(CellState s) {
+        return s.handler.edge_length(s.res, "m");
+    }
+
+    @Benchmark
+    public Long num_hexagons(CellState s) {
+        return s.handler.num_hexagons(s.res);
+    }
+
+    @Benchmark
+    public List<Long> get_res_0_indexes(CellState s) {
+        return s.handler.get_res_0_indexes();
+    }
+
+    @Benchmark
+    public List<String> get_res_0_indexes_addresses(CellState s) {
+        return s.handler.get_res_0_indexes_addresses();
+    }
+
+    @Benchmark
+    public List<Long> get_pentagon_indexes(CellState s) {
+        return s.handler.get_pentagon_indexes(s.res);
+    }
+
+    @Benchmark
+    public List<String> get_pentagon_indexes_addresses(CellState s) {
+        return s.handler.get_pentagon_indexes_addresses(s.res);
+    }
+}
@@ -0,0 +1,211 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.amazonaws.athena.connector.lambda.data.FieldResolver;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Batches of the expensive UDFs through {@link H3AthenaUDFHandler#processRows} by the number of
+ * threads of the {@link BatchExecutor}, as with the vCPUs of a Lambda of 1769 MB (1), 3008 MB (2),
+ * and 10240 MB (6). A parallelism of 1 is the single-threaded path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelBatchBenchmark {
+    static final int ROW_COUNT = 1024;
+    static final int POLYGON_ROW_COUNT = 16;
+    static final int POLYGON_CELL_RES = 5;
+    static final int K = 10;
+
+    @State(Scope.Thread)
+    public static class ParallelState {
+        @Param({"1", "2", "4", "6"})
+        public int parallelism;
+
+        H3AthenaUDFHandler handler;
+        BlockAllocatorImpl allocator;
+        Block cells;
+        Block cellPairs;
+        Block cellsAndUnits;
+        Block cellsAndK;
+        Block polygons;
+
+        @Setup(Level.Trial)
+        public void setup(CellState s) throws IOException {
+            H3Core h3Core = H3Core.newInstance();
+            handler =
+                    new H3AthenaUDFHandler(
+                            h3Core,
+                            IndexingEngine.JNI,
+                            new ResultCache(0),
+                            new BatchExecutor(parallelism));
+            allocator = new BlockAllocatorImpl();
+
+            ArrowType bigint = Types.MinorType.BIGINT.getType();
+            cells =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder().addField("h3", bigint).build());
+            cellPairs =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addField("start", bigint)
+                                    .addField("end", bigint)
+                                    .build());
+            cellsAndUnits =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addField("h3", bigint)
+                                    .addStringField("unit")
+                                    .build());
+            cellsAndK =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addField("h3", bigint)
+                                    .addIntField("k")
+                                    .build());
+            for (int row = 0; row < ROW_COUNT; row++) {
+                cells.setValue("h3", row, s.cells[row]);
+                cellPairs.setValue("start", row, s.cells[row]);
+                cellPairs.setValue("end", row, s.farCells[row]);
+                cellsAndUnits.setValue("h3", row, s.cells[row]);
+                cellsAndUnits.setValue("unit", row, "m2");
+                cellsAndK.setValue("h3", row, s.cells[row]);
+                cellsAndK.setValue("k", row, K);
+            }
+            cells.setRowCount(ROW_COUNT);
+            cellPairs.setRowCount(ROW_COUNT);
+            cellsAndUnits.setRowCount(ROW_COUNT);
+            cellsAndK.setRowCount(ROW_COUNT);
+
+            // the boundaries of coarse cells, filled at the resolution of the points
+            ArrowType varchar = Types.MinorType.VARCHAR.getType();
+            Field holes =
+                    new Field(
+                            "holes",
+                            FieldType.nullable(Types.MinorType.LIST.getType()),
+                            Collections.singletonList(listField("item", varchar)));
+            polygons =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addField(listField("points", varchar))
+                                    .addField(holes)
+                                    .addIntField("res")
+                                    .build());
+            for (int row = 0; row < POLYGON_ROW_COUNT; row++) {
+                long coarse = h3Core.h3ToParent(s.cells[row * 64], POLYGON_CELL_RES);
+                List<String> points =
+                        h3Core.h3ToGeoBoundary(coarse).stream()
+                                .map(WKTPoints::format)
+                                .collect(Collectors.toList());
+                polygons.setComplexValue("points", row, FieldResolver.DEFAULT, points);
+                polygons.setComplexValue(
+                        "holes", row, FieldResolver.DEFAULT, Collections.emptyList());
+                polygons.setValue("res", row, s.res);
+            }
+            polygons.setRowCount(POLYGON_ROW_COUNT);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            cells.close();
+            cellPairs.close();
+            cellsAndUnits.close();
+            cellsAndK.close();
+            polygons.close();
+            allocator.close();
+        }
+
+        int process(Block input, Schema outputSchema, String name, Class<?>... parameterTypes)
+                throws Exception {
+            Method method = H3AthenaUDFHandler.class.getMethod(name, parameterTypes);
+            try (Block output = handler.processRows(allocator, method, input, outputSchema)) {
+                return output.getRowCount();
+            }
+        }
+
+        private static Field listField(String name, ArrowType elementType) {
+            return new Field(
+                    name,
+                    FieldType.nullable(Types.MinorType.LIST.getType()),
+                    Collections.singletonList(
+                            new Field("item", FieldType.nullable(elementType), null)));
+        }
+    }
+
+    static Schema listOutput(Types.MinorType elementType) {
+        return SchemaBuilder.newBuilder().addListField("out", elementType.getType()).build();
+    }
+
+    @Benchmark
+    public int polyfill(ParallelState p) throws Exception {
+        return p.process(
+                p.polygons,
+                listOutput(Types.MinorType.BIGINT),
+                "polyfill",
+                List.class,
+                List.class,
+                Integer.class);
+    }
+
+    @Benchmark
+    public int k_ring(ParallelState p) throws Exception {
+        return p.process(
+                p.cellsAndK,
+                listOutput(Types.MinorType.BIGINT),
+                "k_ring",
+                Long.class,
+                Integer.class);
+    }
+
+    @Benchmark
+    public int h3_line(ParallelState p) throws Exception {
+        return p.process(
+                p.cellPairs, listOutput(Types.MinorType.BIGINT), "h3_line", Long.class, Long.class);
+    }
+
+    @Benchmark
+    public int h3_to_geo_boundary(ParallelState p) throws Exception {
+        return p.process(
+                p.cells, listOutput(Types.MinorType.VARCHAR), "h3_to_geo_boundary", Long.class);
+    }
+
+    @Benchmark
+    public int cell_area(ParallelState p) throws Exception {
+        return p.process(
+                p.cellsAndUnits,
+                SchemaBuilder.newBuilder().addFloat8Field("out").build(),
+                "cell_area",
+                Long.class,
+                String.class);
+    }
+}
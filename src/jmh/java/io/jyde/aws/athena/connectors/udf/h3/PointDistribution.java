@@ -0,0 +1,15 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+/** How benchmark points are spread over the globe. */
+public enum PointDistribution {
+    /** Points clustered around a handful of city centers, like population density data. */
+    URBAN,
+    /** Points distributed uniformly over the sphere. */
+    GLOBAL,
+    /**
+     * Mostly regional clusters around the same cities, wider than {@link #URBAN}, and the rest
+     * uniform over the sphere, like the nodes of Open Street Map data.
+     */
+    PLANET
+}
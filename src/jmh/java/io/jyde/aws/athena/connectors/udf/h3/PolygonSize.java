@@ -0,0 +1,20 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+/** Size of the polygons used for <code>polyfill</code>. */
+public enum PolygonSize {
+    /** About the size of a large city. */
+    CITY(0.25, 64),
+    /** About the size of a small country. */
+    COUNTRY(2.5, 1024),
+    /** About the size of a large country, with a detailed boundary. */
+    REGION(8.0, 8192);
+
+    final double radiusDegrees;
+    final int vertices;
+
+    PolygonSize(double radiusDegrees, int vertices) {
+        this.radiusDegrees = radiusDegrees;
+        this.vertices = vertices;
+    }
+}
@@ -0,0 +1,33 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** A large polygon with a hole, as lists of WKT Points. */
+@State(Scope.Thread)
+public class PolygonState {
+    @Param({"CITY", "COUNTRY"})
+    public PolygonSize size;
+
+    @Param({"7", "9"})
+    public int res;
+
+    H3AthenaUDFHandler handler;
+
+    List<String> points;
+    List<List<String>> holes;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        handler = new H3AthenaUDFHandler();
+        points = BenchmarkData.polygon(size);
+        holes = Collections.singletonList(BenchmarkData.hole(size));
+    }
+}
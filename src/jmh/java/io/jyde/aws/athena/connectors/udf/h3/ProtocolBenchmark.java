@@ -0,0 +1,252 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import com.amazonaws.athena.connector.lambda.request.FederationResponse;
+import com.amazonaws.athena.connector.lambda.security.FederatedIdentity;
+import com.amazonaws.athena.connector.lambda.serde.VersionedObjectMapperFactory;
+import com.amazonaws.athena.connector.lambda.udf.UserDefinedFunctionRequest;
+import com.amazonaws.athena.connector.lambda.udf.UserDefinedFunctionResponse;
+import com.amazonaws.athena.connector.lambda.udf.UserDefinedFunctionType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uber.h3core.H3Core;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Requests as Athena sends them, serialized <code>UserDefinedFunctionRequest</code>s with a batch
+ * of rows, through the entry point of the Lambda, {@link H3AthenaUDFHandler#handleRequest}, which
+ * deserializes the batch, evaluates the UDF and serializes the response.
+ *
+ * <p><code>request</code> reports requests per second, and as secondary results the rows, the bytes
+ * of the requests and the bytes of the responses per second. <code>request_latency</code> reports
+ * the percentiles of the latency of a request. The handler is configured from the environment, as
+ * in the Lambda, and the heap is set with <code>-jvmArgsAppend</code>, so batch sizes and memory
+ * settings can be compared without deploying.
+ *
+ * <p>Rows are points of a {@link PointDistribution}, <code>URBAN</code> like <code>hrsl_h3</code>
+ * or <code>PLANET</code> like <code>planet_h3</code>, and their cells at resolution 15, as in those
+ * tables. A share of the rows is <code>NULL</code>, as the coordinates of the ways and relations of
+ * <code>planet_h3</code> are.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProtocolBenchmark {
+    /** Resolution of the cells of <code>hrsl_h3</code> and <code>planet_h3</code>. */
+    static final int RES = 15;
+
+    static final int PARENT_RES = 9;
+    static final int K = 1;
+
+    private static final ArrowType BIGINT = Types.MinorType.BIGINT.getType();
+    private static final ArrowType FLOAT8 = Types.MinorType.FLOAT8.getType();
+    private static final ArrowType INT = Types.MinorType.INT.getType();
+    private static final ArrowType VARCHAR = Types.MinorType.VARCHAR.getType();
+
+    /** The UDFs called, with the columns of their requests. */
+    public enum Udf {
+        /** As in creating <code>hrsl_h3</code> and <code>planet_h3</code>. */
+        GEO_TO_H3(
+                "geo_to_h3",
+                field("out", BIGINT),
+                field("lat", FLOAT8),
+                field("lng", FLOAT8),
+                field("res", INT)),
+        H3_TO_PARENT("h3_to_parent", field("out", BIGINT), field("h3", BIGINT), field("res", INT)),
+        H3_TO_PARENT_ADDRESS(
+                "h3_to_parent_address",
+                field("out", VARCHAR),
+                field("h3", VARCHAR),
+                field("res", INT)),
+        K_RING("k_ring", listField("out", BIGINT), field("h3", BIGINT), field("k", INT)),
+        H3_TO_GEO_BOUNDARY("h3_to_geo_boundary", listField("out", VARCHAR), field("h3", BIGINT));
+
+        final String methodName;
+        final Schema outputSchema;
+        final Schema inputSchema;
+
+        Udf(String methodName, Field output, Field... inputs) {
+            this.methodName = methodName;
+            this.outputSchema = schema(output);
+            this.inputSchema = schema(inputs);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ProtocolState {
+        @Param({
+            "GEO_TO_H3",
+            "H3_TO_PARENT",
+            "H3_TO_PARENT_ADDRESS",
+            "K_RING",
+            "H3_TO_GEO_BOUNDARY"
+        })
+        public Udf udf;
+
+        @Param({"1024", "4096", "16384"})
+        public int batchSize;
+
+        /** Share of rows whose columns, but for constant arguments, are <code>NULL</code>. */
+        @Param({"0", "0.1"})
+        public double nullRatio;
+
+        @Param({"URBAN", "PLANET"})
+        public PointDistribution distribution;
+
+        H3AthenaUDFHandler handler;
+        byte[] request;
+        ByteArrayOutputStream response;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            handler = new H3AthenaUDFHandler();
+            H3Core h3Core = H3Core.newInstance();
+            double[][] points = BenchmarkData.points(distribution, batchSize);
+            Random random = new Random(BenchmarkData.SEED);
+            try (BlockAllocatorImpl allocator = new BlockAllocatorImpl()) {
+                ObjectMapper mapper = VersionedObjectMapperFactory.create(allocator);
+                Block input = allocator.createBlock(udf.inputSchema);
+                for (int row = 0; row < batchSize; row++) {
+                    boolean isNull = random.nextDouble() < nullRatio;
+                    double lat = points[0][row];
+                    double lng = points[1][row];
+                    long cell = h3Core.geoToH3(lat, lng, RES);
+                    for (Field field : udf.inputSchema.getFields()) {
+                        String name = field.getName();
+                        Object value;
+                        if (name.equals("res")) {
+                            value = udf == Udf.GEO_TO_H3 ? RES : PARENT_RES;
+                        } else if (name.equals("k")) {
+                            value = K;
+                        } else if (isNull) {
+                            value = null;
+                        } else if (name.equals("lat")) {
+                            value = lat;
+                        } else if (name.equals("lng")) {
+                            value = lng;
+                        } else {
+                            value =
+                                    field.getType().equals(VARCHAR)
+                                            ? h3Core.h3ToString(cell)
+                                            : cell;
+                        }
+                        input.setValue(name, row, value);
+                    }
+                }
+                input.setRowCount(batchSize);
+                // the request closes the input
+                try (UserDefinedFunctionRequest udfRequest =
+                        new UserDefinedFunctionRequest(
+                                new FederatedIdentity(
+                                        "id",
+                                        "principal",
+                                        Collections.emptyMap(),
+                                        Collections.emptyList()),
+                                input,
+                                udf.outputSchema,
+                                udf.methodName,
+                                UserDefinedFunctionType.SCALAR)) {
+                    request = mapper.writeValueAsBytes(udfRequest);
+                }
+
+                response = new ByteArrayOutputStream(request.length);
+                handle();
+                try (FederationResponse federationResponse =
+                        mapper.readValue(response.toByteArray(), FederationResponse.class)) {
+                    int rowCount =
+                            ((UserDefinedFunctionResponse) federationResponse)
+                                    .getRecords()
+                                    .getRowCount();
+                    if (rowCount != batchSize) {
+                        throw new IllegalStateException(
+                                "Expected " + batchSize + " rows but got " + rowCount);
+                    }
+                }
+            }
+        }
+
+        /** Handles the request, and returns the bytes of the response. */
+        int handle() {
+            response.reset();
+            handler.handleRequest(new ByteArrayInputStream(request), response, null);
+            return response.size();
+        }
+    }
+
+    /** Rows and bytes of the requests handled in an iteration. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Traffic {
+        public long rows;
+        public long bytesIn;
+        public long bytesOut;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+            bytesIn = 0;
+            bytesOut = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int request(ProtocolState p, Traffic t) {
+        int bytesOut = p.handle();
+        t.rows += p.batchSize;
+        t.bytesIn += p.request.length;
+        t.bytesOut += bytesOut;
+        return bytesOut;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int request_latency(ProtocolState p) {
+        return p.handle();
+    }
+
+    private static Field field(String name, ArrowType type) {
+        return new Field(name, FieldType.nullable(type), null);
+    }
+
+    private static Field listField(String name, ArrowType itemType) {
+        return new Field(
+                name,
+                FieldType.nullable(Types.MinorType.LIST.getType()),
+                Collections.singletonList(field("item", itemType)));
+    }
+
+    private static Schema schema(Field... fields) {
+        SchemaBuilder builder = SchemaBuilder.newBuilder();
+        for (Field field : fields) {
+            builder.addField(field);
+        }
+        return builder.build();
+    }
+}
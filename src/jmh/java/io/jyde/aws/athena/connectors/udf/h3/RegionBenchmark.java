@@ -0,0 +1,50 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Region filling UDFs. These are slow, so latency is reported in milliseconds. */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegionBenchmark {
+    static final int PAGE_SIZE = 10000;
+
+    @Benchmark
+    public List<Long> polyfill(PolygonState p) {
+        return p.handler.polyfill(p.points, p.holes, p.res);
+    }
+
+    @Benchmark
+    public List<String> polyfill_address(PolygonState p) {
+        return p.handler.polyfill_address(p.points, p.holes, p.res);
+    }
+
+    @Benchmark
+    public List<Long> polyfill_compact(PolygonState p) {
+        return p.handler.polyfill_compact(p.points, p.holes, p.res);
+    }
+
+    /** The count of a paged polyfill, with the coverage of the polygon kept across calls. */
+    @Benchmark
+    public Long polyfill_count(PolygonState p) {
+        return p.handler.polyfill_count(p.points, p.holes, p.res);
+    }
+
+    /** A page in the middle of a paged polyfill. */
+    @Benchmark
+    public List<Long> polyfill_page(PolygonState p) {
+        long pages = p.handler.polyfill_count(p.points, p.holes, p.res) / PAGE_SIZE;
+        return p.handler.polyfill_page(p.points, p.holes, p.res, pages / 2, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,74 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cached per-cell UDFs on recurring cells, the parents of the points as after a <code>GROUP BY
+ * h3_to_parent(h3, 7)</code>, with the {@link ResultCache} disabled and enabled.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultCacheBenchmark {
+    static final int PARENT_RES = 7;
+
+    @State(Scope.Thread)
+    public static class CacheState {
+        @Param({"0", "64"})
+        public int cacheMegabytes;
+
+        H3AthenaUDFHandler handler;
+        Long[] parents;
+
+        @Setup(Level.Trial)
+        public void setup(CellState s) throws IOException {
+            handler =
+                    new H3AthenaUDFHandler(
+                            H3Core.newInstance(),
+                            IndexingEngine.JNI,
+                            new ResultCache(cacheMegabytes));
+            parents = new Long[s.cells.length];
+            for (int i = 0; i < parents.length; i++) {
+                parents[i] = s.handler.h3_to_parent(s.cells[i], PARENT_RES);
+            }
+        }
+    }
+
+    @Benchmark
+    public Double cell_area(CacheState c, CellState s) {
+        return c.handler.cell_area(c.parents[s.next()], "m2");
+    }
+
+    @Benchmark
+    public String h3_to_geo(CacheState c, CellState s) {
+        return c.handler.h3_to_geo(c.parents[s.next()]);
+    }
+
+    @Benchmark
+    public List<String> h3_to_geo_boundary(CacheState c, CellState s) {
+        return c.handler.h3_to_geo_boundary(c.parents[s.next()]);
+    }
+
+    @Benchmark
+    public List<Integer> h3_get_faces(CacheState c, CellState s) {
+        return c.handler.h3_get_faces(c.parents[s.next()]);
+    }
+}
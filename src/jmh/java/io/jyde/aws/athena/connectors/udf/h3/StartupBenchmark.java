@@ -0,0 +1,157 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * The cold start of a Lambda container: creating the handler in a fresh JVM, and evaluating its
+ * first batches of <code>geo_to_h3</code> and <code>k_ring</code>. Each fork is one cold start.
+ *
+ * <p><code>first_row</code> is the time to the first row of a new container, <code>first_batch
+ * </code> that of the first batches alone, after the init of the handler, including any priming.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+    static final int ROW_COUNT = 4096;
+
+    /** Where the native library is loaded from. */
+    public enum Library {
+        /** Extracted from the jar to a temporary file, by <code>H3Core.newInstance()</code>. */
+        JAR,
+        /** A file that is already on disk, as in an unpacked deployment package. */
+        FILE
+    }
+
+    @State(Scope.Thread)
+    public static class StartupState {
+        @Param({"JAR", "FILE"})
+        public Library library;
+
+        @Param({"0", "4096"})
+        public int primingRows;
+
+        File libraryFile;
+        BlockAllocatorImpl allocator;
+        Block points;
+        Block cells;
+        Schema bigIntOutput;
+        Schema listOutput;
+        H3AthenaUDFHandler handler;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            if (library == Library.FILE) {
+                String resource = Startup.libraryResource();
+                libraryFile = File.createTempFile("libh3-java", ".so");
+                libraryFile.deleteOnExit();
+                try (InputStream in = StartupBenchmark.class.getResourceAsStream(resource)) {
+                    Files.copy(in, libraryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            allocator = new BlockAllocatorImpl();
+            points =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addFloat8Field("lat")
+                                    .addFloat8Field("lng")
+                                    .addIntField("res")
+                                    .build());
+            cells =
+                    allocator.createBlock(
+                            SchemaBuilder.newBuilder()
+                                    .addBigIntField("h3")
+                                    .addIntField("k")
+                                    .build());
+            for (int row = 0; row < ROW_COUNT; row++) {
+                double lat = 52.3 + 0.4 * row / ROW_COUNT;
+                double lng = 13.1 + 0.6 * (row * 31 % ROW_COUNT) / ROW_COUNT;
+                points.setValue("lat", row, lat);
+                points.setValue("lng", row, lng);
+                points.setValue("res", row, 9);
+                // indexes of res 9 in Berlin, without loading the H3 library
+                long cell = H3Index.setDigit(0x891f1d48b67ffffL, 8, row % 7);
+                cells.setValue("h3", row, H3Index.setDigit(cell, 9, row / 7 % 7));
+                cells.setValue("k", row, 2);
+            }
+            points.setRowCount(ROW_COUNT);
+            cells.setRowCount(ROW_COUNT);
+            bigIntOutput = SchemaBuilder.newBuilder().addBigIntField("out").build();
+            listOutput =
+                    SchemaBuilder.newBuilder()
+                            .addListField("out", Types.MinorType.BIGINT.getType())
+                            .build();
+        }
+
+        @Setup(Level.Iteration)
+        public void createHandler(BenchmarkParams params) throws IOException {
+            if (params.getBenchmark().endsWith("first_batch")) {
+                handler = newHandler();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            points.close();
+            cells.close();
+            allocator.close();
+        }
+
+        H3AthenaUDFHandler newHandler() throws IOException {
+            return new H3AthenaUDFHandler(new Startup(libraryFile, primingRows));
+        }
+
+        int firstBatches(H3AthenaUDFHandler handler) throws Exception {
+            Method geoToH3 =
+                    H3AthenaUDFHandler.class.getMethod(
+                            "geo_to_h3", Double.class, Double.class, Integer.class);
+            Method kRing = H3AthenaUDFHandler.class.getMethod("k_ring", Long.class, Integer.class);
+            int rows = 0;
+            try (Block output = handler.processRows(allocator, geoToH3, points, bigIntOutput)) {
+                rows += output.getRowCount();
+            }
+            try (Block output = handler.processRows(allocator, kRing, cells, listOutput)) {
+                rows += output.getRowCount();
+            }
+            return rows;
+        }
+    }
+
+    @Benchmark
+    public int first_row(StartupState s) throws Exception {
+        return s.firstBatches(s.newHandler());
+    }
+
+    @Benchmark
+    public int first_batch(StartupState s) throws Exception {
+        return s.firstBatches(s.handler);
+    }
+}
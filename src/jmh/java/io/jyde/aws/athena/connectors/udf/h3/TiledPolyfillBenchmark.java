@@ -0,0 +1,66 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <code>polyfill</code> of a single large polygon by the number of threads of the {@link
+ * BatchExecutor}, which fills it in latitude bands. A parallelism of 1 is a single <code>
+ * H3Core.polyfill</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TiledPolyfillBenchmark {
+    @State(Scope.Thread)
+    public static class TiledState {
+        @Param({"COUNTRY", "REGION"})
+        public PolygonSize size;
+
+        @Param({"7", "8"})
+        public int res;
+
+        @Param({"1", "2", "4", "6"})
+        public int parallelism;
+
+        H3AthenaUDFHandler handler;
+
+        List<String> points;
+        List<List<String>> holes;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            handler =
+                    new H3AthenaUDFHandler(
+                            H3Core.newInstance(),
+                            IndexingEngine.JNI,
+                            new ResultCache(0),
+                            new BatchExecutor(parallelism));
+            points = BenchmarkData.polygon(size);
+            holes = Collections.singletonList(BenchmarkData.hole(size));
+        }
+    }
+
+    @Benchmark
+    public List<Long> polyfill(TiledState p) {
+        return p.handler.polyfill(p.points, p.holes, p.res);
+    }
+}
@@ -0,0 +1,172 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.exceptions.PentagonEncounteredException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Grid traversal UDFs. */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraversalBenchmark {
+    /** Ring size for <code>k_ring</code> and <code>hex_ring</code>. */
+    @State(Scope.Thread)
+    public static class RingState {
+        @Param({"1", "10"})
+        public int k;
+    }
+
+    /** A track of GPS fixes in Berlin, a few cells apart at resolution 11 and repeated at times. */
+    @State(Scope.Thread)
+    public static class TrackState {
+        @Param({"100", "1000"})
+        public int fixes;
+
+        H3AthenaUDFHandler handler;
+        List<Double> lats;
+        List<Double> lngs;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            handler = new H3AthenaUDFHandler();
+            Random random = new Random(42L);
+            lats = new ArrayList<>(fixes);
+            lngs = new ArrayList<>(fixes);
+            double lat = 52.5;
+            double lng = 13.4;
+            for (int i = 0; i < fixes; i++) {
+                // up to about 60 m, standing still one fix in four
+                if (random.nextInt(4) > 0) {
+                    lat += (random.nextDouble() - 0.3) * 5e-4;
+                    lng += (random.nextDouble() - 0.3) * 8e-4;
+                }
+                lats.add(lat);
+                lngs.add(lng);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Long> k_ring(CellState s, RingState r) {
+        return s.handler.k_ring(s.cells[s.next()], r.k);
+    }
+
+    @Benchmark
+    public List<String> k_ring_address(CellState s, RingState r) {
+        return s.handler.k_ring(s.addresses[s.next()], r.k);
+    }
+
+    @Benchmark
+    public List<Long> k_ring_compact(CellState s, RingState r) {
+        return s.handler.k_ring_compact(s.cells[s.next()], r.k);
+    }
+
+    @Benchmark
+    public List<List<Long>> k_ring_distances(CellState s, RingState r) {
+        return s.handler.k_ring_distances(s.cells[s.next()], r.k);
+    }
+
+    /** The neighbors and their distances as a query gets them without k_ring_distances. */
+    @Benchmark
+    public int k_ring_then_h3_distance(CellState s, RingState r) {
+        Long origin = s.cells[s.next()];
+        int total = 0;
+        for (Long neighbor : s.handler.k_ring(origin, r.k)) {
+            total += s.handler.h3_distance(origin, neighbor);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public List<Long> hex_ring(CellState s, RingState r) throws PentagonEncounteredException {
+        return s.handler.hex_ring(s.cells[s.next()], r.k);
+    }
+
+    @Benchmark
+    public List<String> hex_ring_address(CellState s, RingState r)
+            throws PentagonEncounteredException {
+        return s.handler.hex_ring(s.addresses[s.next()], r.k);
+    }
+
+    @Benchmark
+    public Integer h3_distance(CellState s) {
+        int i = s.next();
+        return s.handler.h3_distance(s.cells[i], s.farCells[i]);
+    }
+
+    @Benchmark
+    public Integer h3_distance_address(CellState s) {
+        int i = s.next();
+        return s.handler.h3_distance(s.addresses[i], s.farAddresses[i]);
+    }
+
+    @Benchmark
+    public List<Long> h3_line(CellState s) {
+        int i = s.next();
+        return s.handler.h3_line(s.cells[i], s.farCells[i]);
+    }
+
+    @Benchmark
+    public List<String> h3_line_address(CellState s) {
+        int i = s.next();
+        return s.handler.h3_line(s.addresses[i], s.farAddresses[i]);
+    }
+
+    @Benchmark
+    public Boolean h3_indexes_are_neighbors(CellState s) {
+        int i = s.next();
+        return s.handler.h3_indexes_are_neighbors(s.cells[i], s.neighbors[i]);
+    }
+
+    @Benchmark
+    public Boolean h3_indexes_are_neighbors_address(CellState s) {
+        int i = s.next();
+        return s.handler.h3_indexes_are_neighbors(s.addresses[i], s.neighborAddresses[i]);
+    }
+
+    @Benchmark
+    public List<Long> h3_trajectory(TrackState t) {
+        return t.handler.h3_trajectory(t.lats, t.lngs, 11);
+    }
+
+    @Benchmark
+    public List<Long> h3_trajectory_edges(TrackState t) {
+        return t.handler.h3_trajectory_edges(t.lats, t.lngs, 11);
+    }
+
+    /** The path as a query gets it without h3_trajectory, with a call per fix and per step. */
+    @Benchmark
+    public List<Long> geo_to_h3_then_h3_line(TrackState t) {
+        List<Long> path = new ArrayList<>();
+        Long last = null;
+        for (int i = 0; i < t.lats.size(); i++) {
+            Long cell = t.handler.geo_to_h3(t.lats.get(i), t.lngs.get(i), 11);
+            if (last == null) {
+                path.add(cell);
+            } else if (!cell.equals(last)) {
+                List<Long> line = t.handler.h3_line(last, cell);
+                path.addAll(line.subList(1, line.size()));
+            }
+            last = cell;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,106 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.exceptions.DistanceUndefinedException;
+import com.uber.h3core.exceptions.LineUndefinedException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Distance, line and edge UDFs on pairs of cells H3 mostly cannot relate, as in a join of points
+ * from all over the globe, against catching the exceptions of <code>H3Core</code>.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UndefinedPairBenchmark {
+    /**
+     * Pairs of the cells of a {@link CellState}: with the next cell, mostly too far apart for a
+     * distance in either distribution, or with the cell {@link CellState#PAIR_DISTANCE} away, which
+     * has a distance but no edge.
+     */
+    @State(Scope.Thread)
+    public static class PairState {
+        @Param({"NEXT", "NEARBY"})
+        public String pairing;
+
+        H3Core h3Core;
+        Long[] others;
+
+        @Setup(Level.Trial)
+        public void setup(CellState s) throws IOException {
+            h3Core = H3Core.newInstance();
+            others = new Long[BenchmarkData.SIZE];
+            for (int i = 0; i < BenchmarkData.SIZE; i++) {
+                others[i] =
+                        "NEXT".equals(pairing)
+                                ? s.cells[(i + 1) & (BenchmarkData.SIZE - 1)]
+                                : s.farCells[i];
+            }
+        }
+    }
+
+    @Benchmark
+    public Integer h3_distance(CellState s, PairState p) {
+        int i = s.next();
+        return s.handler.h3_distance(s.cells[i], p.others[i]);
+    }
+
+    @Benchmark
+    public Integer h3Distance_exception(CellState s, PairState p) {
+        int i = s.next();
+        try {
+            return p.h3Core.h3Distance(s.cells[i], p.others[i]);
+        } catch (DistanceUndefinedException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public List<Long> h3_line(CellState s, PairState p) {
+        int i = s.next();
+        return s.handler.h3_line(s.cells[i], p.others[i]);
+    }
+
+    @Benchmark
+    public List<Long> h3Line_exception(CellState s, PairState p) {
+        int i = s.next();
+        try {
+            return p.h3Core.h3Line(s.cells[i], p.others[i]);
+        } catch (LineUndefinedException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Long get_h3_unidirectional_edge(CellState s, PairState p) {
+        int i = s.next();
+        return s.handler.get_h3_unidirectional_edge(s.cells[i], p.others[i]);
+    }
+
+    @Benchmark
+    public Long getH3UnidirectionalEdge_exception(CellState s, PairState p) {
+        int i = s.next();
+        try {
+            return p.h3Core.getH3UnidirectionalEdge(s.cells[i], p.others[i]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
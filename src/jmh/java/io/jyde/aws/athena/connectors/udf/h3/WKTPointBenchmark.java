@@ -0,0 +1,53 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.util.GeoCoord;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link WKTPoints} against the regular expression and {@link String#format} conversions the UDFs
+ * used before it.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WKTPointBenchmark {
+    @Benchmark
+    public GeoCoord parse(CellState s) {
+        return WKTPoints.toGeoCoord(s.wktPoints[s.next()]);
+    }
+
+    @Benchmark
+    public GeoCoord parse_legacy(CellState s) {
+        Pattern p = Pattern.compile("\\d+(\\.\\d+)?");
+        Matcher m = p.matcher(s.wktPoints[s.next()]);
+        m.find();
+        double lng = Double.parseDouble(m.group());
+        m.find();
+        double lat = Double.parseDouble(m.group());
+        return new GeoCoord(lat, lng);
+    }
+
+    @Benchmark
+    public String format(CellState s) {
+        int i = s.next();
+        return WKTPoints.format(s.lats[i], s.lngs[i]);
+    }
+
+    @Benchmark
+    public String format_legacy(CellState s) {
+        int i = s.next();
+        return String.format("POINT (%f %f)", s.lngs[i], s.lats[i]);
+    }
+}
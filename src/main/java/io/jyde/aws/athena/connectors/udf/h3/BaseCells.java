@@ -0,0 +1,49 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+/** Properties of the 122 resolution 0 cells, from <code>baseCells.c</code> of the H3 C library. */
+final class BaseCells {
+    /** Base cells that are pentagons. */
+    private static final int[] PENTAGONS = {4, 14, 24, 38, 49, 58, 63, 72, 83, 97, 107, 117};
+
+    /**
+     * The two faces of each pentagon in {@link #PENTAGONS} on which its K axes are offset
+     * clockwise, or -1 for the polar pentagons.
+     */
+    private static final int[][] PENTAGON_CW_OFFSET_FACES = {
+        {-1, -1},
+        {2, 6},
+        {1, 5},
+        {3, 7},
+        {0, 9},
+        {4, 8},
+        {11, 15},
+        {12, 16},
+        {10, 19},
+        {13, 17},
+        {14, 18},
+        {-1, -1},
+    };
+
+    private static final boolean[] IS_PENTAGON = new boolean[H3Index.NUM_BASE_CELLS];
+    private static final int[][] CW_OFFSET_FACES = new int[H3Index.NUM_BASE_CELLS][];
+
+    static {
+        for (int i = 0; i < PENTAGONS.length; i++) {
+            IS_PENTAGON[PENTAGONS[i]] = true;
+            CW_OFFSET_FACES[PENTAGONS[i]] = PENTAGON_CW_OFFSET_FACES[i];
+        }
+    }
+
+    private BaseCells() {}
+
+    static boolean isPentagon(int baseCell) {
+        return IS_PENTAGON[baseCell];
+    }
+
+    /** Returns true if the pentagon base cell has its K axes offset clockwise on the face. */
+    static boolean isCwOffset(int baseCell, int face) {
+        int[] faces = CW_OFFSET_FACES[baseCell];
+        return faces != null && (faces[0] == face || faces[1] == face);
+    }
+}
@@ -0,0 +1,131 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Evaluates the rows of a batch in parallel on a fork-join pool, for UDFs that are expensive per
+ * row.
+ *
+ * <p>The rows are split into contiguous ranges, and the results are returned in row order, so the
+ * output of a batch does not depend on the parallelism. If rows fail, the exception of the first
+ * failed range is thrown, as on the row-at-a-time path.
+ *
+ * <p>The number of threads is set with the <code>BATCH_PARALLELISM</code> environment variable, and
+ * defaults to the number of available processors, i.e. the vCPUs of the Lambda. <code>1
+ * </code> disables parallel evaluation.
+ */
+final class BatchExecutor {
+    static final String ENVIRONMENT_VARIABLE = "BATCH_PARALLELISM";
+
+    /** Evaluates every row on the calling thread. */
+    static final BatchExecutor SEQUENTIAL = new BatchExecutor(1);
+
+    /** Ranges per thread, so that threads that finish early can take over expensive rows. */
+    static final int RANGES_PER_THREAD = 4;
+
+    /** Computes the result of a row. */
+    @FunctionalInterface
+    interface RowFunction {
+        Object apply(int row) throws Exception;
+    }
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    /** @param parallelism Number of threads, or 0 for the number of available processors. */
+    BatchExecutor(int parallelism) {
+        if (parallelism < 0) {
+            throw new IllegalArgumentException("Negative batch parallelism: " + parallelism);
+        }
+        this.parallelism =
+                parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+        this.pool = this.parallelism == 1 ? null : new ForkJoinPool(this.parallelism);
+    }
+
+    /**
+     * Returns an executor with the parallelism of the <code>BATCH_PARALLELISM</code> environment
+     * variable.
+     */
+    static BatchExecutor fromEnvironment() {
+        String parallelism = System.getenv(ENVIRONMENT_VARIABLE);
+        if (parallelism == null || parallelism.trim().isEmpty()) {
+            return new BatchExecutor(0);
+        }
+        return new BatchExecutor(Integer.parseInt(parallelism.trim()));
+    }
+
+    boolean isParallel() {
+        return pool != null;
+    }
+
+    int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the results of <code>function</code> for the rows <code>0</code> to <code>rowCount -
+     * 1</code>.
+     *
+     * @param minRangeRows Rows below which a range is not worth a task of its own, 1 for UDFs whose
+     *     rows are each expensive.
+     * @throws RuntimeException A row failed. The exception it threw is the cause.
+     */
+    Object[] map(int rowCount, int minRangeRows, RowFunction function) {
+        Object[] results = new Object[rowCount];
+        int rangeRows =
+                Math.max(
+                        Math.max(1, minRangeRows),
+                        (rowCount + parallelism * RANGES_PER_THREAD - 1)
+                                / (parallelism * RANGES_PER_THREAD));
+        if (pool == null || rangeRows >= rowCount) {
+            RuntimeException failure = apply(function, results, 0, rowCount);
+            if (failure != null) {
+                throw failure;
+            }
+            return results;
+        }
+
+        int rangeCount = (rowCount + rangeRows - 1) / rangeRows;
+        @SuppressWarnings("unchecked")
+        ForkJoinTask<RuntimeException>[] ranges = new ForkJoinTask[rangeCount];
+        for (int range = 0; range < rangeCount; range++) {
+            int start = range * rangeRows;
+            int end = Math.min(start + rangeRows, rowCount);
+            ranges[range] = pool.submit(() -> apply(function, results, start, end));
+        }
+        RuntimeException failure = null;
+        for (ForkJoinTask<RuntimeException> range : ranges) {
+            RuntimeException rangeFailure = range.join();
+            if (failure == null) {
+                failure = rangeFailure;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchExecutor{parallelism=" + parallelism + "}";
+    }
+
+    /**
+     * Evaluates a range of rows, and returns the exception of the row that failed, if any, instead
+     * of throwing it across threads.
+     */
+    private static RuntimeException apply(
+            RowFunction function, Object[] results, int start, int end) {
+        for (int row = start; row < end; row++) {
+            try {
+                results[row] = function.apply(row);
+            } catch (Exception e) {
+                return new RuntimeException(e);
+            }
+        }
+        return null;
+    }
+}
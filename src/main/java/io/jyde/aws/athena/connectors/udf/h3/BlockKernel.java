@@ -0,0 +1,30 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.List;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * A UDF implementation that is evaluated over whole Arrow vectors of a record batch, instead of
+ * once per row through the reflective path of the <code>UserDefinedFunctionHandler</code>.
+ */
+@FunctionalInterface
+interface BlockKernel {
+    /**
+     * Evaluates the UDF for every row of the batch.
+     *
+     * @param inputs Input vectors, in the order of the UDF arguments.
+     * @param output Output vector. It is allocated by the kernel, but its value count is set by the
+     *     caller.
+     * @param rowCount Number of rows in the batch.
+     */
+    void evaluate(List<FieldVector> inputs, FieldVector output, int rowCount);
+
+    /**
+     * Whether the kernel can evaluate this batch. Batches it cannot evaluate go through the
+     * row-at-a-time path.
+     */
+    default boolean supports(List<FieldVector> inputs, int rowCount) {
+        return true;
+    }
+}
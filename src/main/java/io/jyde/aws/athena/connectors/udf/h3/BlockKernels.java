@@ -0,0 +1,441 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.amazonaws.athena.connector.lambda.data.BlockUtils;
+import com.amazonaws.athena.connector.lambda.data.FieldResolver;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongToIntFunction;
+import java.util.function.LongUnaryOperator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.complex.ListVector;
+
+/**
+ * Factories for {@link BlockKernel}s of scalar UDFs over primitive Arrow vectors.
+ *
+ * <p>The kernels of the address overloads read and write H3 index addresses as the bytes of the
+ * <code>VARCHAR</code> vectors with {@link H3Addresses}, and otherwise run the same functions of
+ * <code>long</code> indexes as the <code>BIGINT</code> overloads.
+ *
+ * <p>A row is <code>null</code> in the output if any of the nullable arguments of the UDF is <code>
+ * null</code>, which matches the <code>null</code> handling of the row-at-a-time methods in {@link
+ * H3AthenaUDFHandler}. Non-nullable arguments, such as resolutions, are read as-is and fail the
+ * batch if they are <code>null</code>.
+ */
+final class BlockKernels {
+    private BlockKernels() {}
+
+    /** <code>(long, int) -&gt; long</code>, e.g. an H3 index and a resolution. */
+    @FunctionalInterface
+    interface LongIntToLongFunction {
+        long applyAsLong(long value, int arg);
+    }
+
+    /** <code>(long, long) -&gt; boolean</code>, e.g. a pair of H3 indexes. */
+    @FunctionalInterface
+    interface LongBiPredicate {
+        boolean test(long a, long b);
+    }
+
+    /** <code>(double, double, int) -&gt; long</code>, e.g. latitude, longitude and resolution. */
+    @FunctionalInterface
+    interface DoubleDoubleIntToLongFunction {
+        long applyAsLong(double a, double b, int arg);
+    }
+
+    /**
+     * <code>(double, double, int[]) -&gt; long[]</code>, e.g. latitude, longitude and resolutions,
+     * with a result per element of the array.
+     */
+    @FunctionalInterface
+    interface DoubleDoubleIntsToLongsFunction {
+        void apply(double a, double b, int[] args, long[] out);
+    }
+
+    /** <code>(double, double, double, double) -&gt; double</code>, e.g. a pair of coordinates. */
+    @FunctionalInterface
+    interface DoubleQuadOperator {
+        double applyAsDouble(double a, double b, double c, double d);
+    }
+
+    /** Kernel for a <code>BIGINT -&gt; BIGINT</code> UDF. */
+    static BlockKernel longToLong(LongUnaryOperator function) {
+        return (inputs, output, rowCount) -> {
+            BigIntVector in = (BigIntVector) inputs.get(0);
+            BigIntVector out = (BigIntVector) output;
+            out.allocateNew(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.applyAsLong(in.get(row)));
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>BIGINT -&gt; INTEGER</code> UDF. */
+    static BlockKernel longToInt(LongToIntFunction function) {
+        return (inputs, output, rowCount) -> {
+            BigIntVector in = (BigIntVector) inputs.get(0);
+            IntVector out = (IntVector) output;
+            out.allocateNew(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.applyAsInt(in.get(row)));
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>BIGINT -&gt; BOOLEAN</code> UDF. */
+    static BlockKernel longToBoolean(LongPredicate function) {
+        return (inputs, output, rowCount) -> {
+            BigIntVector in = (BigIntVector) inputs.get(0);
+            BitVector out = (BitVector) output;
+            out.allocateNew(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.test(in.get(row)) ? 1 : 0);
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>BIGINT -&gt; DOUBLE</code> UDF. */
+    static BlockKernel longToDouble(LongToDoubleFunction function) {
+        return (inputs, output, rowCount) -> {
+            BigIntVector in = (BigIntVector) inputs.get(0);
+            Float8Vector out = (Float8Vector) output;
+            out.allocateNew(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.applyAsDouble(in.get(row)));
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>(BIGINT, INTEGER) -&gt; BIGINT</code> UDF. */
+    static BlockKernel longIntToLong(LongIntToLongFunction function) {
+        return (inputs, output, rowCount) -> {
+            BigIntVector in = (BigIntVector) inputs.get(0);
+            IntVector arg = (IntVector) inputs.get(1);
+            BigIntVector out = (BigIntVector) output;
+            out.allocateNew(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.applyAsLong(in.get(row), arg.get(row)));
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>(BIGINT, BIGINT) -&gt; BOOLEAN</code> UDF. */
+    static BlockKernel longLongToBoolean(LongBiPredicate function) {
+        return (inputs, output, rowCount) -> {
+            BigIntVector a = (BigIntVector) inputs.get(0);
+            BigIntVector b = (BigIntVector) inputs.get(1);
+            BitVector out = (BitVector) output;
+            out.allocateNew(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (a.isNull(row) || b.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.test(a.get(row), b.get(row)) ? 1 : 0);
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>VARCHAR -&gt; BOOLEAN</code> UDF of an address. */
+    static BlockKernel addressToBoolean(LongPredicate function) {
+        return (inputs, output, rowCount) -> {
+            VarCharVector in = (VarCharVector) inputs.get(0);
+            BitVector out = (BitVector) output;
+            out.allocateNew(rowCount);
+            byte[] scratch = new byte[H3Addresses.MAX_LENGTH];
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.test(H3Addresses.parse(in, row, scratch)) ? 1 : 0);
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>VARCHAR -&gt; INTEGER</code> UDF of an address. */
+    static BlockKernel addressToInt(LongToIntFunction function) {
+        return (inputs, output, rowCount) -> {
+            VarCharVector in = (VarCharVector) inputs.get(0);
+            IntVector out = (IntVector) output;
+            out.allocateNew(rowCount);
+            byte[] scratch = new byte[H3Addresses.MAX_LENGTH];
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.applyAsInt(H3Addresses.parse(in, row, scratch)));
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>VARCHAR -&gt; DOUBLE</code> UDF of an address. */
+    static BlockKernel addressToDouble(LongToDoubleFunction function) {
+        return (inputs, output, rowCount) -> {
+            VarCharVector in = (VarCharVector) inputs.get(0);
+            Float8Vector out = (Float8Vector) output;
+            out.allocateNew(rowCount);
+            byte[] scratch = new byte[H3Addresses.MAX_LENGTH];
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.applyAsDouble(H3Addresses.parse(in, row, scratch)));
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>VARCHAR -&gt; BIGINT</code> UDF of an address. */
+    static BlockKernel addressToLong(LongUnaryOperator function) {
+        return (inputs, output, rowCount) -> {
+            VarCharVector in = (VarCharVector) inputs.get(0);
+            BigIntVector out = (BigIntVector) output;
+            out.allocateNew(rowCount);
+            byte[] scratch = new byte[H3Addresses.MAX_LENGTH];
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.applyAsLong(H3Addresses.parse(in, row, scratch)));
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>BIGINT -&gt; VARCHAR</code> UDF that returns an address. */
+    static BlockKernel longToAddress(LongUnaryOperator function) {
+        return (inputs, output, rowCount) -> {
+            BigIntVector in = (BigIntVector) inputs.get(0);
+            VarCharVector out = (VarCharVector) output;
+            out.allocateNew((long) rowCount * H3Addresses.MAX_LENGTH, rowCount);
+            byte[] scratch = new byte[H3Addresses.MAX_LENGTH];
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    H3Addresses.set(out, row, function.applyAsLong(in.get(row)), scratch);
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>VARCHAR -&gt; VARCHAR</code> UDF of an address that returns one. */
+    static BlockKernel addressToAddress(LongUnaryOperator function) {
+        return (inputs, output, rowCount) -> {
+            VarCharVector in = (VarCharVector) inputs.get(0);
+            VarCharVector out = (VarCharVector) output;
+            out.allocateNew((long) rowCount * H3Addresses.MAX_LENGTH, rowCount);
+            byte[] scratch = new byte[H3Addresses.MAX_LENGTH];
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    long h3 = function.applyAsLong(H3Addresses.parse(in, row, scratch));
+                    H3Addresses.set(out, row, h3, scratch);
+                }
+            }
+        };
+    }
+
+    /**
+     * Kernel for a <code>(VARCHAR, INTEGER) -&gt; VARCHAR</code> UDF of an address, e.g. with a
+     * resolution, that returns one.
+     */
+    static BlockKernel addressIntToAddress(LongIntToLongFunction function) {
+        return (inputs, output, rowCount) -> {
+            VarCharVector in = (VarCharVector) inputs.get(0);
+            IntVector arg = (IntVector) inputs.get(1);
+            VarCharVector out = (VarCharVector) output;
+            out.allocateNew((long) rowCount * H3Addresses.MAX_LENGTH, rowCount);
+            byte[] scratch = new byte[H3Addresses.MAX_LENGTH];
+            for (int row = 0; row < rowCount; row++) {
+                if (in.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    long h3 =
+                            function.applyAsLong(H3Addresses.parse(in, row, scratch), arg.get(row));
+                    H3Addresses.set(out, row, h3, scratch);
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>(VARCHAR, VARCHAR) -&gt; BOOLEAN</code> UDF of a pair of addresses. */
+    static BlockKernel addressAddressToBoolean(LongBiPredicate function) {
+        return (inputs, output, rowCount) -> {
+            VarCharVector a = (VarCharVector) inputs.get(0);
+            VarCharVector b = (VarCharVector) inputs.get(1);
+            BitVector out = (BitVector) output;
+            out.allocateNew(rowCount);
+            byte[] scratch = new byte[H3Addresses.MAX_LENGTH];
+            for (int row = 0; row < rowCount; row++) {
+                if (a.isNull(row) || b.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    long h3 = H3Addresses.parse(a, row, scratch);
+                    out.set(row, function.test(h3, H3Addresses.parse(b, row, scratch)) ? 1 : 0);
+                }
+            }
+        };
+    }
+
+    /** Kernel for a <code>(DOUBLE, DOUBLE, INTEGER) -&gt; BIGINT</code> UDF. */
+    static BlockKernel doubleDoubleIntToLong(DoubleDoubleIntToLongFunction function) {
+        return (inputs, output, rowCount) -> {
+            Float8Vector a = (Float8Vector) inputs.get(0);
+            Float8Vector b = (Float8Vector) inputs.get(1);
+            IntVector arg = (IntVector) inputs.get(2);
+            BigIntVector out = (BigIntVector) output;
+            out.allocateNew(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                if (a.isNull(row) || b.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    out.set(row, function.applyAsLong(a.get(row), b.get(row), arg.get(row)));
+                }
+            }
+        };
+    }
+
+    /**
+     * Kernel for a <code>(DOUBLE, DOUBLE, DOUBLE, DOUBLE, VARCHAR) -&gt; DOUBLE</code> UDF whose
+     * string, such as a unit, is the same on every row. The string is bound once per batch; batches
+     * with another string go through the row-at-a-time path.
+     */
+    static BlockKernel doubleQuadStringToDouble(Function<String, DoubleQuadOperator> binder) {
+        return new BlockKernel() {
+            @Override
+            public boolean supports(List<FieldVector> inputs, int rowCount) {
+                return DistinctCellKernel.isConstant(inputs.get(4), rowCount);
+            }
+
+            @Override
+            public void evaluate(List<FieldVector> inputs, FieldVector output, int rowCount) {
+                Float8Vector a = (Float8Vector) inputs.get(0);
+                Float8Vector b = (Float8Vector) inputs.get(1);
+                Float8Vector c = (Float8Vector) inputs.get(2);
+                Float8Vector d = (Float8Vector) inputs.get(3);
+                Float8Vector out = (Float8Vector) output;
+                out.allocateNew(rowCount);
+                if (rowCount == 0) {
+                    return;
+                }
+                DoubleQuadOperator function = binder.apply(inputs.get(4).getObject(0).toString());
+                for (int row = 0; row < rowCount; row++) {
+                    if (a.isNull(row) || b.isNull(row) || c.isNull(row) || d.isNull(row)) {
+                        out.setNull(row);
+                    } else {
+                        out.set(
+                                row,
+                                function.applyAsDouble(
+                                        a.get(row), b.get(row), c.get(row), d.get(row)));
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Kernel for a <code>(DOUBLE, DOUBLE, ARRAY&lt;INTEGER&gt;) -&gt; ARRAY&lt;BIGINT&gt;</code>
+     * UDF whose array, such as a list of resolutions, is the same on every row. The array is read
+     * once per batch, and the results of each row are written to the output list without boxing.
+     * Batches with another array, or a <code>null</code> in it, go through the row-at-a-time path.
+     */
+    static BlockKernel doubleDoubleIntsToLongs(DoubleDoubleIntsToLongsFunction function) {
+        return new BlockKernel() {
+            @Override
+            public boolean supports(List<FieldVector> inputs, int rowCount) {
+                FieldVector arg = inputs.get(2);
+                if (!(arg instanceof ListVector) || !DistinctCellKernel.isConstant(arg, rowCount)) {
+                    return false;
+                }
+                return rowCount == 0 || !((List<?>) arg.getObject(0)).contains(null);
+            }
+
+            @Override
+            public void evaluate(List<FieldVector> inputs, FieldVector output, int rowCount) {
+                Float8Vector a = (Float8Vector) inputs.get(0);
+                Float8Vector b = (Float8Vector) inputs.get(1);
+                ListVector list = (ListVector) output;
+                list.allocateNew();
+                if (rowCount == 0) {
+                    return;
+                }
+                List<?> values = (List<?>) inputs.get(2).getObject(0);
+                int[] args = new int[values.size()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = ((Number) values.get(i)).intValue();
+                }
+                long[] results = new long[args.length];
+                BigIntVector elements = (BigIntVector) list.getDataVector();
+                for (int row = 0; row < rowCount; row++) {
+                    if (a.isNull(row) || b.isNull(row)) {
+                        list.setNull(row);
+                        continue;
+                    }
+                    function.apply(a.get(row), b.get(row), args, results);
+                    int offset = list.startNewValue(row);
+                    for (int i = 0; i < results.length; i++) {
+                        elements.setSafe(offset + i, results[i]);
+                    }
+                    list.endValue(row, results.length);
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes the result of a UDF method to a row of the output, as the row-at-a-time path of the
+     * <code>UserDefinedFunctionHandler</code> does. A <code>double[]</code> is written as an <code>
+     * ARRAY&lt;DOUBLE&gt;</code> straight to the elements of the list, without boxing.
+     */
+    static void setValue(FieldVector output, int row, Object value) {
+        if (value instanceof double[]) {
+            setDoubles((ListVector) output, row, (double[]) value);
+        } else if (!(output instanceof ListVector)) {
+            BlockUtils.setValue(output, row, value);
+        } else if (value == null) {
+            ((ListVector) output).setNull(row);
+        } else {
+            BlockUtils.setComplexValue(output, row, FieldResolver.DEFAULT, value);
+        }
+    }
+
+    private static void setDoubles(ListVector output, int row, double[] values) {
+        Float8Vector elements = (Float8Vector) output.getDataVector();
+        int offset = output.startNewValue(row);
+        for (int i = 0; i < values.length; i++) {
+            elements.setSafe(offset + i, values[i]);
+        }
+        output.endValue(row, values.length);
+    }
+}
@@ -0,0 +1,67 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.Arrays;
+
+/** A growable array of cells, reused across rows so that cells are never boxed. */
+final class CellBuffer {
+    private long[] cells;
+    private int size;
+
+    CellBuffer() {
+        this(64);
+    }
+
+    CellBuffer(int capacity) {
+        this.cells = new long[Math.max(capacity, 1)];
+    }
+
+    long[] cells() {
+        return cells;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(long cell) {
+        if (size == cells.length) {
+            cells = Arrays.copyOf(cells, cells.length * 2);
+        }
+        cells[size++] = cell;
+    }
+
+    /** Adds the non-zero cells of <code>source[0, count)</code>, as H3 lists them. */
+    void addNonZero(long[] source, int count) {
+        if (size + count > cells.length) {
+            cells = Arrays.copyOf(cells, Math.max(cells.length * 2, size + count));
+        }
+        for (int i = 0; i < count; i++) {
+            if (source[i] != 0) {
+                cells[size++] = source[i];
+            }
+        }
+    }
+
+    /**
+     * Returns an array of at least <code>count</code> cells, the first <code>count</code> of them
+     * zero, for the H3 library to fill. This discards the cells of the buffer.
+     */
+    long[] scratch(int count) {
+        if (count < 0) {
+            // as H3Core allocating its array
+            throw new NegativeArraySizeException(String.valueOf(count));
+        }
+        size = 0;
+        if (cells.length < count) {
+            cells = new long[Math.max(cells.length * 2, count)];
+        } else {
+            Arrays.fill(cells, 0, count, 0L);
+        }
+        return cells;
+    }
+}
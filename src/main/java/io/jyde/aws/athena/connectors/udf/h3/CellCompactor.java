@@ -0,0 +1,144 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compacts a set of cells of one resolution as they are added, without holding the whole set.
+ *
+ * <p>For every parent of an added cell, the compactor keeps a mask of the children it has seen.
+ * When a parent has all of its children, 7 for a hexagon and 6 for a pentagon, it is added in turn
+ * to its own parent, and its children are not kept anywhere. So the compactor holds about one entry
+ * per 6 added cells, and {@link #cells()} returns the same set as <code>H3Core.compact</code> of
+ * every added cell.
+ *
+ * <p>Adding a cell again has no effect, so the cells of overlapping sets can be added as they come.
+ */
+final class CellCompactor {
+    private static final int HEXAGON_CHILDREN = 0x7f;
+    // the children of a pentagon skip the deleted K axes digit
+    private static final int PENTAGON_CHILDREN = HEXAGON_CHILDREN & ~(1 << H3Index.K_AXES_DIGIT);
+    /** Set in the mask of a parent whose children are all in its own parent. */
+    private static final int COMPACTED = 0x80;
+
+    private final int res;
+    private final List<Long> baseCells = new ArrayList<>();
+
+    // an open-addressing table from parents to their masks, with linear probing, at most half full
+    private long[] parents;
+    private byte[] masks;
+    private int size;
+
+    /** @param res Resolution of the added cells. */
+    CellCompactor(int res) {
+        if (res < 0 || res > H3Index.MAX_RES) {
+            throw new IllegalArgumentException(
+                    String.format("resolution %d is out of range (must be 0 <= res <= 15)", res));
+        }
+        this.res = res;
+        this.parents = new long[16];
+        this.masks = new byte[16];
+    }
+
+    /**
+     * Adds a cell of the resolution of the compactor.
+     *
+     * @throws IllegalArgumentException The cell has another resolution.
+     */
+    void add(long cell) {
+        if (H3Index.getResolution(cell) != res) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Cell of resolution %d in a set of resolution %d",
+                            H3Index.getResolution(cell), res));
+        }
+        int cellRes = res;
+        while (cellRes > 0) {
+            long parent = H3Index.toParent(cell, cellRes - 1);
+            int slot = slot(parent);
+            int mask = (masks[slot] & 0xff) | (1 << H3Index.getDigit(cell, cellRes));
+            masks[slot] = (byte) mask;
+            int children = H3Index.isPentagon(parent) ? PENTAGON_CHILDREN : HEXAGON_CHILDREN;
+            // also when the cell was added before and its parent compacted
+            if (mask != children) {
+                return;
+            }
+            masks[slot] = (byte) (mask | COMPACTED);
+            cell = parent;
+            cellRes--;
+        }
+        if (!baseCells.contains(cell)) {
+            baseCells.add(cell);
+        }
+    }
+
+    /** Adds cells of the resolution of the compactor. */
+    void addAll(long[] cells) {
+        for (long cell : cells) {
+            add(cell);
+        }
+    }
+
+    /** Returns the compacted cells. */
+    List<Long> cells() {
+        List<Long> cells = new ArrayList<>(baseCells);
+        for (int slot = 0; slot < parents.length; slot++) {
+            int mask = masks[slot] & 0xff;
+            if (mask == 0 || (mask & COMPACTED) != 0) {
+                continue;
+            }
+            int childRes = H3Index.getResolution(parents[slot]) + 1;
+            long child =
+                    (parents[slot] & ~H3Index.RES_MASK) | ((long) childRes << H3Index.RES_OFFSET);
+            for (int digit = 0; digit < 7; digit++) {
+                if ((mask & (1 << digit)) != 0) {
+                    cells.add(H3Index.setDigit(child, childRes, digit));
+                }
+            }
+        }
+        return cells;
+    }
+
+    /** Returns the slot of a parent, adding it with an empty mask if absent. */
+    private int slot(long parent) {
+        int mask = parents.length - 1;
+        int slot = hash(parent) & mask;
+        while (masks[slot] != 0) {
+            if (parents[slot] == parent) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= parents.length >>> 1) {
+            grow();
+            return slot(parent);
+        }
+        parents[slot] = parent;
+        size++;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldParents = parents;
+        byte[] oldMasks = masks;
+        parents = new long[oldParents.length * 2];
+        masks = new byte[oldMasks.length * 2];
+        int mask = parents.length - 1;
+        for (int old = 0; old < oldParents.length; old++) {
+            if (oldMasks[old] != 0) {
+                int slot = hash(oldParents[old]) & mask;
+                while (masks[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                parents[slot] = oldParents[old];
+                masks[slot] = oldMasks[old];
+            }
+        }
+    }
+
+    /** Fibonacci hashing, as in {@link LongIntHashMap}, taking the high bits of the product. */
+    private static int hash(long key) {
+        return (int) ((key * 0x9e3779b97f4a7c15L) >>> 32);
+    }
+}
@@ -0,0 +1,313 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.util.GeoCoord;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dissolves a set of cells of one resolution into the polygons of the area they cover, as <code>
+ * H3Core.h3SetToMultiPolygon</code> does, in one pass over the cells.
+ *
+ * <p><code>h3SetToMultiPolygon</code> computes the boundary of every cell, and cancels the edges
+ * shared by two cells of the set by their coordinates. Here the shared edges cancel on the cells
+ * themselves: a cell whose neighbors are all in the set, looked up by their <code>long</code>
+ * indexes, has none of the boundary, and of the other cells only the edges to neighbors outside the
+ * set are kept. So coordinates are only computed along the boundary of the area, which for large
+ * sets is a small part of their cells.
+ *
+ * <p>Every vertex of the kept edges gets an <code>int</code> id, snapped across cells within a
+ * small fraction of an edge, and every segment between two vertices is a pair of ids. As at most
+ * three cells meet at a vertex, each vertex starts at most one segment, so following them gives the
+ * rings. Edges run counterclockwise around their cell, and so do the outlines of the area, while
+ * its holes run clockwise. Each hole goes to the smallest outline around it. Coordinates are
+ * written as the cells have them, so rings across the antimeridian jump in longitude, as with
+ * <code>h3_to_geo_boundary</code>.
+ */
+final class CellDissolver {
+    /**
+     * Degrees per side of a vertex bucket at resolution 15, about 1 cm, a fiftieth of an edge. The
+     * same vertex of cells on different icosahedron faces differs by up to about 3e-7 degrees at
+     * resolution 1, so buckets grow with the edges of coarser resolutions.
+     */
+    private static final double MIN_BUCKET_DEGREES = 1e-7;
+
+    private static final double EDGE_RATIO = Math.sqrt(7);
+
+    // bucket offsets and counts for the smallest buckets, so that neighbors stay non-negative
+    private static final long LAT_OFFSET = 900_000_002L;
+    private static final long LNG_OFFSET = 1_800_000_002L;
+    private static final long LNG_BUCKETS = 2 * LNG_OFFSET + 1;
+
+    /** Most segments of the edges of a cell, with the extra vertices of distorted cells. */
+    private static final int MAX_CELL_SEGMENTS = 10;
+
+    private final double bucketDegrees;
+    private final LongIntHashMap vertexIds;
+    private final double[] lats;
+    private final double[] lngs;
+    private int vertexCount;
+
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+    private int edgeCount;
+
+    /** @param borderCount Cells with a neighbor outside the set. */
+    private CellDissolver(int res, int borderCount) {
+        this.bucketDegrees = MIN_BUCKET_DEGREES * Math.pow(EDGE_RATIO, H3Index.MAX_RES - res);
+        int maxSegments = MAX_CELL_SEGMENTS * Math.max(borderCount, 1);
+        this.vertexIds = new LongIntHashMap(maxSegments);
+        this.lats = new double[maxSegments];
+        this.lngs = new double[maxSegments];
+        this.edgeFrom = new int[maxSegments];
+        this.edgeTo = new int[maxSegments];
+    }
+
+    /**
+     * Returns the polygons of the area of the first <code>count</code> cells, in any order and with
+     * duplicates.
+     *
+     * @throws IllegalArgumentException A cell is not valid, or the cells have different
+     *     resolutions.
+     */
+    static List<Polygons.Polygon> dissolve(
+            H3Core h3Core, NativeCells nativeCells, long[] cells, int count) {
+        long[] distinct = Arrays.copyOf(cells, count);
+        Arrays.sort(distinct);
+        int distinctCount = 0;
+        for (int i = 0; i < count; i++) {
+            long cell = distinct[i];
+            if (!H3Index.isValid(cell)) {
+                throw new IllegalArgumentException(String.format("Invalid H3 cell %x", cell));
+            }
+            if (H3Index.getResolution(cell) != H3Index.getResolution(distinct[0])) {
+                throw new IllegalArgumentException("Cells of different resolutions");
+            }
+            if (distinctCount == 0 || distinct[distinctCount - 1] != cell) {
+                distinct[distinctCount++] = cell;
+            }
+        }
+        if (distinctCount == 0) {
+            return Collections.emptyList();
+        }
+
+        LongIntHashMap members = new LongIntHashMap(distinctCount);
+        for (int i = 0; i < distinctCount; i++) {
+            members.putIfAbsent(distinct[i], i);
+        }
+        CellBuffer scratch = new CellBuffer(8);
+        CellBuffer neighbors = new CellBuffer(8);
+        CellBuffer border = new CellBuffer();
+        for (int i = 0; i < distinctCount; i++) {
+            neighbors.clear();
+            nativeCells.kRing(distinct[i], 1, scratch, neighbors);
+            if (!allMembers(members, neighbors)) {
+                border.add(distinct[i]);
+            }
+        }
+
+        CellDissolver dissolver =
+                new CellDissolver(H3Index.getResolution(distinct[0]), border.size());
+        CellBuffer edges = new CellBuffer(8);
+        for (int i = 0; i < border.size(); i++) {
+            edges.clear();
+            nativeCells.edgesFromHexagon(border.cells()[i], scratch, edges);
+            for (int j = 0; j < edges.size(); j++) {
+                long edge = edges.cells()[j];
+                long destination = h3Core.getDestinationH3IndexFromUnidirectionalEdge(edge);
+                if (members.get(destination) == LongIntHashMap.ABSENT) {
+                    dissolver.addEdge(h3Core.getH3UnidirectionalEdgeBoundary(edge));
+                }
+            }
+        }
+        return dissolver.polygons();
+    }
+
+    private static boolean allMembers(LongIntHashMap members, CellBuffer cells) {
+        for (int i = 0; i < cells.size(); i++) {
+            if (members.get(cells.cells()[i]) == LongIntHashMap.ABSENT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Adds the segments of an edge, from the first of its vertices to the last. */
+    private void addEdge(List<GeoCoord> vertices) {
+        GeoCoord first = vertices.get(0);
+        int from = vertexId(first.lat, first.lng);
+        for (int i = 1; i < vertices.size(); i++) {
+            GeoCoord vertex = vertices.get(i);
+            int to = vertexId(vertex.lat, vertex.lng);
+            edgeFrom[edgeCount] = from;
+            edgeTo[edgeCount] = to;
+            edgeCount++;
+            from = to;
+        }
+    }
+
+    /** Returns the id of the vertex, or of a vertex in its bucket or a neighboring one. */
+    private int vertexId(double lat, double lng) {
+        long latBucket = Math.round(lat / bucketDegrees) + LAT_OFFSET;
+        long lngBucket =
+                Math.round((lng < -180 + bucketDegrees ? lng + 360 : lng) / bucketDegrees)
+                        + LNG_OFFSET;
+        long key = latBucket * LNG_BUCKETS + lngBucket;
+        int id = vertexIds.get(key);
+        if (id != LongIntHashMap.ABSENT) {
+            return id;
+        }
+        // the same vertex of cells on different faces may round to a neighboring bucket
+        for (long i = latBucket - 1; i <= latBucket + 1; i++) {
+            for (long j = lngBucket - 1; j <= lngBucket + 1; j++) {
+                id = vertexIds.get(i * LNG_BUCKETS + j);
+                if (id != LongIntHashMap.ABSENT) {
+                    return id;
+                }
+            }
+        }
+        id = vertexCount++;
+        vertexIds.putIfAbsent(key, id);
+        lats[id] = lat;
+        lngs[id] = lng;
+        return id;
+    }
+
+    private List<Polygons.Polygon> polygons() {
+        int[] outgoing = new int[vertexCount];
+        Arrays.fill(outgoing, -1);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            if (outgoing[edgeFrom[edge]] >= 0) {
+                throw new IllegalStateException("Vertex on more than one boundary ring");
+            }
+            outgoing[edgeFrom[edge]] = edge;
+        }
+
+        List<Ring> outlines = new ArrayList<>();
+        List<Ring> holes = new ArrayList<>();
+        boolean[] visited = new boolean[edgeCount];
+        CellBuffer vertices = new CellBuffer();
+        for (int start = 0; start < edgeCount; start++) {
+            if (visited[start]) {
+                continue;
+            }
+            vertices.clear();
+            int edge = start;
+            do {
+                visited[edge] = true;
+                vertices.add(edgeFrom[edge]);
+                edge = outgoing[edgeTo[edge]];
+                if (edge < 0) {
+                    throw new IllegalStateException("Open boundary ring");
+                }
+            } while (edge != start);
+            Ring ring = new Ring(vertices);
+            (ring.area > 0 ? outlines : holes).add(ring);
+        }
+
+        for (Ring hole : holes) {
+            Ring outline = null;
+            for (Ring candidate : outlines) {
+                if ((outline == null || candidate.area < outline.area)
+                        && candidate.contains(hole.lats[0], hole.lngs[0])) {
+                    outline = candidate;
+                }
+            }
+            if (outline == null) {
+                // only around a pole, where longitudes do not unwrap
+                outlines.add(hole);
+            } else {
+                outline.holes.add(hole);
+            }
+        }
+
+        List<Polygons.Polygon> polygons = new ArrayList<>(outlines.size());
+        for (Ring outline : outlines) {
+            List<List<GeoCoord>> ringHoles =
+                    outline.holes.isEmpty()
+                            ? Collections.emptyList()
+                            : new ArrayList<>(outline.holes.size());
+            for (Ring hole : outline.holes) {
+                ringHoles.add(hole.points());
+            }
+            polygons.add(new Polygons.Polygon(outline.points(), ringHoles));
+        }
+        return polygons;
+    }
+
+    /** A ring of the boundary, with its longitudes unwrapped from its first one. */
+    private final class Ring {
+        final int[] vertices;
+        final double[] lats;
+        final double[] lngs;
+        /** Signed area in square degrees, positive counterclockwise. */
+        final double area;
+
+        final List<Ring> holes = new ArrayList<>(0);
+        private double minLat = Double.MAX_VALUE;
+        private double maxLat = -Double.MAX_VALUE;
+        private double minLng = Double.MAX_VALUE;
+        private double maxLng = -Double.MAX_VALUE;
+
+        Ring(CellBuffer ids) {
+            int size = ids.size();
+            this.vertices = new int[size];
+            this.lats = new double[size];
+            this.lngs = new double[size];
+            for (int i = 0; i < size; i++) {
+                int id = (int) ids.cells()[i];
+                vertices[i] = id;
+                lats[i] = CellDissolver.this.lats[id];
+                lngs[i] =
+                        i == 0
+                                ? CellDissolver.this.lngs[id]
+                                : unwrap(CellDissolver.this.lngs[id], lngs[i - 1]);
+                minLat = Math.min(minLat, lats[i]);
+                maxLat = Math.max(maxLat, lats[i]);
+                minLng = Math.min(minLng, lngs[i]);
+                maxLng = Math.max(maxLng, lngs[i]);
+            }
+            double twiceArea = 0;
+            for (int i = 0, j = size - 1; i < size; j = i++) {
+                twiceArea += lngs[j] * lats[i] - lngs[i] * lats[j];
+            }
+            this.area = twiceArea / 2;
+        }
+
+        /** Ray casting in unwrapped longitudes. */
+        boolean contains(double lat, double lng) {
+            lng = unwrap(lng, lngs[0]);
+            if (lat < minLat || lat > maxLat || lng < minLng || lng > maxLng) {
+                return false;
+            }
+            boolean inside = false;
+            for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+                if ((lats[i] > lat) != (lats[j] > lat)
+                        && lng
+                                < lngs[j]
+                                        + (lat - lats[j])
+                                                * (lngs[i] - lngs[j])
+                                                / (lats[i] - lats[j])) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+
+        List<GeoCoord> points() {
+            List<GeoCoord> points = new ArrayList<>(vertices.length);
+            for (int id : vertices) {
+                points.add(new GeoCoord(CellDissolver.this.lats[id], CellDissolver.this.lngs[id]));
+            }
+            return points;
+        }
+    }
+
+    /** The longitude plus or minus 360 degrees that is closest to <code>reference</code>. */
+    private static double unwrap(double lng, double reference) {
+        return lng + 360 * Math.rint((reference - lng) / 360);
+    }
+}
@@ -0,0 +1,258 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.List;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.complex.ListVector;
+
+/**
+ * A {@link BlockKernel} for a UDF of an H3 index, and optionally of a second <code>BIGINT</code> or
+ * <code>INTEGER</code>, that returns an <code>ARRAY&lt;BIGINT&gt;</code> of indexes.
+ *
+ * <p>The indexes of each row are added to a {@link CellBuffer} and copied into the <code>BIGINT
+ * </code> vector of the output list, so no index is ever boxed, neither by the UDF nor by the SDK
+ * writing a <code>List&lt;Long&gt;</code>. If the second argument is the same on every row, as with
+ * a literal <code>k</code> or resolution, the UDF is evaluated once per distinct index of the
+ * batch.
+ *
+ * <p>The address overloads, of <code>VARCHAR</code> indexes that return an <code>ARRAY&lt;VARCHAR
+ * &gt;</code>, run the same function, with the addresses read from and written to the bytes of the
+ * vectors by {@link H3Addresses}.
+ *
+ * <p>The rows, or distinct indexes, are evaluated in ranges on a parallel {@link BatchExecutor},
+ * each with buffers of its own. On a sequential one they are written straight to the output list.
+ */
+final class CellListKernel implements BlockKernel {
+    /** Adds the indexes of a row to a buffer. */
+    @FunctionalInterface
+    interface CellsFunction {
+        /**
+         * @param h3 The H3 index of the row.
+         * @param arg The second argument of the row, or 0 for UDFs of one argument.
+         * @param scratch A buffer for the H3 library to fill, reused across rows.
+         * @param out The buffer to add the indexes to.
+         * @return <code>false</code> if the result of the row is <code>null</code>.
+         */
+        boolean apply(long h3, long arg, CellBuffer scratch, CellBuffer out) throws Exception;
+    }
+
+    /** Rows below which a range is not worth a task of its own. */
+    private static final int MIN_RANGE_ROWS = 64;
+
+    private final BatchExecutor executor;
+    private final boolean nullableArgument;
+    private final CellsFunction function;
+
+    /**
+     * @param executor Evaluates the rows of a batch.
+     * @param nullableArgument Whether a <code>null</code> second argument makes the row <code>null
+     *     </code>, as for an index. Batches with a <code>null</code> argument that is not nullable,
+     *     such as a resolution, go through the row-at-a-time path, which fails them.
+     */
+    CellListKernel(BatchExecutor executor, boolean nullableArgument, CellsFunction function) {
+        this.executor = executor;
+        this.nullableArgument = nullableArgument;
+        this.function = function;
+    }
+
+    @Override
+    public boolean supports(List<FieldVector> inputs, int rowCount) {
+        if (!isCells(inputs.get(0))) {
+            return false;
+        }
+        if (inputs.size() == 1) {
+            return true;
+        }
+        FieldVector arg = inputs.get(1);
+        if (!(isCells(arg) || arg instanceof IntVector)) {
+            return false;
+        }
+        return nullableArgument || arg.getNullCount() == 0;
+    }
+
+    @Override
+    public void evaluate(List<FieldVector> inputs, FieldVector output, int rowCount) {
+        ListVector list = (ListVector) output;
+        list.allocateNew();
+        FieldVector values = list.getDataVector();
+        FieldVector cells = inputs.get(0);
+        FieldVector arg = inputs.size() > 1 ? inputs.get(1) : null;
+        byte[] scratchBytes = new byte[H3Addresses.MAX_LENGTH];
+
+        // the (index, argument) pairs to evaluate, and the pair of each row, or -1 for null
+        boolean distinct = arg == null || DistinctCellKernel.isConstant(arg, rowCount);
+        LongIntHashMap distinctCells = distinct ? new LongIntHashMap(rowCount) : null;
+        long[] itemCells = new long[rowCount];
+        long[] itemArgs = new long[rowCount];
+        int[] rowItems = new int[rowCount];
+        int itemCount = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (cells.isNull(row) || (arg != null && arg.isNull(row))) {
+                rowItems[row] = -1;
+                continue;
+            }
+            long cell = cell(cells, row, scratchBytes);
+            if (distinct) {
+                int item = distinctCells.putIfAbsent(cell, itemCount);
+                if (item != LongIntHashMap.ABSENT) {
+                    rowItems[row] = item;
+                    continue;
+                }
+            }
+            itemCells[itemCount] = cell;
+            itemArgs[itemCount] = argument(arg, row, scratchBytes);
+            rowItems[row] = itemCount++;
+        }
+        int items = itemCount;
+
+        // a sequential batch needs no ranges, and writes each item straight to the output
+        int rangeCount =
+                executor.isParallel()
+                        ? Math.max(
+                                1,
+                                Math.min(
+                                        items / MIN_RANGE_ROWS,
+                                        executor.parallelism() * BatchExecutor.RANGES_PER_THREAD))
+                        : 1;
+        if (rangeCount == 1) {
+            evaluateInPlace(list, values, rowCount, rowItems, itemCells, itemArgs, scratchBytes);
+            return;
+        }
+
+        // the cells of each item, as a range of the buffer of its range of items, or a count of -1
+        // for null
+        int rangeItems = (items + rangeCount - 1) / rangeCount;
+        int[] itemStarts = new int[items];
+        int[] itemCounts = new int[items];
+        CellBuffer[] rangeCells = new CellBuffer[rangeCount];
+        executor.map(
+                rangeCount,
+                1,
+                range -> {
+                    CellBuffer scratch = new CellBuffer();
+                    CellBuffer out = new CellBuffer();
+                    int end = Math.min(items, (range + 1) * rangeItems);
+                    for (int item = range * rangeItems; item < end; item++) {
+                        int start = out.size();
+                        itemStarts[item] = start;
+                        itemCounts[item] =
+                                function.apply(itemCells[item], itemArgs[item], scratch, out)
+                                        ? out.size() - start
+                                        : -1;
+                    }
+                    rangeCells[range] = out;
+                    return null;
+                });
+
+        for (int row = 0; row < rowCount; row++) {
+            int item = rowItems[row];
+            if (item < 0 || itemCounts[item] < 0) {
+                list.setNull(row);
+                continue;
+            }
+            long[] source = rangeCells[item / rangeItems].cells();
+            int start = itemStarts[item];
+            int count = itemCounts[item];
+            int offset = list.startNewValue(row);
+            for (int i = 0; i < count; i++) {
+                setCell(values, offset + i, source[start + i], scratchBytes);
+            }
+            list.endValue(row, count);
+        }
+    }
+
+    /**
+     * Evaluates the items on the calling thread, in row order, writing the cells of each item to
+     * the output as they come, and copying them from the output for the later rows of the item.
+     */
+    private void evaluateInPlace(
+            ListVector list,
+            FieldVector values,
+            int rowCount,
+            int[] rowItems,
+            long[] itemCells,
+            long[] itemArgs,
+            byte[] scratchBytes) {
+        CellBuffer scratch = new CellBuffer();
+        CellBuffer out = new CellBuffer();
+        // the offset of the cells of each evaluated item in the output, and their count, or -1
+        // for null
+        int[] itemOffsets = new int[rowCount];
+        int[] itemCounts = new int[rowCount];
+        int evaluated = 0;
+        for (int row = 0; row < rowCount; row++) {
+            int item = rowItems[row];
+            if (item < 0) {
+                list.setNull(row);
+                continue;
+            }
+            if (item == evaluated) {
+                // items are numbered in the order of their first row
+                out.clear();
+                try {
+                    if (!function.apply(itemCells[item], itemArgs[item], scratch, out)) {
+                        itemCounts[evaluated++] = -1;
+                        list.setNull(row);
+                        continue;
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                int offset = list.startNewValue(row);
+                long[] cells = out.cells();
+                for (int i = 0; i < out.size(); i++) {
+                    setCell(values, offset + i, cells[i], scratchBytes);
+                }
+                list.endValue(row, out.size());
+                itemOffsets[item] = offset;
+                itemCounts[evaluated++] = out.size();
+                continue;
+            }
+            int count = itemCounts[item];
+            if (count < 0) {
+                list.setNull(row);
+                continue;
+            }
+            int source = itemOffsets[item];
+            int offset = list.startNewValue(row);
+            for (int i = 0; i < count; i++) {
+                if (values instanceof BigIntVector) {
+                    BigIntVector longs = (BigIntVector) values;
+                    longs.setSafe(offset + i, longs.get(source + i));
+                } else {
+                    values.copyFromSafe(source + i, offset + i, values);
+                }
+            }
+            list.endValue(row, count);
+        }
+    }
+
+    /** Whether the vector holds indexes, as <code>BIGINT</code>s or addresses. */
+    private static boolean isCells(FieldVector vector) {
+        return vector instanceof BigIntVector || vector instanceof VarCharVector;
+    }
+
+    private static long cell(FieldVector cells, int row, byte[] scratchBytes) {
+        return cells instanceof BigIntVector
+                ? ((BigIntVector) cells).get(row)
+                : H3Addresses.parse((VarCharVector) cells, row, scratchBytes);
+    }
+
+    private static void setCell(FieldVector values, int index, long cell, byte[] scratchBytes) {
+        if (values instanceof BigIntVector) {
+            ((BigIntVector) values).setSafe(index, cell);
+        } else {
+            H3Addresses.set((VarCharVector) values, index, cell, scratchBytes);
+        }
+    }
+
+    private static long argument(FieldVector arg, int row, byte[] scratchBytes) {
+        if (arg == null) {
+            return 0;
+        }
+        return arg instanceof IntVector ? ((IntVector) arg).get(row) : cell(arg, row, scratchBytes);
+    }
+}
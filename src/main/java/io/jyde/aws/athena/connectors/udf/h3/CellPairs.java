@@ -0,0 +1,91 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+
+/**
+ * Checks on a pair of cells, from the bits of their indexes, that tell without calling H3 why it
+ * cannot relate them, so that the UDFs return <code>NULL</code> for such pairs without H3 throwing
+ * an exception for each.
+ *
+ * <p>H3 unfolds the grid around the base cell of the origin into its neighbors only, so the
+ * distance and the line between cells whose base cells are not neighbors are undefined. Of the
+ * pairs it can unfold, only some around pentagons are still undefined, which H3 reports itself.
+ * Neighbors are tested as H3 does: children of the same hexagon from their last digits, cells whose
+ * base cells are not neighbors not at all, and the rest by H3.
+ */
+final class CellPairs {
+    // the digit next to each one clockwise and counterclockwise, as in h3IndexesAreNeighbors
+    private static final int[] NEIGHBOR_CLOCKWISE = {0, 3, 6, 2, 5, 1, 4};
+    private static final int[] NEIGHBOR_COUNTERCLOCKWISE = {0, 5, 3, 1, 6, 4, 2};
+
+    private final H3Core h3Core;
+    /** Whether two base cells are the same or neighbors, indexed by both. */
+    private final boolean[] adjacentBaseCells =
+            new boolean[H3Index.NUM_BASE_CELLS * H3Index.NUM_BASE_CELLS];
+
+    CellPairs(H3Core h3Core) {
+        this.h3Core = h3Core;
+        for (long baseCell : h3Core.getRes0Indexes()) {
+            int a = H3Index.getBaseCell(baseCell);
+            for (long neighbor : h3Core.kRing(baseCell, 1)) {
+                adjacentBaseCells[a * H3Index.NUM_BASE_CELLS + H3Index.getBaseCell(neighbor)] =
+                        true;
+            }
+        }
+    }
+
+    /**
+     * Returns why the distance and the line between two cells are undefined, or <code>null</code>
+     * if H3 may define them.
+     */
+    UDFMetrics.NullReason checkPath(long a, long b) {
+        if (!H3Index.isValid(a) || !H3Index.isValid(b)) {
+            return UDFMetrics.NullReason.INVALID_CELL;
+        }
+        if (H3Index.getResolution(a) != H3Index.getResolution(b)) {
+            return UDFMetrics.NullReason.RESOLUTION_MISMATCH;
+        }
+        if (!adjacentBaseCells(a, b)) {
+            return UDFMetrics.NullReason.TOO_FAR_APART;
+        }
+        return null;
+    }
+
+    /**
+     * Returns why two cells have no edge between them, or <code>null</code> if they are neighbors.
+     */
+    UDFMetrics.NullReason checkNeighbors(long a, long b) {
+        if (!H3Index.isValid(a) || !H3Index.isValid(b)) {
+            return UDFMetrics.NullReason.INVALID_CELL;
+        }
+        int res = H3Index.getResolution(a);
+        if (res != H3Index.getResolution(b)) {
+            return UDFMetrics.NullReason.RESOLUTION_MISMATCH;
+        }
+        if (a == b) {
+            return UDFMetrics.NullReason.NOT_NEIGHBORS;
+        }
+        long parent = res > 1 ? H3Index.toParent(a, res - 1) : 0;
+        // children of a pentagon have no K axes digit, so those next to it are neighbors
+        if (parent != 0 && parent == H3Index.toParent(b, res - 1) && !H3Index.isPentagon(parent)) {
+            int digitA = H3Index.getDigit(a, res);
+            int digitB = H3Index.getDigit(b, res);
+            return digitA == H3Index.CENTER_DIGIT
+                            || digitB == H3Index.CENTER_DIGIT
+                            || NEIGHBOR_CLOCKWISE[digitA] == digitB
+                            || NEIGHBOR_COUNTERCLOCKWISE[digitA] == digitB
+                    ? null
+                    : UDFMetrics.NullReason.NOT_NEIGHBORS;
+        }
+        if (!adjacentBaseCells(a, b) || !h3Core.h3IndexesAreNeighbors(a, b)) {
+            return UDFMetrics.NullReason.NOT_NEIGHBORS;
+        }
+        return null;
+    }
+
+    private boolean adjacentBaseCells(long a, long b) {
+        return adjacentBaseCells[
+                H3Index.getBaseCell(a) * H3Index.NUM_BASE_CELLS + H3Index.getBaseCell(b)];
+    }
+}
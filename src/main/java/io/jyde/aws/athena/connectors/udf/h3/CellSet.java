@@ -0,0 +1,426 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compacted set of cells of any resolutions, and its <code>VARBINARY</code> encoding.
+ *
+ * <p>Each cell stands for the range of the finest cells it contains, which starts at the cell with
+ * every unused digit the center digit. The cells of a set are in the order of their ranges, so that
+ * an ancestor comes right before its descendants, and none is in another one. A complete group of
+ * siblings, 7 for a hexagon and 6 for a pentagon, is replaced by its parent. So equal sets have
+ * equal cells and equal encodings, and sets are merged as sorted arrays, at the resolutions of
+ * their cells.
+ *
+ * <p>The encoding is a version byte, the number of cells, and for every cell the distance from the
+ * start of the range of the previous cell, in units of the finer of the two cells, that is of the
+ * higher resolution, followed by the 4 bits of its resolution. Every number is an unsigned LEB128
+ * varint, so that the cells of a compacted polygon take one or two bytes each.
+ */
+final class CellSet {
+    static final int VERSION = 1;
+
+    private static final CellSet EMPTY = new CellSet(new long[0]);
+
+    /** The base cell and digits of a cell. */
+    private static final long POSITION_MASK = H3Index.BASE_CELL_MASK | H3Index.INIT;
+
+    private static final int RES_BITS = 4;
+    private static final int LAST_DIGIT = 6;
+
+    private final long[] cells;
+
+    private CellSet(long[] cells) {
+        this.cells = cells;
+    }
+
+    /**
+     * Returns the set of the first <code>count</code> cells, in any order, with duplicates and
+     * descendants of other cells.
+     *
+     * @throws IllegalArgumentException A cell is not a valid H3 cell.
+     */
+    static CellSet of(long[] cells, int count) {
+        int res = count == 0 ? 0 : H3Index.getResolution(cells[0]);
+        for (int i = 0; i < count; i++) {
+            if (!H3Index.isValid(cells[i])) {
+                throw new IllegalArgumentException(
+                        String.format("Invalid H3 cell %x in a cell set", cells[i]));
+            }
+            if (H3Index.getResolution(cells[i]) != res) {
+                res = -1;
+            }
+        }
+        if (res > 0 && count > 1) {
+            // cells of one resolution, as polyfill returns them, are compacted before sorting
+            CellCompactor compactor = new CellCompactor(res);
+            for (int i = 0; i < count; i++) {
+                compactor.add(cells[i]);
+            }
+            List<Long> compacted = compactor.cells();
+            count = compacted.size();
+            cells = new long[count];
+            for (int i = 0; i < count; i++) {
+                cells[i] = compacted.get(i);
+            }
+        }
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = key(cells[i]);
+        }
+        Arrays.sort(keys);
+        Appender out = new Appender(count);
+        for (long key : keys) {
+            out.addUnlessCovered(fromKey(key));
+        }
+        return out.toSet();
+    }
+
+    /**
+     * Decodes a set.
+     *
+     * @throws IllegalArgumentException The bytes are not an encoded cell set.
+     */
+    static CellSet decode(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        int version = (int) in.next();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported cell set version " + version);
+        }
+        long count = in.next();
+        // every cell takes at least a byte
+        if (count > bytes.length) {
+            throw new IllegalArgumentException("Truncated cell set");
+        }
+        if (count == 0 && !in.hasNext()) {
+            return EMPTY;
+        }
+        long[] cells = new long[(int) count];
+        long start = 0;
+        long end = -1;
+        int previousRes = 0;
+        for (int i = 0; i < cells.length; i++) {
+            long value = in.next();
+            int res = (int) (value & ((1 << RES_BITS) - 1));
+            int shift = unusedBits(Math.max(res, previousRes));
+            long distance = value >>> RES_BITS;
+            if ((i > 0 && distance == 0) || distance > POSITION_MASK >>> shift) {
+                throw new IllegalArgumentException("Cell set out of order");
+            }
+            start += distance << shift;
+            long cell = fromKey(start << RES_BITS | res);
+            if (start <= end
+                    || (start & ~POSITION_MASK) != 0
+                    || (start & ((1L << unusedBits(res)) - 1)) != 0
+                    || !H3Index.isValid(cell)) {
+                throw new IllegalArgumentException("Invalid cell in a cell set");
+            }
+            cells[i] = cell;
+            end = end(cell);
+            previousRes = res;
+        }
+        if (in.hasNext()) {
+            throw new IllegalArgumentException("Trailing bytes after a cell set");
+        }
+        return new CellSet(cells);
+    }
+
+    byte[] encode() {
+        Writer out = new Writer(2 + 2 * cells.length);
+        out.add(VERSION);
+        out.add(cells.length);
+        long previousStart = 0;
+        int previousRes = 0;
+        for (long cell : cells) {
+            int res = H3Index.getResolution(cell);
+            long start = start(cell);
+            long distance = (start - previousStart) >>> unusedBits(Math.max(res, previousRes));
+            out.add(distance << RES_BITS | res);
+            previousStart = start;
+            previousRes = res;
+        }
+        return out.toBytes();
+    }
+
+    /** The cells, which must not be modified. */
+    long[] cells() {
+        return cells;
+    }
+
+    int size() {
+        return cells.length;
+    }
+
+    /** Returns true if the cell or one of its ancestors is in the set. */
+    boolean contains(long cell) {
+        if (!H3Index.isValid(cell)) {
+            return false;
+        }
+        long start = start(cell);
+        int res = H3Index.getResolution(cell);
+        // the last cell whose range starts at or before the cell
+        int low = 0;
+        int high = cells.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (start(cells[mid]) <= start) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0) {
+            return false;
+        }
+        long candidate = cells[high];
+        return H3Index.getResolution(candidate) <= res && start <= end(candidate);
+    }
+
+    /** Returns the cells in either set. */
+    CellSet union(CellSet other) {
+        long[] a = cells;
+        long[] b = other.cells;
+        Appender out = new Appender(a.length + b.length);
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && key(a[i]) <= key(b[j]))) {
+                out.addUnlessCovered(a[i++]);
+            } else {
+                out.addUnlessCovered(b[j++]);
+            }
+        }
+        return out.toSet();
+    }
+
+    /** Returns the cells in both sets, at the finer resolution of the two. */
+    CellSet intersect(CellSet other) {
+        long[] a = cells;
+        long[] b = other.cells;
+        Appender out = new Appender(Math.min(a.length, b.length));
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (end(a[i]) < start(b[j])) {
+                i++;
+            } else if (end(b[j]) < start(a[i])) {
+                j++;
+            } else if (H3Index.getResolution(a[i]) >= H3Index.getResolution(b[j])) {
+                // ranges of cells overlap only if one cell is in the other
+                out.add(a[i++]);
+            } else {
+                out.add(b[j++]);
+            }
+        }
+        return out.toSet();
+    }
+
+    /**
+     * Returns the cells in this set but not the other one, splitting a cell into its children
+     * around the finer cells of the other set.
+     */
+    CellSet difference(CellSet other) {
+        long[] a = cells;
+        long[] b = other.cells;
+        Appender out = new Appender(a.length);
+        int j = 0;
+        for (long cell : a) {
+            long start = start(cell);
+            long end = end(cell);
+            while (j < b.length && end(b[j]) < start) {
+                j++;
+            }
+            if (j < b.length
+                    && start(b[j]) <= start
+                    && H3Index.getResolution(b[j]) <= H3Index.getResolution(cell)) {
+                // removed by a cell it is in, which may remove the next cells too
+                continue;
+            }
+            int to = j;
+            while (to < b.length && start(b[to]) <= end) {
+                to++;
+            }
+            subtract(cell, b, j, to, out);
+            j = to;
+        }
+        return out.toSet();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CellSet && Arrays.equals(cells, ((CellSet) o).cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(cells);
+    }
+
+    @Override
+    public String toString() {
+        return "CellSet{size=" + cells.length + "}";
+    }
+
+    /** Adds the parts of <code>cell</code> outside the finer cells <code>b[from, to)</code>. */
+    private static void subtract(long cell, long[] b, int from, int to, Appender out) {
+        if (from == to) {
+            out.add(cell);
+            return;
+        }
+        if (b[from] == cell) {
+            return;
+        }
+        int childRes = H3Index.getResolution(cell) + 1;
+        long center = H3Index.toCenterChild(cell, childRes);
+        boolean pentagon = H3Index.isPentagon(cell);
+        for (int digit = H3Index.CENTER_DIGIT; digit <= LAST_DIGIT; digit++) {
+            if (pentagon && digit == H3Index.K_AXES_DIGIT) {
+                continue;
+            }
+            long child = H3Index.setDigit(center, childRes, digit);
+            long end = end(child);
+            int childTo = from;
+            while (childTo < to && start(b[childTo]) <= end) {
+                childTo++;
+            }
+            subtract(child, b, from, childTo, out);
+            from = childTo;
+        }
+    }
+
+    /** The sort key of a cell: the start of its range, then its resolution. */
+    static long key(long cell) {
+        return start(cell) << RES_BITS | H3Index.getResolution(cell);
+    }
+
+    static long fromKey(long key) {
+        int res = (int) (key & ((1 << RES_BITS) - 1));
+        return (key >>> RES_BITS)
+                | ((long) H3Index.CELL_MODE << H3Index.MODE_OFFSET)
+                | ((long) res << H3Index.RES_OFFSET)
+                | ((1L << unusedBits(res)) - 1);
+    }
+
+    /** The base cell and digits of the first finest cell in the cell. */
+    private static long start(long cell) {
+        return cell & POSITION_MASK & -(1L << unusedBits(H3Index.getResolution(cell)));
+    }
+
+    /** The base cell and digits of the last finest cell in the cell, or past it. */
+    private static long end(long cell) {
+        return cell & POSITION_MASK;
+    }
+
+    private static int unusedBits(int res) {
+        return (H3Index.MAX_RES - res) * H3Index.DIGIT_BITS;
+    }
+
+    /** Collects the cells of a set in order, replacing complete groups of siblings by parents. */
+    private static final class Appender {
+        private long[] cells;
+        private int size;
+        private long end = -1;
+
+        Appender(int capacity) {
+            this.cells = new long[Math.max(capacity, 1)];
+        }
+
+        /** Adds a cell, unless it is in the last added cell. */
+        void addUnlessCovered(long cell) {
+            if (start(cell) > end) {
+                add(cell);
+            }
+        }
+
+        /** Adds a cell after the last added cell. */
+        void add(long cell) {
+            int res = H3Index.getResolution(cell);
+            while (res > 0 && H3Index.getDigit(cell, res) == LAST_DIGIT) {
+                long parent = H3Index.toParent(cell, res - 1);
+                int siblings = H3Index.isPentagon(parent) ? 5 : 6;
+                if (size < siblings || !areSiblings(parent, res, siblings)) {
+                    break;
+                }
+                size -= siblings;
+                cell = parent;
+                res--;
+            }
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, cells.length * 2);
+            }
+            cells[size++] = cell;
+            end = end(cell);
+        }
+
+        /** Returns true if the last <code>count</code> cells are all children of the parent. */
+        private boolean areSiblings(long parent, int res, int count) {
+            for (int i = size - count; i < size; i++) {
+                if (H3Index.getResolution(cells[i]) != res
+                        || H3Index.toParent(cells[i], res - 1) != parent) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        CellSet toSet() {
+            return size == 0 ? EMPTY : new CellSet(Arrays.copyOf(cells, size));
+        }
+    }
+
+    /** Reads unsigned LEB128 varints. */
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        boolean hasNext() {
+            return position < bytes.length;
+        }
+
+        long next() {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                if (position == bytes.length) {
+                    throw new IllegalArgumentException("Truncated cell set");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint too long in a cell set");
+        }
+    }
+
+    /** Writes unsigned LEB128 varints. */
+    private static final class Writer {
+        private byte[] bytes;
+        private int size;
+
+        Writer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void add(long value) {
+            if (size + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + 10));
+            }
+            while ((value & ~0x7fL) != 0) {
+                bytes[size++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        byte[] toBytes() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * The {@link PolygonCoverage} of the polygons of <code>h3_in_polygon</code>, kept by the {@link
+ * H3AthenaUDFHandler} across rows, batches and invocations of a warm Lambda container.
+ *
+ * <p>A coverage is keyed by a 64-bit hash of the polygon as the UDF takes it, WKT Points, WKT or
+ * WKB, and the resolution of the coverage. The polygon is kept with its coverage and compared on
+ * every hit, so that colliding hashes do not share a coverage.
+ *
+ * <p>The capacity is set in megabytes with the <code>COVERAGE_CACHE_MB</code> environment variable,
+ * and <code>0</code> disables the cache, which compiles the polygon of every row.
+ */
+final class CoverageCache implements UDFMetrics.CacheCounts {
+    static final String ENVIRONMENT_VARIABLE = "COVERAGE_CACHE_MB";
+    static final int DEFAULT_MEGABYTES = 64;
+
+    /** Weight of a small coverage, below which splitting the cache into segments is no use. */
+    private static final int MIN_ENTRY_WEIGHT = 64 * 1024;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final LongLruCache<Entry> cache;
+
+    /** @param megabytes Capacity, or 0 to disable the cache. */
+    CoverageCache(int megabytes) {
+        if (megabytes < 0) {
+            throw new IllegalArgumentException("Negative coverage cache size: " + megabytes);
+        }
+        this.cache =
+                megabytes == 0
+                        ? null
+                        : new LongLruCache<>(
+                                megabytes * 1024L * 1024L, MIN_ENTRY_WEIGHT, entry -> entry.weight);
+    }
+
+    /**
+     * Returns a cache with the capacity of the <code>COVERAGE_CACHE_MB</code> environment variable.
+     */
+    static CoverageCache fromEnvironment() {
+        String megabytes = System.getenv(ENVIRONMENT_VARIABLE);
+        if (megabytes == null || megabytes.trim().isEmpty()) {
+            return new CoverageCache(DEFAULT_MEGABYTES);
+        }
+        return new CoverageCache(Integer.parseInt(megabytes.trim()));
+    }
+
+    /**
+     * Returns the cached coverage of a polygon, or compiles, caches and returns it.
+     *
+     * @param polygon The polygon as the UDF takes it: strings, lists of them, or bytes. It must not
+     *     be modified afterwards.
+     * @param res Resolution of the coverage.
+     */
+    PolygonCoverage get(Object polygon, int res, Supplier<PolygonCoverage> compile) {
+        if (cache == null) {
+            return compile.get();
+        }
+        long key = combine(hash(polygon), res);
+        Entry entry = cache.get(key);
+        if (entry != null && entry.res == res && equal(entry.polygon, polygon)) {
+            return entry.coverage;
+        }
+        PolygonCoverage coverage = compile.get();
+        long weight = coverage.estimateBytes() + estimateBytes(polygon);
+        cache.put(
+                key, new Entry(polygon, res, coverage, (int) Math.min(Integer.MAX_VALUE, weight)));
+        return coverage;
+    }
+
+    @Override
+    public long hitCount() {
+        return cache == null ? 0 : cache.hitCount();
+    }
+
+    @Override
+    public long missCount() {
+        return cache == null ? 0 : cache.missCount();
+    }
+
+    @Override
+    public long evictionCount() {
+        return cache == null ? 0 : cache.evictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return cache == null ? "CoverageCache{disabled}" : "CoverageCache{" + cache + "}";
+    }
+
+    /** FNV-1a over the hash codes of strings, which strings cache, and over bytes. */
+    private static long hash(Object polygon) {
+        if (polygon instanceof byte[]) {
+            long hash = FNV_OFFSET;
+            for (byte b : (byte[]) polygon) {
+                hash = combine(hash, b);
+            }
+            return hash;
+        }
+        if (polygon instanceof List) {
+            List<?> list = (List<?>) polygon;
+            long hash = combine(FNV_OFFSET, list.size());
+            for (Object element : list) {
+                hash = combine(hash, hash(element));
+            }
+            return hash;
+        }
+        return combine(FNV_OFFSET, Objects.hashCode(polygon));
+    }
+
+    private static long combine(long hash, long value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        if (a instanceof byte[] && b instanceof byte[]) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static long estimateBytes(Object polygon) {
+        if (polygon instanceof byte[]) {
+            return 16 + ((byte[]) polygon).length;
+        }
+        return ResultCache.estimateBytes(polygon);
+    }
+
+    private static final class Entry {
+        final Object polygon;
+        final int res;
+        final PolygonCoverage coverage;
+        final int weight;
+
+        Entry(Object polygon, int res, PolygonCoverage coverage, int weight) {
+            this.polygon = polygon;
+            this.res = res;
+            this.coverage = coverage;
+            this.weight = weight;
+        }
+    }
+}
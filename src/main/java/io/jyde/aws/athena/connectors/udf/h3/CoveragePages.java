@@ -0,0 +1,184 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The cells of the <code>polyfill</code> of a {@link PolygonCoverage}, at a resolution at least
+ * that of the coverage, in ascending order of their indexes, read a page at a time.
+ *
+ * <p>Every interior cell of the coverage stands for all of its descendants, whose number only
+ * depends on whether it is a pentagon, and every boundary cell for those of its descendants whose
+ * center is in the polygon, which are counted once. The cells of the coverage are kept in the order
+ * of their ranges, as in a {@link CellSet}, with the number of cells of the <code>polyfill</code>
+ * before each. So the count takes no expansion at all, and a page is found by a binary search and
+ * expands only the cells of the coverage it overlaps.
+ *
+ * <p>The order is that of the indexes of the <code>polyfill</code>, whatever the resolution of the
+ * coverage, so pages read with different coverages, or in parallel, fit together.
+ */
+final class CoveragePages {
+    /** Boundary cells below which counting their descendants is not worth a task of its own. */
+    private static final int MIN_RANGE_CELLS = 16;
+
+    private static final int LAST_DIGIT = 6;
+
+    private final PolygonCoverage coverage;
+    private final int res;
+    /** The interior and boundary cells, in the order of their ranges. */
+    private final long[] cells;
+
+    private final boolean[] boundary;
+    /** Cells of the <code>polyfill</code> before each cell, and all of them at the end. */
+    private final long[] offsets;
+
+    /**
+     * @param interior The interior cells of the coverage, of any resolutions.
+     * @param boundary The boundary cells of the coverage.
+     * @param res Resolution of the <code>polyfill</code>.
+     * @param executor Counts the cells of the boundary cells in the polygon.
+     */
+    CoveragePages(
+            PolygonCoverage coverage,
+            long[] interior,
+            long[] boundary,
+            int res,
+            BatchExecutor executor) {
+        this.coverage = coverage;
+        this.res = res;
+        long[] keys = new long[interior.length + boundary.length];
+        for (int i = 0; i < interior.length; i++) {
+            keys[i] = CellSet.key(interior[i]);
+        }
+        for (int i = 0; i < boundary.length; i++) {
+            keys[interior.length + i] = CellSet.key(boundary[i]);
+        }
+        Arrays.sort(keys);
+        this.cells = new long[keys.length];
+        this.boundary = new boolean[keys.length];
+        int boundaryCount = 0;
+        for (int i = 0; i < keys.length; i++) {
+            cells[i] = CellSet.fromKey(keys[i]);
+            this.boundary[i] = Arrays.binarySearch(boundary, cells[i]) >= 0;
+            boundaryCount += this.boundary[i] ? 1 : 0;
+        }
+
+        int[] boundaryIndexes = new int[boundaryCount];
+        for (int i = 0, j = 0; i < cells.length; i++) {
+            if (this.boundary[i]) {
+                boundaryIndexes[j++] = i;
+            }
+        }
+        Object[] boundaryCounts =
+                executor.map(
+                        boundaryCount,
+                        MIN_RANGE_CELLS,
+                        j -> countInside(cells[boundaryIndexes[j]]));
+        this.offsets = new long[cells.length + 1];
+        for (int i = 0, j = 0; i < cells.length; i++) {
+            long count =
+                    this.boundary[i] ? (Long) boundaryCounts[j++] : descendantCount(cells[i], res);
+            offsets[i + 1] = offsets[i] + count;
+        }
+    }
+
+    int res() {
+        return res;
+    }
+
+    /** The number of cells of the <code>polyfill</code>. */
+    long count() {
+        return offsets[cells.length];
+    }
+
+    /**
+     * Returns the cells of the <code>polyfill</code> from <code>offset</code>, in ascending order.
+     *
+     * @param limit Most cells to return. Fewer are returned at the end of the <code>polyfill</code>
+     *     .
+     */
+    List<Long> page(long offset, int limit) {
+        List<Long> out = new ArrayList<>((int) Math.max(0, Math.min(limit, count() - offset)));
+        if (offset >= count()) {
+            return out;
+        }
+        // the last cell of the coverage that starts at or before the offset
+        int i = Arrays.binarySearch(offsets, offset);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        while (offsets[i + 1] == offsets[i]) {
+            i++;
+        }
+        long skip = offset - offsets[i];
+        for (; i < cells.length && out.size() < limit; i++) {
+            skip = expand(cells[i], skip, boundary[i], out, limit);
+        }
+        return out;
+    }
+
+    /**
+     * Adds the descendants of the cell at the resolution of the pages in ascending order, once the
+     * first <code>skip</code> are skipped, until there are <code>limit</code> cells.
+     *
+     * @param test Whether to keep only the descendants whose center is in the polygon.
+     * @return The descendants left to skip.
+     */
+    private long expand(long cell, long skip, boolean test, List<Long> out, int limit) {
+        int cellRes = H3Index.getResolution(cell);
+        if (!test) {
+            long count = descendantCount(cell, res);
+            if (skip >= count) {
+                return skip - count;
+            }
+        }
+        if (cellRes == res) {
+            if (test && !coverage.contains(cell)) {
+                return skip;
+            }
+            if (skip > 0) {
+                return skip - 1;
+            }
+            out.add(cell);
+            return 0;
+        }
+        boolean pentagon = H3Index.isPentagon(cell);
+        long center = H3Index.toCenterChild(cell, cellRes + 1);
+        for (int digit = H3Index.CENTER_DIGIT; digit <= LAST_DIGIT && out.size() < limit; digit++) {
+            if (pentagon && digit == H3Index.K_AXES_DIGIT) {
+                continue;
+            }
+            skip = expand(H3Index.setDigit(center, cellRes + 1, digit), skip, test, out, limit);
+        }
+        return skip;
+    }
+
+    /** The number of descendants of the cell at the resolution of the pages in the polygon. */
+    private long countInside(long cell) {
+        int cellRes = H3Index.getResolution(cell);
+        if (cellRes == res) {
+            return coverage.contains(cell) ? 1 : 0;
+        }
+        boolean pentagon = H3Index.isPentagon(cell);
+        long center = H3Index.toCenterChild(cell, cellRes + 1);
+        long count = 0;
+        for (int digit = H3Index.CENTER_DIGIT; digit <= LAST_DIGIT; digit++) {
+            if (!pentagon || digit != H3Index.K_AXES_DIGIT) {
+                count += countInside(H3Index.setDigit(center, cellRes + 1, digit));
+            }
+        }
+        return count;
+    }
+
+    /** The number of descendants of the cell at <code>res</code>, 6 per pentagon at each step. */
+    static long descendantCount(long cell, int res) {
+        long hexagons = 1;
+        for (int r = H3Index.getResolution(cell); r < res; r++) {
+            hexagons *= 7;
+        }
+        // a pentagon has a pentagon and 5 hexagons as children
+        return H3Index.isPentagon(cell) ? 1 + 5 * (hexagons - 1) / 6 : hexagons;
+    }
+}
@@ -0,0 +1,202 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.util.ByteFunctionHelpers;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.compare.Range;
+import org.apache.arrow.vector.compare.RangeEqualsVisitor;
+import org.apache.arrow.vector.util.Text;
+
+/**
+ * A {@link BlockKernel} for a UDF of an H3 index whose other arguments, such as a unit or a
+ * resolution, hold the same literal on every row of the batch.
+ *
+ * <p>The other arguments are bound once per batch, so that units are parsed once, and the UDF is
+ * evaluated once per distinct index of the batch, with the result written to every row of that
+ * index. A batch with arguments that vary between rows, or are <code>null</code>, goes through the
+ * row-at-a-time path.
+ *
+ * <p>The distinct indexes of a batch are evaluated on a {@link BatchExecutor}.
+ */
+final class DistinctCellKernel implements BlockKernel {
+    /** Binds the arguments after the H3 index, which are the same on every row, to the UDF. */
+    @FunctionalInterface
+    interface Binder {
+        /**
+         * @param arguments The UDF arguments of the first row, with the H3 index left <code>null
+         *     </code> and strings as {@link String}, also in lists.
+         * @return The UDF of the H3 index. It is not called for <code>null</code> indexes, nor is
+         *     the binder for a batch of only <code>null</code> indexes.
+         */
+        LongFunction<?> bind(Object[] arguments);
+    }
+
+    /** Distinct cells below which a range is not worth a task of its own. */
+    private static final int MIN_RANGE_CELLS = 64;
+
+    private final BatchExecutor executor;
+    private final Binder binder;
+
+    /** @param executor Evaluates the distinct cells of a batch. */
+    DistinctCellKernel(BatchExecutor executor, Binder binder) {
+        this.executor = executor;
+        this.binder = binder;
+    }
+
+    DistinctCellKernel(Binder binder) {
+        this(BatchExecutor.SEQUENTIAL, binder);
+    }
+
+    /** Kernel for a UDF whose only argument is an H3 index. */
+    static DistinctCellKernel of(BatchExecutor executor, LongFunction<?> function) {
+        return new DistinctCellKernel(executor, arguments -> function);
+    }
+
+    static DistinctCellKernel of(LongFunction<?> function) {
+        return of(BatchExecutor.SEQUENTIAL, function);
+    }
+
+    @Override
+    public boolean supports(List<FieldVector> inputs, int rowCount) {
+        if (!(inputs.get(0) instanceof BigIntVector)) {
+            return false;
+        }
+        for (int col = 1; col < inputs.size(); col++) {
+            if (!isConstant(inputs.get(col), rowCount)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void evaluate(List<FieldVector> inputs, FieldVector output, int rowCount) {
+        output.allocateNew();
+        if (rowCount == 0) {
+            return;
+        }
+        BigIntVector cells = (BigIntVector) inputs.get(0);
+        LongIntHashMap distinct = new LongIntHashMap(rowCount);
+        long[] distinctCells = new long[rowCount];
+        // index of the cell of each row in distinctCells, or -1 for null
+        int[] rowCells = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            if (cells.isNull(row)) {
+                rowCells[row] = -1;
+                continue;
+            }
+            long cell = cells.get(row);
+            int index = distinct.putIfAbsent(cell, distinct.size());
+            if (index == LongIntHashMap.ABSENT) {
+                index = distinct.size() - 1;
+                distinctCells[index] = cell;
+            }
+            rowCells[row] = index;
+        }
+        if (distinct.size() == 0) {
+            // as on the row path, arguments such as an invalid unit do not matter without cells
+            for (int row = 0; row < rowCount; row++) {
+                BlockKernels.setValue(output, row, null);
+            }
+            return;
+        }
+
+        Object[] arguments = new Object[inputs.size()];
+        for (int col = 1; col < inputs.size(); col++) {
+            arguments[col] = value(inputs.get(col), 0);
+        }
+        LongFunction<?> function = binder.bind(arguments);
+
+        Object[] results =
+                executor.map(
+                        distinct.size(),
+                        MIN_RANGE_CELLS,
+                        index -> function.apply(distinctCells[index]));
+        for (int row = 0; row < rowCount; row++) {
+            BlockKernels.setValue(output, row, rowCells[row] < 0 ? null : results[rowCells[row]]);
+        }
+    }
+
+    /** Whether every row of the vector holds the same value, which is not <code>null</code>. */
+    static boolean isConstant(FieldVector vector, int rowCount) {
+        if (rowCount == 0) {
+            return true;
+        }
+        if (vector.isNull(0)) {
+            return false;
+        }
+        if (vector instanceof IntVector) {
+            IntVector ints = (IntVector) vector;
+            int first = ints.get(0);
+            for (int row = 1; row < rowCount; row++) {
+                if (ints.isNull(row) || ints.get(row) != first) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (vector instanceof BigIntVector) {
+            BigIntVector longs = (BigIntVector) vector;
+            long first = longs.get(0);
+            for (int row = 1; row < rowCount; row++) {
+                if (longs.isNull(row) || longs.get(row) != first) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (vector instanceof BaseVariableWidthVector) {
+            // compares the bytes in place, rather than reading every row as Text
+            BaseVariableWidthVector strings = (BaseVariableWidthVector) vector;
+            ArrowBuf data = strings.getDataBuffer();
+            int start = strings.getStartOffset(0);
+            int end = strings.getEndOffset(0);
+            for (int row = 1; row < rowCount; row++) {
+                if (strings.isNull(row)) {
+                    return false;
+                }
+                int rowStart = strings.getStartOffset(row);
+                int rowEnd = strings.getEndOffset(row);
+                if (ByteFunctionHelpers.equal(data, start, end, data, rowStart, rowEnd) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // compares lists, such as the WKT Points of a polygon, in place, rather than reading them
+        RangeEqualsVisitor equals = new RangeEqualsVisitor(vector, vector);
+        for (int row = 1; row < rowCount; row++) {
+            if (!equals.rangeEquals(new Range(0, row, 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object value(FieldVector vector, int row) {
+        return toJava(vector.getObject(row));
+    }
+
+    /** Strings as {@link String}, also in lists. */
+    private static Object toJava(Object value) {
+        if (value instanceof Text) {
+            return value.toString();
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> converted = new ArrayList<>(list.size());
+            for (Object element : list) {
+                converted.add(toJava(element));
+            }
+            return converted;
+        }
+        return value;
+    }
+}
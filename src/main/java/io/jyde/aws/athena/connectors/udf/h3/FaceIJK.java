@@ -0,0 +1,443 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+/**
+ * Conversion of coordinates to H3 cells in Java, following <code>geoToH3</code> of the H3 C
+ * library: the point is projected gnomonically onto the closest face of the icosahedron, quantized
+ * to IJK coordinates of the hexagon grid at the resolution, and then walked up the aperture 7
+ * hierarchy to read off the digits and the base cell.
+ *
+ * <p>The C library computes a few intermediate values in extended precision, so results can only
+ * differ from it for points within a few ulps of a cell boundary.
+ */
+final class FaceIJK {
+    private static final double EPSILON = 1e-16;
+    private static final double M_2PI = 6.283185307179586;
+    private static final double M_SQRT7 = 2.6457513110645907;
+    private static final double M_SIN60 = 0.8660254037844386;
+
+    /** Rotation of the Class III grid relative to the Class II grid, in radians. */
+    private static final double M_AP7_ROT_RADS = 0.3334731722518321;
+
+    /** Scaling from the gnomonic projection to resolution 0 hex2d coordinates. */
+    private static final double RES0_U_GNOMONIC = 0.381966011250105;
+
+    /** Largest IJK coordinate of a base cell relative to the center of a face. */
+    private static final int MAX_FACE_COORD = 2;
+
+    /** Latitude and longitude of the center of each face, in radians. */
+    private static final double[][] FACE_CENTER_GEO = {
+        {0.80358264971899, 1.2483974196173961},
+        {1.3077478834556382, 2.5369450098779214},
+        {1.054751253523952, -1.3475173589003966},
+        {0.6001915955381868, -0.45060390946975576},
+        {0.49171542819877384, 0.40198820291130694},
+        {0.1727453274156187, 1.6781468852804338},
+        {0.6059293215713507, 2.9539233298124117},
+        {0.42737051832897965, -1.8888762003362853},
+        {-0.07906611854921283, -0.7334295133808677},
+        {-0.23096164445538364, 0.506495587332349},
+        {0.07906611854921283, 2.4081631402089254},
+        {0.23096164445538364, -2.635097066257444},
+        {-0.1727453274156187, -1.4634457683093596},
+        {-0.6059293215713507, -0.18766932377738163},
+        {-0.42737051832897965, 1.2527164532535078},
+        {-0.6001915955381868, 2.6909887441200375},
+        {-0.49171542819877384, -2.7396044506784865},
+        {-0.80358264971899, -1.8931952339723972},
+        {-1.3077478834556382, -0.6046476437118721},
+        {-1.054751253523952, 1.7940752946893965},
+    };
+
+    /** Center of each face on the unit sphere. */
+    private static final double[][] FACE_CENTER_POINT = {
+        {0.2199307791404606, 0.6583691780274996, 0.7198475378926182},
+        {-0.2139234834501421, 0.1478171829550703, 0.9656017935214205},
+        {0.1092625278784797, -0.481195157287321, 0.8697775121287253},
+        {0.7428567301586791, -0.3593941678278028, 0.5648005936517033},
+        {0.8112534709140969, 0.3448953237639384, 0.472138773641393},
+        {-0.1055498149613921, 0.9794457296411413, 0.1718874610009365},
+        {-0.8075407579970092, 0.1533552485898818, 0.5695261994882688},
+        {-0.2846148069787907, -0.8644080972654206, 0.4144792552473539},
+        {0.7405621473854482, -0.6673299564565524, -0.0789837646326737},
+        {0.8512303986474293, 0.4722343788582681, -0.2289137388687808},
+        {-0.7405621473854481, 0.6673299564565524, 0.0789837646326737},
+        {-0.8512303986474292, -0.4722343788582682, 0.2289137388687808},
+        {0.1055498149613919, -0.9794457296411413, -0.1718874610009365},
+        {0.8075407579970092, -0.1533552485898819, -0.5695261994882688},
+        {0.2846148069787908, 0.8644080972654204, -0.4144792552473539},
+        {-0.7428567301586791, 0.3593941678278027, -0.5648005936517033},
+        {-0.811253470914097, -0.3448953237639382, -0.472138773641393},
+        {-0.2199307791404607, -0.6583691780274996, -0.7198475378926182},
+        {0.213923483450142, -0.1478171829550704, -0.9656017935214205},
+        {-0.1092625278784796, 0.481195157287321, -0.8697775121287253},
+    };
+
+    /** Azimuth of the Class II i-axis from the center of each face, in radians. */
+    private static final double[] FACE_I_AXIS_AZ_RADS = {
+        5.6199582685239395,
+        5.7603390817141875,
+        0.78021365439343,
+        0.4304693639799999,
+        6.130269123335111,
+        2.692877706530643,
+        2.982963003477244,
+        3.532912002790141,
+        3.494305004259568,
+        3.0032141694995382,
+        5.930472956509812,
+        0.13837848409025486,
+        0.4487149470591504,
+        0.15862965011254937,
+        5.891865957979238,
+        2.711123289609793,
+        3.294508837434268,
+        3.80481969224544,
+        3.6644388790551923,
+        2.361378999196363
+    };
+
+    /**
+     * Base cell and the number of 60 degree counter-clockwise rotations to its coordinate system,
+     * as pairs, of every IJK coordinate 0 &lt;= i, j, k &lt;= 2 on each face, indexed by <code>
+     * ((i * 3 + j) * 3 + k) * 2</code>.
+     */
+    private static final int[][] FACE_IJK_BASE_CELLS = {
+        // face 0
+        {
+            16, 0, 18, 0, 24, 0, 33, 0, 30, 0, 32, 3, 49, 1, 48, 3, 50, 3, 8, 0, 5, 5, 10, 5, 22, 0,
+            16, 0, 18, 0, 41, 1, 33, 0, 30, 0, 4, 0, 0, 5, 2, 5, 15, 1, 8, 0, 5, 5, 31, 1, 22, 0,
+            16, 0
+        },
+        // face 1
+        {
+            2, 0, 6, 0, 14, 0, 10, 0, 11, 0, 17, 3, 24, 1, 23, 3, 25, 3, 0, 0, 1, 5, 9, 5, 5, 0, 2,
+            0, 6, 0, 18, 1, 10, 0, 11, 0, 4, 1, 3, 5, 7, 5, 8, 1, 0, 0, 1, 5, 16, 1, 5, 0, 2, 0
+        },
+        // face 2
+        {
+            7, 0, 21, 0, 38, 0, 9, 0, 19, 0, 34, 3, 14, 1, 20, 3, 36, 3, 3, 0, 13, 5, 29, 5, 1, 0,
+            7, 0, 21, 0, 6, 1, 9, 0, 19, 0, 4, 2, 12, 5, 26, 5, 0, 1, 3, 0, 13, 5, 2, 1, 1, 0, 7, 0
+        },
+        // face 3
+        {
+            26, 0, 42, 0, 58, 0, 29, 0, 43, 0, 62, 3, 38, 1, 47, 3, 64, 3, 12, 0, 28, 5, 44, 5, 13,
+            0, 26, 0, 42, 0, 21, 1, 29, 0, 43, 0, 4, 3, 15, 5, 31, 5, 3, 1, 12, 0, 28, 5, 7, 1, 13,
+            0, 26, 0
+        },
+        // face 4
+        {
+            31, 0, 41, 0, 49, 0, 44, 0, 53, 0, 61, 3, 58, 1, 65, 3, 75, 3, 15, 0, 22, 5, 33, 5, 28,
+            0, 31, 0, 41, 0, 42, 1, 44, 0, 53, 0, 4, 4, 8, 5, 16, 5, 12, 1, 15, 0, 22, 5, 26, 1, 28,
+            0, 31, 0
+        },
+        // face 5
+        {
+            50, 0, 48, 0, 49, 3, 32, 0, 30, 3, 33, 3, 24, 3, 18, 3, 16, 3, 70, 0, 67, 0, 66, 3, 52,
+            3, 50, 0, 48, 0, 37, 3, 32, 0, 30, 3, 83, 0, 87, 3, 85, 3, 74, 3, 70, 0, 67, 0, 57, 1,
+            52, 3, 50, 0
+        },
+        // face 6
+        {
+            25, 0, 23, 0, 24, 3, 17, 0, 11, 3, 10, 3, 14, 3, 6, 3, 2, 3, 45, 0, 39, 0, 37, 3, 35, 3,
+            25, 0, 23, 0, 27, 3, 17, 0, 11, 3, 63, 0, 59, 3, 57, 3, 56, 3, 45, 0, 39, 0, 46, 3, 35,
+            3, 25, 0
+        },
+        // face 7
+        {
+            36, 0, 20, 0, 14, 3, 34, 0, 19, 3, 9, 3, 38, 3, 21, 3, 7, 3, 55, 0, 40, 0, 27, 3, 54, 3,
+            36, 0, 20, 0, 51, 3, 34, 0, 19, 3, 72, 0, 60, 3, 46, 3, 73, 3, 55, 0, 40, 0, 71, 3, 54,
+            3, 36, 0
+        },
+        // face 8
+        {
+            64, 0, 47, 0, 38, 3, 62, 0, 43, 3, 29, 3, 58, 3, 42, 3, 26, 3, 84, 0, 69, 0, 51, 3, 82,
+            3, 64, 0, 47, 0, 76, 3, 62, 0, 43, 3, 97, 0, 89, 3, 71, 3, 98, 3, 84, 0, 69, 0, 96, 3,
+            82, 3, 64, 0
+        },
+        // face 9
+        {
+            75, 0, 65, 0, 58, 3, 61, 0, 53, 3, 44, 3, 49, 3, 41, 3, 31, 3, 94, 0, 86, 0, 76, 3, 81,
+            3, 75, 0, 65, 0, 66, 3, 61, 0, 53, 3, 107, 0, 104, 3, 96, 3, 101, 3, 94, 0, 86, 0, 85,
+            3, 81, 3, 75, 0
+        },
+        // face 10
+        {
+            57, 0, 59, 0, 63, 3, 74, 0, 78, 3, 79, 3, 83, 3, 92, 3, 95, 3, 37, 0, 39, 3, 45, 3, 52,
+            0, 57, 0, 59, 0, 70, 3, 74, 0, 78, 3, 24, 0, 23, 3, 25, 3, 32, 3, 37, 0, 39, 3, 50, 3,
+            52, 0, 57, 0
+        },
+        // face 11
+        {
+            46, 0, 60, 0, 72, 3, 56, 0, 68, 3, 80, 3, 63, 3, 77, 3, 90, 3, 27, 0, 40, 3, 55, 3, 35,
+            0, 46, 0, 60, 0, 45, 3, 56, 0, 68, 3, 14, 0, 20, 3, 36, 3, 17, 3, 27, 0, 40, 3, 25, 3,
+            35, 0, 46, 0
+        },
+        // face 12
+        {
+            71, 0, 89, 0, 97, 3, 73, 0, 91, 3, 103, 3, 72, 3, 88, 3, 105, 3, 51, 0, 69, 3, 84, 3,
+            54, 0, 71, 0, 89, 0, 55, 3, 73, 0, 91, 3, 38, 0, 47, 3, 64, 3, 34, 3, 51, 0, 69, 3, 36,
+            3, 54, 0, 71, 0
+        },
+        // face 13
+        {
+            96, 0, 104, 0, 107, 3, 98, 0, 110, 3, 115, 3, 97, 3, 111, 3, 119, 3, 76, 0, 86, 3, 94,
+            3, 82, 0, 96, 0, 104, 0, 84, 3, 98, 0, 110, 3, 58, 0, 65, 3, 75, 3, 62, 3, 76, 0, 86, 3,
+            64, 3, 82, 0, 96, 0
+        },
+        // face 14
+        {
+            85, 0, 87, 0, 83, 3, 101, 0, 102, 3, 100, 3, 107, 3, 112, 3, 114, 3, 66, 0, 67, 3, 70,
+            3, 81, 0, 85, 0, 87, 0, 94, 3, 101, 0, 102, 3, 49, 0, 48, 3, 50, 3, 61, 3, 66, 0, 67, 3,
+            75, 3, 81, 0, 85, 0
+        },
+        // face 15
+        {
+            95, 0, 92, 0, 83, 0, 79, 0, 78, 0, 74, 3, 63, 1, 59, 3, 57, 3, 109, 0, 108, 0, 100, 5,
+            93, 1, 95, 0, 92, 0, 77, 1, 79, 0, 78, 0, 117, 4, 118, 5, 114, 5, 106, 1, 109, 0, 108,
+            0, 90, 1, 93, 1, 95, 0
+        },
+        // face 16
+        {
+            90, 0, 77, 0, 63, 0, 80, 0, 68, 0, 56, 3, 72, 1, 60, 3, 46, 3, 106, 0, 93, 0, 79, 5, 99,
+            1, 90, 0, 77, 0, 88, 1, 80, 0, 68, 0, 117, 3, 109, 5, 95, 5, 113, 1, 106, 0, 93, 0, 105,
+            1, 99, 1, 90, 0
+        },
+        // face 17
+        {
+            105, 0, 88, 0, 72, 0, 103, 0, 91, 0, 73, 3, 97, 1, 89, 3, 71, 3, 113, 0, 99, 0, 80, 5,
+            116, 1, 105, 0, 88, 0, 111, 1, 103, 0, 91, 0, 117, 2, 106, 5, 90, 5, 121, 1, 113, 0, 99,
+            0, 119, 1, 116, 1, 105, 0
+        },
+        // face 18
+        {
+            119, 0, 111, 0, 97, 0, 115, 0, 110, 0, 98, 3, 107, 1, 104, 3, 96, 3, 121, 0, 116, 0,
+            103, 5, 120, 1, 119, 0, 111, 0, 112, 1, 115, 0, 110, 0, 117, 1, 113, 5, 105, 5, 118, 1,
+            121, 0, 116, 0, 114, 1, 120, 1, 119, 0
+        },
+        // face 19
+        {
+            114, 0, 112, 0, 107, 0, 100, 0, 102, 0, 101, 3, 83, 1, 87, 3, 85, 3, 118, 0, 120, 0,
+            115, 5, 108, 1, 114, 0, 112, 0, 92, 1, 100, 0, 102, 0, 117, 0, 121, 5, 119, 5, 109, 1,
+            118, 0, 120, 0, 95, 1, 108, 1, 114, 0
+        },
+    };
+
+    private FaceIJK() {}
+
+    /**
+     * Finds the cell of resolution <code>res</code> containing a point.
+     *
+     * @param lat Latitude in degrees.
+     * @param lng Longitude in degrees.
+     * @param res Resolution, 0 &lt;= res &lt;= 15
+     * @return The H3 index, or 0 if the resolution or the coordinates are invalid.
+     */
+    static long geoToH3(double lat, double lng, int res) {
+        if (res < 0 || res > H3Index.MAX_RES) {
+            return 0;
+        }
+        double latRads = Math.toRadians(lat);
+        double lngRads = Math.toRadians(lng);
+        if (!Double.isFinite(latRads) || !Double.isFinite(lngRads)) {
+            return 0;
+        }
+
+        // closest face
+        double cosLat = Math.cos(latRads);
+        double z = Math.sin(latRads);
+        double x = Math.cos(lngRads) * cosLat;
+        double y = Math.sin(lngRads) * cosLat;
+        int face = 0;
+        double sqd = 5.0;
+        for (int f = 0; f < FACE_CENTER_POINT.length; f++) {
+            double[] center = FACE_CENTER_POINT[f];
+            double dx = center[0] - x;
+            double dy = center[1] - y;
+            double dz = center[2] - z;
+            double sqdT = dx * dx + dy * dy + dz * dz;
+            if (sqdT < sqd) {
+                face = f;
+                sqd = sqdT;
+            }
+        }
+
+        // hex2d coordinates on the face
+        double hexX = 0.0;
+        double hexY = 0.0;
+        double r = Math.acos(1 - sqd / 2);
+        if (r >= EPSILON) {
+            double theta =
+                    posAngleRads(
+                            FACE_I_AXIS_AZ_RADS[face]
+                                    - posAngleRads(
+                                            azimuthRads(
+                                                    FACE_CENTER_GEO[face][0],
+                                                    FACE_CENTER_GEO[face][1],
+                                                    latRads,
+                                                    lngRads)));
+            if (isResClassIII(res)) {
+                theta = posAngleRads(theta - M_AP7_ROT_RADS);
+            }
+            r = Math.tan(r) / RES0_U_GNOMONIC;
+            for (int i = 0; i < res; i++) {
+                r *= M_SQRT7;
+            }
+            hexX = r * Math.cos(theta);
+            hexY = r * Math.sin(theta);
+        }
+
+        // quantize to the IJK coordinates of the containing hexagon
+        double a1 = Math.abs(hexX);
+        double a2 = Math.abs(hexY);
+        double x2 = a2 / M_SIN60;
+        double x1 = a1 + x2 / 2.0;
+        int m1 = (int) x1;
+        int m2 = (int) x2;
+        double r1 = x1 - m1;
+        double r2 = x2 - m2;
+        int i;
+        int j;
+        if (r1 < 0.5) {
+            if (r1 < 1.0 / 3.0) {
+                i = m1;
+                j = r2 < (1.0 + r1) / 2.0 ? m2 : m2 + 1;
+            } else {
+                j = r2 < 1.0 - r1 ? m2 : m2 + 1;
+                i = (1.0 - r1) <= r2 && r2 < 2.0 * r1 ? m1 + 1 : m1;
+            }
+        } else {
+            if (r1 < 2.0 / 3.0) {
+                j = r2 < 1.0 - r1 ? m2 : m2 + 1;
+                i = (2.0 * r1 - 1.0) < r2 && r2 < (1.0 - r1) ? m1 : m1 + 1;
+            } else {
+                i = m1 + 1;
+                j = r2 < r1 / 2.0 ? m2 : m2 + 1;
+            }
+        }
+        // fold across the axes if necessary
+        if (hexX < 0.0) {
+            if (j % 2 == 0) {
+                i -= 2 * (i - j / 2);
+            } else {
+                i -= 2 * (i - (j + 1) / 2) + 1;
+            }
+        }
+        if (hexY < 0.0) {
+            i -= (2 * j + 1) / 2;
+            j = -j;
+        }
+        int k = 0;
+        int min = Math.min(i, Math.min(j, k));
+        i -= min;
+        j -= min;
+        k -= min;
+
+        return faceIjkToH3(face, i, j, k, res);
+    }
+
+    /** Returns the cell of resolution <code>res</code> at normalized IJK coordinates on a face. */
+    private static long faceIjkToH3(int face, int i, int j, int k, int res) {
+        long h3 = H3Index.cell(res, 0);
+        for (int r = res - 1; r >= 0; r--) {
+            int lastI = i;
+            int lastJ = j;
+            int lastK = k;
+            int centerI;
+            int centerJ;
+            int centerK;
+            int ii = i - k;
+            int jj = j - k;
+            if (isResClassIII(r + 1)) {
+                // parent in the counter-clockwise aperture 7 grid, and its center in this grid
+                i = (int) Math.round((3 * ii - jj) / 7.0);
+                j = (int) Math.round((ii + 2 * jj) / 7.0);
+                k = 0;
+                int min = Math.min(i, Math.min(j, k));
+                i -= min;
+                j -= min;
+                k -= min;
+                centerI = 3 * i + j;
+                centerJ = 3 * j + k;
+                centerK = i + 3 * k;
+            } else {
+                // parent in the clockwise aperture 7 grid, and its center in this grid
+                i = (int) Math.round((2 * ii + jj) / 7.0);
+                j = (int) Math.round((3 * jj - ii) / 7.0);
+                k = 0;
+                int min = Math.min(i, Math.min(j, k));
+                i -= min;
+                j -= min;
+                k -= min;
+                centerI = 3 * i + k;
+                centerJ = i + 3 * j;
+                centerK = j + 3 * k;
+            }
+            h3 =
+                    H3Index.setDigit(
+                            h3,
+                            r + 1,
+                            unitIjkToDigit(lastI - centerI, lastJ - centerJ, lastK - centerK));
+        }
+
+        if (i > MAX_FACE_COORD || j > MAX_FACE_COORD || k > MAX_FACE_COORD) {
+            return 0;
+        }
+        int offset = ((i * 3 + j) * 3 + k) * 2;
+        int baseCell = FACE_IJK_BASE_CELLS[face][offset];
+        int numRots = FACE_IJK_BASE_CELLS[face][offset + 1];
+        h3 |= (long) baseCell << H3Index.BASE_CELL_OFFSET;
+
+        if (BaseCells.isPentagon(baseCell)) {
+            // force rotation out of the missing K axes sub-sequence
+            if (H3Index.leadingNonZeroDigit(h3) == H3Index.K_AXES_DIGIT) {
+                if (BaseCells.isCwOffset(baseCell, face)) {
+                    h3 = H3Index.rotate60cw(h3);
+                } else {
+                    h3 = H3Index.rotate60ccw(h3);
+                }
+            }
+            for (int n = 0; n < numRots; n++) {
+                h3 = H3Index.rotatePent60ccw(h3);
+            }
+        } else {
+            for (int n = 0; n < numRots; n++) {
+                h3 = H3Index.rotate60ccw(h3);
+            }
+        }
+        return h3;
+    }
+
+    /** Returns the digit of a unit IJK vector, or {@link H3Index#INVALID_DIGIT}. */
+    private static int unitIjkToDigit(int i, int j, int k) {
+        int min = Math.min(i, Math.min(j, k));
+        i -= min;
+        j -= min;
+        k -= min;
+        if (i > 1 || j > 1 || k > 1) {
+            return H3Index.INVALID_DIGIT;
+        }
+        return (i << 2) | (j << 1) | k;
+    }
+
+    private static boolean isResClassIII(int res) {
+        return res % 2 == 1;
+    }
+
+    /** Normalizes an angle to 0 &lt;= rads &lt; 2 pi. */
+    private static double posAngleRads(double rads) {
+        double tmp = rads < 0.0 ? rads + M_2PI : rads;
+        if (rads >= M_2PI) {
+            tmp -= M_2PI;
+        }
+        return tmp;
+    }
+
+    /** Returns the azimuth from the first point to the second point, in radians. */
+    private static double azimuthRads(double lat1, double lng1, double lat2, double lng2) {
+        return Math.atan2(
+                Math.cos(lat2) * Math.sin(lng2 - lng1),
+                Math.cos(lat1) * Math.sin(lat2)
+                        - Math.sin(lat1) * Math.cos(lat2) * Math.cos(lng2 - lng1));
+    }
+}
@@ -0,0 +1,159 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.VarCharVector;
+
+/**
+ * Reads and writes H3 index addresses as the UTF-8 bytes of Arrow <code>VARCHAR</code> vectors,
+ * without a <code>String</code> per value.
+ *
+ * <p>Addresses are parsed as <code>H3Core.stringToH3</code> does, that is as <code>
+ * Long.parseUnsignedLong(address, 16)</code>, and written as <code>H3Core.h3ToString</code> does,
+ * in lowercase hexadecimal without leading zeros, so the block kernels of the address overloads
+ * read and write the same values as their row-at-a-time methods.
+ *
+ * <p>An address of 9 to 16 characters, as all addresses of cells and edges are, is read from the
+ * vector as two little-endian <code>long</code>s of 8 characters, which are checked and decoded 8
+ * at a time. Others, and any with a character that is not a hexadecimal digit, are parsed a byte at
+ * a time, which also makes the exception.
+ */
+final class H3Addresses {
+    /** Hexadecimal digits of a 64-bit index. */
+    static final int MAX_LENGTH = 16;
+
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_NIBBLES = 0x0F0F0F0F0F0F0F0FL;
+
+    private static final byte[] DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /** The value of each ASCII character as a hexadecimal digit, or -1. */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            VALUES['a' + i] = (byte) (10 + i);
+            VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private H3Addresses() {}
+
+    /**
+     * Parses the address in <code>bytes[start, end)</code>.
+     *
+     * @throws NumberFormatException It is not an unsigned hexadecimal <code>long</code>.
+     */
+    static long parse(byte[] bytes, int start, int end) {
+        int i = start;
+        if (i < end && bytes[i] == '+') {
+            i++;
+        }
+        if (i == end) {
+            throw invalid(bytes, start, end);
+        }
+        while (i < end - 1 && bytes[i] == '0') {
+            i++;
+        }
+        if (end - i > MAX_LENGTH) {
+            throw invalid(bytes, start, end);
+        }
+        long h3 = 0;
+        for (; i < end; i++) {
+            int b = bytes[i];
+            int value = b >= 0 ? VALUES[b] : -1;
+            if (value < 0) {
+                throw invalid(bytes, start, end);
+            }
+            h3 = (h3 << 4) | value;
+        }
+        return h3;
+    }
+
+    /**
+     * Parses the address of a row, which must not be <code>null</code>.
+     *
+     * @param scratch At least {@link #MAX_LENGTH} bytes, reused across rows.
+     * @throws NumberFormatException It is not an unsigned hexadecimal <code>long</code>.
+     */
+    static long parse(VarCharVector vector, int row, byte[] scratch) {
+        int start = vector.getStartOffset(row);
+        int length = vector.getEndOffset(row) - start;
+        if (LITTLE_ENDIAN && length > 8 && length <= MAX_LENGTH) {
+            ArrowBuf data = vector.getDataBuffer();
+            // the first and the last 8 characters, which overlap below 16
+            long first = decode8(data.getLong(start));
+            long last = decode8(data.getLong(start + length - 8));
+            if ((first | last) >= 0) {
+                return (first >>> (4 * (MAX_LENGTH - length)) << 32) | last;
+            }
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        vector.getDataBuffer().getBytes(start, bytes, 0, length);
+        return parse(bytes, 0, length);
+    }
+
+    /**
+     * Returns the value of 8 hexadecimal digits, the first in the lowest byte, or -1 if a byte is
+     * not one.
+     */
+    private static long decode8(long chars) {
+        if ((chars & HIGH_BITS) != 0) {
+            return -1;
+        }
+        // with no high bits, adding to each byte does not carry into the next: '0' to '9', and
+        // 'a' to 'f' in either case
+        long digits = (chars + 0x5050505050505050L) & ~(chars + 0x4646464646464646L);
+        long lower = chars | 0x2020202020202020L;
+        long letters = (lower + 0x1F1F1F1F1F1F1F1FL) & ~(lower + 0x1919191919191919L);
+        if (((digits | letters) & HIGH_BITS) != HIGH_BITS) {
+            return -1;
+        }
+        long nibbles = (chars & LOW_NIBBLES) + ((letters & HIGH_BITS) >>> 7) * 9;
+        // gather the nibbles, the first one highest
+        long pairs =
+                ((nibbles & 0x000F000F000F000FL) << 4) | ((nibbles >>> 8) & 0x000F000F000F000FL);
+        long quads = ((pairs & 0x000000FF000000FFL) << 8) | ((pairs >>> 16) & 0x000000FF000000FFL);
+        return ((quads & 0xFFFFL) << 16) | ((quads >>> 32) & 0xFFFFL);
+    }
+
+    /**
+     * Writes the address of an index to the start of <code>out</code>.
+     *
+     * @param out At least {@link #MAX_LENGTH} bytes.
+     * @return The length of the address.
+     */
+    static int format(long h3, byte[] out) {
+        int length = h3 == 0 ? 1 : (Long.SIZE - Long.numberOfLeadingZeros(h3) + 3) / 4;
+        for (int i = length - 1; i >= 0; i--) {
+            out[i] = DIGITS[(int) (h3 & 15)];
+            h3 >>>= 4;
+        }
+        return length;
+    }
+
+    /**
+     * Sets a row to the address of an index, growing the vector as needed.
+     *
+     * @param scratch At least {@link #MAX_LENGTH} bytes, reused across rows.
+     */
+    static void set(VarCharVector vector, int row, long h3, byte[] scratch) {
+        vector.setSafe(row, scratch, 0, format(h3, scratch));
+    }
+
+    private static NumberFormatException invalid(byte[] bytes, int start, int end) {
+        return new NumberFormatException(
+                "Invalid H3 address \""
+                        + new String(bytes, start, end - start, StandardCharsets.UTF_8)
+                        + "\"");
+    }
+}
@@ -1,6 +1,8 @@
 /* Licensed under Apache-2.0 2021. */
 package io.jyde.aws.athena.connectors.udf.h3;
 
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocator;
 import com.amazonaws.athena.connector.lambda.handlers.UserDefinedFunctionHandler;
 import com.google.common.annotations.VisibleForTesting;
 import com.uber.h3core.AreaUnit;
@@ -11,26 +13,514 @@ import com.uber.h3core.exceptions.LineUndefinedException;
 import com.uber.h3core.exceptions.PentagonEncounteredException;
 import com.uber.h3core.util.GeoCoord;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 import java.util.stream.Collectors;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
+    private static final Logger logger = LoggerFactory.getLogger(H3AthenaUDFHandler.class);
+
     private static final String SOURCE_TYPE = "io.jyde.aws";
 
+    /** Resolutions by which the coverage of a paged <code>polyfill</code> is coarser. */
+    private static final int PAGE_COVERAGE_RESOLUTIONS = 3;
+
     private final H3Core h3Core;
+    private final IndexingEngine indexingEngine;
+    private final ResultCache resultCache;
+    private final CoverageCache coverageCache;
+    private final BatchExecutor batchExecutor;
+    private final NativeCells nativeCells;
+    private final CellPairs cellPairs;
+    private final UDFMetrics.NullReasons distanceNulls;
+    private final UDFMetrics.NullReasons lineNulls;
+    private final UDFMetrics.NullReasons edgeNulls;
+    private final Map<Method, BlockKernel> blockKernels;
+    private final Startup startup;
+    private final UDFMetrics metrics;
 
     public H3AthenaUDFHandler() throws IOException {
-        super(SOURCE_TYPE);
-        this.h3Core = H3Core.newInstance();
+        this(Startup.fromEnvironment());
+    }
+
+    /** Loads the native library and primes the handler as configured, see {@link Startup}. */
+    @VisibleForTesting
+    H3AthenaUDFHandler(Startup startup) throws IOException {
+        this(
+                startup.loadH3Core(),
+                IndexingEngine.fromEnvironment(),
+                ResultCache.fromEnvironment(),
+                BatchExecutor.fromEnvironment(),
+                CoverageCache.fromEnvironment(),
+                startup,
+                UDFMetrics.fromEnvironment());
+        startup.prime(this);
     }
 
     @VisibleForTesting
     H3AthenaUDFHandler(H3Core h3Core) {
+        this(h3Core, IndexingEngine.JNI, new ResultCache(0));
+    }
+
+    @VisibleForTesting
+    H3AthenaUDFHandler(H3Core h3Core, IndexingEngine indexingEngine) {
+        this(h3Core, indexingEngine, new ResultCache(0));
+    }
+
+    @VisibleForTesting
+    H3AthenaUDFHandler(H3Core h3Core, IndexingEngine indexingEngine, ResultCache resultCache) {
+        this(h3Core, indexingEngine, resultCache, BatchExecutor.SEQUENTIAL);
+    }
+
+    @VisibleForTesting
+    H3AthenaUDFHandler(
+            H3Core h3Core,
+            IndexingEngine indexingEngine,
+            ResultCache resultCache,
+            BatchExecutor batchExecutor) {
+        this(h3Core, indexingEngine, resultCache, batchExecutor, new UDFMetrics(null));
+    }
+
+    @VisibleForTesting
+    H3AthenaUDFHandler(
+            H3Core h3Core,
+            IndexingEngine indexingEngine,
+            ResultCache resultCache,
+            BatchExecutor batchExecutor,
+            UDFMetrics metrics) {
+        this(
+                h3Core,
+                indexingEngine,
+                resultCache,
+                batchExecutor,
+                new CoverageCache(CoverageCache.DEFAULT_MEGABYTES),
+                new Startup(null, 0),
+                metrics);
+    }
+
+    private H3AthenaUDFHandler(
+            H3Core h3Core,
+            IndexingEngine indexingEngine,
+            ResultCache resultCache,
+            BatchExecutor batchExecutor,
+            CoverageCache coverageCache,
+            Startup startup,
+            UDFMetrics metrics) {
         super(SOURCE_TYPE);
         this.h3Core = h3Core;
+        this.indexingEngine = indexingEngine;
+        this.resultCache = resultCache;
+        this.coverageCache = coverageCache;
+        this.batchExecutor = batchExecutor;
+        this.startup = startup;
+        this.metrics = metrics;
+        this.nativeCells = new NativeCells(h3Core);
+        this.cellPairs = new CellPairs(h3Core);
+        this.distanceNulls = metrics.nullReasons("h3_distance");
+        this.lineNulls = metrics.nullReasons("h3_line");
+        this.edgeNulls = metrics.nullReasons("get_h3_unidirectional_edge");
+        metrics.registerCache("ResultCache", resultCache);
+        metrics.registerCache("CoverageCache", coverageCache);
+        this.blockKernels = createBlockKernels();
+        logger.info(
+                "Using the {} indexing engine, {}, {}, {} and {}",
+                indexingEngine,
+                resultCache,
+                coverageCache,
+                batchExecutor,
+                metrics);
+    }
+
+    /**
+     * Evaluates a batch, see {@link #evaluateRows}, counts it in the {@link UDFMetrics} and writes
+     * them. The <code>UserDefinedFunctionHandler</code> processes a batch per invocation.
+     */
+    @Override
+    protected Block processRows(
+            BlockAllocator allocator, Method udfMethod, Block inputRecords, Schema outputSchema)
+            throws Exception {
+        int rowCount = inputRecords.getRowCount();
+        long startNanos = System.nanoTime();
+        try {
+            Block outputRecords = evaluateRows(allocator, udfMethod, inputRecords, outputSchema);
+            metrics.recordBatch(
+                    udfMethod,
+                    rowCount,
+                    outputRecords.getFieldVectors().get(0),
+                    System.nanoTime() - startNanos);
+            startup.onBatch(rowCount);
+            return outputRecords;
+        } catch (Throwable t) {
+            metrics.recordException(udfMethod, rowCount, System.nanoTime() - startNanos);
+            throw t;
+        } finally {
+            metrics.flush();
+        }
+    }
+
+    /**
+     * Evaluates UDFs that have a {@link BlockKernel} directly on the Arrow vectors of the batch.
+     * All other UDFs go through the row-at-a-time path of the <code>UserDefinedFunctionHandler
+     * </code>.
+     */
+    Block evaluateRows(
+            BlockAllocator allocator, Method udfMethod, Block inputRecords, Schema outputSchema)
+            throws Exception {
+        BlockKernel kernel = blockKernels.get(udfMethod);
+        int rowCount = inputRecords.getRowCount();
+        List<FieldVector> inputs = inputRecords.getFieldVectors();
+        if (kernel == null || !kernel.supports(inputs, rowCount)) {
+            return super.processRows(allocator, udfMethod, inputRecords, outputSchema);
+        }
+        Block outputRecords = allocator.createBlock(outputSchema);
+        try {
+            kernel.evaluate(inputs, outputRecords.getFieldVectors().get(0), rowCount);
+            outputRecords.setRowCount(rowCount);
+        } catch (Throwable t) {
+            try {
+                outputRecords.close();
+            } catch (Exception e) {
+                logger.error("Error closing output block", e);
+            }
+            throw t;
+        }
+        return outputRecords;
+    }
+
+    @VisibleForTesting
+    ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    @VisibleForTesting
+    CoverageCache getCoverageCache() {
+        return coverageCache;
+    }
+
+    private Map<Method, BlockKernel> createBlockKernels() {
+        Map<Method, BlockKernel> kernels = new HashMap<>();
+        kernels.put(
+                udfMethod("h3_is_valid", Long.class), BlockKernels.longToBoolean(H3Index::isValid));
+        kernels.put(
+                udfMethod("h3_get_base_cell", Long.class),
+                BlockKernels.longToInt(H3Index::getBaseCell));
+        kernels.put(
+                udfMethod("h3_is_pentagon", Long.class),
+                BlockKernels.longToBoolean(h3Core::h3IsPentagon));
+        kernels.put(
+                udfMethod("geo_to_h3", Double.class, Double.class, Integer.class),
+                BlockKernels.doubleDoubleIntToLong(
+                        (lat, lng, res) -> indexingEngine.geoToH3(h3Core, lat, lng, res)));
+        kernels.put(
+                udfMethod("geo_to_h3_multi", Double.class, Double.class, List.class),
+                BlockKernels.doubleDoubleIntsToLongs(this::geoToH3Multi));
+        kernels.put(
+                udfMethod("h3_to_geo_lat", Long.class),
+                BlockKernels.longToDouble(h3 -> h3Core.h3ToGeo(h3).lat));
+        kernels.put(
+                udfMethod("h3_to_geo_lng", Long.class),
+                BlockKernels.longToDouble(h3 -> h3Core.h3ToGeo(h3).lng));
+        kernels.put(
+                udfMethod(
+                        "point_dist",
+                        Double.class,
+                        Double.class,
+                        Double.class,
+                        Double.class,
+                        String.class),
+                BlockKernels.doubleQuadStringToDouble(
+                        unit -> {
+                            LengthUnit lengthUnit = LengthUnit.valueOf(unit);
+                            return (aLat, aLng, bLat, bLng) ->
+                                    pointDist(lengthUnit, aLat, aLng, bLat, bLng);
+                        }));
+        kernels.put(
+                udfMethod("h3_get_resolution", Long.class),
+                BlockKernels.longToInt(H3Index::getResolution));
+        kernels.put(
+                udfMethod("h3_to_parent", Long.class, Integer.class),
+                BlockKernels.longIntToLong(H3Index::toParent));
+        kernels.put(
+                udfMethod("h3_to_center_child", Long.class, Integer.class),
+                BlockKernels.longIntToLong(H3Index::toCenterChild));
+        kernels.put(
+                udfMethod("h3_is_res_class_iii", Long.class),
+                BlockKernels.longToBoolean(H3Index::isResClassIII));
+        kernels.put(
+                udfMethod("h3_indexes_are_neighbors", Long.class, Long.class),
+                BlockKernels.longLongToBoolean(h3Core::h3IndexesAreNeighbors));
+        kernels.put(
+                udfMethod("h3_unidirectional_edge_is_valid", Long.class),
+                BlockKernels.longToBoolean(h3Core::h3UnidirectionalEdgeIsValid));
+        kernels.put(
+                udfMethod("get_origin_h3_index_from_unidirectional_edge", Long.class),
+                BlockKernels.longToLong(h3Core::getOriginH3IndexFromUnidirectionalEdge));
+        kernels.put(
+                udfMethod("get_destination_h3_index_from_unidirectional_edge", Long.class),
+                BlockKernels.longToLong(h3Core::getDestinationH3IndexFromUnidirectionalEdge));
+
+        // the same functions of the addresses, read and written as the bytes of the vectors
+        kernels.put(
+                udfMethod("h3_is_valid", String.class),
+                BlockKernels.addressToBoolean(H3Index::isValid));
+        kernels.put(
+                udfMethod("h3_get_base_cell", String.class),
+                BlockKernels.addressToInt(H3Index::getBaseCell));
+        kernels.put(
+                udfMethod("h3_is_pentagon", String.class),
+                BlockKernels.addressToBoolean(h3Core::h3IsPentagon));
+        kernels.put(
+                udfMethod("h3_to_geo_lat", String.class),
+                BlockKernels.addressToDouble(h3 -> h3Core.h3ToGeo(h3).lat));
+        kernels.put(
+                udfMethod("h3_to_geo_lng", String.class),
+                BlockKernels.addressToDouble(h3 -> h3Core.h3ToGeo(h3).lng));
+        kernels.put(
+                udfMethod("h3_get_resolution", String.class),
+                BlockKernels.addressToInt(H3Index::getResolution));
+        kernels.put(
+                udfMethod("h3_to_parent_address", String.class, Integer.class),
+                BlockKernels.addressIntToAddress(H3Index::toParent));
+        kernels.put(
+                udfMethod("h3_to_center_child", String.class, Integer.class),
+                BlockKernels.addressIntToAddress(H3Index::toCenterChild));
+        kernels.put(
+                udfMethod("h3_is_res_class_iii", String.class),
+                BlockKernels.addressToBoolean(H3Index::isResClassIII));
+        kernels.put(
+                udfMethod("h3_indexes_are_neighbors", String.class, String.class),
+                BlockKernels.addressAddressToBoolean(h3Core::h3IndexesAreNeighbors));
+        kernels.put(
+                udfMethod("h3_unidirectional_edge_is_valid", String.class),
+                BlockKernels.addressToBoolean(h3Core::h3UnidirectionalEdgeIsValid));
+        kernels.put(
+                udfMethod("get_origin_h3_index_from_unidirectional_edge", String.class),
+                BlockKernels.addressToAddress(h3Core::getOriginH3IndexFromUnidirectionalEdge));
+        kernels.put(
+                udfMethod("get_destination_h3_index_from_unidirectional_edge", String.class),
+                BlockKernels.addressToAddress(h3Core::getDestinationH3IndexFromUnidirectionalEdge));
+        kernels.put(udfMethod("h3_to_string", Long.class), BlockKernels.longToAddress(h3 -> h3));
+        kernels.put(udfMethod("string_to_h3", String.class), BlockKernels.addressToLong(h3 -> h3));
+
+        // evaluated once per distinct cell of the batch, in parallel for the expensive UDFs
+        kernels.put(udfMethod("h3_to_geo", Long.class), DistinctCellKernel.of(this::h3_to_geo));
+        kernels.put(
+                udfMethod("h3_to_geo_boundary", Long.class),
+                DistinctCellKernel.of(batchExecutor, this::h3_to_geo_boundary));
+        kernels.put(
+                udfMethod("h3_to_geo_coords", Long.class),
+                DistinctCellKernel.of(this::h3ToGeoCoords));
+        kernels.put(
+                udfMethod("h3_to_geo_boundary_coords", Long.class),
+                DistinctCellKernel.of(batchExecutor, this::h3ToGeoBoundaryCoords));
+        kernels.put(
+                udfMethod("h3_get_faces", Long.class), DistinctCellKernel.of(this::h3_get_faces));
+        kernels.put(
+                udfMethod("get_h3_unidirectional_edge_boundary", Long.class),
+                DistinctCellKernel.of(this::get_h3_unidirectional_edge_boundary));
+        kernels.put(
+                udfMethod("k_ring_compact", Long.class, Integer.class),
+                new DistinctCellKernel(
+                        batchExecutor,
+                        arguments -> {
+                            int k = (Integer) arguments[1];
+                            return h3 -> kRingCompact(h3, k);
+                        }));
+        kernels.put(
+                udfMethod("k_ring_distances", Long.class, Integer.class),
+                new DistinctCellKernel(
+                        batchExecutor,
+                        arguments -> {
+                            int k = (Integer) arguments[1];
+                            return h3 -> kRingDistances(h3, k);
+                        }));
+        kernels.put(
+                udfMethod("cell_area", Long.class, String.class),
+                new DistinctCellKernel(
+                        batchExecutor,
+                        arguments -> {
+                            AreaUnit unit = AreaUnit.valueOf((String) arguments[1]);
+                            return h3 -> cellArea(h3, unit);
+                        }));
+        kernels.put(
+                udfMethod("exact_edge_length", Long.class, String.class),
+                new DistinctCellKernel(
+                        arguments -> {
+                            LengthUnit unit = LengthUnit.valueOf((String) arguments[1]);
+                            return edge -> h3Core.exactEdgeLength(edge, unit);
+                        }));
+
+        // a coverage compiled once per batch, and looked up once per distinct cell
+        kernels.put(
+                udfMethod("h3_in_polygon", Long.class, List.class, List.class, Integer.class),
+                new DistinctCellKernel(
+                        arguments -> {
+                            @SuppressWarnings("unchecked")
+                            PolygonCoverage coverage =
+                                    pointsCoverage(
+                                            (List<String>) arguments[1],
+                                            (List<List<String>>) arguments[2],
+                                            (Integer) arguments[3]);
+                            return coverage::contains;
+                        }));
+        kernels.put(
+                udfMethod("h3_in_polygon", Long.class, byte[].class, Integer.class),
+                new DistinctCellKernel(
+                        arguments -> {
+                            PolygonCoverage coverage =
+                                    wkbCoverage((byte[]) arguments[1], (Integer) arguments[2]);
+                            return coverage::contains;
+                        }));
+        kernels.put(
+                udfMethod("h3_in_polygon", Long.class, String.class, Integer.class),
+                new DistinctCellKernel(
+                        arguments -> {
+                            PolygonCoverage coverage =
+                                    wktCoverage((String) arguments[1], (Integer) arguments[2]);
+                            return coverage::contains;
+                        }));
+
+        // a set decoded once per batch, and looked up once per distinct cell
+        kernels.put(
+                udfMethod("h3_cell_set_contains", Long.class, byte[].class),
+                new DistinctCellKernel(
+                        arguments -> {
+                            CellSet set = CellSet.decode((byte[]) arguments[1]);
+                            return set::contains;
+                        }));
+
+        // written to the output list without boxing, in parallel, of indexes or addresses
+        BlockKernel kRing =
+                new CellListKernel(
+                        batchExecutor,
+                        false,
+                        (h3, k, scratch, out) -> {
+                            nativeCells.kRing(h3, (int) k, scratch, out);
+                            return true;
+                        });
+        kernels.put(udfMethod("k_ring", Long.class, Integer.class), kRing);
+        kernels.put(udfMethod("k_ring", String.class, Integer.class), kRing);
+        BlockKernel hexRing =
+                new CellListKernel(
+                        batchExecutor,
+                        false,
+                        (h3, k, scratch, out) -> {
+                            nativeCells.hexRing(h3, (int) k, scratch, out);
+                            return true;
+                        });
+        kernels.put(udfMethod("hex_ring", Long.class, Integer.class), hexRing);
+        kernels.put(udfMethod("hex_ring", String.class, Integer.class), hexRing);
+        BlockKernel line =
+                new CellListKernel(
+                        batchExecutor,
+                        true,
+                        (start, end, scratch, out) -> {
+                            UDFMetrics.NullReason reason = cellPairs.checkPath(start, end);
+                            if (reason != null) {
+                                lineNulls.record(reason);
+                                return false;
+                            }
+                            try {
+                                nativeCells.h3Line(start, end, scratch, out);
+                                return true;
+                            } catch (LineUndefinedException e) {
+                                lineNulls.record(UDFMetrics.NullReason.UNDEFINED);
+                                return false;
+                            }
+                        });
+        kernels.put(udfMethod("h3_line", Long.class, Long.class), line);
+        kernels.put(udfMethod("h3_line", String.class, String.class), line);
+        BlockKernel children =
+                new CellListKernel(
+                        batchExecutor,
+                        false,
+                        (h3, childRes, scratch, out) -> {
+                            nativeCells.h3ToChildren(h3, (int) childRes, scratch, out);
+                            return true;
+                        });
+        kernels.put(udfMethod("h3_to_children", Long.class, Integer.class), children);
+        kernels.put(udfMethod("h3_to_children", String.class, Integer.class), children);
+        BlockKernel edgesFromHexagon =
+                new CellListKernel(
+                        batchExecutor,
+                        false,
+                        (h3, unused, scratch, out) -> {
+                            nativeCells.edgesFromHexagon(h3, scratch, out);
+                            return true;
+                        });
+        kernels.put(
+                udfMethod("get_h3_unidirectional_edges_from_hexagon", Long.class),
+                edgesFromHexagon);
+        kernels.put(
+                udfMethod("get_h3_unidirectional_edges_from_hexagon", String.class),
+                edgesFromHexagon);
+
+        // evaluated row by row, in parallel
+        for (Method method :
+                new Method[] {
+                    udfMethod("polyfill", List.class, List.class, Integer.class),
+                    udfMethod("polyfill_address", List.class, List.class, Integer.class),
+                    udfMethod("polyfill_compact", List.class, List.class, Integer.class),
+                    udfMethod("polyfill_address_compact", List.class, List.class, Integer.class),
+                    udfMethod("polyfill", byte[].class, Integer.class),
+                    udfMethod("polyfill", String.class, Integer.class),
+                    udfMethod("polyfill_address", byte[].class, Integer.class),
+                    udfMethod("polyfill_address", String.class, Integer.class),
+                    udfMethod("polyfill_compact", byte[].class, Integer.class),
+                    udfMethod("polyfill_compact", String.class, Integer.class),
+                    udfMethod("polyfill_address_compact", byte[].class, Integer.class),
+                    udfMethod("polyfill_address_compact", String.class, Integer.class),
+                    udfMethod(
+                            "polyfill_page",
+                            List.class,
+                            List.class,
+                            Integer.class,
+                            Long.class,
+                            Integer.class),
+                    udfMethod(
+                            "polyfill_page",
+                            byte[].class,
+                            Integer.class,
+                            Long.class,
+                            Integer.class),
+                    udfMethod(
+                            "polyfill_page",
+                            String.class,
+                            Integer.class,
+                            Long.class,
+                            Integer.class),
+                    udfMethod("polyfill_count", List.class, List.class, Integer.class),
+                    udfMethod("polyfill_count", byte[].class, Integer.class),
+                    udfMethod("polyfill_count", String.class, Integer.class),
+                    udfMethod("h3_cell_set", List.class),
+                    udfMethod("h3_set_to_multipolygon", List.class),
+                    udfMethod("h3_set_to_multipolygon_wkb", List.class),
+                    udfMethod("h3_trajectory", List.class, List.class, Integer.class),
+                    udfMethod("h3_trajectory_edges", List.class, List.class, Integer.class),
+                    udfMethod("k_ring_compact", String.class, Integer.class),
+                    udfMethod("h3_to_geo_boundary", String.class),
+                    udfMethod("cell_area", String.class, String.class)
+                }) {
+            kernels.put(method, new ParallelRowKernel(batchExecutor, this, method));
+        }
+        return kernels;
+    }
+
+    private static Method udfMethod(String name, Class<?>... parameterTypes) {
+        try {
+            return H3AthenaUDFHandler.class.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("No UDF method " + name, e);
+        }
     }
 
     /** Returns true if this is a valid H3 index. */
@@ -38,7 +528,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return h3Core.h3IsValid(h3);
+        return H3Index.isValid(h3);
     }
 
     /** Returns true if this is a valid H3 index. */
@@ -46,7 +536,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3_address == null) {
             return null;
         }
-        return h3Core.h3IsValid(h3_address);
+        return H3Index.isValid(h3Core.stringToH3(h3_address));
     }
 
     /** Returns the base cell number for this index. */
@@ -54,12 +544,15 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return h3Core.h3GetBaseCell(h3);
+        return H3Index.getBaseCell(h3);
     }
 
     /** Returns the base cell number for this index. */
     public Integer h3_get_base_cell(String h3_address) {
-        return h3Core.h3GetBaseCell(h3_address);
+        if (h3_address == null) {
+            return null;
+        }
+        return H3Index.getBaseCell(h3Core.stringToH3(h3_address));
     }
 
     /** Returns <code>true</code> if this index is one of twelve pentagons per resolution. */
@@ -91,7 +584,44 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (lat == null || lng == null) {
             return null;
         }
-        return h3Core.geoToH3(lat, lng, res);
+        return indexingEngine.geoToH3(h3Core, lat, lng, res);
+    }
+
+    /**
+     * Find the H3 indexes of the cells of several resolutions containing the lat/lon (in degrees).
+     *
+     * <p>The point is indexed once, at the finest of the resolutions, and the indexes of the
+     * coarser resolutions are the parents of that index, as with <code>h3_to_parent(geo_to_h3(lat,
+     * lng, finest), res)</code>. Since the children of a cell do not exactly cover it, a point near
+     * the edge of a coarser cell may be in its neighbor according to <code>geo_to_h3</code> at that
+     * resolution.
+     *
+     * @param lat Latitude in degrees.
+     * @param lng Longitude in degrees.
+     * @param resolutions Resolutions, 0 &lt;= res &lt;= 15, in any order.
+     * @return The H3 index at each of the resolutions, in their order.
+     * @throws IllegalArgumentException Latitude, longitude, or a resolution is out of range, or a
+     *     resolution is <code>null</code>.
+     */
+    public List<Long> geo_to_h3_multi(Double lat, Double lng, List<Integer> resolutions)
+            throws IllegalArgumentException {
+        if (lat == null || lng == null || resolutions == null) {
+            return null;
+        }
+        int[] res = new int[resolutions.size()];
+        for (int i = 0; i < res.length; i++) {
+            if (resolutions.get(i) == null) {
+                throw new IllegalArgumentException("Null resolution in geo_to_h3_multi");
+            }
+            res[i] = resolutions.get(i);
+        }
+        long[] cells = new long[res.length];
+        geoToH3Multi(lat, lng, res, cells);
+        List<Long> result = new ArrayList<>(cells.length);
+        for (long cell : cells) {
+            result.add(cell);
+        }
+        return result;
     }
 
     /**
@@ -108,7 +638,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (lat == null || lng == null) {
             return null;
         }
-        return h3Core.geoToH3Address(lat, lng, res);
+        return h3Core.h3ToString(indexingEngine.geoToH3(h3Core, lat, lng, res));
     }
 
     /** Find the latitude, longitude (both in degrees) center point of the cell. */
@@ -116,7 +646,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return geoCoordToWKTPoint(h3Core.h3ToGeo(h3));
+        return resultCache.get(h3, ResultCache.H3_TO_GEO, this::h3ToGeo);
     }
 
     /** Find the latitude, longitude (degrees) center point of the cell. */
@@ -124,7 +654,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3_address == null) {
             return null;
         }
-        return geoCoordToWKTPoint(h3Core.h3ToGeo(h3_address));
+        return resultCache.get(h3Core.stringToH3(h3_address), ResultCache.H3_TO_GEO, this::h3ToGeo);
     }
 
     /**
@@ -138,9 +668,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return h3Core.h3ToGeoBoundary(h3).stream()
-                .map(this::geoCoordToWKTPoint)
-                .collect(Collectors.toList());
+        return resultCache.get(h3, ResultCache.H3_TO_GEO_BOUNDARY, this::h3ToGeoBoundary);
     }
 
     /**
@@ -154,9 +682,97 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3_address == null) {
             return null;
         }
-        return h3Core.h3ToGeoBoundary(h3_address).stream()
-                .map(this::geoCoordToWKTPoint)
-                .collect(Collectors.toList());
+        return resultCache.get(
+                h3Core.stringToH3(h3_address),
+                ResultCache.H3_TO_GEO_BOUNDARY,
+                this::h3ToGeoBoundary);
+    }
+
+    /** Find the latitude (degrees) of the center point of the cell. */
+    public Double h3_to_geo_lat(Long h3) {
+        if (h3 == null) {
+            return null;
+        }
+        return h3Core.h3ToGeo(h3).lat;
+    }
+
+    /** Find the latitude (degrees) of the center point of the cell. */
+    public Double h3_to_geo_lat(String h3_address) throws IllegalArgumentException {
+        if (h3_address == null) {
+            return null;
+        }
+        return h3_to_geo_lat(h3Core.stringToH3(h3_address));
+    }
+
+    /** Find the longitude (degrees) of the center point of the cell. */
+    public Double h3_to_geo_lng(Long h3) {
+        if (h3 == null) {
+            return null;
+        }
+        return h3Core.h3ToGeo(h3).lng;
+    }
+
+    /** Find the longitude (degrees) of the center point of the cell. */
+    public Double h3_to_geo_lng(String h3_address) throws IllegalArgumentException {
+        if (h3_address == null) {
+            return null;
+        }
+        return h3_to_geo_lng(h3Core.stringToH3(h3_address));
+    }
+
+    /**
+     * Find the center point of the cell as numbers, rather than as a WKT Point string.
+     *
+     * @param h3 H3 index.
+     * @return Latitude and longitude (degrees), <code>[lat, lng]</code>.
+     */
+    public List<Double> h3_to_geo_coords(Long h3) {
+        if (h3 == null) {
+            return null;
+        }
+        return toList(h3ToGeoCoords(h3));
+    }
+
+    /**
+     * Find the center point of the cell as numbers, rather than as a WKT Point string.
+     *
+     * @param h3_address H3 index address.
+     * @return Latitude and longitude (degrees), <code>[lat, lng]</code>.
+     */
+    public List<Double> h3_to_geo_coords(String h3_address) throws IllegalArgumentException {
+        if (h3_address == null) {
+            return null;
+        }
+        return h3_to_geo_coords(h3Core.stringToH3(h3_address));
+    }
+
+    /**
+     * Find the cell boundary as numbers, rather than as a list of WKT Point strings.
+     *
+     * @param h3 H3 index.
+     * @return Latitude and longitude (degrees) of each vertex in turn, <code>[lat0, lng0, lat1,
+     *     lng1, ...]</code>.
+     */
+    public List<Double> h3_to_geo_boundary_coords(Long h3) {
+        if (h3 == null) {
+            return null;
+        }
+        return toList(h3ToGeoBoundaryCoords(h3));
+    }
+
+    /**
+     * Find the cell boundary as numbers, rather than as a list of WKT Point strings.
+     *
+     * @param h3_address H3 index address.
+     * @return Latitude and longitude (degrees) of each vertex in turn, <code>[lat0, lng0, lat1,
+     *     lng1, ...]</code>.
+     */
+    public List<Double> h3_to_geo_boundary_coords(String h3_address)
+            throws IllegalArgumentException {
+        if (h3_address == null) {
+            return null;
+        }
+        return h3_to_geo_boundary_coords(h3Core.stringToH3(h3_address));
     }
 
     /**
@@ -189,6 +805,140 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         return h3Core.kRing(h3_address, k);
     }
 
+    /**
+     * Neighboring indexes in all directions, with their grid distances from the origin, from a
+     * single traversal.
+     *
+     * <p>The two arrays are parallel, so that <code>
+     * CROSS JOIN UNNEST(r[1], r[2]) AS t(neighbor, distance)</code> pairs each neighbor with its
+     * distance.
+     *
+     * @param h3 Origin index.
+     * @param k Number of rings around the origin.
+     * @return Two arrays: the H3 indexes within k cells of the origin, nearest first, and the grid
+     *     distance of each one.
+     * @throws IllegalArgumentException <code>k</code> is negative.
+     */
+    public List<List<Long>> k_ring_distances(Long h3, Integer k) throws IllegalArgumentException {
+        if (h3 == null || k == null) {
+            return null;
+        }
+        return kRingDistances(h3, k);
+    }
+
+    /**
+     * Neighboring indexes in all directions, compacted.
+     *
+     * <p>The rings around the origin are compacted one at a time, without expanding the whole
+     * <code>k_ring</code>.
+     *
+     * @param h3 Origin index.
+     * @param k Number of rings around the origin.
+     * @return The compacted set of the H3 indexes within k cells of the origin, at possibly coarser
+     *     resolutions.
+     * @throws IllegalArgumentException
+     */
+    public List<Long> k_ring_compact(Long h3, Integer k) throws IllegalArgumentException {
+        if (h3 == null) {
+            return null;
+        }
+        return kRingCompact(h3, k);
+    }
+
+    /**
+     * Neighboring addresses in all directions, compacted.
+     *
+     * @param h3_address Origin index address.
+     * @param k Number of rings around the origin.
+     * @return The compacted set of the H3 index addresses within k cells of the origin, at possibly
+     *     coarser resolutions.
+     * @throws IllegalArgumentException
+     */
+    public List<String> k_ring_compact(String h3_address, Integer k)
+            throws IllegalArgumentException {
+        if (h3_address == null) {
+            return null;
+        }
+        return kRingCompact(h3Core.stringToH3(h3_address), k).stream()
+                .map(h3Core::h3ToString)
+                .collect(Collectors.toList());
+    }
+
+    private void geoToH3Multi(double lat, double lng, int[] resolutions, long[] out) {
+        int finest = -1;
+        for (int res : resolutions) {
+            if (res < 0 || res > H3Index.MAX_RES) {
+                throw new IllegalArgumentException(
+                        String.format(
+                                "resolution %d is out of range (must be 0 <= res <= 15)", res));
+            }
+            finest = Math.max(finest, res);
+        }
+        if (finest < 0) {
+            return;
+        }
+        long cell = indexingEngine.geoToH3(h3Core, lat, lng, finest);
+        for (int i = 0; i < resolutions.length; i++) {
+            out[i] = H3Index.toParent(cell, resolutions[i]);
+        }
+    }
+
+    private List<List<Long>> kRingDistances(long h3, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be >= 0, was " + k);
+        }
+        CellBuffer cells = new CellBuffer();
+        CellBuffer distances = new CellBuffer();
+        nativeCells.kRingDistances(h3, k, new CellBuffer(), cells, distances);
+        return Arrays.asList(toList(cells), toList(distances));
+    }
+
+    private Trajectory trajectory(
+            List<Double> lats, List<Double> lngs, int res, boolean withEdges) {
+        if (lats.size() != lngs.size()) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "%d latitudes for %d longitudes of a track", lats.size(), lngs.size()));
+        }
+        Trajectory trajectory =
+                new Trajectory(
+                        h3Core, nativeCells, indexingEngine, res, lats.size() + 1, withEdges);
+        for (int i = 0; i < lats.size(); i++) {
+            Double lat = lats.get(i);
+            Double lng = lngs.get(i);
+            if (lat != null && lng != null) {
+                trajectory.add(lat, lng);
+            }
+        }
+        return trajectory;
+    }
+
+    private static List<Long> toList(CellBuffer buffer) {
+        List<Long> list = new ArrayList<>(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            list.add(buffer.cells()[i]);
+        }
+        return list;
+    }
+
+    private List<Long> kRingCompact(long h3, int k) {
+        CellCompactor compactor = new CellCompactor(h3Core.h3GetResolution(h3));
+        try {
+            for (int ring = 0; ring <= k; ring++) {
+                for (long cell : h3Core.hexRing(h3, ring)) {
+                    compactor.add(cell);
+                }
+            }
+        } catch (PentagonEncounteredException e) {
+            // the rings around pentagons are irregular, k_ring handles them at once
+            compactor = new CellCompactor(h3Core.h3GetResolution(h3));
+            for (long cell : h3Core.kRing(h3, k)) {
+                compactor.add(cell);
+            }
+        }
+        return compactor.cells();
+    }
+
     /**
      * Returns in order neighbor traversal, of indexes with distance of <code>k</code>.
      *
@@ -223,15 +973,19 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
      * Returns the distance between <code>a</code> and <code>b</code>. This is the grid distance, or
      * distance expressed in number of H3 cells.
      *
-     * <p>In some cases H3 cannot compute the distance between two indexes. This can happen because:
+     * <p>In some cases H3 cannot compute the distance between two indexes, and <code>NULL</code> is
+     * returned. This can happen because:
      *
      * <ul>
-     *   <li>The indexes are not comparable (difference resolutions, etc)
-     *   <li>The distance is greater than the H3 core library supports
+     *   <li>An index is not a valid cell
+     *   <li>The distance is greater than the H3 core library supports, that is the base cells of
+     *       the two cells are not neighbors
      *   <li>The H3 library does not support finding the distance between the two cells, because of
      *       pentagonal distortion.
      * </ul>
      *
+     * <p>All but the last are checked on the indexes, without calling H3.
+     *
      * @param a An H3 index.
      * @param b Another H3 index.
      * @return Distance between the two in grid cells.
@@ -242,31 +996,26 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (a == null || b == null) {
             return null;
         }
-        try {
-            return h3Core.h3Distance(a, b);
-        } catch (DistanceUndefinedException e) {
-            if (h3Core.h3GetResolution(a) != h3Core.h3GetResolution(b)) {
-                throw new RuntimeException(
-                        "The H3 library does not support finding the distance between the two cells with different resolutions.",
-                        e);
-            }
-            return null;
-        }
+        return distance(a, b);
     }
 
     /**
      * Returns the distance between <code>a</code> and <code>b</code>. This is the grid distance, or
      * distance expressed in number of H3 cells.
      *
-     * <p>In some cases H3 cannot compute the distance between two indexes. This can happen because:
+     * <p>In some cases H3 cannot compute the distance between two indexes, and <code>NULL</code> is
+     * returned. This can happen because:
      *
      * <ul>
-     *   <li>The indexes are not comparable (difference resolutions, etc)
-     *   <li>The distance is greater than the H3 core library supports
+     *   <li>An index is not a valid cell
+     *   <li>The distance is greater than the H3 core library supports, that is the base cells of
+     *       the two cells are not neighbors
      *   <li>The H3 library does not support finding the distance between the two cells, because of
      *       pentagonal distortion.
      * </ul>
      *
+     * <p>All but the last are checked on the indexes, without calling H3.
+     *
      * @param a An H3 index address.
      * @param b Another H3 index address.
      * @return Distance between the two in grid cells.
@@ -277,15 +1026,22 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (a == null || b == null) {
             return null;
         }
+        return distance(h3Core.stringToH3(a), h3Core.stringToH3(b));
+    }
+
+    private Integer distance(long a, long b) {
+        UDFMetrics.NullReason reason = cellPairs.checkPath(a, b);
+        if (reason == UDFMetrics.NullReason.RESOLUTION_MISMATCH) {
+            throw new RuntimeException(
+                    "The H3 library does not support finding the distance between the two cells with different resolutions.");
+        }
+        if (reason != null) {
+            return distanceNulls.record(reason);
+        }
         try {
             return h3Core.h3Distance(a, b);
         } catch (DistanceUndefinedException e) {
-            if (h3Core.h3GetResolution(a) != h3Core.h3GetResolution(b)) {
-                throw new RuntimeException(
-                        "The H3 library does not support finding the distance between the two cells with different resolutions.",
-                        e);
-            }
-            return null;
+            return distanceNulls.record(UDFMetrics.NullReason.UNDEFINED);
         }
     }
 
@@ -293,8 +1049,8 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
      * Given two H3 indexes, return the line of indexes between them (inclusive of endpoints).
      *
      * <p>This function may fail to find the line between two indexes, for example if they are very
-     * far apart. It may also fail when finding distances for indexes on opposite sides of a
-     * pentagon.
+     * far apart or have different resolutions. It may also fail when finding distances for indexes
+     * on opposite sides of a pentagon. Then <code>NULL</code> is returned.
      *
      * <p>Notes:
      *
@@ -316,10 +1072,14 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (start == null || end == null) {
             return null;
         }
+        UDFMetrics.NullReason reason = cellPairs.checkPath(start, end);
+        if (reason != null) {
+            return lineNulls.record(reason);
+        }
         try {
             return h3Core.h3Line(start, end);
         } catch (LineUndefinedException e) {
-            return null;
+            return lineNulls.record(UDFMetrics.NullReason.UNDEFINED);
         }
     }
 
@@ -327,8 +1087,8 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
      * Given two H3 indexes, return the line of indexes between them (inclusive of endpoints).
      *
      * <p>This function may fail to find the line between two indexes, for example if they are very
-     * far apart. It may also fail when finding distances for indexes on opposite sides of a
-     * pentagon.
+     * far apart or have different resolutions. It may also fail when finding distances for indexes
+     * on opposite sides of a pentagon. Then <code>NULL</code> is returned.
      *
      * <p>Notes:
      *
@@ -350,16 +1110,59 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (start_address == null || end_address == null) {
             return null;
         }
+        UDFMetrics.NullReason reason =
+                cellPairs.checkPath(
+                        h3Core.stringToH3(start_address), h3Core.stringToH3(end_address));
+        if (reason != null) {
+            return lineNulls.record(reason);
+        }
         try {
             return h3Core.h3Line(start_address, end_address);
         } catch (LineUndefinedException e) {
+            return lineNulls.record(UDFMetrics.NullReason.UNDEFINED);
+        }
+    }
+
+    /**
+     * Returns the path of cells of a track: the cell of each point, without repeating the cell of
+     * the point before, and the cells of <code>h3_line</code> between cells that are not neighbors,
+     * so that each cell of the path is a neighbor of the one before. Where <code>h3_line</code> is
+     * undefined, as across a pentagon, the gap is filled with the cells along the track instead,
+     * see {@link Trajectory}. Points with a null coordinate are skipped.
+     *
+     * @param lats Latitudes of the points of the track, in degrees.
+     * @param lngs Longitudes of the points of the track, in degrees, in the order of the latitudes.
+     * @param res Resolution of the cells.
+     * @return The cells of the path.
+     * @throws IllegalArgumentException The arrays have different lengths, or a latitude, longitude
+     *     or the resolution is out of range.
+     */
+    public List<Long> h3_trajectory(List<Double> lats, List<Double> lngs, Integer res) {
+        if (lats == null || lngs == null || res == null) {
+            return null;
+        }
+        return toList(trajectory(lats, lngs, res, false).cells());
+    }
+
+    /**
+     * Returns the unidirectional edges from each cell of the path of a track to the next, as in
+     * {@link #h3_trajectory(List, List, Integer)}, in one call.
+     *
+     * @throws IllegalArgumentException The arrays have different lengths, or a latitude, longitude
+     *     or the resolution is out of range.
+     */
+    public List<Long> h3_trajectory_edges(List<Double> lats, List<Double> lngs, Integer res) {
+        if (lats == null || lngs == null || res == null) {
             return null;
         }
+        return toList(trajectory(lats, lngs, res, true).edges());
     }
 
     /**
      * Finds indexes within the given geofence.
      *
+     * <p>Large geofences are filled in latitude bands, in parallel, see {@link TiledPolyfill}.
+     *
      * @param points Outline geofence as a list of WKT Points.
      * @param holes Geofences of any internal holes as a list of lists containing WKT Points.
      * @param res Resolution of the desired indexes.
@@ -375,16 +1178,16 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
             holes = new ArrayList<List<String>>();
         }
         List<GeoCoord> geoCoordPoints =
-                points.stream().map(this::geoCoordFromWKTPoint).collect(Collectors.toList());
+                points.stream().map(WKTPoints::toGeoCoord).collect(Collectors.toList());
         List<List<GeoCoord>> geoCoordHoles =
                 holes.stream()
                         .map(
                                 x ->
                                         x.stream()
-                                                .map(this::geoCoordFromWKTPoint)
+                                                .map(WKTPoints::toGeoCoord)
                                                 .collect(Collectors.toList()))
                         .collect(Collectors.toList());
-        return h3Core.polyfill(geoCoordPoints, geoCoordHoles, res);
+        return TiledPolyfill.polyfill(h3Core, batchExecutor, geoCoordPoints, geoCoordHoles, res);
     }
 
     /**
@@ -406,16 +1209,438 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
             holes = new ArrayList<List<String>>();
         }
         List<GeoCoord> geoCoordPoints =
-                points.stream().map(this::geoCoordFromWKTPoint).collect(Collectors.toList());
+                points.stream().map(WKTPoints::toGeoCoord).collect(Collectors.toList());
+        List<List<GeoCoord>> geoCoordHoles =
+                holes.stream()
+                        .map(
+                                x ->
+                                        x.stream()
+                                                .map(WKTPoints::toGeoCoord)
+                                                .collect(Collectors.toList()))
+                        .collect(Collectors.toList());
+        return TiledPolyfill.polyfill(h3Core, batchExecutor, geoCoordPoints, geoCoordHoles, res)
+                .stream()
+                .map(h3Core::h3ToString)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Finds indexes within the given geofence, compacted.
+     *
+     * <p>The geofence is filled and compacted in latitude bands, without expanding the whole <code>
+     * polyfill</code>.
+     *
+     * @param points Outline geofence as a list of WKT Points.
+     * @param holes Geofences of any internal holes as a list of lists containing WKT Points.
+     * @param res Resolution of the finest indexes.
+     * @return The compacted set of the indexes making up the area enclosed by points minus the area
+     *     enclosed by holes, at possibly coarser resolutions.
+     * @throws IllegalArgumentException Invalid resolution.
+     */
+    public List<Long> polyfill_compact(List<String> points, List<List<String>> holes, Integer res)
+            throws IllegalArgumentException {
+        if (points == null) {
+            return null;
+        }
+        if (holes == null) {
+            holes = new ArrayList<List<String>>();
+        }
+        List<GeoCoord> geoCoordPoints =
+                points.stream().map(WKTPoints::toGeoCoord).collect(Collectors.toList());
         List<List<GeoCoord>> geoCoordHoles =
                 holes.stream()
                         .map(
                                 x ->
                                         x.stream()
-                                                .map(this::geoCoordFromWKTPoint)
+                                                .map(WKTPoints::toGeoCoord)
                                                 .collect(Collectors.toList()))
                         .collect(Collectors.toList());
-        return h3Core.polyfillAddress(geoCoordPoints, geoCoordHoles, res);
+        return TiledPolyfill.polyfillCompact(
+                h3Core, batchExecutor, geoCoordPoints, geoCoordHoles, res);
+    }
+
+    /**
+     * Finds indexes within the given geofence, compacted.
+     *
+     * @param points Outline geofence as a list of WKT Points.
+     * @param holes Geofences of any internal holes as a list of lists containing WKT Points.
+     * @param res Resolution of the finest indexes.
+     * @return The compacted set of the index addresses making up the area enclosed by points minus
+     *     the area enclosed by holes, at possibly coarser resolutions.
+     * @throws IllegalArgumentException Invalid resolution.
+     */
+    public List<String> polyfill_address_compact(
+            List<String> points, List<List<String>> holes, Integer res)
+            throws IllegalArgumentException {
+        List<Long> cells = polyfill_compact(points, holes, res);
+        if (cells == null) {
+            return null;
+        }
+        return cells.stream().map(h3Core::h3ToString).collect(Collectors.toList());
+    }
+
+    /**
+     * Finds indexes within the polygons of a WKB geometry, such as that of <code>ST_AsBinary</code>
+     * .
+     *
+     * @param wkb A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKB.
+     * @param res Resolution of the desired indexes.
+     * @return Indexes making up the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public List<Long> polyfill(byte[] wkb, Integer res) throws IllegalArgumentException {
+        if (wkb == null) {
+            return null;
+        }
+        return TiledPolyfill.polyfill(h3Core, batchExecutor, Polygons.fromWKB(wkb), res);
+    }
+
+    /**
+     * Finds indexes within the polygons of a WKT geometry, such as that of <code>ST_AsText</code>.
+     *
+     * @param wkt A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKT.
+     * @param res Resolution of the desired indexes.
+     * @return Indexes making up the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public List<Long> polyfill(String wkt, Integer res) throws IllegalArgumentException {
+        if (wkt == null) {
+            return null;
+        }
+        return TiledPolyfill.polyfill(h3Core, batchExecutor, Polygons.fromWKT(wkt), res);
+    }
+
+    /**
+     * Finds indexes within the polygons of a WKB geometry.
+     *
+     * @param wkb A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKB.
+     * @param res Resolution of the desired indexes.
+     * @return Index addresses making up the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public List<String> polyfill_address(byte[] wkb, Integer res) throws IllegalArgumentException {
+        return toAddresses(polyfill(wkb, res));
+    }
+
+    /**
+     * Finds indexes within the polygons of a WKT geometry.
+     *
+     * @param wkt A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKT.
+     * @param res Resolution of the desired indexes.
+     * @return Index addresses making up the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public List<String> polyfill_address(String wkt, Integer res) throws IllegalArgumentException {
+        return toAddresses(polyfill(wkt, res));
+    }
+
+    /**
+     * Finds indexes within the polygons of a WKB geometry, compacted across polygons.
+     *
+     * @param wkb A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKB.
+     * @param res Resolution of the finest indexes.
+     * @return The compacted set of the indexes making up the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public List<Long> polyfill_compact(byte[] wkb, Integer res) throws IllegalArgumentException {
+        if (wkb == null) {
+            return null;
+        }
+        return TiledPolyfill.polyfillCompact(h3Core, batchExecutor, Polygons.fromWKB(wkb), res);
+    }
+
+    /**
+     * Finds indexes within the polygons of a WKT geometry, compacted across polygons.
+     *
+     * @param wkt A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKT.
+     * @param res Resolution of the finest indexes.
+     * @return The compacted set of the indexes making up the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public List<Long> polyfill_compact(String wkt, Integer res) throws IllegalArgumentException {
+        if (wkt == null) {
+            return null;
+        }
+        return TiledPolyfill.polyfillCompact(h3Core, batchExecutor, Polygons.fromWKT(wkt), res);
+    }
+
+    /**
+     * Finds indexes within the polygons of a WKB geometry, compacted across polygons.
+     *
+     * @param wkb A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKB.
+     * @param res Resolution of the finest indexes.
+     * @return The compacted set of the index addresses making up the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public List<String> polyfill_address_compact(byte[] wkb, Integer res)
+            throws IllegalArgumentException {
+        return toAddresses(polyfill_compact(wkb, res));
+    }
+
+    /**
+     * Finds indexes within the polygons of a WKT geometry, compacted across polygons.
+     *
+     * @param wkt A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKT.
+     * @param res Resolution of the finest indexes.
+     * @return The compacted set of the index addresses making up the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public List<String> polyfill_address_compact(String wkt, Integer res)
+            throws IllegalArgumentException {
+        return toAddresses(polyfill_compact(wkt, res));
+    }
+
+    /**
+     * Whether the center of an index is within the given geofence, as in <code>polyfill</code> at
+     * the resolution of the index, without filling the geofence for every row.
+     *
+     * <p>The geofence is compiled once into a coverage of indexes at <code>res</code> and kept
+     * across rows and invocations, see {@link PolygonCoverage}. An index is then tested with a
+     * lookup of its ancestors, and only one near an edge of the geofence is tested against the
+     * geofence itself. A finer <code>res</code> sends fewer indexes to that test, but takes longer
+     * to compile and more memory.
+     *
+     * @param h3 H3 index.
+     * @param points Outline geofence as a list of WKT Points.
+     * @param holes Geofences of any internal holes as a list of lists containing WKT Points.
+     * @param res Resolution of the coverage of the geofence.
+     * @return Whether the center of the index is in the area enclosed by points minus the area
+     *     enclosed by holes.
+     * @throws IllegalArgumentException Invalid resolution.
+     */
+    public Boolean h3_in_polygon(
+            Long h3, List<String> points, List<List<String>> holes, Integer res)
+            throws IllegalArgumentException {
+        if (h3 == null || points == null || res == null) {
+            return null;
+        }
+        return pointsCoverage(points, holes, res).contains(h3);
+    }
+
+    /**
+     * Whether the center of an index is within the polygons of a WKB geometry, as in <code>polyfill
+     * </code> at the resolution of the index.
+     *
+     * @param h3 H3 index.
+     * @param wkb A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKB.
+     * @param res Resolution of the coverage of the geometry.
+     * @return Whether the center of the index is in the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public Boolean h3_in_polygon(Long h3, byte[] wkb, Integer res) throws IllegalArgumentException {
+        if (h3 == null || wkb == null || res == null) {
+            return null;
+        }
+        return wkbCoverage(wkb, res).contains(h3);
+    }
+
+    /**
+     * Whether the center of an index is within the polygons of a WKT geometry, as in <code>polyfill
+     * </code> at the resolution of the index.
+     *
+     * @param h3 H3 index.
+     * @param wkt A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKT.
+     * @param res Resolution of the coverage of the geometry.
+     * @return Whether the center of the index is in the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public Boolean h3_in_polygon(Long h3, String wkt, Integer res) throws IllegalArgumentException {
+        if (h3 == null || wkt == null || res == null) {
+            return null;
+        }
+        return wktCoverage(wkt, res).contains(h3);
+    }
+
+    /**
+     * Finds a page of the indexes within the given geofence, as <code>polyfill</code> would find
+     * them, without finding the others.
+     *
+     * <p>The indexes are in ascending order, so that page <code>n</code> holds the indexes from
+     * <code>n * page_size</code> on in that order, and the pages of any number of invocations make
+     * up the <code>polyfill</code> once each. The geofence is compiled into a coverage 3
+     * resolutions coarser, kept across invocations as for <code>h3_in_polygon</code>, and only the
+     * cells of the coverage that overlap the page are expanded.
+     *
+     * @param points Outline geofence as a list of WKT Points.
+     * @param holes Geofences of any internal holes as a list of lists containing WKT Points.
+     * @param res Resolution of the desired indexes.
+     * @param page Page number, from 0.
+     * @param page_size Indexes per page. The last page may have fewer, and later pages none.
+     * @return Indexes of the page.
+     * @throws IllegalArgumentException Invalid resolution, negative page or page size not positive.
+     */
+    public List<Long> polyfill_page(
+            List<String> points,
+            List<List<String>> holes,
+            Integer res,
+            Long page,
+            Integer page_size)
+            throws IllegalArgumentException {
+        if (points == null || res == null || page == null || page_size == null) {
+            return null;
+        }
+        return page(pointsCoverage(points, holes, coverageRes(res)), res, page, page_size);
+    }
+
+    /**
+     * Finds a page of the indexes within the polygons of a WKB geometry, as <code>polyfill</code>
+     * would find them, see {@link #polyfill_page(List, List, Integer, Long, Integer)}.
+     *
+     * @param wkb A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKB.
+     * @param res Resolution of the desired indexes.
+     * @param page Page number, from 0.
+     * @param page_size Indexes per page. The last page may have fewer, and later pages none.
+     * @return Indexes of the page.
+     * @throws IllegalArgumentException Invalid geometry or resolution, negative page or page size
+     *     not positive.
+     */
+    public List<Long> polyfill_page(byte[] wkb, Integer res, Long page, Integer page_size)
+            throws IllegalArgumentException {
+        if (wkb == null || res == null || page == null || page_size == null) {
+            return null;
+        }
+        return page(wkbCoverage(wkb, coverageRes(res)), res, page, page_size);
+    }
+
+    /**
+     * Finds a page of the indexes within the polygons of a WKT geometry, as <code>polyfill</code>
+     * would find them, see {@link #polyfill_page(List, List, Integer, Long, Integer)}.
+     *
+     * @param wkt A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKT.
+     * @param res Resolution of the desired indexes.
+     * @param page Page number, from 0.
+     * @param page_size Indexes per page. The last page may have fewer, and later pages none.
+     * @return Indexes of the page.
+     * @throws IllegalArgumentException Invalid geometry or resolution, negative page or page size
+     *     not positive.
+     */
+    public List<Long> polyfill_page(String wkt, Integer res, Long page, Integer page_size)
+            throws IllegalArgumentException {
+        if (wkt == null || res == null || page == null || page_size == null) {
+            return null;
+        }
+        return page(wktCoverage(wkt, coverageRes(res)), res, page, page_size);
+    }
+
+    /**
+     * Counts the indexes within the given geofence, as <code>polyfill</code> would find them,
+     * without finding them, e.g. to find the number of pages of <code>polyfill_page</code>.
+     *
+     * <p>Only the indexes near the edges of the geofence are tested one by one, and the count is
+     * exact.
+     *
+     * @param points Outline geofence as a list of WKT Points.
+     * @param holes Geofences of any internal holes as a list of lists containing WKT Points.
+     * @param res Resolution of the indexes.
+     * @return Number of indexes making up the area enclosed by points minus the area enclosed by
+     *     holes.
+     * @throws IllegalArgumentException Invalid resolution.
+     */
+    public Long polyfill_count(List<String> points, List<List<String>> holes, Integer res)
+            throws IllegalArgumentException {
+        if (points == null || res == null) {
+            return null;
+        }
+        return pointsCoverage(points, holes, coverageRes(res)).pages(res, batchExecutor).count();
+    }
+
+    /**
+     * Counts the indexes within the polygons of a WKB geometry, as <code>polyfill</code> would find
+     * them, without finding them.
+     *
+     * @param wkb A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKB.
+     * @param res Resolution of the indexes.
+     * @return Number of indexes making up the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public Long polyfill_count(byte[] wkb, Integer res) throws IllegalArgumentException {
+        if (wkb == null || res == null) {
+            return null;
+        }
+        return wkbCoverage(wkb, coverageRes(res)).pages(res, batchExecutor).count();
+    }
+
+    /**
+     * Counts the indexes within the polygons of a WKT geometry, as <code>polyfill</code> would find
+     * them, without finding them.
+     *
+     * @param wkt A <code>POLYGON</code> or <code>MULTIPOLYGON</code> in WKT.
+     * @param res Resolution of the indexes.
+     * @return Number of indexes making up the area of the geometry.
+     * @throws IllegalArgumentException Invalid geometry or resolution.
+     */
+    public Long polyfill_count(String wkt, Integer res) throws IllegalArgumentException {
+        if (wkt == null || res == null) {
+            return null;
+        }
+        return wktCoverage(wkt, coverageRes(res)).pages(res, batchExecutor).count();
+    }
+
+    /** Resolution of the coverage of a paged <code>polyfill</code> at <code>res</code>. */
+    private static int coverageRes(int res) {
+        if (res < 0 || res > H3Index.MAX_RES) {
+            throw new IllegalArgumentException(
+                    String.format("resolution %d is out of range (must be 0 <= res <= 15)", res));
+        }
+        return Math.max(0, res - PAGE_COVERAGE_RESOLUTIONS);
+    }
+
+    private List<Long> page(PolygonCoverage coverage, int res, long page, int pageSize) {
+        if (page < 0 || pageSize <= 0) {
+            throw new IllegalArgumentException(
+                    String.format("Invalid page %d of size %d", page, pageSize));
+        }
+        CoveragePages pages = coverage.pages(res, batchExecutor);
+        if (page > pages.count() / pageSize) {
+            return new ArrayList<>();
+        }
+        return pages.page(page * pageSize, pageSize);
+    }
+
+    private PolygonCoverage pointsCoverage(List<String> points, List<List<String>> holes, int res) {
+        List<List<String>> holeList = holes == null ? Collections.emptyList() : holes;
+        return coverageCache.get(
+                Arrays.asList(points, holeList),
+                res,
+                () -> {
+                    List<GeoCoord> geoCoordPoints =
+                            points.stream().map(WKTPoints::toGeoCoord).collect(Collectors.toList());
+                    List<List<GeoCoord>> geoCoordHoles =
+                            holeList.stream()
+                                    .map(
+                                            x ->
+                                                    x.stream()
+                                                            .map(WKTPoints::toGeoCoord)
+                                                            .collect(Collectors.toList()))
+                                    .collect(Collectors.toList());
+                    return PolygonCoverage.compile(
+                            h3Core,
+                            batchExecutor,
+                            Collections.singletonList(
+                                    new Polygons.Polygon(geoCoordPoints, geoCoordHoles)),
+                            res);
+                });
+    }
+
+    private PolygonCoverage wkbCoverage(byte[] wkb, int res) {
+        return coverageCache.get(
+                wkb,
+                res,
+                () -> PolygonCoverage.compile(h3Core, batchExecutor, Polygons.fromWKB(wkb), res));
+    }
+
+    private PolygonCoverage wktCoverage(String wkt, int res) {
+        return coverageCache.get(
+                wkt,
+                res,
+                () -> PolygonCoverage.compile(h3Core, batchExecutor, Polygons.fromWKT(wkt), res));
+    }
+
+    private List<String> toAddresses(List<Long> cells) {
+        if (cells == null) {
+            return null;
+        }
+        return cells.stream().map(h3Core::h3ToString).collect(Collectors.toList());
     }
 
     /**
@@ -427,7 +1652,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return h3Core.h3GetResolution(h3);
+        return H3Index.getResolution(h3);
     }
 
     /**
@@ -439,7 +1664,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3_address == null) {
             return null;
         }
-        return h3Core.h3GetResolution(h3_address);
+        return H3Index.getResolution(h3Core.stringToH3(h3_address));
     }
 
     /**
@@ -453,7 +1678,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return h3Core.h3ToParent(h3, res);
+        return H3Index.toParent(h3, res);
     }
 
     /**
@@ -468,7 +1693,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3_address == null) {
             return null;
         }
-        return h3Core.h3ToParentAddress(h3_address, res);
+        return h3Core.h3ToString(H3Index.toParent(h3Core.stringToH3(h3_address), res));
     }
 
     /**
@@ -511,7 +1736,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return h3Core.h3ToCenterChild(h3, child_res);
+        return H3Index.toCenterChild(h3, child_res);
     }
 
     /**
@@ -526,7 +1751,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3_address == null) {
             return null;
         }
-        return h3Core.h3ToCenterChild(h3_address, child_res);
+        return h3Core.h3ToString(H3Index.toCenterChild(h3Core.stringToH3(h3_address), child_res));
     }
 
     /**
@@ -539,7 +1764,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return h3Core.h3IsResClassIII(h3);
+        return H3Index.isResClassIII(h3);
     }
 
     /**
@@ -552,7 +1777,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3_address == null) {
             return null;
         }
-        return h3Core.h3IsResClassIII(h3_address);
+        return H3Index.isResClassIII(h3Core.stringToH3(h3_address));
     }
 
     /**
@@ -595,6 +1820,125 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         return h3Core.uncompactAddress(h3_addresses, res);
     }
 
+    /**
+     * Returns a cell set: the cells compacted, sorted and encoded as <code>VARBINARY</code>, see
+     * {@link CellSet}. The cells may be of any resolutions, repeated or in other cells of the
+     * array. Null elements are skipped.
+     *
+     * @throws IllegalArgumentException An element is not a valid H3 cell.
+     */
+    public byte[] h3_cell_set(List<Long> h3) {
+        if (h3 == null) {
+            return null;
+        }
+        long[] cells = new long[h3.size()];
+        int count = 0;
+        for (Long cell : h3) {
+            if (cell != null) {
+                cells[count++] = cell;
+            }
+        }
+        return CellSet.of(cells, count).encode();
+    }
+
+    /**
+     * Returns the compacted cells of a cell set, in the order of the set.
+     *
+     * @throws IllegalArgumentException <code>set</code> is not a cell set.
+     */
+    public List<Long> h3_cell_set_cells(byte[] set) {
+        if (set == null) {
+            return null;
+        }
+        long[] cells = CellSet.decode(set).cells();
+        List<Long> result = new ArrayList<>(cells.length);
+        for (long cell : cells) {
+            result.add(cell);
+        }
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if a cell, or one of its ancestors, is in a cell set. A cell that
+     * is only partly covered by the finer cells of the set is not in it.
+     *
+     * @throws IllegalArgumentException <code>set</code> is not a cell set.
+     */
+    public Boolean h3_cell_set_contains(Long h3, byte[] set) {
+        if (h3 == null || set == null) {
+            return null;
+        }
+        return CellSet.decode(set).contains(h3);
+    }
+
+    /**
+     * Returns the cell set of the cells in either of two cell sets.
+     *
+     * @throws IllegalArgumentException An argument is not a cell set.
+     */
+    public byte[] h3_cell_set_union(byte[] a, byte[] b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        return CellSet.decode(a).union(CellSet.decode(b)).encode();
+    }
+
+    /**
+     * Returns the cell set of the cells in both of two cell sets, at the finer resolution where
+     * cells of the two sets overlap.
+     *
+     * @throws IllegalArgumentException An argument is not a cell set.
+     */
+    public byte[] h3_cell_set_intersect(byte[] a, byte[] b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        return CellSet.decode(a).intersect(CellSet.decode(b)).encode();
+    }
+
+    /**
+     * Returns the cell set of the cells in <code>a</code> but not in <code>b</code>. A cell of
+     * <code>a</code> with finer cells of <code>b</code> in it is replaced by its children outside
+     * them.
+     *
+     * @throws IllegalArgumentException An argument is not a cell set.
+     */
+    public byte[] h3_cell_set_difference(byte[] a, byte[] b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        return CellSet.decode(a).difference(CellSet.decode(b)).encode();
+    }
+
+    /**
+     * Dissolves cells into the outlines and holes of the area they cover, see {@link
+     * CellDissolver}, as a WKT <code>MULTIPOLYGON</code> for <code>ST_GeometryFromText</code>. Null
+     * elements are skipped, and no cells give <code>MULTIPOLYGON EMPTY</code>.
+     *
+     * @throws IllegalArgumentException An element is not a valid H3 cell, or the cells have
+     *     different resolutions.
+     */
+    public String h3_set_to_multipolygon(List<Long> h3) {
+        if (h3 == null) {
+            return null;
+        }
+        return Polygons.toWKT(dissolve(h3));
+    }
+
+    /**
+     * Dissolves cells as {@link #h3_set_to_multipolygon(List)}, as a WKB <code>MULTIPOLYGON</code>
+     * for <code>ST_GeomFromBinary</code>.
+     *
+     * @throws IllegalArgumentException An element is not a valid H3 cell, or the cells have
+     *     different resolutions.
+     */
+    public byte[] h3_set_to_multipolygon_wkb(List<Long> h3) {
+        if (h3 == null) {
+            return null;
+        }
+        return Polygons.toWKB(dissolve(h3));
+    }
+
     /**
      * Converts from <code>long</code> representation of an index to <code>String</code>
      * representation.
@@ -634,7 +1978,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return h3Core.cellArea(h3, AreaUnit.valueOf(unit));
+        return cellArea(h3, AreaUnit.valueOf(unit));
     }
 
     /**
@@ -648,7 +1992,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3_address == null) {
             return null;
         }
-        return h3Core.cellArea(h3_address, AreaUnit.valueOf(unit));
+        return cellArea(h3Core.stringToH3(h3_address), AreaUnit.valueOf(unit));
     }
 
     /**
@@ -663,11 +2007,29 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (a == null || b == null) {
             return null;
         }
-        GeoCoord aGeoCoord = geoCoordFromWKTPoint(a);
-        GeoCoord bGeoCoord = geoCoordFromWKTPoint(b);
+        GeoCoord aGeoCoord = WKTPoints.toGeoCoord(a);
+        GeoCoord bGeoCoord = WKTPoints.toGeoCoord(b);
         return h3Core.pointDist(aGeoCoord, bGeoCoord, LengthUnit.valueOf(unit));
     }
 
+    /**
+     * Return the distance along the sphere between two points given as numbers, rather than as WKT
+     * Point strings.
+     *
+     * @param a_lat Latitude (degrees) of the first point.
+     * @param a_lng Longitude (degrees) of the first point.
+     * @param b_lat Latitude (degrees) of the second point.
+     * @param b_lng Longitude (degrees) of the second point.
+     * @param unit Unit to return the distance in.
+     * @return Distance from point <code>a</code> to point <code>b</code>
+     */
+    public Double point_dist(Double a_lat, Double a_lng, Double b_lat, Double b_lng, String unit) {
+        if (a_lat == null || a_lng == null || b_lat == null || b_lng == null) {
+            return null;
+        }
+        return pointDist(LengthUnit.valueOf(unit), a_lat, a_lng, b_lat, b_lng);
+    }
+
     /**
      * Calculate the edge length of the given H3 edge.
      *
@@ -760,28 +2122,39 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         return h3Core.h3IndexesAreNeighbors(a, b);
     }
 
-    /** Returns a unidirectional edge index representing <code>a</code> towards <code>b</code>. */
+    /**
+     * Returns a unidirectional edge index representing <code>a</code> towards <code>b</code>, or
+     * <code>NULL</code> if they are not neighboring cells.
+     */
     public Long get_h3_unidirectional_edge(Long a, Long b) {
         if (a == null || b == null) {
             return null;
         }
-        try {
-            return h3Core.getH3UnidirectionalEdge(a, b);
-        } catch (IllegalArgumentException e) {
-            return null;
+        UDFMetrics.NullReason reason = cellPairs.checkNeighbors(a, b);
+        if (reason != null) {
+            return edgeNulls.record(reason);
         }
+        return h3Core.getH3UnidirectionalEdge(a, b);
     }
 
-    /** Returns a unidirectional edge index representing <code>a</code> towards <code>b</code>. */
+    /**
+     * Returns a unidirectional edge index representing <code>a</code> towards <code>b</code>, or
+     * <code>NULL</code> if they are not neighboring cells.
+     */
     public String get_h3_unidirectional_edge(String a, String b) {
         if (a == null || b == null) {
             return null;
         }
+        long cellA;
+        long cellB;
         try {
-            return h3Core.getH3UnidirectionalEdge(a, b);
-        } catch (IllegalArgumentException e) {
-            return null;
+            cellA = h3Core.stringToH3(a);
+            cellB = h3Core.stringToH3(b);
+        } catch (NumberFormatException e) {
+            return edgeNulls.record(UDFMetrics.NullReason.INVALID_CELL);
         }
+        Long edge = get_h3_unidirectional_edge(cellA, cellB);
+        return edge == null ? null : h3Core.h3ToString(edge);
     }
 
     /** Returns <code>true</code> if the given index is a valid unidirectional edge. */
@@ -874,7 +2247,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
             return null;
         }
         return h3Core.getH3UnidirectionalEdgeBoundary(h3).stream()
-                .map(this::geoCoordToWKTPoint)
+                .map(WKTPoints::format)
                 .collect(Collectors.toList());
     }
 
@@ -884,7 +2257,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
             return null;
         }
         return h3Core.getH3UnidirectionalEdgeBoundary(h3).stream()
-                .map(this::geoCoordToWKTPoint)
+                .map(WKTPoints::format)
                 .collect(Collectors.toList());
     }
 
@@ -899,7 +2272,7 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return new ArrayList<Integer>(h3Core.h3GetFaces(h3));
+        return resultCache.get(h3, ResultCache.H3_GET_FACES, this::h3GetFaces);
     }
 
     /**
@@ -913,26 +2286,63 @@ public class H3AthenaUDFHandler extends UserDefinedFunctionHandler {
         if (h3 == null) {
             return null;
         }
-        return new ArrayList<Integer>(h3Core.h3GetFaces(h3));
+        return resultCache.get(h3Core.stringToH3(h3), ResultCache.H3_GET_FACES, this::h3GetFaces);
     }
 
-    private String geoCoordToWKTPoint(GeoCoord geoCoord) {
-        return String.format("POINT (%f %f)", geoCoord.lng, geoCoord.lat);
+    private Double cellArea(long h3, AreaUnit unit) {
+        return resultCache.get(h3, ResultCache.cellArea(unit), cell -> h3Core.cellArea(cell, unit));
     }
 
-    /**
-     * https://stackoverflow.com/a/5011958
-     *
-     * @param WKTPoint A String representation of a WKT Point in AWS Athena
-     * @return An H3Core.util.GeoCoord object
-     */
-    private GeoCoord geoCoordFromWKTPoint(String WKTPoint) {
-        Pattern p = Pattern.compile("\\d+(\\.\\d+)?");
-        Matcher m = p.matcher(WKTPoint);
-        m.find();
-        double lng = Double.parseDouble(m.group());
-        m.find();
-        double lat = Double.parseDouble(m.group());
-        return new GeoCoord(lat, lng);
+    private String h3ToGeo(long h3) {
+        return WKTPoints.format(h3Core.h3ToGeo(h3));
+    }
+
+    private List<Polygons.Polygon> dissolve(List<Long> h3) {
+        long[] cells = new long[h3.size()];
+        int count = 0;
+        for (Long cell : h3) {
+            if (cell != null) {
+                cells[count++] = cell;
+            }
+        }
+        return CellDissolver.dissolve(h3Core, nativeCells, cells, count);
+    }
+
+    private List<String> h3ToGeoBoundary(long h3) {
+        return Collections.unmodifiableList(
+                h3Core.h3ToGeoBoundary(h3).stream()
+                        .map(WKTPoints::format)
+                        .collect(Collectors.toList()));
+    }
+
+    private double[] h3ToGeoCoords(long h3) {
+        GeoCoord geoCoord = h3Core.h3ToGeo(h3);
+        return new double[] {geoCoord.lat, geoCoord.lng};
+    }
+
+    private double[] h3ToGeoBoundaryCoords(long h3) {
+        List<GeoCoord> boundary = h3Core.h3ToGeoBoundary(h3);
+        double[] coords = new double[2 * boundary.size()];
+        for (int i = 0; i < boundary.size(); i++) {
+            coords[2 * i] = boundary.get(i).lat;
+            coords[2 * i + 1] = boundary.get(i).lng;
+        }
+        return coords;
+    }
+
+    private static List<Double> toList(double[] values) {
+        List<Double> list = new ArrayList<>(values.length);
+        for (double value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private double pointDist(LengthUnit unit, double aLat, double aLng, double bLat, double bLng) {
+        return h3Core.pointDist(new GeoCoord(aLat, aLng), new GeoCoord(bLat, bLng), unit);
+    }
+
+    private List<Integer> h3GetFaces(long h3) {
+        return Collections.unmodifiableList(new ArrayList<>(h3Core.h3GetFaces(h3)));
     }
 }
@@ -0,0 +1,223 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+/**
+ * Operations on the bits of a 64-bit H3 index, following the layout of the H3 C library.
+ *
+ * <p>From the most significant bit: 1 reserved bit, 4 bits of mode, 3 reserved bits, 4 bits of
+ * resolution, 7 bits of base cell and 15 digits of 3 bits each. Digits below the resolution of the
+ * index are set to 7.
+ *
+ * <p>The inspection and hierarchy operations match the corresponding {@link com.uber.h3core.H3Core}
+ * methods, including their exceptions, without calling into the C library.
+ */
+final class H3Index {
+    static final int MAX_RES = 15;
+    static final int NUM_BASE_CELLS = 122;
+
+    static final int CELL_MODE = 1;
+
+    static final long HIGH_BIT_MASK = 1L << 63;
+    static final int MODE_OFFSET = 59;
+    static final long MODE_MASK = 15L << MODE_OFFSET;
+    static final long RESERVED_MASK = 7L << 56;
+    static final int RES_OFFSET = 52;
+    static final long RES_MASK = 15L << RES_OFFSET;
+    static final int BASE_CELL_OFFSET = 45;
+    static final long BASE_CELL_MASK = 127L << BASE_CELL_OFFSET;
+    static final int DIGIT_BITS = 3;
+    static final long DIGIT_MASK = 7L;
+
+    /** An index with every bit above the digits cleared and every digit set to 7. */
+    static final long INIT = (1L << BASE_CELL_OFFSET) - 1;
+
+    /** The lowest bit of every digit. */
+    private static final long DIGIT_LOW_BITS = 0x1249249249249249L & INIT;
+
+    static final int CENTER_DIGIT = 0;
+    static final int K_AXES_DIGIT = 1;
+    static final int INVALID_DIGIT = 7;
+
+    /** Digits rotated 60 degrees counter-clockwise, indexed by digit. */
+    private static final int[] ROTATE_60_CCW = {0, 5, 3, 1, 6, 4, 2, 7};
+
+    /** Digits rotated 60 degrees clockwise, indexed by digit. */
+    private static final int[] ROTATE_60_CW = {0, 3, 6, 2, 5, 1, 4, 7};
+
+    private H3Index() {}
+
+    static int getResolution(long h3) {
+        return (int) ((h3 & RES_MASK) >>> RES_OFFSET);
+    }
+
+    static int getBaseCell(long h3) {
+        return (int) ((h3 & BASE_CELL_MASK) >>> BASE_CELL_OFFSET);
+    }
+
+    static boolean isResClassIII(long h3) {
+        return (getResolution(h3) & 1) != 0;
+    }
+
+    /**
+     * Returns true if this is a valid H3 cell: the mode is a cell, the reserved bits are clear, the
+     * base cell exists, every digit up to the resolution is a direction, every digit below it is 7,
+     * and a pentagon does not start with the deleted K axes digit.
+     */
+    static boolean isValid(long h3) {
+        if ((h3 & (HIGH_BIT_MASK | MODE_MASK | RESERVED_MASK))
+                != ((long) CELL_MODE << MODE_OFFSET)) {
+            return false;
+        }
+        int baseCell = getBaseCell(h3);
+        if (baseCell >= NUM_BASE_CELLS) {
+            return false;
+        }
+        int unusedBits = digitOffset(getResolution(h3));
+        long unusedMask = (1L << unusedBits) - 1;
+        if ((h3 & unusedMask) != unusedMask) {
+            return false;
+        }
+        long digits = (h3 & INIT) >>> unusedBits;
+        // a digit is 7 if all of its bits are set
+        if ((digits & (digits >>> 1) & (digits >>> 2) & DIGIT_LOW_BITS) != 0) {
+            return false;
+        }
+        return !BaseCells.isPentagon(baseCell) || leadingDigit(digits) != K_AXES_DIGIT;
+    }
+
+    /** Returns true if this cell is on a pentagon base cell, with every digit the center one. */
+    static boolean isPentagon(long h3) {
+        long digits = (h3 & INIT) >>> digitOffset(getResolution(h3));
+        return digits == 0 && BaseCells.isPentagon(getBaseCell(h3));
+    }
+
+    /**
+     * Returns the parent of <code>h3</code> at resolution <code>res</code>.
+     *
+     * @throws IllegalArgumentException <code>res</code> is negative or finer than the resolution of
+     *     <code>h3</code>.
+     */
+    static long toParent(long h3, int res) {
+        int childRes = getResolution(h3);
+        if (res < 0 || res > childRes) {
+            throw new IllegalArgumentException(
+                    String.format("res (%d) must be between 0 and %d, inclusive", res, childRes));
+        }
+        if (res == childRes) {
+            return h3;
+        }
+        return (h3 & ~RES_MASK) | ((long) res << RES_OFFSET) | ((1L << digitOffset(res)) - 1);
+    }
+
+    /**
+     * Returns the center child of <code>h3</code> at resolution <code>childRes</code>.
+     *
+     * @throws IllegalArgumentException <code>childRes</code> is out of range or coarser than the
+     *     resolution of <code>h3</code>.
+     */
+    static long toCenterChild(long h3, int childRes) {
+        if (childRes < 0 || childRes > MAX_RES) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "resolution %d is out of range (must be 0 <= res <= 15)", childRes));
+        }
+        int parentRes = getResolution(h3);
+        long child;
+        if (childRes < parentRes) {
+            child = 0;
+        } else if (childRes == parentRes) {
+            child = h3;
+        } else {
+            long centerDigits =
+                    ((1L << digitOffset(parentRes)) - 1) ^ ((1L << digitOffset(childRes)) - 1);
+            child = (h3 & ~RES_MASK & ~centerDigits) | ((long) childRes << RES_OFFSET);
+        }
+        if (child == 0) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "childRes %d must be between %d and 15, inclusive",
+                            childRes, parentRes));
+        }
+        return child;
+    }
+
+    /** Returns the digit of resolution <code>res</code>, 1 &lt;= res &lt;= 15. */
+    static int getDigit(long h3, int res) {
+        return (int) ((h3 >>> digitOffset(res)) & DIGIT_MASK);
+    }
+
+    /** Returns a cell of resolution <code>res</code> on the base cell, with all digits 7. */
+    static long cell(int res, int baseCell) {
+        return INIT
+                | ((long) CELL_MODE << MODE_OFFSET)
+                | ((long) res << RES_OFFSET)
+                | ((long) baseCell << BASE_CELL_OFFSET);
+    }
+
+    static long setDigit(long h3, int res, int digit) {
+        int offset = digitOffset(res);
+        return (h3 & ~(DIGIT_MASK << offset)) | ((long) digit << offset);
+    }
+
+    /** Returns the first digit that is not {@link #CENTER_DIGIT}, or {@link #CENTER_DIGIT}. */
+    static int leadingNonZeroDigit(long h3) {
+        int res = getResolution(h3);
+        for (int r = 1; r <= res; r++) {
+            int digit = getDigit(h3, r);
+            if (digit != CENTER_DIGIT) {
+                return digit;
+            }
+        }
+        return CENTER_DIGIT;
+    }
+
+    /** Rotates the digits of a hexagon 60 degrees counter-clockwise. */
+    static long rotate60ccw(long h3) {
+        int res = getResolution(h3);
+        for (int r = 1; r <= res; r++) {
+            h3 = setDigit(h3, r, ROTATE_60_CCW[getDigit(h3, r)]);
+        }
+        return h3;
+    }
+
+    /** Rotates the digits of a hexagon 60 degrees clockwise. */
+    static long rotate60cw(long h3) {
+        int res = getResolution(h3);
+        for (int r = 1; r <= res; r++) {
+            h3 = setDigit(h3, r, ROTATE_60_CW[getDigit(h3, r)]);
+        }
+        return h3;
+    }
+
+    /**
+     * Rotates the digits of a cell on a pentagon base cell 60 degrees counter-clockwise, skipping
+     * the deleted K axes subsequence.
+     */
+    static long rotatePent60ccw(long h3) {
+        int res = getResolution(h3);
+        boolean foundFirstNonZeroDigit = false;
+        for (int r = 1; r <= res; r++) {
+            h3 = setDigit(h3, r, ROTATE_60_CCW[getDigit(h3, r)]);
+            if (!foundFirstNonZeroDigit && getDigit(h3, r) != CENTER_DIGIT) {
+                foundFirstNonZeroDigit = true;
+                if (leadingNonZeroDigit(h3) == K_AXES_DIGIT) {
+                    h3 = rotate60ccw(h3);
+                }
+            }
+        }
+        return h3;
+    }
+
+    /** Returns the most significant non-zero digit of right-aligned digits, or 0. */
+    private static int leadingDigit(long digits) {
+        if (digits == 0) {
+            return CENTER_DIGIT;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(digits)) / DIGIT_BITS * DIGIT_BITS;
+        return (int) ((digits >>> shift) & DIGIT_MASK);
+    }
+
+    private static int digitOffset(int res) {
+        return (MAX_RES - res) * DIGIT_BITS;
+    }
+}
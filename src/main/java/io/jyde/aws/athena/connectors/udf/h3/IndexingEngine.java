@@ -0,0 +1,64 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import java.util.Locale;
+
+/**
+ * Implementations of the conversion from coordinates to H3 indexes that the {@link
+ * H3AthenaUDFHandler} can use for <code>geo_to_h3</code> and <code>geo_to_h3_address</code>.
+ *
+ * <p>The implementation is selected with the <code>INDEXING_ENGINE</code> environment variable,
+ * <code>jni</code> (the default) or <code>java</code>.
+ */
+enum IndexingEngine {
+    /** The H3 C library, called through JNI by {@link H3Core#geoToH3(double, double, int)}. */
+    JNI {
+        @Override
+        long geoToH3(H3Core h3Core, double lat, double lng, int res) {
+            return h3Core.geoToH3(lat, lng, res);
+        }
+    },
+
+    /** {@link FaceIJK}, which returns the same indexes without leaving the JVM. */
+    JAVA {
+        @Override
+        long geoToH3(H3Core h3Core, double lat, double lng, int res) {
+            if (res < 0 || res > H3Index.MAX_RES) {
+                throw new IllegalArgumentException(
+                        String.format(
+                                "resolution %d is out of range (must be 0 <= res <= 15)", res));
+            }
+            long h3 = FaceIJK.geoToH3(lat, lng, res);
+            if (h3 == 0) {
+                throw new IllegalArgumentException("Latitude or longitude were invalid.");
+            }
+            return h3;
+        }
+    };
+
+    static final String ENVIRONMENT_VARIABLE = "INDEXING_ENGINE";
+
+    /**
+     * Finds the H3 index of the resolution <code>res</code> cell containing the lat/lon (in
+     * degrees), with the same exceptions as {@link H3Core#geoToH3(double, double, int)}.
+     */
+    abstract long geoToH3(H3Core h3Core, double lat, double lng, int res);
+
+    /** Returns the engine named by the <code>INDEXING_ENGINE</code> environment variable. */
+    static IndexingEngine fromEnvironment() {
+        return fromName(System.getenv(ENVIRONMENT_VARIABLE));
+    }
+
+    /**
+     * @param name <code>jni</code> or <code>java</code> in any case, or <code>null</code> or empty
+     *     for the default.
+     * @throws IllegalArgumentException The name is not an engine.
+     */
+    static IndexingEngine fromName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return JNI;
+        }
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
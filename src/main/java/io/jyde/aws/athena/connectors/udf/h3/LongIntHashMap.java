@@ -0,0 +1,78 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+/**
+ * A map from <code>long</code> keys to non-negative <code>int</code> values, sized up front for the
+ * rows of a batch, that neither boxes keys nor allocates per entry.
+ *
+ * <p>Keys are kept in an open-addressing table with linear probing. Entries are never removed.
+ */
+final class LongIntHashMap {
+    /** Returned by {@link #putIfAbsent} when the key was absent. */
+    static final int ABSENT = -1;
+
+    private final long[] keys;
+    // value + 1 per slot, 0 for an empty slot
+    private final int[] values;
+    private final int mask;
+    private final int shift;
+    private int size;
+
+    /** @param expectedSize Largest number of keys the map will hold. */
+    LongIntHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Negative expected size: " + expectedSize);
+        }
+        // at most half full
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+        this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * Returns the value of <code>key</code>, or associates <code>value</code> with it and returns
+     * {@link #ABSENT}.
+     *
+     * @param value Non-negative value.
+     */
+    int putIfAbsent(long key, int value) {
+        int slot = slot(key);
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size > mask >>> 1) {
+            throw new IllegalStateException("LongIntHashMap is full: " + size);
+        }
+        keys[slot] = key;
+        values[slot] = value + 1;
+        size++;
+        return ABSENT;
+    }
+
+    /** Returns the value of <code>key</code>, or {@link #ABSENT}. */
+    int get(long key) {
+        for (int slot = slot(key); values[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+        }
+        return ABSENT;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Fibonacci hashing: the high bits of the key times the golden ratio, which differ even for H3
+     * indexes that only differ in their low digits.
+     */
+    private int slot(long key) {
+        return (int) ((key * 0x9e3779b97f4a7c15L) >>> shift);
+    }
+}
@@ -0,0 +1,311 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A least-recently-used cache with primitive <code>long</code> keys, bounded by the total weight of
+ * its values.
+ *
+ * <p>The cache is split into segments by key, each guarded by its own lock and evicting its own
+ * least recently used entries when its share of the weight is exceeded. A segment keeps its entries
+ * in parallel arrays linked in access order, and finds them through an open-addressing table of
+ * entry numbers with linear probing, so neither lookups nor updates box the key.
+ *
+ * @param <V> Type of the cached values.
+ */
+final class LongLruCache<V> {
+    /** Estimates the weight of a value, typically in bytes. */
+    @FunctionalInterface
+    interface Weigher<V> {
+        int weigh(V value);
+    }
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int INITIAL_ENTRIES = 16;
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+    private final Weigher<V> weigher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxWeight Largest total weight of the values, at least 1.
+     * @param minEntryWeight Weight below which splitting the cache into segments is not worth it.
+     * @param weigher Weight of a value. Values heavier than a segment are not cached.
+     */
+    @SuppressWarnings("unchecked")
+    LongLruCache(long maxWeight, int minEntryWeight, Weigher<V> weigher) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+        }
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS
+                && maxWeight / (segmentCount * 2L) >= 1024L * minEntryWeight) {
+            segmentCount *= 2;
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(maxWeight / segmentCount);
+        }
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+        this.weigher = weigher;
+    }
+
+    /** Returns the value of <code>key</code>, or <code>null</code>. */
+    V get(long key) {
+        long hash = hash(key);
+        V value = segmentFor(hash).get(key, hash);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Associates <code>value</code>, which must not be <code>null</code>, with <code>key</code>.
+     */
+    void put(long key, V value) {
+        long hash = hash(key);
+        evictions.add(segmentFor(hash).put(key, hash, value, weigher.weigh(value)));
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    long weight() {
+        long weight = 0;
+        for (Segment<V> segment : segments) {
+            weight += segment.weight();
+        }
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "LongLruCache{size=%d, weight=%d, hits=%d, misses=%d, evictions=%d}",
+                size(), weight(), hitCount(), missCount(), evictionCount());
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    /** The finalizer of MurmurHash3, which spreads the bits of H3 indexes over the whole hash. */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Segment<V> {
+        private static final int NONE = -1;
+
+        private final long maxWeight;
+
+        // entries, linked from the most recently used head to the least recently used tail, or
+        // through next from freeEntry if unused
+        private long[] keys = new long[INITIAL_ENTRIES];
+        private long[] hashes = new long[INITIAL_ENTRIES];
+        private Object[] values = new Object[INITIAL_ENTRIES];
+        private int[] weights = new int[INITIAL_ENTRIES];
+        private int[] prev = new int[INITIAL_ENTRIES];
+        private int[] next = new int[INITIAL_ENTRIES];
+        private int head = NONE;
+        private int tail = NONE;
+        private int freeEntry = NONE;
+        private int entryCount;
+        private int size;
+        private long weight;
+
+        // entry number + 1 per slot, 0 for an empty slot
+        private int[] table = new int[INITIAL_ENTRIES * 2];
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long weight() {
+            return weight;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(long key, long hash) {
+            int entry = find(key, hash);
+            if (entry == NONE) {
+                return null;
+            }
+            moveToHead(entry);
+            return (V) values[entry];
+        }
+
+        /** Returns the number of evicted entries. */
+        synchronized int put(long key, long hash, V value, int valueWeight) {
+            int entry = find(key, hash);
+            if (entry != NONE) {
+                unlink(entry);
+                removeFromTable(entry);
+                release(entry);
+            }
+            if (valueWeight > maxWeight) {
+                return 0;
+            }
+            int evicted = 0;
+            while (weight + valueWeight > maxWeight) {
+                int eldest = tail;
+                unlink(eldest);
+                removeFromTable(eldest);
+                release(eldest);
+                evicted++;
+            }
+
+            entry = allocate();
+            keys[entry] = key;
+            hashes[entry] = hash;
+            values[entry] = value;
+            weights[entry] = valueWeight;
+            weight += valueWeight;
+            size++;
+            linkHead(entry);
+            insertIntoTable(entry);
+            return evicted;
+        }
+
+        private int find(long key, long hash) {
+            int mask = table.length - 1;
+            for (int slot = (int) hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+                int entry = table[slot] - 1;
+                if (keys[entry] == key) {
+                    return entry;
+                }
+            }
+            return NONE;
+        }
+
+        private void insertIntoTable(int entry) {
+            int mask = table.length - 1;
+            int slot = (int) hashes[entry] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+        }
+
+        /** Removes an entry from the table, shifting back the entries probed past it. */
+        private void removeFromTable(int entry) {
+            int mask = table.length - 1;
+            int slot = (int) hashes[entry] & mask;
+            while (table[slot] != entry + 1) {
+                slot = (slot + 1) & mask;
+            }
+            int free = slot;
+            for (int i = (free + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+                int home = (int) hashes[table[i] - 1] & mask;
+                // move the entry at i to the free slot unless its home lies cyclically in (free, i]
+                boolean homeInRange =
+                        free <= i ? free < home && home <= i : free < home || home <= i;
+                if (!homeInRange) {
+                    table[free] = table[i];
+                    free = i;
+                }
+            }
+            table[free] = 0;
+        }
+
+        private int allocate() {
+            if (freeEntry != NONE) {
+                int entry = freeEntry;
+                freeEntry = next[entry];
+                return entry;
+            }
+            if (entryCount == keys.length) {
+                grow();
+            }
+            return entryCount++;
+        }
+
+        private void release(int entry) {
+            weight -= weights[entry];
+            size--;
+            values[entry] = null;
+            next[entry] = freeEntry;
+            freeEntry = entry;
+        }
+
+        private void grow() {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            values = Arrays.copyOf(values, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            next = Arrays.copyOf(next, capacity);
+            table = new int[capacity * 2];
+            for (int entry = head; entry != NONE; entry = next[entry]) {
+                insertIntoTable(entry);
+            }
+        }
+
+        private void moveToHead(int entry) {
+            if (entry != head) {
+                unlink(entry);
+                linkHead(entry);
+            }
+        }
+
+        private void linkHead(int entry) {
+            prev[entry] = NONE;
+            next[entry] = head;
+            if (head != NONE) {
+                prev[head] = entry;
+            } else {
+                tail = entry;
+            }
+            head = entry;
+        }
+
+        private void unlink(int entry) {
+            if (prev[entry] != NONE) {
+                next[prev[entry]] = next[entry];
+            } else {
+                head = next[entry];
+            }
+            if (next[entry] != NONE) {
+                prev[next[entry]] = prev[entry];
+            } else {
+                tail = prev[entry];
+            }
+        }
+    }
+}
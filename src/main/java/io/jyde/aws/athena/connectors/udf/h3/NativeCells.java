@@ -0,0 +1,283 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.exceptions.LineUndefinedException;
+import com.uber.h3core.exceptions.PentagonEncounteredException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The set-returning operations of {@link H3Core} on H3 indexes, into a {@link CellBuffer} rather
+ * than a <code>List&lt;Long&gt;</code>.
+ *
+ * <p><code>H3Core</code> has the C library fill a <code>long[]</code> and boxes its non-zero cells
+ * into a new list. This calls the same native methods of <code>H3Core</code> through method
+ * handles, with a scratch array reused across rows, and has the same results and exceptions. If the
+ * native methods cannot be reached, as with another version of <code>h3</code>, it unboxes the
+ * lists of <code>H3Core</code> instead.
+ */
+final class NativeCells {
+    private static final Logger logger = LoggerFactory.getLogger(NativeCells.class);
+
+    private final H3Core h3Core;
+    // (int k) -> int
+    private final MethodHandle maxKringSize;
+    // (long h3, int k, long[] out) -> void
+    private final MethodHandle kRing;
+    // (long h3, int k, long[] out, int[] distances) -> void
+    private final MethodHandle kRingDistances;
+    // (long h3, int k, long[] out) -> int
+    private final MethodHandle hexRing;
+    // (long start, long end) -> int
+    private final MethodHandle h3LineSize;
+    // (long start, long end, long[] out) -> int
+    private final MethodHandle h3Line;
+    // (long h3, int childRes) -> int
+    private final MethodHandle maxH3ToChildrenSize;
+    // (long h3, int childRes, long[] out) -> void
+    private final MethodHandle h3ToChildren;
+    // (long h3, long[] out) -> void
+    private final MethodHandle edgesFromHexagon;
+
+    NativeCells(H3Core h3Core) {
+        this.h3Core = h3Core;
+        MethodHandle[] handles = null;
+        try {
+            Field field = H3Core.class.getDeclaredField("h3Api");
+            field.setAccessible(true);
+            Object api = field.get(h3Core);
+            handles =
+                    new MethodHandle[] {
+                        handle(api, "maxKringSize", int.class),
+                        handle(api, "kRing", long.class, int.class, long[].class),
+                        handle(
+                                api,
+                                "kRingDistances",
+                                long.class,
+                                int.class,
+                                long[].class,
+                                int[].class),
+                        handle(api, "hexRing", long.class, int.class, long[].class),
+                        handle(api, "h3LineSize", long.class, long.class),
+                        handle(api, "h3Line", long.class, long.class, long[].class),
+                        handle(api, "maxH3ToChildrenSize", long.class, int.class),
+                        handle(api, "h3ToChildren", long.class, int.class, long[].class),
+                        handle(api, "getH3UnidirectionalEdgesFromHexagon", long.class, long[].class)
+                    };
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Native H3 methods unavailable, unboxing the lists of H3Core instead", e);
+        }
+        this.maxKringSize = handles == null ? null : handles[0];
+        this.kRing = handles == null ? null : handles[1];
+        this.kRingDistances = handles == null ? null : handles[2];
+        this.hexRing = handles == null ? null : handles[3];
+        this.h3LineSize = handles == null ? null : handles[4];
+        this.h3Line = handles == null ? null : handles[5];
+        this.maxH3ToChildrenSize = handles == null ? null : handles[6];
+        this.h3ToChildren = handles == null ? null : handles[7];
+        this.edgesFromHexagon = handles == null ? null : handles[8];
+    }
+
+    /** Whether the native methods are called directly. */
+    boolean isNative() {
+        return kRing != null;
+    }
+
+    /** Adds <code>H3Core.kRing(h3, k)</code> to <code>out</code>. */
+    void kRing(long h3, int k, CellBuffer scratch, CellBuffer out) {
+        if (kRing == null) {
+            addAll(h3Core.kRing(h3, k), out);
+            return;
+        }
+        try {
+            int size = (int) maxKringSize.invokeExact(k);
+            long[] cells = scratch.scratch(size);
+            kRing.invokeExact(h3, k, cells);
+            out.addNonZero(cells, size);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Adds the cells of <code>H3Core.kRingDistances(h3, k)</code> to <code>out</code>, nearest
+     * first, and the grid distance of each one to <code>distances</code>, in a single traversal.
+     */
+    void kRingDistances(long h3, int k, CellBuffer scratch, CellBuffer out, CellBuffer distances) {
+        if (kRingDistances == null) {
+            List<List<Long>> rings = h3Core.kRingDistances(h3, k);
+            for (int distance = 0; distance < rings.size(); distance++) {
+                for (long cell : rings.get(distance)) {
+                    out.add(cell);
+                    distances.add(distance);
+                }
+            }
+            return;
+        }
+        int size;
+        long[] cells;
+        int[] cellDistances;
+        try {
+            size = (int) maxKringSize.invokeExact(k);
+            cells = scratch.scratch(size);
+            cellDistances = new int[size];
+            kRingDistances.invokeExact(h3, k, cells, cellDistances);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        // a counting sort by distance, which is at most k
+        int[] starts = new int[k + 2];
+        for (int i = 0; i < size; i++) {
+            if (cells[i] != 0) {
+                starts[cellDistances[i] + 1]++;
+            }
+        }
+        for (int distance = 1; distance < starts.length; distance++) {
+            starts[distance] += starts[distance - 1];
+        }
+        int count = starts[k + 1];
+        long[] sorted = new long[count];
+        for (int i = 0; i < size; i++) {
+            if (cells[i] != 0) {
+                sorted[starts[cellDistances[i]]++] = cells[i];
+            }
+        }
+        int cell = 0;
+        for (int distance = 0; distance <= k; distance++) {
+            // starts[distance] is now the end of the cells at the distance
+            for (; cell < starts[distance]; cell++) {
+                out.add(sorted[cell]);
+                distances.add(distance);
+            }
+        }
+    }
+
+    /**
+     * Adds <code>H3Core.hexRing(h3, k)</code> to <code>out</code>.
+     *
+     * @throws PentagonEncounteredException A pentagon or pentagonal distortion was encountered.
+     */
+    void hexRing(long h3, int k, CellBuffer scratch, CellBuffer out)
+            throws PentagonEncounteredException {
+        if (hexRing == null) {
+            addAll(h3Core.hexRing(h3, k), out);
+            return;
+        }
+        int failed;
+        int size = k == 0 ? 1 : 6 * k;
+        long[] cells = scratch.scratch(size);
+        try {
+            failed = (int) hexRing.invokeExact(h3, k, cells);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        if (failed != 0) {
+            throw new PentagonEncounteredException(
+                    "A pentagon was encountered while computing hexRing.");
+        }
+        out.addNonZero(cells, size);
+    }
+
+    /**
+     * Adds <code>H3Core.h3Line(start, end)</code> to <code>out</code>.
+     *
+     * @throws LineUndefinedException The line cannot be computed.
+     */
+    void h3Line(long start, long end, CellBuffer scratch, CellBuffer out)
+            throws LineUndefinedException {
+        if (h3Line == null) {
+            addAll(h3Core.h3Line(start, end), out);
+            return;
+        }
+        int size;
+        int failed;
+        long[] cells;
+        try {
+            size = (int) h3LineSize.invokeExact(start, end);
+            if (size < 0) {
+                throw new LineUndefinedException("Could not compute line size between cells");
+            }
+            cells = scratch.scratch(size);
+            failed = (int) h3Line.invokeExact(start, end, cells);
+        } catch (LineUndefinedException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        if (failed != 0) {
+            throw new LineUndefinedException("Could not compute line between cells");
+        }
+        out.addNonZero(cells, size);
+    }
+
+    /**
+     * Adds <code>H3Core.h3ToChildren(h3, childRes)</code> to <code>out</code>.
+     *
+     * @throws IllegalArgumentException Invalid resolution.
+     */
+    void h3ToChildren(long h3, int childRes, CellBuffer scratch, CellBuffer out) {
+        if (h3ToChildren == null) {
+            addAll(h3Core.h3ToChildren(h3, childRes), out);
+            return;
+        }
+        if (childRes < 0 || childRes > H3Index.MAX_RES) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "resolution %d is out of range (must be 0 <= res <= 15)", childRes));
+        }
+        try {
+            int size = (int) maxH3ToChildrenSize.invokeExact(h3, childRes);
+            long[] cells = scratch.scratch(size);
+            h3ToChildren.invokeExact(h3, childRes, cells);
+            out.addNonZero(cells, size);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /** Adds <code>H3Core.getH3UnidirectionalEdgesFromHexagon(h3)</code> to <code>out</code>. */
+    void edgesFromHexagon(long h3, CellBuffer scratch, CellBuffer out) {
+        if (edgesFromHexagon == null) {
+            addAll(h3Core.getH3UnidirectionalEdgesFromHexagon(h3), out);
+            return;
+        }
+        try {
+            long[] cells = scratch.scratch(6);
+            edgesFromHexagon.invokeExact(h3, cells);
+            out.addNonZero(cells, 6);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /** Returns a handle of a method of <code>NativeMethods</code>, bound to its instance. */
+    private static MethodHandle handle(Object api, String name, Class<?>... parameterTypes)
+            throws ReflectiveOperationException {
+        Method method = api.getClass().getDeclaredMethod(name, parameterTypes);
+        method.setAccessible(true);
+        return MethodHandles.lookup().unreflect(method).bindTo(api);
+    }
+
+    private static void addAll(Iterable<Long> cells, CellBuffer out) {
+        for (long cell : cells) {
+            out.add(cell);
+        }
+    }
+
+    /** Rethrows the unchecked exceptions of a native method, which declares no other. */
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,71 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.amazonaws.athena.connector.lambda.data.projectors.ArrowValueProjector;
+import com.amazonaws.athena.connector.lambda.data.projectors.ProjectorUtils;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * A {@link BlockKernel} that evaluates the rows of a UDF method on a {@link BatchExecutor}, for
+ * UDFs such as <code>polyfill</code> whose every row is expensive.
+ *
+ * <p>The arguments are read, and the results written, on the calling thread and in the same way as
+ * on the row-at-a-time path of the <code>UserDefinedFunctionHandler</code>. Only the UDF method is
+ * called on the threads of the executor. Without parallelism, the batch goes through the
+ * row-at-a-time path.
+ */
+final class ParallelRowKernel implements BlockKernel {
+    private final BatchExecutor executor;
+    private final Object handler;
+    private final Method method;
+
+    ParallelRowKernel(BatchExecutor executor, Object handler, Method method) {
+        this.executor = executor;
+        this.handler = handler;
+        this.method = method;
+    }
+
+    @Override
+    public boolean supports(List<FieldVector> inputs, int rowCount) {
+        return executor.isParallel() && rowCount > 1;
+    }
+
+    @Override
+    public void evaluate(List<FieldVector> inputs, FieldVector output, int rowCount) {
+        output.allocateNew();
+        Object[][] arguments = new Object[rowCount][inputs.size()];
+        for (int col = 0; col < inputs.size(); col++) {
+            ArrowValueProjector projector =
+                    ProjectorUtils.createArrowValueProjector(inputs.get(col).getReader());
+            for (int row = 0; row < rowCount; row++) {
+                arguments[row][col] = projector.project(row);
+            }
+        }
+
+        Object[] results =
+                executor.map(
+                        rowCount,
+                        1,
+                        row -> {
+                            try {
+                                return method.invoke(handler, arguments[row]);
+                            } catch (InvocationTargetException e) {
+                                throw unwrap(e);
+                            }
+                        });
+        for (int row = 0; row < rowCount; row++) {
+            BlockKernels.setValue(output, row, results[row]);
+        }
+    }
+
+    private static Exception unwrap(InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return (Exception) cause;
+    }
+}
@@ -0,0 +1,455 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.uber.h3core.H3Core;
+import com.uber.h3core.LengthUnit;
+import com.uber.h3core.util.GeoCoord;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A polygon compiled for point-in-polygon tests of many cells: its cover by cells of one
+ * resolution, split into interior cells, compacted, and boundary cells, and its rings indexed in
+ * latitude bands.
+ *
+ * <p>A cell is in the polygon if its center is, as in <code>H3Core.polyfill</code> at the
+ * resolution of the cell. Every edge of the polygon is sampled at a quarter of the edge length of
+ * the cells of the coverage, and the cells of each sample with their neighbors are the boundary
+ * cells. No edge crosses the other cells of the coverage, so each of them is entirely in or out of
+ * the polygon, and the interior cells are those that <code>H3Core.polyfill</code> keeps. A cell in
+ * an interior cell is in the polygon, and a cell in neither is not, after a lookup of its ancestor
+ * at the resolution of each interior cell. Only a cell in a boundary cell, or coarser than the
+ * coverage, has its center tested against the rings, by casting a ray along its latitude as <code>
+ * H3Core.polyfill</code> does, over the edges of the band of that latitude.
+ *
+ * <p>A coverage is immutable, and {@link #contains} can be called from any thread.
+ */
+final class PolygonCoverage {
+    private static final int INTERIOR = 0;
+    private static final int BOUNDARY = 1;
+
+    /** Samples of an edge per edge length of the cells of the coverage. */
+    private static final int SAMPLES_PER_CELL_EDGE = 4;
+
+    private static final double KM_PER_RADIAN = 6371.007180918475;
+
+    /** Edges of a ring per latitude band, on average. */
+    private static final int EDGES_PER_BAND = 4;
+
+    private static final int MAX_BANDS = 1 << 12;
+
+    private final H3Core h3Core;
+    private final int res;
+    private final LongIntHashMap cells;
+    /** Bit <code>r</code> is set if an interior cell has resolution <code>r</code>. */
+    private final int interiorResolutions;
+
+    private final long[] interior;
+    private final long[] boundary;
+    private final List<Part> parts;
+
+    /** The pages of the last resolution read, built on the first read. */
+    private volatile CoveragePages pages;
+
+    private PolygonCoverage(
+            H3Core h3Core,
+            int res,
+            CellBuffer interior,
+            long[] boundary,
+            int interiorResolutions,
+            List<Part> parts) {
+        this.h3Core = h3Core;
+        this.res = res;
+        this.cells = new LongIntHashMap(interior.size() + boundary.length);
+        for (long cell : boundary) {
+            cells.putIfAbsent(cell, BOUNDARY);
+        }
+        for (int i = 0; i < interior.size(); i++) {
+            cells.putIfAbsent(interior.cells()[i], INTERIOR);
+        }
+        this.interiorResolutions = interiorResolutions;
+        this.interior = Arrays.copyOf(interior.cells(), interior.size());
+        this.boundary = boundary;
+        this.parts = parts;
+    }
+
+    /**
+     * Compiles the polygons, whose union is covered.
+     *
+     * @param res Resolution of the coverage. A finer one takes longer to compile and more memory,
+     *     and tests fewer cells against the rings.
+     * @throws IllegalArgumentException Invalid resolution.
+     */
+    static PolygonCoverage compile(
+            H3Core h3Core, BatchExecutor executor, List<Polygons.Polygon> polygons, int res) {
+        if (res < 0 || res > H3Index.MAX_RES) {
+            throw new IllegalArgumentException(
+                    String.format("resolution %d is out of range (must be 0 <= res <= 15)", res));
+        }
+        List<Part> parts = new ArrayList<>(polygons.size());
+        for (Polygons.Polygon polygon : polygons) {
+            if (polygon.points.size() < 3) {
+                continue;
+            }
+            Ring[] holes = new Ring[polygon.holes.size()];
+            for (int i = 0; i < holes.length; i++) {
+                holes[i] = new Ring(polygon.holes.get(i));
+            }
+            parts.add(new Part(new Ring(polygon.points), holes));
+        }
+
+        double stepRadians =
+                h3Core.edgeLength(res, LengthUnit.km) / SAMPLES_PER_CELL_EDGE / KM_PER_RADIAN;
+        long[] boundary = boundaryCells(h3Core, parts, res, stepRadians);
+        // the parents of the boundary cells, which are not entirely in the polygon, sorted
+        CellBuffer parents = new CellBuffer(boundary.length);
+        long[] level = boundary;
+        for (int r = res - 1; r >= 0; r--) {
+            CellBuffer levelParents = new CellBuffer(level.length);
+            for (long cell : level) {
+                levelParents.add(H3Index.toParent(cell, r));
+            }
+            level = distinct(levelParents);
+            for (long parent : level) {
+                parents.add(parent);
+            }
+        }
+        long[] boundaryParents = distinct(parents);
+
+        CellBuffer interior = new CellBuffer();
+        int[] resolutions = new int[1];
+        for (long cell : TiledPolyfill.polyfillCompact(h3Core, executor, polygons, res)) {
+            addInterior(h3Core, cell, res, boundaryParents, boundary, interior, resolutions);
+        }
+        return new PolygonCoverage(h3Core, res, interior, boundary, resolutions[0], parts);
+    }
+
+    /** Whether the center of the cell is in the polygon, see the class documentation. */
+    boolean contains(long h3) {
+        int cellRes = H3Index.getResolution(h3);
+        if (cellRes >= res) {
+            if (cells.get(H3Index.toParent(h3, res)) != BOUNDARY) {
+                for (int r = 0; r <= res; r++) {
+                    if ((interiorResolutions & (1 << r)) != 0
+                            && cells.get(H3Index.toParent(h3, r)) == INTERIOR) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        GeoCoord center = h3Core.h3ToGeo(h3);
+        return containsPoint(Math.toRadians(center.lat), Math.toRadians(center.lng));
+    }
+
+    /** Whether the point, in radians, is in the polygon, as in <code>H3Core.polyfill</code>. */
+    @VisibleForTesting
+    boolean containsPoint(double lat, double lng) {
+        for (Part part : parts) {
+            if (part.contains(lat, lng)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the cells of the polygon at a resolution, as in <code>H3Core.polyfill</code>, to be
+     * read a page at a time.
+     *
+     * @param res Resolution of the cells, at least that of the coverage.
+     * @param executor Counts the cells of the boundary cells, if the pages are built.
+     * @throws IllegalArgumentException Invalid resolution.
+     */
+    CoveragePages pages(int res, BatchExecutor executor) {
+        if (res < this.res || res > H3Index.MAX_RES) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "resolution %d is out of range (must be %d <= res <= 15)",
+                            res, this.res));
+        }
+        CoveragePages pages = this.pages;
+        if (pages == null || pages.res() != res) {
+            pages = new CoveragePages(this, interior, boundary, res, executor);
+            this.pages = pages;
+        }
+        return pages;
+    }
+
+    @VisibleForTesting
+    int interiorCount() {
+        return interior.length;
+    }
+
+    @VisibleForTesting
+    int boundaryCount() {
+        return boundary.length;
+    }
+
+    /** Estimates the retained size of the coverage, with its pages if they are read, in bytes. */
+    long estimateBytes() {
+        // a key and a value per slot of a table at most half full, the cells, and their pages
+        long bytes = 64 + (4L * 12 + 8 + 17) * (interior.length + boundary.length);
+        for (Part part : parts) {
+            bytes += part.shell.estimateBytes();
+            for (Ring hole : part.holes) {
+                bytes += hole.estimateBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Adds a cell of the compacted polyfill as interior if no boundary cell is in it, or else its
+     * children that are not boundary cells.
+     *
+     * @param boundaryParents The sorted parents of the boundary cells.
+     * @param boundary The sorted boundary cells.
+     */
+    private static void addInterior(
+            H3Core h3Core,
+            long cell,
+            int res,
+            long[] boundaryParents,
+            long[] boundary,
+            CellBuffer interior,
+            int[] resolutions) {
+        int cellRes = H3Index.getResolution(cell);
+        if (cellRes == res) {
+            if (Arrays.binarySearch(boundary, cell) < 0) {
+                interior.add(cell);
+                resolutions[0] |= 1 << cellRes;
+            }
+        } else if (Arrays.binarySearch(boundaryParents, cell) < 0) {
+            interior.add(cell);
+            resolutions[0] |= 1 << cellRes;
+        } else {
+            for (long child : h3Core.h3ToChildren(cell, cellRes + 1)) {
+                addInterior(h3Core, child, res, boundaryParents, boundary, interior, resolutions);
+            }
+        }
+    }
+
+    /**
+     * Returns the cells of the samples of every edge, with their neighbors, sorted and once each.
+     */
+    private static long[] boundaryCells(
+            H3Core h3Core, List<Part> parts, int res, double stepRadians) {
+        CellBuffer samples = new CellBuffer();
+        for (Part part : parts) {
+            sampleEdges(h3Core, part.shell, res, stepRadians, samples);
+            for (Ring hole : part.holes) {
+                sampleEdges(h3Core, hole, res, stepRadians, samples);
+            }
+        }
+        long[] sampleCells = distinct(samples);
+        CellBuffer boundary = new CellBuffer(sampleCells.length * 7);
+        for (long cell : sampleCells) {
+            for (long neighbor : h3Core.kRing(cell, 1)) {
+                boundary.add(neighbor);
+            }
+        }
+        return distinct(boundary);
+    }
+
+    /**
+     * Adds the cells of points along every edge of the ring, at most <code>stepRadians</code> apart
+     * on the sphere, with the edges as straight lines in latitude and longitude, as <code>
+     * H3Core.polyfill</code> takes them.
+     */
+    private static void sampleEdges(
+            H3Core h3Core, Ring ring, int res, double stepRadians, CellBuffer samples) {
+        int n = ring.lats.length;
+        long previous = 0;
+        for (int e = 0; e < n; e++) {
+            double aLat = ring.lats[e];
+            double aLng = ring.lngs[e];
+            double dLat = ring.lats[(e + 1) % n] - aLat;
+            double dLng = ring.lngs[(e + 1) % n] - aLng;
+            if (ring.transmeridian && Math.abs(dLng) > Math.PI) {
+                dLng -= Math.signum(dLng) * 2 * Math.PI;
+            }
+            // a step in latitude and longitude is no longer on the sphere
+            int steps =
+                    (int)
+                            Math.min(
+                                    Integer.MAX_VALUE,
+                                    Math.ceil(Math.hypot(dLat, dLng) / stepRadians));
+            for (int step = 0; step < Math.max(1, steps); step++) {
+                double t = steps == 0 ? 0 : (double) step / steps;
+                double lng = aLng + dLng * t;
+                if (lng > Math.PI) {
+                    lng -= 2 * Math.PI;
+                } else if (lng < -Math.PI) {
+                    lng += 2 * Math.PI;
+                }
+                long cell =
+                        h3Core.geoToH3(Math.toDegrees(aLat + dLat * t), Math.toDegrees(lng), res);
+                if (cell != previous) {
+                    samples.add(cell);
+                    previous = cell;
+                }
+            }
+        }
+    }
+
+    private static long[] distinct(CellBuffer buffer) {
+        long[] cells = Arrays.copyOf(buffer.cells(), buffer.size());
+        Arrays.sort(cells);
+        int count = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (count == 0 || cells[i] != cells[count - 1]) {
+                cells[count++] = cells[i];
+            }
+        }
+        return Arrays.copyOf(cells, count);
+    }
+
+    /** A polygon: an outline and its holes. */
+    private static final class Part {
+        final Ring shell;
+        final Ring[] holes;
+
+        Part(Ring shell, Ring[] holes) {
+            this.shell = shell;
+            this.holes = holes;
+        }
+
+        boolean contains(double lat, double lng) {
+            if (!shell.contains(lat, lng)) {
+                return false;
+            }
+            for (Ring hole : holes) {
+                if (hole.contains(lat, lng)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** A ring in radians, with the edges that span each latitude band. */
+    private static final class Ring {
+        final double[] lats;
+        final double[] lngs;
+        /** As in <code>H3Core.polyfill</code>, an edge spans more than 180 degrees. */
+        final boolean transmeridian;
+
+        final double south;
+        final double north;
+        final double bandHeight;
+        final int bandCount;
+        // the first vertex of each edge that spans a band, in ring order
+        final int[][] bandEdges;
+
+        Ring(List<GeoCoord> coords) {
+            int n = coords.size();
+            lats = new double[n];
+            lngs = new double[n];
+            double south = Double.MAX_VALUE;
+            double north = -Double.MAX_VALUE;
+            for (int v = 0; v < n; v++) {
+                lats[v] = Math.toRadians(coords.get(v).lat);
+                lngs[v] = Math.toRadians(coords.get(v).lng);
+                south = Math.min(south, lats[v]);
+                north = Math.max(north, lats[v]);
+            }
+            boolean transmeridian = false;
+            for (int v = 0; v < n; v++) {
+                if (Math.abs(lngs[v] - lngs[(v + 1) % n]) > Math.PI) {
+                    transmeridian = true;
+                }
+            }
+            this.transmeridian = transmeridian;
+            this.south = south;
+            this.north = north;
+
+            this.bandCount = Math.max(1, Math.min(MAX_BANDS, n / EDGES_PER_BAND));
+            this.bandHeight = n == 0 ? 1 : Math.max(north - south, Double.MIN_NORMAL) / bandCount;
+            int[] counts = new int[bandCount];
+            for (int e = 0; e < n; e++) {
+                for (int band = firstBand(e); band <= lastBand(e); band++) {
+                    counts[band]++;
+                }
+            }
+            bandEdges = new int[bandCount][];
+            for (int band = 0; band < bandCount; band++) {
+                bandEdges[band] = new int[counts[band]];
+                counts[band] = 0;
+            }
+            for (int e = 0; e < n; e++) {
+                for (int band = firstBand(e); band <= lastBand(e); band++) {
+                    bandEdges[band][counts[band]++] = e;
+                }
+            }
+        }
+
+        /** Ray casting as <code>pointInsideGeofence</code> of the H3 library. */
+        boolean contains(double lat, double lng) {
+            if (lats.length == 0 || lat < south || lat > north) {
+                return false;
+            }
+            int n = lats.length;
+            lng = normalizeLng(lng);
+            boolean contains = false;
+            for (int e : bandEdges[bandOf(lat)]) {
+                double aLat = lats[e];
+                double bLat = lats[(e + 1) % n];
+                double aLng = lngs[e];
+                double bLng = lngs[(e + 1) % n];
+                if (aLat > bLat) {
+                    double swap = aLat;
+                    aLat = bLat;
+                    bLat = swap;
+                    swap = aLng;
+                    aLng = bLng;
+                    bLng = swap;
+                }
+                if (lat == aLat || lat == bLat) {
+                    lat += Math.ulp(1.0);
+                }
+                if (lat < aLat || lat > bLat) {
+                    continue;
+                }
+                aLng = normalizeLng(aLng);
+                bLng = normalizeLng(bLng);
+                if (aLng == lng || bLng == lng) {
+                    lng -= Math.ulp(1.0);
+                }
+                double ratio = (lat - aLat) / (bLat - aLat);
+                double testLng = normalizeLng(aLng + (bLng - aLng) * ratio);
+                if (testLng > lng) {
+                    contains = !contains;
+                }
+            }
+            return contains;
+        }
+
+        long estimateBytes() {
+            long bytes = 96 + 16L * lats.length;
+            for (int[] edges : bandEdges) {
+                bytes += 16 + 4L * edges.length;
+            }
+            return bytes;
+        }
+
+        private double normalizeLng(double lng) {
+            return transmeridian && lng < 0 ? lng + 2 * Math.PI : lng;
+        }
+
+        private int firstBand(int e) {
+            return bandOf(Math.min(lats[e], lats[(e + 1) % lats.length]));
+        }
+
+        private int lastBand(int e) {
+            return bandOf(Math.max(lats[e], lats[(e + 1) % lats.length]));
+        }
+
+        private int bandOf(double lat) {
+            int band = (int) ((lat - south) / bandHeight);
+            return Math.max(0, Math.min(bandCount - 1, band));
+        }
+    }
+}
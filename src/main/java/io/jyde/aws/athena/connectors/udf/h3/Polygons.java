@@ -0,0 +1,421 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.util.GeoCoord;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads <code>POLYGON</code> and <code>MULTIPOLYGON</code> geometries, as written by the Athena
+ * geospatial functions <code>ST_AsBinary</code> (WKB) and <code>ST_AsText</code> (WKT), into the
+ * outlines and holes of <code>H3Core.polyfill</code>, and writes them back as a <code>MULTIPOLYGON
+ * </code>.
+ *
+ * <p>Both formats are read in a single pass, straight into the coordinates of the rings, without
+ * regular expressions or intermediate strings. Z and M ordinates, and the SRID of EWKB and EWKT,
+ * are skipped. The closing vertex of each ring, which repeats its first, is dropped, and added back
+ * when writing.
+ */
+final class Polygons {
+    private static final int WKB_POLYGON = 3;
+    private static final int WKB_MULTI_POLYGON = 6;
+    // the flags of EWKB, as written by PostGIS
+    private static final int EWKB_Z = 0x80000000;
+    private static final int EWKB_M = 0x40000000;
+    private static final int EWKB_SRID = 0x20000000;
+
+    /** A polygon, as <code>H3Core.polyfill</code> takes it. */
+    static final class Polygon {
+        final List<GeoCoord> points;
+        final List<List<GeoCoord>> holes;
+
+        Polygon(List<GeoCoord> points, List<List<GeoCoord>> holes) {
+            this.points = points;
+            this.holes = holes;
+        }
+    }
+
+    private Polygons() {}
+
+    /**
+     * Reads a WKB <code>POLYGON</code> or <code>MULTIPOLYGON</code>.
+     *
+     * @param wkb A geometry in WKB, ISO WKB or EWKB, in either byte order.
+     * @return The polygons of the geometry, none if it is empty.
+     * @throws IllegalArgumentException The bytes are not a WKB polygon or multipolygon.
+     */
+    static List<Polygon> fromWKB(byte[] wkb) {
+        ByteBuffer buffer = ByteBuffer.wrap(wkb);
+        List<Polygon> polygons = new ArrayList<>(1);
+        try {
+            int header = readWKBHeader(buffer);
+            int type = header & 0xffff;
+            int ordinates = header >>> 16;
+            if (type == WKB_POLYGON) {
+                readWKBPolygon(buffer, ordinates, polygons);
+            } else if (type == WKB_MULTI_POLYGON) {
+                int count = readWKBCount(buffer, 9);
+                for (int i = 0; i < count; i++) {
+                    int partHeader = readWKBHeader(buffer);
+                    if ((partHeader & 0xffff) != WKB_POLYGON) {
+                        throw new IllegalArgumentException(
+                                "Expected a WKB POLYGON in a MULTIPOLYGON but got type "
+                                        + (partHeader & 0xffff));
+                    }
+                    readWKBPolygon(buffer, partHeader >>> 16, polygons);
+                }
+            } else {
+                throw new IllegalArgumentException(
+                        "Expected a WKB POLYGON or MULTIPOLYGON but got type " + type);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated WKB geometry", e);
+        }
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException(
+                    buffer.remaining() + " bytes after the end of the WKB geometry");
+        }
+        return polygons;
+    }
+
+    /**
+     * Reads a WKT <code>POLYGON</code> or <code>MULTIPOLYGON</code>.
+     *
+     * @param wkt A geometry in WKT or EWKT, such as <code>POLYGON ((13.4 52.5, 13.5 52.5, 13.5
+     *     52.6, 13.4 52.5))</code>.
+     * @return The polygons of the geometry, none if it is empty.
+     * @throws IllegalArgumentException The string is not a WKT polygon or multipolygon.
+     */
+    static List<Polygon> fromWKT(CharSequence wkt) {
+        return new WKTReader(wkt).read();
+    }
+
+    /**
+     * Writes polygons as a WKT <code>MULTIPOLYGON</code>, or <code>MULTIPOLYGON EMPTY</code>, in a
+     * string sized up front.
+     */
+    static String toWKT(List<Polygon> polygons) {
+        if (polygons.isEmpty()) {
+            return "MULTIPOLYGON EMPTY";
+        }
+        int pointCount = 0;
+        for (Polygon polygon : polygons) {
+            pointCount += polygon.points.size() + 1;
+            for (List<GeoCoord> hole : polygon.holes) {
+                pointCount += hole.size() + 1;
+            }
+        }
+        // a coordinate takes up to 20 characters, with the separators
+        StringBuilder sb = new StringBuilder(16 + 44 * pointCount + 8 * polygons.size());
+        sb.append("MULTIPOLYGON (");
+        for (int i = 0; i < polygons.size(); i++) {
+            Polygon polygon = polygons.get(i);
+            sb.append(i == 0 ? "(" : ", (");
+            appendWKTRing(sb, polygon.points);
+            for (List<GeoCoord> hole : polygon.holes) {
+                sb.append(", ");
+                appendWKTRing(sb, hole);
+            }
+            sb.append(')');
+        }
+        return sb.append(')').toString();
+    }
+
+    /** Writes polygons as a little-endian WKB <code>MULTIPOLYGON</code>, in one buffer. */
+    static byte[] toWKB(List<Polygon> polygons) {
+        int size = 9;
+        for (Polygon polygon : polygons) {
+            size += 9 + ringBytes(polygon.points);
+            for (List<GeoCoord> hole : polygon.holes) {
+                size += ringBytes(hole);
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1).putInt(WKB_MULTI_POLYGON).putInt(polygons.size());
+        for (Polygon polygon : polygons) {
+            buffer.put((byte) 1).putInt(WKB_POLYGON).putInt(1 + polygon.holes.size());
+            putWKBRing(buffer, polygon.points);
+            for (List<GeoCoord> hole : polygon.holes) {
+                putWKBRing(buffer, hole);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static void appendWKTRing(StringBuilder sb, List<GeoCoord> ring) {
+        sb.append('(');
+        for (GeoCoord point : ring) {
+            appendWKTPoint(sb, point);
+            sb.append(", ");
+        }
+        appendWKTPoint(sb, ring.get(0));
+        sb.append(')');
+    }
+
+    private static void appendWKTPoint(StringBuilder sb, GeoCoord point) {
+        WKTPoints.appendCoordinate(sb, point.lng);
+        sb.append(' ');
+        WKTPoints.appendCoordinate(sb, point.lat);
+    }
+
+    private static int ringBytes(List<GeoCoord> ring) {
+        return 4 + (ring.size() + 1) * 2 * Double.BYTES;
+    }
+
+    private static void putWKBRing(ByteBuffer buffer, List<GeoCoord> ring) {
+        buffer.putInt(ring.size() + 1);
+        for (GeoCoord point : ring) {
+            buffer.putDouble(point.lng).putDouble(point.lat);
+        }
+        buffer.putDouble(ring.get(0).lng).putDouble(ring.get(0).lat);
+    }
+
+    /**
+     * Reads the byte order and the type of a WKB geometry, and skips its SRID.
+     *
+     * @return The type of the geometry without dimensions in the low 16 bits, and the ordinates of
+     *     a point in the high ones.
+     */
+    private static int readWKBHeader(ByteBuffer buffer) {
+        byte order = buffer.get();
+        if (order != 0 && order != 1) {
+            throw new IllegalArgumentException("Invalid WKB byte order " + order);
+        }
+        buffer.order(order == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int type = buffer.getInt();
+        int ordinates = 2;
+        if ((type & EWKB_Z) != 0) {
+            ordinates++;
+        }
+        if ((type & EWKB_M) != 0) {
+            ordinates++;
+        }
+        if ((type & EWKB_SRID) != 0) {
+            buffer.getInt();
+        }
+        type &= 0x0fffffff;
+        // ISO WKB adds 1000 for Z, 2000 for M and 3000 for ZM
+        int dimensions = type / 1000;
+        if (dimensions > 3) {
+            throw new IllegalArgumentException("Invalid WKB geometry type " + type);
+        }
+        ordinates += dimensions == 3 ? 2 : dimensions == 0 ? 0 : 1;
+        return (type % 1000) | (ordinates << 16);
+    }
+
+    /** Reads a count of items of at least <code>itemBytes</code>, checking that they can fit. */
+    private static int readWKBCount(ByteBuffer buffer, int itemBytes) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / itemBytes) {
+            throw new IllegalArgumentException("Truncated WKB geometry");
+        }
+        return count;
+    }
+
+    private static void readWKBPolygon(ByteBuffer buffer, int ordinates, List<Polygon> polygons) {
+        int ringCount = readWKBCount(buffer, 4);
+        if (ringCount == 0) {
+            return;
+        }
+        List<GeoCoord> points = readWKBRing(buffer, ordinates);
+        List<List<GeoCoord>> holes =
+                ringCount == 1 ? Collections.emptyList() : new ArrayList<>(ringCount - 1);
+        for (int ring = 1; ring < ringCount; ring++) {
+            holes.add(readWKBRing(buffer, ordinates));
+        }
+        polygons.add(new Polygon(points, holes));
+    }
+
+    private static List<GeoCoord> readWKBRing(ByteBuffer buffer, int ordinates) {
+        int pointBytes = ordinates * Double.BYTES;
+        int count = readWKBCount(buffer, pointBytes);
+        List<GeoCoord> ring = new ArrayList<>(count);
+        int offset = buffer.position();
+        for (int i = 0; i < count; i++) {
+            double lng = buffer.getDouble(offset);
+            double lat = buffer.getDouble(offset + Double.BYTES);
+            offset += pointBytes;
+            ring.add(new GeoCoord(lat, lng));
+        }
+        // through Buffer, as ByteBuffer.position(int) does not exist on Java 8
+        ((Buffer) buffer).position(offset);
+        dropClosingPoint(ring);
+        return ring;
+    }
+
+    private static void dropClosingPoint(List<GeoCoord> ring) {
+        int last = ring.size() - 1;
+        if (last > 0) {
+            GeoCoord first = ring.get(0);
+            GeoCoord closing = ring.get(last);
+            if (first.lat == closing.lat && first.lng == closing.lng) {
+                ring.remove(last);
+            }
+        }
+    }
+
+    /** A cursor over a WKT geometry. */
+    private static final class WKTReader {
+        private final CharSequence wkt;
+        private final double[] coordinate = new double[1];
+        private int pos;
+
+        WKTReader(CharSequence wkt) {
+            this.wkt = wkt;
+        }
+
+        List<Polygon> read() {
+            List<Polygon> polygons = new ArrayList<>(1);
+            skipSrid();
+            String type = readWord();
+            if (type.equals("POLYGON")) {
+                readPolygon(polygons);
+            } else if (type.equals("MULTIPOLYGON")) {
+                readDimensions();
+                if (!readEmpty()) {
+                    expect('(');
+                    do {
+                        readPolygonText(polygons);
+                    } while (next(','));
+                    expect(')');
+                }
+            } else {
+                throw invalid();
+            }
+            skipWhitespace();
+            if (pos < wkt.length()) {
+                throw invalid();
+            }
+            return polygons;
+        }
+
+        /** Skips the <code>SRID=4326;</code> prefix of EWKT. */
+        private void skipSrid() {
+            skipWhitespace();
+            if (wkt.length() - pos > 5
+                    && wkt.subSequence(pos, pos + 5).toString().equalsIgnoreCase("SRID=")) {
+                while (pos < wkt.length() && wkt.charAt(pos) != ';') {
+                    pos++;
+                }
+                pos++;
+            }
+        }
+
+        private void readPolygon(List<Polygon> polygons) {
+            readDimensions();
+            readPolygonText(polygons);
+        }
+
+        private void readPolygonText(List<Polygon> polygons) {
+            if (readEmpty()) {
+                return;
+            }
+            expect('(');
+            List<GeoCoord> points = readRing();
+            List<List<GeoCoord>> holes = Collections.emptyList();
+            while (next(',')) {
+                if (holes.isEmpty()) {
+                    holes = new ArrayList<>();
+                }
+                holes.add(readRing());
+            }
+            expect(')');
+            polygons.add(new Polygon(points, holes));
+        }
+
+        private List<GeoCoord> readRing() {
+            List<GeoCoord> ring = new ArrayList<>();
+            if (readEmpty()) {
+                return ring;
+            }
+            expect('(');
+            do {
+                double lng = readNumber();
+                double lat = readNumber();
+                // Z and M
+                while (atNumber()) {
+                    readNumber();
+                }
+                ring.add(new GeoCoord(lat, lng));
+            } while (next(','));
+            expect(')');
+            dropClosingPoint(ring);
+            return ring;
+        }
+
+        /** Skips the <code>Z</code>, <code>M</code> or <code>ZM</code> after a type. */
+        private void readDimensions() {
+            skipWhitespace();
+            int start = pos;
+            String word = readWord();
+            if (!word.equals("Z") && !word.equals("M") && !word.equals("ZM")) {
+                pos = start;
+            }
+        }
+
+        private boolean readEmpty() {
+            skipWhitespace();
+            int start = pos;
+            if (readWord().equals("EMPTY")) {
+                return true;
+            }
+            pos = start;
+            return false;
+        }
+
+        /** Reads the letters at the cursor, in upper case. */
+        private String readWord() {
+            skipWhitespace();
+            int start = pos;
+            while (pos < wkt.length() && Character.isLetter(wkt.charAt(pos))) {
+                pos++;
+            }
+            return wkt.subSequence(start, pos).toString().toUpperCase();
+        }
+
+        private double readNumber() {
+            if (!atNumber()) {
+                throw invalid();
+            }
+            pos = WKTPoints.readNumber(wkt, pos, coordinate, 0);
+            return coordinate[0];
+        }
+
+        private boolean atNumber() {
+            skipWhitespace();
+            return pos < wkt.length() && WKTPoints.isNumberStart(wkt.charAt(pos));
+        }
+
+        /** Skips <code>c</code> if it is the next character. */
+        private boolean next(char c) {
+            skipWhitespace();
+            if (pos < wkt.length() && wkt.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!next(c)) {
+                throw invalid();
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < wkt.length() && Character.isWhitespace(wkt.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException invalid() {
+            return new IllegalArgumentException(
+                    "Expected a WKT POLYGON or MULTIPOLYGON but got: " + wkt);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.AreaUnit;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * Results of per-cell UDFs, kept by the {@link H3AthenaUDFHandler} across invocations of a warm
+ * Lambda container.
+ *
+ * <p>A result is keyed by the H3 index with the UDF, and its unit, in the three reserved bits of
+ * the index. Indexes that use the reserved bits are not valid and are never cached.
+ *
+ * <p>The capacity is set in megabytes with the <code>RESULT_CACHE_MB</code> environment variable,
+ * and <code>0</code> disables the cache.
+ */
+final class ResultCache implements UDFMetrics.CacheCounts {
+    static final String ENVIRONMENT_VARIABLE = "RESULT_CACHE_MB";
+    static final int DEFAULT_MEGABYTES = 64;
+
+    // UDFs with cached results, CELL_AREA takes one value per AreaUnit
+    static final int H3_TO_GEO = 0;
+    static final int H3_TO_GEO_BOUNDARY = 1;
+    static final int H3_GET_FACES = 2;
+    static final int CELL_AREA = 3;
+
+    private static final int FUNCTION_OFFSET = 56;
+    private static final long UNCACHEABLE_MASK = H3Index.HIGH_BIT_MASK | H3Index.RESERVED_MASK;
+
+    /** Estimated bytes of a cache entry besides its value. */
+    private static final int ENTRY_OVERHEAD = 48;
+
+    private final LongLruCache<Object> cache;
+
+    /** @param megabytes Capacity, or 0 to disable the cache. */
+    ResultCache(int megabytes) {
+        if (megabytes < 0) {
+            throw new IllegalArgumentException("Negative result cache size: " + megabytes);
+        }
+        this.cache =
+                megabytes == 0
+                        ? null
+                        : new LongLruCache<>(
+                                megabytes * 1024L * 1024L,
+                                ENTRY_OVERHEAD,
+                                value -> ENTRY_OVERHEAD + estimateBytes(value));
+    }
+
+    /**
+     * Returns a cache with the capacity of the <code>RESULT_CACHE_MB</code> environment variable.
+     */
+    static ResultCache fromEnvironment() {
+        String megabytes = System.getenv(ENVIRONMENT_VARIABLE);
+        if (megabytes == null || megabytes.trim().isEmpty()) {
+            return new ResultCache(DEFAULT_MEGABYTES);
+        }
+        return new ResultCache(Integer.parseInt(megabytes.trim()));
+    }
+
+    /** Returns the key of the cell area in a unit. */
+    static int cellArea(AreaUnit unit) {
+        return CELL_AREA + unit.ordinal();
+    }
+
+    /**
+     * Returns the cached result of <code>function</code> for <code>h3</code>, or computes, caches
+     * and returns it.
+     *
+     * @param function One of the UDF constants of this class.
+     * @param compute Computes the result from the index. Results that are <code>null</code> or
+     *     exceptions are not cached. Lists must not be modified afterwards.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(long h3, int function, LongFunction<T> compute) {
+        if (cache == null || (h3 & UNCACHEABLE_MASK) != 0) {
+            return compute.apply(h3);
+        }
+        long key = h3 | ((long) function << FUNCTION_OFFSET);
+        T result = (T) cache.get(key);
+        if (result == null) {
+            result = compute.apply(h3);
+            if (result != null) {
+                cache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long hitCount() {
+        return cache == null ? 0 : cache.hitCount();
+    }
+
+    @Override
+    public long missCount() {
+        return cache == null ? 0 : cache.missCount();
+    }
+
+    @Override
+    public long evictionCount() {
+        return cache == null ? 0 : cache.evictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return cache == null ? "ResultCache{disabled}" : "ResultCache{" + cache + "}";
+    }
+
+    /** Estimates the retained size of the results of the cached UDFs. */
+    static int estimateBytes(Object value) {
+        if (value instanceof String) {
+            return 40 + 2 * ((String) value).length();
+        }
+        if (value instanceof List) {
+            int bytes = 24;
+            for (Object element : (List<?>) value) {
+                bytes += 4 + estimateBytes(element);
+            }
+            return bytes;
+        }
+        // boxed numbers
+        return 16;
+    }
+}
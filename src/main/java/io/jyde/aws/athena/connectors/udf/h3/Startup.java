@@ -0,0 +1,368 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocator;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import com.google.common.annotations.VisibleForTesting;
+import com.uber.h3core.H3Core;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shortens the cold start of a Lambda container, and reports it.
+ *
+ * <p><code>H3Core.newInstance()</code> copies the native library out of the jar to a temporary file
+ * and loads it from there. A Lambda deployment package is unpacked on disk, so the library of the
+ * package is already a file, and is loaded in place. Another library file can be set with the
+ * <code>H3_NATIVE_LIBRARY</code> environment variable, such as one in a Lambda layer. If neither is
+ * there, or cannot be loaded, the library is extracted as usual.
+ *
+ * <p>With the <code>PRIMING_ROWS</code> environment variable, the handler evaluates batches of that
+ * many rows of its most used UDFs at init, through the same path as a query, so that their classes
+ * are loaded and their loops compiled before the first batch of a query arrives. Priming makes init
+ * longer by more than it saves on the first batch, so it pays off where init is not on the path of
+ * a query, as with provisioned concurrency. It is 0, no priming, by default.
+ *
+ * <p>The time from the creation of the handler to its first batch is logged once.
+ */
+final class Startup {
+    static final String LIBRARY_ENVIRONMENT_VARIABLE = "H3_NATIVE_LIBRARY";
+    static final String PRIMING_ENVIRONMENT_VARIABLE = "PRIMING_ROWS";
+
+    /**
+     * Batches of each primed UDF. The first mostly loads classes, the second runs often enough to
+     * compile the loops of the batch path.
+     */
+    private static final int PRIMING_ROUNDS = 2;
+
+    /** Rows of <code>polyfill</code> per row of the cheaper UDFs. */
+    private static final int POLYFILL_ROW_DIVISOR = 64;
+
+    private static final Logger logger = LoggerFactory.getLogger(Startup.class);
+
+    private final File library;
+    private final int primingRows;
+    private final long createdNanos = System.nanoTime();
+    private final AtomicBoolean firstBatch = new AtomicBoolean();
+
+    /**
+     * @param library The native library to load, or <code>null</code> to extract it from the jar.
+     * @param primingRows Rows of each primed batch, or 0 to disable priming.
+     */
+    Startup(File library, int primingRows) {
+        if (primingRows < 0) {
+            throw new IllegalArgumentException("Negative priming rows: " + primingRows);
+        }
+        this.library = library;
+        this.primingRows = primingRows;
+    }
+
+    /**
+     * Returns a startup with the library of the <code>H3_NATIVE_LIBRARY</code> environment
+     * variable, or that of the deployment package, and the <code>PRIMING_ROWS</code> environment
+     * variable.
+     */
+    static Startup fromEnvironment() {
+        String path = System.getenv(LIBRARY_ENVIRONMENT_VARIABLE);
+        File library =
+                path == null || path.trim().isEmpty() ? unpackedLibrary() : new File(path.trim());
+        String rows = System.getenv(PRIMING_ENVIRONMENT_VARIABLE);
+        return new Startup(
+                library, rows == null || rows.trim().isEmpty() ? 0 : Integer.parseInt(rows.trim()));
+    }
+
+    /**
+     * Returns the native library of the h3 jar for this platform if it is a file, as in an unpacked
+     * Lambda deployment package, or <code>null</code>.
+     */
+    @VisibleForTesting
+    static File unpackedLibrary() {
+        String resource = libraryResource();
+        URL url = resource == null ? null : H3Core.class.getResource(resource);
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the path of the native library in the h3 jar for this platform, as <code>
+     * H3CoreLoader</code> names it, or <code>null</code> for a platform not handled here.
+     */
+    @VisibleForTesting
+    static String libraryResource() {
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        String arch = System.getProperty("os.arch", "").toLowerCase(Locale.ROOT);
+        String suffix;
+        if (os.startsWith("linux") && !System.getProperty("java.vendor", "").contains("Android")) {
+            os = "linux";
+            suffix = ".so";
+        } else if (os.startsWith("mac")) {
+            os = "darwin";
+            suffix = ".dylib";
+        } else {
+            return null;
+        }
+        if (arch.equals("amd64") || arch.equals("x86_64")) {
+            arch = "x64";
+        } else if (arch.equals("aarch64")) {
+            arch = "arm64";
+        } else {
+            return null;
+        }
+        return "/" + os + "-" + arch + "/libh3-java" + suffix;
+    }
+
+    /**
+     * Loads the native library and returns an <code>H3Core</code>.
+     *
+     * <p>Once the library is loaded, <code>H3CoreLoader</code> is told so, and does not extract
+     * another copy.
+     */
+    H3Core loadH3Core() throws IOException {
+        long start = System.nanoTime();
+        String loadedFrom = "the h3 jar";
+        if (library != null && library.isFile()) {
+            try {
+                String path = library.getCanonicalPath();
+                System.load(path);
+                Field libraryFile =
+                        Class.forName("com.uber.h3core.H3CoreLoader")
+                                .getDeclaredField("libraryFile");
+                libraryFile.setAccessible(true);
+                synchronized (libraryFile.getDeclaringClass()) {
+                    if (libraryFile.get(null) == null) {
+                        libraryFile.set(null, library);
+                    }
+                }
+                loadedFrom = path;
+            } catch (IOException | ReflectiveOperationException | LinkageError e) {
+                logger.warn("Could not load the H3 library from {}, extracting it", library, e);
+            }
+        }
+        H3Core h3Core = H3Core.newInstance();
+        logger.info("Loaded the H3 library from {} in {} ms", loadedFrom, millisSince(start));
+        return h3Core;
+    }
+
+    /**
+     * Evaluates batches of the most used UDFs. A failure is logged, and does not fail the handler.
+     */
+    void prime(H3AthenaUDFHandler handler) {
+        if (primingRows == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            primeOrThrow(handler);
+        } catch (Exception e) {
+            logger.warn("Priming failed", e);
+            return;
+        }
+        logger.info(
+                "Primed the handler with batches of {} rows in {} ms",
+                primingRows,
+                millisSince(start));
+    }
+
+    @VisibleForTesting
+    void primeOrThrow(H3AthenaUDFHandler handler) throws Exception {
+        try (BlockAllocator allocator = new BlockAllocatorImpl()) {
+            long[] cells = new long[primingRows];
+            long[] neighbors = new long[primingRows];
+            double[] lats = new double[primingRows];
+            double[] lngs = new double[primingRows];
+            for (int row = 0; row < primingRows; row++) {
+                // a grid of points over the inhabited latitudes
+                lats[row] = -55.0 + 125.0 * (row % 101) / 101;
+                lngs[row] = -180.0 + 360.0 * (row * 7 % 211) / 211;
+                cells[row] = handler.geo_to_h3(lats[row], lngs[row], 9);
+                neighbors[row] = handler.geo_to_h3(lats[row] + 0.01, lngs[row], 9);
+            }
+            int polyfillRows = Math.max(1, primingRows / POLYFILL_ROW_DIVISOR);
+            for (int round = 0; round < PRIMING_ROUNDS; round++) {
+                prime(
+                        handler,
+                        allocator,
+                        "geo_to_h3",
+                        primingRows,
+                        row -> new Object[] {lats[row], lngs[row], 9},
+                        Double.class,
+                        Double.class,
+                        Integer.class);
+                prime(
+                        handler,
+                        allocator,
+                        "geo_to_h3_address",
+                        primingRows,
+                        row -> new Object[] {lats[row], lngs[row], 9},
+                        Double.class,
+                        Double.class,
+                        Integer.class);
+                prime(
+                        handler,
+                        allocator,
+                        "h3_to_parent",
+                        primingRows,
+                        row -> new Object[] {cells[row], 5},
+                        Long.class,
+                        Integer.class);
+                prime(
+                        handler,
+                        allocator,
+                        "h3_to_string",
+                        primingRows,
+                        row -> new Object[] {cells[row]},
+                        Long.class);
+                prime(
+                        handler,
+                        allocator,
+                        "string_to_h3",
+                        primingRows,
+                        row -> new Object[] {Long.toHexString(cells[row])},
+                        String.class);
+                prime(
+                        handler,
+                        allocator,
+                        "h3_to_geo",
+                        primingRows,
+                        row -> new Object[] {cells[row]},
+                        Long.class);
+                prime(
+                        handler,
+                        allocator,
+                        "h3_to_geo_boundary",
+                        primingRows,
+                        row -> new Object[] {cells[row]},
+                        Long.class);
+                prime(
+                        handler,
+                        allocator,
+                        "k_ring",
+                        primingRows,
+                        row -> new Object[] {cells[row], 1},
+                        Long.class,
+                        Integer.class);
+                prime(
+                        handler,
+                        allocator,
+                        "h3_distance",
+                        primingRows,
+                        row -> new Object[] {cells[row], neighbors[row]},
+                        Long.class,
+                        Long.class);
+                prime(
+                        handler,
+                        allocator,
+                        "polyfill",
+                        polyfillRows,
+                        row ->
+                                new Object[] {
+                                    "POLYGON (("
+                                            + lngs[row]
+                                            + " "
+                                            + lats[row]
+                                            + ", "
+                                            + (lngs[row] + 0.05)
+                                            + " "
+                                            + lats[row]
+                                            + ", "
+                                            + lngs[row]
+                                            + " "
+                                            + (lats[row] + 0.05)
+                                            + "))",
+                                    9
+                                },
+                        String.class,
+                        Integer.class);
+            }
+        }
+    }
+
+    /** Logs the time from the creation of the handler to its first batch, once. */
+    void onBatch(int rowCount) {
+        if (firstBatch.compareAndSet(false, true)) {
+            logger.info(
+                    "First batch of {} rows {} ms after the handler was created",
+                    rowCount,
+                    millisSince(createdNanos));
+        }
+    }
+
+    /** Evaluates a batch of a UDF as a query would, without counting it as one. */
+    private static void prime(
+            H3AthenaUDFHandler handler,
+            BlockAllocator allocator,
+            String name,
+            int rowCount,
+            IntFunction<Object[]> arguments,
+            Class<?>... parameterTypes)
+            throws Exception {
+        Method method = H3AthenaUDFHandler.class.getMethod(name, parameterTypes);
+        SchemaBuilder inputSchema = SchemaBuilder.newBuilder();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            inputSchema.addField("arg" + i, arrowType(parameterTypes[i]));
+        }
+        SchemaBuilder outputSchema = SchemaBuilder.newBuilder();
+        if (List.class.equals(method.getReturnType())) {
+            Class<?> elementType =
+                    (Class<?>)
+                            ((ParameterizedType) method.getGenericReturnType())
+                                    .getActualTypeArguments()[0];
+            outputSchema.addListField("out", arrowType(elementType));
+        } else {
+            outputSchema.addField("out", arrowType(method.getReturnType()));
+        }
+        Schema output = outputSchema.build();
+        try (Block input = allocator.createBlock(inputSchema.build())) {
+            for (int row = 0; row < rowCount; row++) {
+                Object[] values = arguments.apply(row);
+                for (int i = 0; i < values.length; i++) {
+                    input.setValue("arg" + i, row, values[i]);
+                }
+            }
+            input.setRowCount(rowCount);
+            handler.evaluateRows(allocator, method, input, output).close();
+        }
+    }
+
+    private static ArrowType arrowType(Class<?> type) {
+        if (Long.class.equals(type)) {
+            return new ArrowType.Int(64, true);
+        } else if (Integer.class.equals(type)) {
+            return new ArrowType.Int(32, true);
+        } else if (Double.class.equals(type)) {
+            return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+        } else if (String.class.equals(type)) {
+            return new ArrowType.Utf8();
+        } else if (Boolean.class.equals(type)) {
+            return new ArrowType.Bool();
+        }
+        throw new IllegalArgumentException("No Arrow type for " + type);
+    }
+
+    private static long millisSince(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
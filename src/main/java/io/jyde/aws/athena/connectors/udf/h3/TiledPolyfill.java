@@ -0,0 +1,384 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.uber.h3core.AreaUnit;
+import com.uber.h3core.H3Core;
+import com.uber.h3core.util.GeoCoord;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * <code>polyfill</code> of large polygons in latitude bands, filled concurrently on a {@link
+ * BatchExecutor}.
+ *
+ * <p><code>H3Core.polyfill</code> keeps the cells whose center is inside the polygon, testing the
+ * center by casting a ray along its latitude, which only looks at the edges that span that
+ * latitude. The polygon of a band keeps every edge that reaches into the band, with its original
+ * vertices, and replaces the runs of edges entirely above or below it with edges that stay above or
+ * below it. Every vertex is one of the original ones, and a flat spike keeps the longitude range of
+ * each ring. So for a center in the band, the polygon of the band makes the same decision as the
+ * whole polygon, down to the rounding. Each band then keeps only the cells whose center lies in it,
+ * and the cell set is the same as that of <code>H3Core.polyfill</code>, in band order.
+ *
+ * <p>Polygons that cross the antimeridian, or span more than 180 degrees of longitude, are filled
+ * in one piece.
+ */
+final class TiledPolyfill {
+    /** Estimated cells of a band below which a polygon is not worth splitting. */
+    @VisibleForTesting static final long MIN_BAND_CELLS = 1 << 16;
+
+    /** Most bands of a compacted polygon. */
+    private static final long MAX_BANDS = 1 << 12;
+
+    /** Bands per thread, so that threads that finish early can take over larger bands. */
+    private static final int BANDS_PER_THREAD = 4;
+
+    /**
+     * Radians by which the edges of a band reach beyond it, so that the centers assigned to a band
+     * through their coordinates in degrees are in it.
+     */
+    private static final double BAND_MARGIN = 1e-9;
+
+    private static final double EARTH_RADIUS_KM = 6371.007180918475;
+
+    private TiledPolyfill() {}
+
+    /** Returns the cells of <code>H3Core.polyfill</code>, filled in bands if worth it. */
+    static List<Long> polyfill(
+            H3Core h3Core,
+            BatchExecutor executor,
+            List<GeoCoord> points,
+            List<List<GeoCoord>> holes,
+            int res) {
+        int bandCount = 1;
+        if (executor.isParallel() && isTileable(points, holes)) {
+            long cells = estimateCells(h3Core, points, res);
+            bandCount =
+                    (int)
+                            Math.min(
+                                    (long) executor.parallelism() * BANDS_PER_THREAD,
+                                    cells / MIN_BAND_CELLS);
+        }
+        return polyfill(h3Core, executor, points, holes, res, bandCount);
+    }
+
+    /**
+     * Returns the cells of <code>H3Core.polyfill</code>, filled in <code>bandCount</code> bands.
+     */
+    @VisibleForTesting
+    static List<Long> polyfill(
+            H3Core h3Core,
+            BatchExecutor executor,
+            List<GeoCoord> points,
+            List<List<GeoCoord>> holes,
+            int res,
+            int bandCount) {
+        if (bandCount <= 1 || !isTileable(points, holes)) {
+            return h3Core.polyfill(points, holes, res);
+        }
+        List<Long> cells = new ArrayList<>();
+        fillBands(
+                h3Core,
+                executor,
+                points,
+                holes,
+                res,
+                bandCount,
+                bandCells -> {
+                    for (long cell : bandCells) {
+                        cells.add(cell);
+                    }
+                });
+        return cells;
+    }
+
+    /**
+     * Returns the cells of <code>H3Core.polyfill</code> of every polygon, once each, as a cell
+     * whose center lies on an edge shared by two polygons may be in both.
+     */
+    static List<Long> polyfill(
+            H3Core h3Core, BatchExecutor executor, List<Polygons.Polygon> polygons, int res) {
+        if (polygons.size() == 1) {
+            Polygons.Polygon polygon = polygons.get(0);
+            return polyfill(h3Core, executor, polygon.points, polygon.holes, res);
+        }
+        checkResolution(res);
+        List<List<Long>> parts = new ArrayList<>(polygons.size());
+        int cellCount = 0;
+        for (Polygons.Polygon polygon : polygons) {
+            List<Long> part = polyfill(h3Core, executor, polygon.points, polygon.holes, res);
+            parts.add(part);
+            cellCount += part.size();
+        }
+        LongIntHashMap distinctCells = new LongIntHashMap(cellCount);
+        List<Long> cells = new ArrayList<>(cellCount);
+        for (List<Long> part : parts) {
+            for (Long cell : part) {
+                if (distinctCells.putIfAbsent(cell, 0) == LongIntHashMap.ABSENT) {
+                    cells.add(cell);
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the cells of <code>H3Core.compact</code> of <code>H3Core.polyfill</code>, compacting
+     * the cells of each band as it is filled, so that only the cells of a few bands are expanded at
+     * a time.
+     */
+    static List<Long> polyfillCompact(
+            H3Core h3Core,
+            BatchExecutor executor,
+            List<GeoCoord> points,
+            List<List<GeoCoord>> holes,
+            int res) {
+        CellCompactor compactor = new CellCompactor(res);
+        fillCompact(h3Core, executor, points, holes, res, compactor);
+        return compactor.cells();
+    }
+
+    /**
+     * Returns the cells of <code>H3Core.compact</code> of the <code>H3Core.polyfill</code> of every
+     * polygon, compacted across polygons.
+     */
+    static List<Long> polyfillCompact(
+            H3Core h3Core, BatchExecutor executor, List<Polygons.Polygon> polygons, int res) {
+        CellCompactor compactor = new CellCompactor(res);
+        for (Polygons.Polygon polygon : polygons) {
+            fillCompact(h3Core, executor, polygon.points, polygon.holes, res, compactor);
+        }
+        return compactor.cells();
+    }
+
+    private static void fillCompact(
+            H3Core h3Core,
+            BatchExecutor executor,
+            List<GeoCoord> points,
+            List<List<GeoCoord>> holes,
+            int res,
+            CellCompactor compactor) {
+        if (isTileable(points, holes)) {
+            long bandCount = estimateCells(h3Core, points, res) / MIN_BAND_CELLS;
+            fillBands(
+                    h3Core,
+                    executor,
+                    points,
+                    holes,
+                    res,
+                    (int) Math.max(1, Math.min(MAX_BANDS, bandCount)),
+                    compactor::addAll);
+        } else {
+            for (long cell : h3Core.polyfill(points, holes, res)) {
+                compactor.add(cell);
+            }
+        }
+    }
+
+    private static void checkResolution(int res) {
+        if (res < 0 || res > H3Index.MAX_RES) {
+            throw new IllegalArgumentException(
+                    String.format("resolution %d is out of range (must be 0 <= res <= 15)", res));
+        }
+    }
+
+    /**
+     * Fills the polygon in <code>bandCount</code> bands, a few per thread of the executor at a
+     * time, and passes the cells of each band to <code>consumer</code>, in band order.
+     */
+    private static void fillBands(
+            H3Core h3Core,
+            BatchExecutor executor,
+            List<GeoCoord> points,
+            List<List<GeoCoord>> holes,
+            int res,
+            int bandCount,
+            Consumer<long[]> consumer) {
+        double south = Double.MAX_VALUE;
+        double north = -Double.MAX_VALUE;
+        for (GeoCoord point : points) {
+            double lat = Math.toRadians(point.lat);
+            south = Math.min(south, lat);
+            north = Math.max(north, lat);
+        }
+        double[] bounds = new double[bandCount + 1];
+        for (int band = 0; band <= bandCount; band++) {
+            bounds[band] = south + (north - south) * band / bandCount;
+        }
+
+        int wave = executor.parallelism() * BANDS_PER_THREAD;
+        for (int first = 0; first < bandCount; first += wave) {
+            int firstBand = first;
+            Object[] bands =
+                    executor.map(
+                            Math.min(wave, bandCount - first),
+                            1,
+                            band -> fillBand(h3Core, points, holes, res, bounds, firstBand + band));
+            for (Object band : bands) {
+                consumer.accept((long[]) band);
+            }
+        }
+    }
+
+    /** Returns the cells of the polygon whose center lies in a band. */
+    private static long[] fillBand(
+            H3Core h3Core,
+            List<GeoCoord> points,
+            List<List<GeoCoord>> holes,
+            int res,
+            double[] bounds,
+            int band) {
+        double south = bounds[band] - BAND_MARGIN;
+        double north = bounds[band + 1] + BAND_MARGIN;
+        List<GeoCoord> bandPoints = bandRing(points, south, north);
+        if (bandPoints == null) {
+            return new long[0];
+        }
+        List<List<GeoCoord>> bandHoles = new ArrayList<>(holes.size());
+        for (List<GeoCoord> hole : holes) {
+            List<GeoCoord> bandHole = bandRing(hole, south, north);
+            if (bandHole != null) {
+                bandHoles.add(bandHole);
+            }
+        }
+
+        List<Long> cells = h3Core.polyfill(bandPoints, bandHoles, res);
+        long[] owned = new long[cells.size()];
+        int ownedCount = 0;
+        for (long cell : cells) {
+            if (bandOf(bounds, Math.toRadians(h3Core.h3ToGeo(cell).lat)) == band) {
+                owned[ownedCount++] = cell;
+            }
+        }
+        long[] result = new long[ownedCount];
+        System.arraycopy(owned, 0, result, 0, ownedCount);
+        return result;
+    }
+
+    /**
+     * Returns the ring with the runs of edges outside <code>[south, north]</code> replaced, or
+     * <code>null</code> if none of its edges reaches into it.
+     */
+    @VisibleForTesting
+    static List<GeoCoord> bandRing(List<GeoCoord> ring, double south, double north) {
+        int n = ring.size();
+        double[] lats = new double[n];
+        double west = Double.MAX_VALUE;
+        double east = -Double.MAX_VALUE;
+        int westVertex = 0;
+        int eastVertex = 0;
+        for (int v = 0; v < n; v++) {
+            lats[v] = Math.toRadians(ring.get(v).lat);
+            double lng = Math.toRadians(ring.get(v).lng);
+            if (lng < west) {
+                west = lng;
+                westVertex = v;
+            }
+            if (lng > east) {
+                east = lng;
+                eastVertex = v;
+            }
+        }
+        // edge e goes from vertex e to vertex e + 1
+        boolean[] inBand = new boolean[n];
+        int inBandCount = 0;
+        for (int e = 0; e < n; e++) {
+            double a = lats[e];
+            double b = lats[(e + 1) % n];
+            inBand[e] = Math.min(a, b) <= north && Math.max(a, b) >= south;
+            if (inBand[e]) {
+                inBandCount++;
+            }
+        }
+        if (inBandCount == 0) {
+            return null;
+        }
+        if (inBandCount == n) {
+            return ring;
+        }
+
+        // the vertices of the edges in the band, in their original order, so that the ray casting
+        // meets those edges in the same order
+        List<GeoCoord> bandRing = new ArrayList<>();
+        boolean spiked = false;
+        for (int v = 0; v < n; v++) {
+            boolean inEdge = inBand[(v + n - 1) % n];
+            boolean outEdge = inBand[v];
+            if (!inEdge && !outEdge) {
+                continue;
+            }
+            GeoCoord vertex = ring.get(v);
+            bandRing.add(vertex);
+            if (!outEdge && !spiked) {
+                // a flat spike to the western and eastern vertices along the latitude of this
+                // vertex, which is outside the band
+                bandRing.add(new GeoCoord(vertex.lat, ring.get(westVertex).lng));
+                bandRing.add(new GeoCoord(vertex.lat, ring.get(eastVertex).lng));
+                bandRing.add(vertex);
+                spiked = true;
+            }
+        }
+        return bandRing;
+    }
+
+    /**
+     * Whether no ring crosses the antimeridian or spans more than 180 degrees, so that neither do
+     * the rings of the bands.
+     */
+    private static boolean isTileable(List<GeoCoord> points, List<List<GeoCoord>> holes) {
+        if (points.size() < 3 || !isTileable(points)) {
+            return false;
+        }
+        for (List<GeoCoord> hole : holes) {
+            if (!isTileable(hole)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTileable(List<GeoCoord> ring) {
+        double west = Double.MAX_VALUE;
+        double east = -Double.MAX_VALUE;
+        for (int v = 0; v < ring.size(); v++) {
+            double a = Math.toRadians(ring.get(v).lng);
+            double b = Math.toRadians(ring.get((v + 1) % ring.size()).lng);
+            if (Math.abs(a - b) > Math.PI) {
+                return false;
+            }
+            west = Math.min(west, a);
+            east = Math.max(east, a);
+        }
+        return east - west <= Math.PI;
+    }
+
+    /** Estimates the number of cells in the bounding box of the polygon. */
+    private static long estimateCells(H3Core h3Core, List<GeoCoord> points, int res) {
+        double south = Double.MAX_VALUE;
+        double north = -Double.MAX_VALUE;
+        double west = Double.MAX_VALUE;
+        double east = -Double.MAX_VALUE;
+        for (GeoCoord point : points) {
+            south = Math.min(south, Math.toRadians(point.lat));
+            north = Math.max(north, Math.toRadians(point.lat));
+            west = Math.min(west, Math.toRadians(point.lng));
+            east = Math.max(east, Math.toRadians(point.lng));
+        }
+        double areaKm2 =
+                EARTH_RADIUS_KM
+                        * EARTH_RADIUS_KM
+                        * (east - west)
+                        * (Math.sin(north) - Math.sin(south));
+        return (long) (areaKm2 / h3Core.hexArea(res, AreaUnit.km2));
+    }
+
+    private static int bandOf(double[] bounds, double lat) {
+        int band = 0;
+        while (band < bounds.length - 2 && lat >= bounds[band + 1]) {
+            band++;
+        }
+        return band;
+    }
+}
@@ -0,0 +1,138 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.exceptions.LineUndefinedException;
+
+/**
+ * The path of cells of a track of points, each cell a neighbor of the one before, and optionally
+ * the unidirectional edges from each cell of the path to the next.
+ *
+ * <p>Each point is indexed once. A point in the cell of the point before adds nothing, and a point
+ * in a neighboring cell adds that cell. A gap between two cells is filled with the cells of <code>
+ * h3Line</code>, read into the buffers of the path. Where <code>h3Line</code> is undefined, as
+ * across a pentagon, the segment between the two points is halved until the cells at the ends of
+ * each part are neighbors, so the gap is filled along the track itself.
+ */
+final class Trajectory {
+    /** Halvings of a segment, below a millimeter for any segment of a track. */
+    private static final int MAX_BISECTIONS = 40;
+
+    private final H3Core h3Core;
+    private final NativeCells nativeCells;
+    private final IndexingEngine indexingEngine;
+    private final int res;
+
+    private final CellBuffer cells;
+    /** <code>null</code> if the edges are not wanted. */
+    private final CellBuffer edges;
+
+    private final CellBuffer scratch = new CellBuffer(16);
+    private final CellBuffer line = new CellBuffer(16);
+    private double lastLat;
+    private double lastLng;
+
+    /**
+     * @param expectedCells Size of the path buffers to start with.
+     * @param withEdges Whether to keep the edges of the path.
+     */
+    Trajectory(
+            H3Core h3Core,
+            NativeCells nativeCells,
+            IndexingEngine indexingEngine,
+            int res,
+            int expectedCells,
+            boolean withEdges) {
+        this.h3Core = h3Core;
+        this.nativeCells = nativeCells;
+        this.indexingEngine = indexingEngine;
+        this.res = res;
+        this.cells = new CellBuffer(expectedCells);
+        this.edges = withEdges ? new CellBuffer(expectedCells) : null;
+    }
+
+    /**
+     * Adds the next point of the track.
+     *
+     * @throws IllegalArgumentException The latitude, longitude or resolution is out of range.
+     */
+    void add(double lat, double lng) {
+        long cell = indexingEngine.geoToH3(h3Core, lat, lng, res);
+        if (cells.size() == 0) {
+            cells.add(cell);
+        } else if (cell != last()) {
+            // far cheaper than the line of a neighbor, the most common step
+            if (h3Core.h3IndexesAreNeighbors(last(), cell)) {
+                append(cell, true);
+            } else {
+                fillGap(lat, lng, cell);
+            }
+        }
+        lastLat = lat;
+        lastLng = lng;
+    }
+
+    /** The cells of the path. */
+    CellBuffer cells() {
+        return cells;
+    }
+
+    /** The edges from each cell of the path to the next, one fewer than the cells. */
+    CellBuffer edges() {
+        return edges;
+    }
+
+    private long last() {
+        return cells.cells()[cells.size() - 1];
+    }
+
+    private void fillGap(double lat, double lng, long cell) {
+        line.clear();
+        try {
+            nativeCells.h3Line(last(), cell, scratch, line);
+        } catch (LineUndefinedException e) {
+            bisect(lastLat, lastLng, lat, lng, cell, MAX_BISECTIONS);
+            return;
+        }
+        // the line starts with the last cell of the path
+        for (int i = 1; i < line.size(); i++) {
+            append(line.cells()[i], true);
+        }
+    }
+
+    /** Adds the cells from the last one of the path to <code>end</code>, at the second point. */
+    private void bisect(
+            double lat1, double lng1, double lat2, double lng2, long end, int bisections) {
+        if (last() == end) {
+            return;
+        }
+        boolean neighbors = h3Core.h3IndexesAreNeighbors(last(), end);
+        if (neighbors || bisections == 0) {
+            append(end, neighbors);
+            return;
+        }
+        if (lng2 - lng1 > 180) {
+            lng2 -= 360;
+        } else if (lng1 - lng2 > 180) {
+            lng2 += 360;
+        }
+        double midLat = (lat1 + lat2) / 2;
+        double midLng = (lng1 + lng2) / 2;
+        if (midLng < -180) {
+            midLng += 360;
+        } else if (midLng > 180) {
+            midLng -= 360;
+        }
+        long mid = indexingEngine.geoToH3(h3Core, midLat, midLng, res);
+        bisect(lat1, lng1, midLat, midLng, mid, bisections - 1);
+        bisect(midLat, midLng, lat2, lng2, end, bisections - 1);
+    }
+
+    /** @param neighbor Whether the cell is a neighbor of the last one, with an edge to it. */
+    private void append(long cell, boolean neighbor) {
+        if (edges != null && neighbor) {
+            edges.add(h3Core.getH3UnidirectionalEdge(last(), cell));
+        }
+        cells.add(cell);
+    }
+}
@@ -0,0 +1,511 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.complex.BaseRepeatedValueVector;
+import org.apache.arrow.vector.complex.ListVector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts the batches of each UDF overload evaluated by the {@link H3AthenaUDFHandler}, and writes
+ * them as CloudWatch Embedded Metric Format (EMF) log lines, from which CloudWatch extracts the
+ * metrics.
+ *
+ * <p>Each overload has the metrics <code>Batches</code>, <code>Rows</code>, <code>NullRows</code>
+ * (rows with a <code>NULL</code> result), <code>Exceptions</code> (batches that failed), <code>
+ * OutputElements</code> (of UDFs that return an array), <code>Latency</code> (the total of its
+ * batches) and <code>BatchLatency</code> (one value per batch, for percentiles), with the dimension
+ * sets <code>Function</code> and <code>Function, Overload</code>. A batch is counted with a few
+ * {@link LongAdder} increments, and the counts since the last flush are written once per
+ * invocation, one line per overload that was called.
+ *
+ * <p>UDFs that return <code>NULL</code> for arguments H3 cannot relate also count why, in a {@link
+ * NullReasons} per function, written as one more line per function with the dimension set <code>
+ * Function</code> and a metric per {@link NullReason}.
+ *
+ * <p>The caches kept across invocations, registered as {@link CacheCounts}, write a line per cache
+ * with the dimension set <code>Cache</code> and the metrics <code>CacheHits</code>, <code>
+ * CacheMisses</code> and <code>CacheEvictions</code> since the last flush, if there were any.
+ *
+ * <p>The lines are logged by the logger of this class, which <code>log4j2.xml</code> writes to the
+ * <code>EmbeddedMetrics</code> Lambda appender with just the message, as EMF takes only JSON lines.
+ *
+ * <p>The CloudWatch namespace is set with the <code>METRICS_NAMESPACE</code> environment variable,
+ * <code>AthenaH3UDFs</code> if it is not set, and an empty namespace disables the metrics.
+ */
+final class UDFMetrics {
+    static final String ENVIRONMENT_VARIABLE = "METRICS_NAMESPACE";
+    static final String DEFAULT_NAMESPACE = "AthenaH3UDFs";
+
+    /** Histogram buckets per doubling of the latency in microseconds, at most 25% wide. */
+    private static final int SUB_BUCKET_BITS = 2;
+
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+    /** EMF takes at most 100 values of a metric per line. */
+    @VisibleForTesting static final int MAX_VALUES = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(UDFMetrics.class);
+
+    private final String namespace;
+    private final Consumer<String> sink;
+    private final Map<Method, OverloadMetrics> overloads = new ConcurrentHashMap<>();
+    private final Map<String, NullReasons> nullReasons = new ConcurrentHashMap<>();
+    private final Map<String, CacheMetrics> caches = new ConcurrentHashMap<>();
+
+    /** @param namespace CloudWatch namespace, or <code>null</code> to disable the metrics. */
+    UDFMetrics(String namespace) {
+        this(namespace, logger::info);
+    }
+
+    /**
+     * @param namespace CloudWatch namespace, or <code>null</code> to disable the metrics.
+     * @param sink Takes the EMF lines.
+     */
+    @VisibleForTesting
+    UDFMetrics(String namespace, Consumer<String> sink) {
+        this.namespace = namespace;
+        this.sink = sink;
+    }
+
+    /**
+     * Returns metrics in the namespace of the <code>METRICS_NAMESPACE</code> environment variable.
+     */
+    static UDFMetrics fromEnvironment() {
+        String namespace = System.getenv(ENVIRONMENT_VARIABLE);
+        if (namespace == null) {
+            return new UDFMetrics(DEFAULT_NAMESPACE);
+        }
+        return new UDFMetrics(namespace.trim().isEmpty() ? null : namespace.trim());
+    }
+
+    boolean isEnabled() {
+        return namespace != null;
+    }
+
+    /**
+     * Counts a batch of <code>rowCount</code> rows.
+     *
+     * @param output The results of the batch.
+     * @param nanos The time the batch took.
+     */
+    void recordBatch(Method udfMethod, int rowCount, FieldVector output, long nanos) {
+        if (!isEnabled()) {
+            return;
+        }
+        OverloadMetrics metrics = overloads.computeIfAbsent(udfMethod, OverloadMetrics::new);
+        metrics.batches.increment();
+        metrics.rows.add(rowCount);
+        metrics.nullRows.add(output.getNullCount());
+        if (output instanceof ListVector && rowCount > 0) {
+            metrics.outputElements.add(
+                    ((ListVector) output)
+                            .getOffsetBuffer()
+                            .getInt((long) rowCount * BaseRepeatedValueVector.OFFSET_WIDTH));
+        }
+        metrics.recordLatency(nanos);
+    }
+
+    /** Counts a batch of <code>rowCount</code> rows that threw. */
+    void recordException(Method udfMethod, int rowCount, long nanos) {
+        if (!isEnabled()) {
+            return;
+        }
+        OverloadMetrics metrics = overloads.computeIfAbsent(udfMethod, OverloadMetrics::new);
+        metrics.exceptions.increment();
+        metrics.rows.add(rowCount);
+        metrics.recordLatency(nanos);
+    }
+
+    /**
+     * Returns the counts of the reasons for <code>NULL</code> results of a function, for its UDFs
+     * to keep and count each row with.
+     */
+    NullReasons nullReasons(String function) {
+        return nullReasons.computeIfAbsent(function, NullReasons::new);
+    }
+
+    /** Counts the hits, misses and evictions of a cache, under a name, in every flush. */
+    void registerCache(String name, CacheCounts counts) {
+        caches.put(name, new CacheMetrics(name, counts));
+    }
+
+    /**
+     * Writes an EMF line per overload with batches, per function with <code>NULL</code> reasons,
+     * and per cache that was used, since the last flush, and resets them.
+     */
+    void flush() {
+        if (!isEnabled()) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        for (OverloadMetrics metrics : overloads.values()) {
+            String line = metrics.toEMF(namespace, timestamp);
+            if (line != null) {
+                sink.accept(line);
+            }
+        }
+        for (NullReasons reasons : nullReasons.values()) {
+            String line = reasons.toEMF(namespace, timestamp);
+            if (line != null) {
+                sink.accept(line);
+            }
+        }
+        for (CacheMetrics cache : caches.values()) {
+            String line = cache.toEMF(namespace, timestamp);
+            if (line != null) {
+                sink.accept(line);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return namespace == null
+                ? "UDFMetrics{disabled}"
+                : "UDFMetrics{namespace=" + namespace + "}";
+    }
+
+    /** Returns the SQL types of the parameters of a UDF, such as <code>BIGINT, INTEGER</code>. */
+    @VisibleForTesting
+    static String overload(Method udfMethod) {
+        StringBuilder sb = new StringBuilder();
+        for (Type type : udfMethod.getGenericParameterTypes()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            appendSqlType(sb, type);
+        }
+        return sb.toString();
+    }
+
+    private static void appendSqlType(StringBuilder sb, Type type) {
+        if (type instanceof ParameterizedType) {
+            sb.append("ARRAY(");
+            appendSqlType(sb, ((ParameterizedType) type).getActualTypeArguments()[0]);
+            sb.append(')');
+        } else if (Long.class.equals(type)) {
+            sb.append("BIGINT");
+        } else if (Integer.class.equals(type)) {
+            sb.append("INTEGER");
+        } else if (Double.class.equals(type)) {
+            sb.append("DOUBLE");
+        } else if (Boolean.class.equals(type)) {
+            sb.append("BOOLEAN");
+        } else if (String.class.equals(type)) {
+            sb.append("VARCHAR");
+        } else if (byte[].class.equals(type)) {
+            sb.append("VARBINARY");
+        } else {
+            sb.append(((Class<?>) type).getSimpleName());
+        }
+    }
+
+    /** Returns the histogram bucket of a latency. */
+    @VisibleForTesting
+    static int bucket(long nanos) {
+        long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos));
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+        if (exponent < SUB_BUCKET_BITS) {
+            return (int) micros - 1;
+        }
+        long subBucket = (micros >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + (int) subBucket - 1;
+    }
+
+    /** Returns the middle of a histogram bucket, in milliseconds. */
+    @VisibleForTesting
+    static double bucketMillis(int bucket) {
+        int index = bucket + 1;
+        int exponent = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        if (exponent < SUB_BUCKET_BITS) {
+            return index / 1000.0;
+        }
+        long subBucket = index & ((1 << SUB_BUCKET_BITS) - 1);
+        long lower = (subBucket | (1 << SUB_BUCKET_BITS)) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (lower + width / 2.0) / 1000.0;
+    }
+
+    /** Why a UDF returned <code>NULL</code> for a row whose arguments are not <code>NULL</code>. */
+    enum NullReason {
+        INVALID_CELL("NullInvalidCell"),
+        RESOLUTION_MISMATCH("NullResolutionMismatch"),
+        /** The base cells of the two cells are not neighbors, so H3 cannot unfold the grid. */
+        TOO_FAR_APART("NullTooFarApart"),
+        NOT_NEIGHBORS("NullNotNeighbors"),
+        /** H3 itself could not compute the result, as across a pentagon. */
+        UNDEFINED("NullUndefined");
+
+        final String metricName;
+
+        NullReason(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    /**
+     * Counts of the reasons for the <code>NULL</code> results of a function, over its overloads.
+     */
+    static final class NullReasons {
+        private final String function;
+        private final LongAdder[] counts = new LongAdder[NullReason.values().length];
+
+        private NullReasons(String function) {
+            this.function = function;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        /** Counts a row, and returns <code>null</code> as its result. */
+        <T> T record(NullReason reason) {
+            counts[reason.ordinal()].increment();
+            return null;
+        }
+
+        /** The count of a reason since the last flush. */
+        @VisibleForTesting
+        long count(NullReason reason) {
+            return counts[reason.ordinal()].sum();
+        }
+
+        /** Returns the EMF line of the counts since the last call, or null if there are none. */
+        String toEMF(String namespace, long timestamp) {
+            long[] values = new long[counts.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                values[i] = counts[i].sumThenReset();
+                total += values[i];
+            }
+            if (total == 0) {
+                return null;
+            }
+
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"_aws\":{\"Timestamp\":").append(timestamp);
+            sb.append(",\"CloudWatchMetrics\":[{\"Namespace\":");
+            OverloadMetrics.appendString(sb, namespace);
+            sb.append(",\"Dimensions\":[[\"Function\"]]");
+            sb.append(",\"Metrics\":[");
+            for (NullReason reason : NullReason.values()) {
+                if (reason.ordinal() > 0) {
+                    sb.append(',');
+                }
+                sb.append("{\"Name\":\"")
+                        .append(reason.metricName)
+                        .append("\",\"Unit\":\"Count\"}");
+            }
+            sb.append("]}]}");
+            sb.append(",\"Function\":");
+            OverloadMetrics.appendString(sb, function);
+            for (NullReason reason : NullReason.values()) {
+                sb.append(",\"")
+                        .append(reason.metricName)
+                        .append("\":")
+                        .append(values[reason.ordinal()]);
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    /** The cumulative counts of a cache. */
+    interface CacheCounts {
+        long hitCount();
+
+        long missCount();
+
+        long evictionCount();
+    }
+
+    /** The counts of a cache at the last flush, to write the counts since as metrics. */
+    private static final class CacheMetrics {
+        final String name;
+        final CacheCounts counts;
+        long hits;
+        long misses;
+        long evictions;
+
+        CacheMetrics(String name, CacheCounts counts) {
+            this.name = name;
+            this.counts = counts;
+            this.hits = counts.hitCount();
+            this.misses = counts.missCount();
+            this.evictions = counts.evictionCount();
+        }
+
+        /** Returns the EMF line of the counts since the last call, or null if there are none. */
+        synchronized String toEMF(String namespace, long timestamp) {
+            long hitCount = counts.hitCount();
+            long missCount = counts.missCount();
+            long evictionCount = counts.evictionCount();
+            long newHits = hitCount - hits;
+            long newMisses = missCount - misses;
+            long newEvictions = evictionCount - evictions;
+            hits = hitCount;
+            misses = missCount;
+            evictions = evictionCount;
+            if (newHits == 0 && newMisses == 0 && newEvictions == 0) {
+                return null;
+            }
+
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"_aws\":{\"Timestamp\":").append(timestamp);
+            sb.append(",\"CloudWatchMetrics\":[{\"Namespace\":");
+            OverloadMetrics.appendString(sb, namespace);
+            sb.append(",\"Dimensions\":[[\"Cache\"]]");
+            sb.append(",\"Metrics\":[{\"Name\":\"CacheHits\",\"Unit\":\"Count\"}");
+            sb.append(",{\"Name\":\"CacheMisses\",\"Unit\":\"Count\"}");
+            sb.append(",{\"Name\":\"CacheEvictions\",\"Unit\":\"Count\"}]}]}");
+            sb.append(",\"Cache\":");
+            OverloadMetrics.appendString(sb, name);
+            sb.append(",\"CacheHits\":").append(newHits);
+            sb.append(",\"CacheMisses\":").append(newMisses);
+            sb.append(",\"CacheEvictions\":").append(newEvictions);
+            return sb.append('}').toString();
+        }
+    }
+
+    private static final class OverloadMetrics {
+        final String function;
+        final String overload;
+        final boolean returnsArray;
+        final LongAdder batches = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder nullRows = new LongAdder();
+        final LongAdder exceptions = new LongAdder();
+        final LongAdder outputElements = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder[] latencyBuckets = new LongAdder[BUCKET_COUNT];
+
+        OverloadMetrics(Method udfMethod) {
+            this.function = udfMethod.getName();
+            this.overload = overload(udfMethod);
+            this.returnsArray = List.class.equals(udfMethod.getReturnType());
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                latencyBuckets[i] = new LongAdder();
+            }
+        }
+
+        void recordLatency(long batchNanos) {
+            nanos.add(batchNanos);
+            latencyBuckets[bucket(batchNanos)].increment();
+        }
+
+        /** Returns the EMF line of the counts since the last call, or null if there are none. */
+        String toEMF(String namespace, long timestamp) {
+            long batchCount = batches.sumThenReset();
+            long exceptionCount = exceptions.sumThenReset();
+            long[] latencyCounts = new long[latencyBuckets.length];
+            long latencyCount = 0;
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                latencyCounts[i] = latencyBuckets[i].sumThenReset();
+                latencyCount += latencyCounts[i];
+            }
+            long rowCount = rows.sumThenReset();
+            long nullRowCount = nullRows.sumThenReset();
+            long elementCount = outputElements.sumThenReset();
+            long totalNanos = nanos.sumThenReset();
+            if (batchCount == 0 && exceptionCount == 0) {
+                return null;
+            }
+
+            StringBuilder sb = new StringBuilder(512);
+            sb.append("{\"_aws\":{\"Timestamp\":").append(timestamp);
+            sb.append(",\"CloudWatchMetrics\":[{\"Namespace\":");
+            appendString(sb, namespace);
+            sb.append(",\"Dimensions\":[[\"Function\"],[\"Function\",\"Overload\"]]");
+            sb.append(",\"Metrics\":[");
+            sb.append("{\"Name\":\"Batches\",\"Unit\":\"Count\"}");
+            sb.append(",{\"Name\":\"Rows\",\"Unit\":\"Count\"}");
+            sb.append(",{\"Name\":\"NullRows\",\"Unit\":\"Count\"}");
+            sb.append(",{\"Name\":\"Exceptions\",\"Unit\":\"Count\"}");
+            if (returnsArray) {
+                sb.append(",{\"Name\":\"OutputElements\",\"Unit\":\"Count\"}");
+            }
+            sb.append(",{\"Name\":\"Latency\",\"Unit\":\"Milliseconds\"}");
+            sb.append(",{\"Name\":\"BatchLatency\",\"Unit\":\"Milliseconds\"}");
+            sb.append("]}]}");
+            sb.append(",\"Function\":");
+            appendString(sb, function);
+            sb.append(",\"Overload\":");
+            appendString(sb, overload);
+            sb.append(",\"Batches\":").append(batchCount);
+            sb.append(",\"Rows\":").append(rowCount);
+            sb.append(",\"NullRows\":").append(nullRowCount);
+            sb.append(",\"Exceptions\":").append(exceptionCount);
+            if (returnsArray) {
+                sb.append(",\"OutputElements\":").append(elementCount);
+            }
+            sb.append(",\"Latency\":").append(totalNanos / 1e6);
+            sb.append(",\"BatchLatency\":[");
+            appendLatencyValues(sb, latencyCounts, latencyCount);
+            return sb.append("]}").toString();
+        }
+
+        /**
+         * Appends a value per batch, the middle of its bucket. Beyond {@link #MAX_VALUES} batches,
+         * the {@link #MAX_VALUES} values are shared among the buckets in proportion to their
+         * counts, by largest remainder, so a bucket of few batches may have none.
+         */
+        private static void appendLatencyValues(StringBuilder sb, long[] counts, long total) {
+            long[] values = counts.clone();
+            if (total > MAX_VALUES) {
+                long[] remainders = new long[counts.length];
+                long remaining = MAX_VALUES;
+                for (int i = 0; i < counts.length; i++) {
+                    values[i] = counts[i] * MAX_VALUES / total;
+                    remainders[i] = counts[i] * MAX_VALUES % total;
+                    remaining -= values[i];
+                }
+                for (; remaining > 0; remaining--) {
+                    int largest = 0;
+                    for (int i = 1; i < remainders.length; i++) {
+                        if (remainders[i] > remainders[largest]) {
+                            largest = i;
+                        }
+                    }
+                    values[largest]++;
+                    remainders[largest] = 0;
+                }
+            }
+            boolean first = true;
+            for (int i = 0; i < values.length; i++) {
+                double millis = bucketMillis(i);
+                for (long v = 0; v < values[i]; v++) {
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    sb.append(millis);
+                    first = false;
+                }
+            }
+        }
+
+        private static void appendString(StringBuilder sb, String value) {
+            sb.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+    }
+}
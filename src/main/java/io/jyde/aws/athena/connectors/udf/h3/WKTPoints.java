@@ -0,0 +1,232 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import com.uber.h3core.util.GeoCoord;
+
+/**
+ * Reads and writes WKT Points, <code>POINT (lng lat)</code>, as used by Athena geospatial
+ * functions.
+ *
+ * <p>Parsing is a single pass over the characters without regular expressions. Numbers whose digits
+ * fit in the 53 bit mantissa of a double and whose decimal exponent is at most 22 (which covers
+ * coordinates written with any usual precision) are converted exactly with one floating point
+ * operation; other numbers fall back to {@link Double#parseDouble(String)}.
+ *
+ * <p>Formatting writes the shortest decimal representation that {@link Double#toString(double)}
+ * produces, without an exponent, so a formatted point parses back to the same coordinates.
+ */
+final class WKTPoints {
+    /** Digits that always fit in a <code>long</code>. */
+    private static final int MAX_DIGITS = 18;
+
+    /** Largest integer up to which every integer is exactly representable as a double. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /** Powers of ten that are exactly representable as doubles. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+        1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private WKTPoints() {}
+
+    /**
+     * Formats a coordinate as a WKT Point.
+     *
+     * @param geoCoord Latitude and longitude in degrees.
+     * @return <code>POINT (lng lat)</code>
+     */
+    static String format(GeoCoord geoCoord) {
+        return format(geoCoord.lat, geoCoord.lng);
+    }
+
+    /**
+     * Formats a coordinate as a WKT Point.
+     *
+     * @param lat Latitude in degrees.
+     * @param lng Longitude in degrees.
+     * @return <code>POINT (lng lat)</code>
+     */
+    static String format(double lat, double lng) {
+        StringBuilder sb = new StringBuilder(48);
+        sb.append("POINT (");
+        appendCoordinate(sb, lng);
+        sb.append(' ');
+        appendCoordinate(sb, lat);
+        sb.append(')');
+        return sb.toString();
+    }
+
+    /**
+     * Appends the shortest round-trippable representation of <code>value</code>, in plain decimal
+     * notation.
+     */
+    static void appendCoordinate(StringBuilder sb, double value) {
+        int start = sb.length();
+        sb.append(value);
+        int exponentIndex = sb.indexOf("E", start);
+        if (exponentIndex >= 0) {
+            toPlainNotation(sb, start, exponentIndex);
+        }
+    }
+
+    /**
+     * Parses a WKT Point.
+     *
+     * @param wkt A WKT Point, such as <code>POINT (13.4 52.5)</code>.
+     * @return The coordinate of the point.
+     * @throws IllegalArgumentException The string does not hold two coordinates.
+     */
+    static GeoCoord toGeoCoord(CharSequence wkt) {
+        double[] latLng = new double[2];
+        read(wkt, latLng, 0);
+        return new GeoCoord(latLng[0], latLng[1]);
+    }
+
+    /**
+     * Parses a WKT Point into <code>dst</code> without allocating.
+     *
+     * @param wkt A WKT Point, such as <code>POINT (13.4 52.5)</code>.
+     * @param dst Receives the latitude at <code>offset</code> and the longitude at <code>offset +
+     *     1</code>.
+     * @param offset Position in <code>dst</code>.
+     * @return The position in <code>wkt</code> after the second coordinate.
+     * @throws IllegalArgumentException The string does not hold two coordinates.
+     */
+    static int read(CharSequence wkt, double[] dst, int offset) {
+        int pos = readNumber(wkt, 0, dst, offset + 1);
+        return readNumber(wkt, pos, dst, offset);
+    }
+
+    /**
+     * Reads the next number at or after <code>pos</code> into <code>dst[index]</code>.
+     *
+     * @return The position after the number.
+     */
+    static int readNumber(CharSequence s, int pos, double[] dst, int index) {
+        int length = s.length();
+        while (pos < length && !isNumberStart(s.charAt(pos))) {
+            pos++;
+        }
+        int start = pos;
+        boolean negative = false;
+        if (pos < length && (s.charAt(pos) == '-' || s.charAt(pos) == '+')) {
+            negative = s.charAt(pos) == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean hasDigits = false;
+        boolean exact = true;
+        boolean fraction = false;
+        for (; pos < length; pos++) {
+            char c = s.charAt(pos);
+            if (c == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                break;
+            }
+            hasDigits = true;
+            if (mantissa == 0 && c == '0') {
+                // leading zero
+                if (fraction) {
+                    exponent--;
+                }
+            } else if (significantDigits < MAX_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+                significantDigits++;
+                if (fraction) {
+                    exponent--;
+                }
+            } else {
+                exact = false;
+            }
+        }
+        if (!hasDigits) {
+            throw new IllegalArgumentException("Expected a WKT Point but got: " + s);
+        }
+
+        if (pos < length && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < length && (s.charAt(pos) == '-' || s.charAt(pos) == '+')) {
+                negativeExponent = s.charAt(pos) == '-';
+                pos++;
+            }
+            int exponentStart = pos;
+            int explicitExponent = 0;
+            for (; pos < length && s.charAt(pos) >= '0' && s.charAt(pos) <= '9'; pos++) {
+                if (explicitExponent < 10000) {
+                    explicitExponent = explicitExponent * 10 + (s.charAt(pos) - '0');
+                }
+            }
+            if (pos == exponentStart) {
+                throw new IllegalArgumentException("Expected a WKT Point but got: " + s);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        if (mantissa > MAX_EXACT_MANTISSA) {
+            exact = false;
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (exact && exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exact && exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            value = Math.abs(Double.parseDouble(s.subSequence(start, pos).toString()));
+        }
+        dst[index] = negative ? -value : value;
+        return pos;
+    }
+
+    static boolean isNumberStart(char c) {
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    /**
+     * Rewrites the scientific notation of {@link Double#toString(double)}, <code>-d.dddEn</code>,
+     * which starts at <code>start</code>, as a plain decimal.
+     */
+    private static void toPlainNotation(StringBuilder sb, int start, int exponentIndex) {
+        int exponent = Integer.parseInt(sb.substring(exponentIndex + 1));
+        int digitsStart = sb.charAt(start) == '-' ? start + 1 : start;
+        StringBuilder digits = new StringBuilder(24);
+        for (int i = digitsStart; i < exponentIndex; i++) {
+            if (sb.charAt(i) != '.') {
+                digits.append(sb.charAt(i));
+            }
+        }
+        while (digits.length() > 1 && digits.charAt(digits.length() - 1) == '0') {
+            digits.setLength(digits.length() - 1);
+        }
+        sb.setLength(digitsStart);
+
+        // the decimal point is after the first digit in scientific notation
+        int pointPosition = 1 + exponent;
+        if (pointPosition <= 0) {
+            sb.append("0.");
+            for (int i = pointPosition; i < 0; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        } else if (pointPosition >= digits.length()) {
+            sb.append(digits);
+            for (int i = digits.length(); i < pointPosition; i++) {
+                sb.append('0');
+            }
+            sb.append(".0");
+        } else {
+            sb.append(digits, 0, pointPosition);
+            sb.append('.');
+            sb.append(digits, pointPosition, digits.length());
+        }
+    }
+}
@@ -7,21 +7,60 @@ EXTERNAL FUNCTION h3_is_pentagon(h3 BIGINT) RETURNS BOOLEAN LAMBDA 'h3-athena-ud
 EXTERNAL FUNCTION h3_is_pentagon(h3_address VARCHAR) RETURNS BOOLEAN LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION geo_to_h3(lat DOUBLE, lng DOUBLE, res INTEGER) RETURNS BIGINT LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION geo_to_h3_address(lat DOUBLE, lng DOUBLE, res INTEGER) RETURNS VARCHAR LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION geo_to_h3_multi(lat DOUBLE, lng DOUBLE, resolutions ARRAY<INTEGER>) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_to_geo(h3 BIGINT) RETURNS VARCHAR LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_to_geo(h3_address VARCHAR) RETURNS VARCHAR LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_to_geo_boundary(h3 BIGINT) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_to_geo_boundary(h3_address VARCHAR) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_to_geo_lat(h3 BIGINT) RETURNS DOUBLE LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_to_geo_lng(h3 BIGINT) RETURNS DOUBLE LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_to_geo_coords(h3 BIGINT) RETURNS ARRAY<DOUBLE> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_to_geo_coords(h3_address VARCHAR) RETURNS ARRAY<DOUBLE> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_to_geo_boundary_coords(h3 BIGINT) RETURNS ARRAY<DOUBLE> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_to_geo_boundary_coords(h3_address VARCHAR) RETURNS ARRAY<DOUBLE> LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_to_geo_polygon(h3 BIGINT) RETURNS VARCHAR LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION k_ring(h3 BIGINT, k INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION k_ring(h3_address VARCHAR, k INTEGER) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION k_ring_compact(h3 BIGINT, k INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION k_ring_compact(h3_address VARCHAR, k INTEGER) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION k_ring_distances(h3 BIGINT, k INTEGER) RETURNS ARRAY<ARRAY<BIGINT>> LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION hex_ring(h3 BIGINT, k INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION hex_ring(h3_address VARCHAR, k INTEGER) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_distance(a BIGINT, b BIGINT) RETURNS INTEGER LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_distance(a VARCHAR, b VARCHAR) RETURNS INTEGER LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_line("start" BIGINT, "end" BIGINT) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_line(start_address VARCHAR, end_address VARCHAR) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_trajectory(lats ARRAY<DOUBLE>, lngs ARRAY<DOUBLE>, res INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_trajectory_edges(lats ARRAY<DOUBLE>, lngs ARRAY<DOUBLE>, res INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION polyfill(points ARRAY<VARCHAR>, holes ARRAY<ARRAY<VARCHAR>>, res INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION polyfill_address(points ARRAY<VARCHAR>, holes ARRAY<ARRAY<VARCHAR>>, res INTEGER) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_compact(points ARRAY<VARCHAR>, holes ARRAY<ARRAY<VARCHAR>>, res INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_address_compact(points ARRAY<VARCHAR>, holes ARRAY<ARRAY<VARCHAR>>, res INTEGER) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill(wkb VARBINARY, res INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill(wkt VARCHAR, res INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_address(wkb VARBINARY, res INTEGER) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_address(wkt VARCHAR, res INTEGER) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_compact(wkb VARBINARY, res INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_compact(wkt VARCHAR, res INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_address_compact(wkb VARBINARY, res INTEGER) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_address_compact(wkt VARCHAR, res INTEGER) RETURNS ARRAY<VARCHAR> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_page(points ARRAY<VARCHAR>, holes ARRAY<ARRAY<VARCHAR>>, res INTEGER, page BIGINT, page_size INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_page(wkb VARBINARY, res INTEGER, page BIGINT, page_size INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_page(wkt VARCHAR, res INTEGER, page BIGINT, page_size INTEGER) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_count(points ARRAY<VARCHAR>, holes ARRAY<ARRAY<VARCHAR>>, res INTEGER) RETURNS BIGINT LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_count(wkb VARBINARY, res INTEGER) RETURNS BIGINT LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION polyfill_count(wkt VARCHAR, res INTEGER) RETURNS BIGINT LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_in_polygon(h3 BIGINT, points ARRAY<VARCHAR>, holes ARRAY<ARRAY<VARCHAR>>, res INTEGER) RETURNS BOOLEAN LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_in_polygon(h3 BIGINT, wkb VARBINARY, res INTEGER) RETURNS BOOLEAN LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_in_polygon(h3 BIGINT, wkt VARCHAR, res INTEGER) RETURNS BOOLEAN LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_cell_set(h3 ARRAY<BIGINT>) RETURNS VARBINARY LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_cell_set_cells(cell_set VARBINARY) RETURNS ARRAY<BIGINT> LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_cell_set_contains(h3 BIGINT, cell_set VARBINARY) RETURNS BOOLEAN LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_cell_set_union(a VARBINARY, b VARBINARY) RETURNS VARBINARY LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_cell_set_intersect(a VARBINARY, b VARBINARY) RETURNS VARBINARY LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_cell_set_difference(a VARBINARY, b VARBINARY) RETURNS VARBINARY LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_set_to_multipolygon(h3 ARRAY<BIGINT>) RETURNS VARCHAR LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION h3_set_to_multipolygon_wkb(h3 ARRAY<BIGINT>) RETURNS VARBINARY LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_get_resolution(h3 BIGINT) RETURNS INTEGER LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_get_resolution(h3_address VARCHAR) RETURNS INTEGER LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION h3_to_parent(h3 BIGINT, res INTEGER) RETURNS BIGINT LAMBDA 'h3-athena-udf-handler',
@@ -41,6 +80,7 @@ EXTERNAL FUNCTION string_to_h3(h3_address VARCHAR) RETURNS BIGINT LAMBDA 'h3-ath
 EXTERNAL FUNCTION cell_area(h3 BIGINT, unit VARCHAR) RETURNS DOUBLE LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION cell_area(h3_address VARCHAR, unit VARCHAR) RETURNS DOUBLE LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION point_dist(a VARCHAR, b VARCHAR, unit VARCHAR) RETURNS DOUBLE LAMBDA 'h3-athena-udf-handler',
+EXTERNAL FUNCTION point_dist(a_lat DOUBLE, a_lng DOUBLE, b_lat DOUBLE, b_lng DOUBLE, unit VARCHAR) RETURNS DOUBLE LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION exact_edge_length(edge BIGINT, unit VARCHAR) RETURNS DOUBLE LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION exact_edge_length(edge_address VARCHAR, unit VARCHAR) RETURNS DOUBLE LAMBDA 'h3-athena-udf-handler',
 EXTERNAL FUNCTION hex_area(res INTEGER, unit VARCHAR) RETURNS DOUBLE LAMBDA 'h3-athena-udf-handler',
@@ -77,7 +117,8 @@ with tbl1 AS
     geo_to_h3(lat, lon, 10) h3,
     geo_to_h3(lat, lon, 14) h3_sm,
     geo_to_h3_address(lat, lon, 10) h3_address,
-    geo_to_h3_address(lat, lon, 14) h3_address_sm
+    geo_to_h3_address(lat, lon, 14) h3_address_sm,
+    geo_to_h3_multi(lat, lon, ARRAY[7, 9, 11, 15]) h3_multi
   FROM
     planet
   LIMIT 100
@@ -99,14 +140,25 @@ tbl2 AS
       h3_to_geo_boundary(h3_sm) h3_boundary_sm,
       h3_to_geo_boundary(h3_address) h3_address_boundary,
       h3_to_geo_boundary(h3_address_sm) h3_address_boundary_sm,
+      h3_to_geo_lat(h3) h3_lat,
+      h3_to_geo_lng(h3) h3_lng,
+      h3_to_geo_coords(h3) h3_coords,
+      h3_to_geo_coords(h3_address) h3_address_coords,
+      h3_to_geo_boundary_coords(h3) h3_boundary_coords,
+      h3_to_geo_boundary_coords(h3_address) h3_address_boundary_coords,
       k_ring(h3, 2) h3_kring,
       k_ring(h3_address, 2) h3_address_kring,
+      k_ring_compact(h3, 2) h3_kring_compact,
+      k_ring_compact(h3_address, 2) h3_address_kring_compact,
+      k_ring_distances(h3, 2) h3_kring_distances,
       hex_ring(h3, 1) h3_hex_ring,
       hex_ring(h3_address, 1) h3_address_hex_ring,
       h3_distance(h3, lag(h3) over(PARTITION BY uid ORDER BY lat, lng)) h3_distance,
       h3_distance(h3_address, lag(h3_address) over(PARTITION BY uid ORDER BY lat, lng)) h3_address_distance,
       h3_line(h3, lag(h3, 1) over(PARTITION BY uid ORDER BY lat, lng)) h3_line,
       h3_line(h3_address, lag(h3_address, 1) over(PARTITION BY uid ORDER BY lat, lng)) h3_line,
+      h3_trajectory(array_agg(lat) over(PARTITION BY uid ORDER BY lat, lng), array_agg(lng) over(PARTITION BY uid ORDER BY lat, lng), 9) h3_trajectory,
+      h3_trajectory_edges(array_agg(lat) over(PARTITION BY uid ORDER BY lat, lng), array_agg(lng) over(PARTITION BY uid ORDER BY lat, lng), 9) h3_trajectory_edges,
       h3_get_resolution(h3) h3_resolution,
   	  h3_get_resolution(h3_address) h3_address_resolution,
       h3_to_parent(h3, 7) h3_parent,
@@ -140,7 +192,34 @@ SELECT
   uncompact_address(h3_address_children, 14) uncompact_address,
   polyfill(h3_boundary, ARRAY[h3_boundary_sm], 14) polyfill_boundary,
   polyfill_address(h3_address_boundary, ARRAY[h3_address_boundary_sm], 14) polyfill_address_boundary,
+  polyfill_compact(h3_boundary, ARRAY[h3_boundary_sm], 14) polyfill_compact_boundary,
+  polyfill_address_compact(h3_address_boundary, ARRAY[h3_address_boundary_sm], 14) polyfill_address_compact_boundary,
+  polyfill(ST_AsBinary(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) polyfill_wkb,
+  polyfill(ST_AsText(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) polyfill_wkt,
+  polyfill_address(ST_AsBinary(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) polyfill_address_wkb,
+  polyfill_address(ST_AsText(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) polyfill_address_wkt,
+  polyfill_compact(ST_AsBinary(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) polyfill_compact_wkb,
+  polyfill_compact(ST_AsText(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) polyfill_compact_wkt,
+  polyfill_address_compact(ST_AsBinary(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) polyfill_address_compact_wkb,
+  polyfill_address_compact(ST_AsText(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) polyfill_address_compact_wkt,
+  polyfill_page(h3_boundary, ARRAY[h3_boundary_sm], 14, 1, 10) polyfill_page_boundary,
+  polyfill_page(ST_AsBinary(ST_Buffer(ST_Point(lng, lat), 0.001)), 12, 0, 10) polyfill_page_wkb,
+  polyfill_page(ST_AsText(ST_Buffer(ST_Point(lng, lat), 0.001)), 12, 0, 10) polyfill_page_wkt,
+  polyfill_count(h3_boundary, ARRAY[h3_boundary_sm], 14) polyfill_count_boundary,
+  polyfill_count(ST_AsBinary(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) polyfill_count_wkb,
+  polyfill_count(ST_AsText(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) polyfill_count_wkt,
+  h3_in_polygon(h3, h3_boundary, ARRAY[h3_boundary_sm], 7) h3_in_polygon_boundary,
+  h3_in_polygon(h3, ST_AsBinary(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) h3_in_polygon_wkb,
+  h3_in_polygon(h3, ST_AsText(ST_Buffer(ST_Point(lng, lat), 0.001)), 12) h3_in_polygon_wkt,
+  h3_cell_set_cells(h3_cell_set(k_ring(h3, 3))) h3_cell_set_cells,
+  h3_cell_set_contains(h3, h3_cell_set(k_ring(h3, 3))) h3_cell_set_contains,
+  h3_cell_set_cells(h3_cell_set_union(h3_cell_set(k_ring(h3, 3)), h3_cell_set(k_ring(h3_sm, 3)))) h3_cell_set_union,
+  h3_cell_set_cells(h3_cell_set_intersect(h3_cell_set(k_ring(h3, 3)), h3_cell_set(k_ring(h3_sm, 3)))) h3_cell_set_intersect,
+  h3_cell_set_cells(h3_cell_set_difference(h3_cell_set(k_ring(h3, 3)), h3_cell_set(k_ring(h3_sm, 3)))) h3_cell_set_difference,
+  h3_set_to_multipolygon(k_ring(h3, 2)) h3_set_to_multipolygon,
+  ST_Area(ST_GeomFromBinary(h3_set_to_multipolygon_wkb(k_ring(h3, 2)))) h3_set_to_multipolygon_area,
   point_dist(lag(h3_point, 1) over(PARTITION BY uid ORDER BY lat, lng), h3_point, 'm') h3_point_dist,
+  point_dist(lag(h3_lat, 1) over(PARTITION BY uid ORDER BY lat, lng), lag(h3_lng, 1) over(PARTITION BY uid ORDER BY lat, lng), h3_lat, h3_lng, 'm') h3_coords_dist,
   exact_edge_length(get_h3_unidirectional_edge, 'm') h3_exact_edge_length_meters,
   exact_edge_length(get_h3_address_unidirectional_edge, 'm') h3_address_exact_edge_length_meters,
   hex_area(h3_resolution, 'm2') h3_resolution_area_m2,
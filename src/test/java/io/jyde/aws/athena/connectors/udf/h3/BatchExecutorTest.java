@@ -0,0 +1,87 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Test;
+
+public class BatchExecutorTest {
+    @Test
+    public void map_InRowOrder() {
+        BatchExecutor executor = new BatchExecutor(4);
+        assertTrue(executor.isParallel());
+        Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        Object[] results =
+                executor.map(
+                        1000,
+                        1,
+                        row -> {
+                            threads.add(Thread.currentThread().getName());
+                            return row * 2;
+                        });
+        for (int row = 0; row < results.length; row++) {
+            assertEquals(row * 2, results[row]);
+        }
+        assertFalse(threads.contains(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void map_Sequential() {
+        assertFalse(BatchExecutor.SEQUENTIAL.isParallel());
+        Object[] results =
+                BatchExecutor.SEQUENTIAL.map(3, 1, row -> Thread.currentThread().getName() + row);
+        String thread = Thread.currentThread().getName();
+        assertArrayEquals(new Object[] {thread + 0, thread + 1, thread + 2}, results);
+    }
+
+    @Test
+    public void map_SmallBatchOnCallingThread() {
+        Object[] results =
+                new BatchExecutor(4).map(10, 64, row -> Thread.currentThread().getName());
+        assertEquals(Thread.currentThread().getName(), results[9]);
+    }
+
+    @Test
+    public void map_ThrowsFirstFailure() {
+        IOException first = new IOException("first");
+        try {
+            new BatchExecutor(4)
+                    .map(
+                            1000,
+                            1,
+                            row -> {
+                                if (row == 100) {
+                                    throw first;
+                                }
+                                if (row == 900) {
+                                    throw new IllegalArgumentException("last");
+                                }
+                                return row;
+                            });
+            fail();
+        } catch (RuntimeException e) {
+            assertSame(first, e.getCause());
+        }
+    }
+
+    @Test
+    public void parallelism() {
+        assertEquals(
+                Runtime.getRuntime().availableProcessors(), new BatchExecutor(0).parallelism());
+        assertEquals(1, BatchExecutor.SEQUENTIAL.parallelism());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeParallelism() {
+        new BatchExecutor(-1);
+    }
+}
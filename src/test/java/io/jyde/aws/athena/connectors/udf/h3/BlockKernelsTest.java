@@ -0,0 +1,320 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.amazonaws.athena.connector.lambda.data.FieldResolver;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockKernelsTest {
+    private static final Long h3 = 628064021095030783L;
+
+    private H3AthenaUDFHandler handler;
+    private H3Core h3Core;
+    private BlockAllocatorImpl allocator;
+
+    private Long secondH3;
+    private Long edge;
+
+    @Before
+    public void setup() throws IOException {
+        this.handler = new H3AthenaUDFHandler();
+        this.h3Core = H3Core.newInstance();
+        this.allocator = new BlockAllocatorImpl();
+
+        this.secondH3 = h3Core.kRing(h3, 1).get(1);
+        this.edge = h3Core.getH3UnidirectionalEdge(h3, secondH3);
+    }
+
+    @After
+    public void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    public void h3_is_valid() throws Exception {
+        assertBlockMatchesRows(
+                "h3_is_valid", Types.MinorType.BIT, rows(h3), rows((Object) null), rows(0L));
+    }
+
+    @Test
+    public void h3_get_base_cell() throws Exception {
+        assertBlockMatchesRows(
+                "h3_get_base_cell", Types.MinorType.INT, rows(h3), rows((Object) null));
+    }
+
+    @Test
+    public void h3_is_pentagon() throws Exception {
+        long pentagon = h3Core.getPentagonIndexes(5).iterator().next();
+        assertBlockMatchesRows(
+                "h3_is_pentagon",
+                Types.MinorType.BIT,
+                rows(h3),
+                rows(pentagon),
+                rows((Object) null));
+    }
+
+    @Test
+    public void geo_to_h3() throws Exception {
+        assertBlockMatchesRows(
+                "geo_to_h3",
+                Types.MinorType.BIGINT,
+                rows(52.496, 13.4149, 13),
+                rows(-33.8688, 151.2093, 9),
+                rows(null, 13.4149, 13),
+                rows(52.496, null, 13));
+    }
+
+    @Test
+    public void geo_to_h3_multi() throws Exception {
+        Method method =
+                H3AthenaUDFHandler.class.getMethod(
+                        "geo_to_h3_multi", Double.class, Double.class, List.class);
+        Schema inputSchema =
+                SchemaBuilder.newBuilder()
+                        .addFloat8Field("lat")
+                        .addFloat8Field("lng")
+                        .addListField("resolutions", Types.MinorType.INT.getType())
+                        .build();
+        Schema outputSchema =
+                SchemaBuilder.newBuilder()
+                        .addListField("out", Types.MinorType.BIGINT.getType())
+                        .build();
+        Double[][] points = {{52.496, 13.4149}, {-33.8688, 151.2093}, {null, 13.4149}};
+        List<Integer> resolutions = Arrays.asList(7, 15, 0, 11, 7);
+        try (Block input = allocator.createBlock(inputSchema)) {
+            for (int row = 0; row < points.length; row++) {
+                input.setValue("lat", row, points[row][0]);
+                input.setValue("lng", row, points[row][1]);
+                input.setComplexValue("resolutions", row, FieldResolver.DEFAULT, resolutions);
+            }
+            input.setRowCount(points.length);
+
+            try (Block output = handler.processRows(allocator, method, input, outputSchema)) {
+                FieldVector out = output.getFieldVector("out");
+                for (int row = 0; row < points.length; row++) {
+                    assertEquals(
+                            handler.geo_to_h3_multi(points[row][0], points[row][1], resolutions),
+                            out.getObject(row));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void h3_to_geo_lat() throws Exception {
+        assertBlockMatchesRows(
+                "h3_to_geo_lat", Types.MinorType.FLOAT8, rows(h3), rows((Object) null));
+    }
+
+    @Test
+    public void h3_to_geo_lng() throws Exception {
+        assertBlockMatchesRows(
+                "h3_to_geo_lng", Types.MinorType.FLOAT8, rows(h3), rows((Object) null));
+    }
+
+    @Test
+    public void point_dist() throws Exception {
+        assertBlockMatchesRows(
+                "point_dist",
+                Types.MinorType.FLOAT8,
+                rows(52.496, 13.4149, -33.8688, 151.2093, "km"),
+                rows(52.496, 13.4149, 52.5, 13.4, "km"),
+                rows(52.496, null, 52.5, 13.4, "km"));
+        assertBlockMatchesRows(
+                "point_dist",
+                Types.MinorType.FLOAT8,
+                rows(52.496, 13.4149, 52.5, 13.4, "m"),
+                rows(52.496, 13.4149, 52.5, 13.4, "km"));
+    }
+
+    @Test
+    public void h3_get_resolution() throws Exception {
+        assertBlockMatchesRows(
+                "h3_get_resolution", Types.MinorType.INT, rows(h3), rows((Object) null));
+    }
+
+    @Test
+    public void h3_to_parent() throws Exception {
+        assertBlockMatchesRows(
+                "h3_to_parent", Types.MinorType.BIGINT, rows(h3, 7), rows(h3, 11), rows(null, 7));
+    }
+
+    @Test
+    public void h3_to_center_child() throws Exception {
+        assertBlockMatchesRows(
+                "h3_to_center_child",
+                Types.MinorType.BIGINT,
+                rows(h3, 13),
+                rows(h3, 11),
+                rows(null, 13));
+    }
+
+    @Test
+    public void h3_is_res_class_iii() throws Exception {
+        assertBlockMatchesRows(
+                "h3_is_res_class_iii",
+                Types.MinorType.BIT,
+                rows(h3),
+                rows(h3Core.h3ToParent(h3, 4)),
+                rows((Object) null));
+    }
+
+    @Test
+    public void h3_indexes_are_neighbors() throws Exception {
+        assertBlockMatchesRows(
+                "h3_indexes_are_neighbors",
+                Types.MinorType.BIT,
+                rows(h3, secondH3),
+                rows(h3, h3),
+                rows(h3, null),
+                rows(null, h3));
+    }
+
+    @Test
+    public void h3_unidirectional_edge_is_valid() throws Exception {
+        assertBlockMatchesRows(
+                "h3_unidirectional_edge_is_valid",
+                Types.MinorType.BIT,
+                rows(edge),
+                rows(h3),
+                rows((Object) null));
+    }
+
+    @Test
+    public void get_origin_h3_index_from_unidirectional_edge() throws Exception {
+        assertBlockMatchesRows(
+                "get_origin_h3_index_from_unidirectional_edge",
+                Types.MinorType.BIGINT,
+                rows(edge),
+                rows((Object) null));
+    }
+
+    @Test
+    public void get_destination_h3_index_from_unidirectional_edge() throws Exception {
+        assertBlockMatchesRows(
+                "get_destination_h3_index_from_unidirectional_edge",
+                Types.MinorType.BIGINT,
+                rows(edge),
+                rows((Object) null));
+    }
+
+    /** The address overloads of the UDFs above, with the same functions of the parsed indexes. */
+    @Test
+    public void addresses() throws Exception {
+        String address = h3Core.h3ToString(h3);
+        String secondAddress = h3Core.h3ToString(secondH3);
+        String edgeAddress = h3Core.h3ToString(edge);
+        for (String name :
+                new String[] {
+                    "h3_is_valid",
+                    "h3_get_base_cell",
+                    "h3_is_pentagon",
+                    "h3_to_geo_lat",
+                    "h3_to_geo_lng",
+                    "h3_get_resolution",
+                    "h3_is_res_class_iii",
+                    "h3_unidirectional_edge_is_valid"
+                }) {
+            Types.MinorType outputType =
+                    findMethod(name, 1, false).getReturnType() == Boolean.class
+                            ? Types.MinorType.BIT
+                            : findMethod(name, 1, false).getReturnType() == Integer.class
+                                    ? Types.MinorType.INT
+                                    : Types.MinorType.FLOAT8;
+            assertAddressBlockMatchesRows(
+                    name,
+                    outputType,
+                    rows(address),
+                    rows(address.toUpperCase()),
+                    rows("0" + address),
+                    rows((Object) null));
+        }
+        assertAddressBlockMatchesRows(
+                "h3_to_parent_address",
+                Types.MinorType.VARCHAR,
+                rows(address, 7),
+                rows(address, 11),
+                rows(null, 7));
+        assertAddressBlockMatchesRows(
+                "h3_to_center_child", Types.MinorType.VARCHAR, rows(address, 13), rows(null, 13));
+        assertAddressBlockMatchesRows(
+                "h3_indexes_are_neighbors",
+                Types.MinorType.BIT,
+                rows(address, secondAddress),
+                rows(address, address),
+                rows(address, null));
+        for (String name :
+                new String[] {
+                    "get_origin_h3_index_from_unidirectional_edge",
+                    "get_destination_h3_index_from_unidirectional_edge"
+                }) {
+            assertAddressBlockMatchesRows(
+                    name, Types.MinorType.VARCHAR, rows(edgeAddress), rows((Object) null));
+        }
+        assertAddressBlockMatchesRows(
+                "string_to_h3",
+                Types.MinorType.BIGINT,
+                rows(address),
+                rows("+" + address),
+                rows("0"),
+                rows((Object) null));
+        assertBlockMatchesRows(
+                "h3_to_string", Types.MinorType.VARCHAR, rows(h3), rows(0L), rows((Object) null));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void addresses_Invalid() throws Exception {
+        assertAddressBlockMatchesRows("h3_get_resolution", Types.MinorType.INT, rows("8928z"));
+    }
+
+    private static Object[] rows(Object... values) {
+        return values;
+    }
+
+    /** {@link UDFBatches#assertBlockMatchesRows} for the overload of a UDF without addresses. */
+    private void assertBlockMatchesRows(String name, Types.MinorType outputType, Object[]... rows)
+            throws Exception {
+        assertBlockMatchesRows(findMethod(name, rows[0].length, false), outputType, rows);
+    }
+
+    /** As {@link #assertBlockMatchesRows}, for the overload of an address. */
+    private void assertAddressBlockMatchesRows(
+            String name, Types.MinorType outputType, Object[]... rows) throws Exception {
+        assertBlockMatchesRows(findMethod(name, rows[0].length, true), outputType, rows);
+    }
+
+    private void assertBlockMatchesRows(Method method, Types.MinorType outputType, Object[]... rows)
+            throws Exception {
+        UDFBatches.assertBlockMatchesRows(
+                handler,
+                allocator,
+                method,
+                UDFBatches.inputFields(method),
+                UDFBatches.field("out", outputType.getType()),
+                Arrays.asList(rows));
+    }
+
+    private static Method findMethod(String name, int parameterCount, boolean address) {
+        List<Method> methods = Arrays.asList(H3AthenaUDFHandler.class.getMethods());
+        return methods.stream()
+                .filter(m -> m.getName().equals(name))
+                .filter(m -> m.getParameterCount() == parameterCount)
+                .filter(m -> (m.getParameterTypes()[0] == String.class) == address)
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No UDF method " + name));
+    }
+}
@@ -0,0 +1,102 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CellCompactorTest {
+    private H3Core h3Core;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+    }
+
+    @Test
+    public void cells_KRings() {
+        Random random = new Random(42L);
+        for (int n = 0; n < 50; n++) {
+            double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            double lng = 360 * random.nextDouble() - 180;
+            long cell = h3Core.geoToH3(lat, lng, 1 + random.nextInt(9));
+            assertCompacts(h3Core.kRing(cell, random.nextInt(30)));
+        }
+    }
+
+    @Test
+    public void cells_Pentagons() {
+        for (int res = 1; res <= 6; res++) {
+            for (long pentagon : h3Core.getPentagonIndexes(res)) {
+                assertCompacts(h3Core.kRing(pentagon, 8));
+                assertCompacts(h3Core.h3ToChildren(h3Core.h3ToParent(pentagon, res - 1), res));
+            }
+        }
+    }
+
+    /** Every descendant of a cell, except some of them, in random order. */
+    @Test
+    public void cells_Descendants() {
+        Random random = new Random(7L);
+        long parent = h3Core.geoToH3(52.52, 13.405, 4);
+        List<Long> cells = new ArrayList<>(h3Core.h3ToChildren(parent, 8));
+        assertEquals(Collections.singletonList(parent), compact(cells, 8));
+        Collections.shuffle(cells, random);
+        cells.subList(0, 100).clear();
+        assertCompacts(cells);
+    }
+
+    @Test
+    public void cells_BaseCells() {
+        List<Long> cells = new ArrayList<>(h3Core.getRes0Indexes());
+        assertCompacts(cells);
+        assertEquals(
+                new HashSet<>(cells),
+                new HashSet<>(compact(h3Core.uncompact(h3Core.getRes0Indexes(), 2), 2)));
+    }
+
+    /** Overlapping sets, whose shared cells are added twice, before and after compacting. */
+    @Test
+    public void cells_Repeated() {
+        long cell = h3Core.geoToH3(52.52, 13.405, 6);
+        List<Long> cells = new ArrayList<>(h3Core.kRing(cell, 6));
+        cells.addAll(h3Core.kRing(h3Core.h3ToCenterChild(h3Core.h3ToParent(cell, 4), 6), 6));
+        List<Long> expected = h3Core.compact(new ArrayList<>(new HashSet<>(cells)));
+        List<Long> actual = compact(cells, 6);
+        assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+        assertEquals(expected.size(), actual.size());
+
+        List<Long> baseCells = new ArrayList<>(h3Core.getRes0Indexes());
+        baseCells.addAll(h3Core.getRes0Indexes());
+        assertEquals(122, compact(baseCells, 0).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_OtherResolution() {
+        new CellCompactor(5).add(h3Core.geoToH3(52.52, 13.405, 6));
+    }
+
+    private void assertCompacts(List<Long> cells) {
+        int res = h3Core.h3GetResolution(cells.get(0));
+        List<Long> actual = compact(cells, res);
+        List<Long> expected = h3Core.compact(cells);
+        assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+        assertEquals(expected.size(), actual.size());
+    }
+
+    private static List<Long> compact(List<Long> cells, int res) {
+        CellCompactor compactor = new CellCompactor(res);
+        for (long cell : cells) {
+            compactor.add(cell);
+        }
+        return compactor.cells();
+    }
+}
@@ -0,0 +1,176 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.util.GeoCoord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CellDissolverTest {
+    private H3Core h3Core;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+    }
+
+    @Test
+    public void dissolve_Cell() {
+        long cell = h3Core.geoToH3(52.5, 13.4, 9);
+        List<Polygons.Polygon> polygons = dissolve(Collections.singletonList(cell));
+        assertEquals(1, polygons.size());
+        assertTrue(sameVertices(h3Core.h3ToGeoBoundary(cell), polygons.get(0).points));
+        assertTrue(polygons.get(0).holes.isEmpty());
+    }
+
+    @Test
+    public void dissolve_KRing() {
+        assertMatchesH3(h3Core.kRing(h3Core.geoToH3(52.5, 13.4, 9), 3));
+    }
+
+    /** A hollow ring, and a cell inside its hole as a polygon of its own. */
+    @Test
+    public void dissolve_Holes() {
+        long origin = h3Core.geoToH3(52.5, 13.4, 8);
+        List<Long> cells = new ArrayList<>(h3Core.kRing(origin, 3));
+        cells.removeAll(h3Core.kRing(origin, 1));
+        List<Polygons.Polygon> polygons = dissolve(cells);
+        assertEquals(1, polygons.size());
+        assertEquals(1, polygons.get(0).holes.size());
+        assertMatchesH3(cells);
+
+        cells.add(origin);
+        polygons = dissolve(cells);
+        assertEquals(2, polygons.size());
+        assertMatchesH3(cells);
+    }
+
+    @Test
+    public void dissolve_Disjoint() {
+        List<Long> cells = new ArrayList<>(h3Core.kRing(h3Core.geoToH3(52.5, 13.4, 7), 1));
+        cells.addAll(h3Core.kRing(h3Core.geoToH3(48.1, 11.6, 7), 2));
+        cells.addAll(cells.subList(0, 3));
+        assertEquals(2, dissolve(cells).size());
+        assertMatchesH3(cells);
+    }
+
+    /** Cells around pentagons, across icosahedron faces. */
+    @Test
+    public void dissolve_Pentagons() {
+        for (long pentagon : h3Core.getPentagonIndexes(4)) {
+            assertMatchesH3(h3Core.kRing(pentagon, 2));
+        }
+    }
+
+    /**
+     * Vertices on different faces differ by up to 3e-7 degrees, and <code>h3SetToMultiPolygon
+     * </code>, matching them exactly, leaves slivers along the edges of faces at some resolutions.
+     */
+    @Test
+    public void dissolve_FaceEdges() {
+        for (int res : new int[] {1, 5}) {
+            for (long pentagon : h3Core.getPentagonIndexes(res)) {
+                List<Polygons.Polygon> polygons = dissolve(h3Core.kRing(pentagon, 2));
+                assertEquals(1, polygons.size());
+                assertTrue(polygons.get(0).holes.isEmpty());
+            }
+        }
+    }
+
+    /** Coordinates are kept as the cells have them, across the antimeridian too. */
+    @Test
+    public void dissolve_Antimeridian() {
+        List<Long> cells = h3Core.kRing(h3Core.geoToH3(10, 180, 6), 2);
+        List<Polygons.Polygon> polygons = dissolve(cells);
+        assertEquals(1, polygons.size());
+        assertTrue(polygons.get(0).holes.isEmpty());
+        assertMatchesH3(cells);
+    }
+
+    @Test
+    public void dissolve_Empty() {
+        assertTrue(dissolve(Collections.emptyList()).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dissolve_MixedResolutions() {
+        long cell = h3Core.geoToH3(52.5, 13.4, 9);
+        List<Long> cells = new ArrayList<>();
+        cells.add(cell);
+        cells.add(h3Core.h3ToParent(cell, 8));
+        dissolve(cells);
+    }
+
+    private List<Polygons.Polygon> dissolve(Collection<Long> cells) {
+        long[] array = new long[cells.size()];
+        int count = 0;
+        for (long cell : cells) {
+            array[count++] = cell;
+        }
+        return CellDissolver.dissolve(h3Core, new NativeCells(h3Core), array, count);
+    }
+
+    /**
+     * Asserts the same polygons as <code>H3Core.h3SetToMultiPolygon</code>, in any order and up to
+     * the rounding of vertices on different icosahedron faces. It is given distinct cells, as it
+     * makes stray rings of repeated ones.
+     */
+    private void assertMatchesH3(Collection<Long> cells) {
+        List<List<List<GeoCoord>>> expected =
+                h3Core.h3SetToMultiPolygon(new LinkedHashSet<>(cells), false);
+        List<Polygons.Polygon> actual = dissolve(cells);
+        assertEquals(expected.size(), actual.size());
+        for (List<List<GeoCoord>> polygon : expected) {
+            boolean found = false;
+            for (Polygons.Polygon candidate : actual) {
+                List<List<GeoCoord>> rings = new ArrayList<>();
+                rings.add(candidate.points);
+                rings.addAll(candidate.holes);
+                found |= sameRings(polygon, rings);
+            }
+            assertTrue("No polygon like " + polygon, found);
+        }
+    }
+
+    private static boolean sameRings(List<List<GeoCoord>> expected, List<List<GeoCoord>> actual) {
+        if (expected.size() != actual.size() || !sameVertices(expected.get(0), actual.get(0))) {
+            return false;
+        }
+        for (List<GeoCoord> hole : expected.subList(1, expected.size())) {
+            boolean found = false;
+            for (List<GeoCoord> candidate : actual.subList(1, actual.size())) {
+                found |= sameVertices(hole, candidate);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Whether two rings have the same vertices, in any order, within 1e-6 degrees. */
+    private static boolean sameVertices(List<GeoCoord> expected, List<GeoCoord> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (GeoCoord a : expected) {
+            boolean found = false;
+            for (GeoCoord b : actual) {
+                found |= Math.abs(a.lat - b.lat) < 1e-6 && Math.abs(a.lng - b.lng) < 1e-6;
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
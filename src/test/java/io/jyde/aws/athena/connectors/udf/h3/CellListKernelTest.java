@@ -0,0 +1,194 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.uber.h3core.H3Core;
+import com.uber.h3core.exceptions.PentagonEncounteredException;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CellListKernelTest {
+    private static final Long h3 = 628064021095030783L;
+
+    private H3Core h3Core;
+    private BlockAllocatorImpl allocator;
+
+    private List<Long> cells;
+    private long pentagon;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.allocator = new BlockAllocatorImpl();
+        this.cells = h3Core.kRing(h3, 20);
+        this.pentagon = h3Core.getPentagonIndexes(9).iterator().next();
+    }
+
+    @After
+    public void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    public void k_ring() throws Exception {
+        for (BatchExecutor executor : executors()) {
+            List<Object[]> rows = new ArrayList<>();
+            // recurring cells, in ranges of parallel batches
+            for (int i = 0; i < 3000; i++) {
+                rows.add(new Object[] {i % 17 == 3 ? null : cells.get(i % 700), 3});
+            }
+            rows.add(new Object[] {pentagon, 3});
+            assertBlockMatchesRows(executor, "k_ring", rows, Long.class, Integer.class);
+
+            // varying k
+            rows.clear();
+            for (int i = 0; i < cells.size(); i++) {
+                rows.add(new Object[] {cells.get(i), i % 5});
+            }
+            assertBlockMatchesRows(executor, "k_ring", rows, Long.class, Integer.class);
+        }
+    }
+
+    @Test
+    public void hex_ring() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < cells.size(); i++) {
+            rows.add(new Object[] {i == 7 ? null : cells.get(i), i % 4});
+        }
+        for (BatchExecutor executor : executors()) {
+            assertBlockMatchesRows(executor, "hex_ring", rows, Long.class, Integer.class);
+        }
+    }
+
+    @Test
+    public void hex_ring_Pentagon() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (Long cell : cells) {
+            rows.add(new Object[] {cell, 2});
+        }
+        rows.add(new Object[] {pentagon, 2});
+        try {
+            assertBlockMatchesRows(
+                    BatchExecutor.SEQUENTIAL, "hex_ring", rows, Long.class, Integer.class);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof PentagonEncounteredException);
+        }
+    }
+
+    /** Lines that are <code>null</code> because of a <code>null</code> end or an undefined line. */
+    @Test
+    public void h3_line() throws Exception {
+        long farAway = h3Core.geoToH3(-33.9, 151.2, 9);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < cells.size(); i++) {
+            Long end = i % 10 == 0 ? null : i % 10 == 1 ? farAway : cells.get(i);
+            rows.add(new Object[] {h3, end});
+        }
+        for (BatchExecutor executor : executors()) {
+            assertBlockMatchesRows(executor, "h3_line", rows, Long.class, Long.class);
+        }
+    }
+
+    /** The address overloads, read and written as bytes, with recurring and null addresses. */
+    @Test
+    public void addresses() throws Exception {
+        long farAway = h3Core.geoToH3(-33.9, 151.2, 9);
+        List<Object[]> rings = new ArrayList<>();
+        List<Object[]> lines = new ArrayList<>();
+        List<Object[]> edges = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String address = i % 13 == 5 ? null : h3Core.h3ToString(cells.get(i % 300));
+            rings.add(new Object[] {address, 2});
+            lines.add(
+                    new Object[] {
+                        h3Core.h3ToString(h3), i % 7 == 1 ? h3Core.h3ToString(farAway) : address
+                    });
+            edges.add(new Object[] {address});
+        }
+        List<Object[]> children = new ArrayList<>();
+        children.add(new Object[] {h3Core.h3ToString(h3Core.h3ToParent(h3, 7)), 9});
+        children.add(new Object[] {h3Core.h3ToString(h3Core.h3ToParent(pentagon, 6)), 9});
+        for (BatchExecutor executor : executors()) {
+            assertBlockMatchesRows(executor, "k_ring", rings, String.class, Integer.class);
+            assertBlockMatchesRows(executor, "hex_ring", rings, String.class, Integer.class);
+            assertBlockMatchesRows(executor, "h3_line", lines, String.class, String.class);
+            assertBlockMatchesRows(
+                    executor, "h3_to_children", children, String.class, Integer.class);
+            assertBlockMatchesRows(
+                    executor, "get_h3_unidirectional_edges_from_hexagon", edges, String.class);
+        }
+    }
+
+    @Test
+    public void h3_to_children() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(new Object[] {h3Core.h3ToParent(cells.get(i), 7), 9});
+        }
+        rows.add(new Object[] {h3Core.h3ToParent(pentagon, 6), 9});
+        // coarser than the parent
+        rows.add(new Object[] {h3, 9});
+        for (BatchExecutor executor : executors()) {
+            assertBlockMatchesRows(executor, "h3_to_children", rows, Long.class, Integer.class);
+        }
+    }
+
+    @Test
+    public void h3_to_children_InvalidResolution() throws Exception {
+        List<Object[]> rows = Collections.singletonList(new Object[] {h3, 16});
+        try {
+            assertBlockMatchesRows(
+                    BatchExecutor.SEQUENTIAL, "h3_to_children", rows, Long.class, Integer.class);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void get_h3_unidirectional_edges_from_hexagon() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < cells.size(); i++) {
+            rows.add(new Object[] {i == 11 ? null : cells.get(i)});
+        }
+        rows.add(new Object[] {pentagon});
+        for (BatchExecutor executor : executors()) {
+            assertBlockMatchesRows(
+                    executor, "get_h3_unidirectional_edges_from_hexagon", rows, Long.class);
+        }
+    }
+
+    private static List<BatchExecutor> executors() {
+        return Arrays.asList(BatchExecutor.SEQUENTIAL, new BatchExecutor(4));
+    }
+
+    /**
+     * {@link UDFBatches#assertBlockMatchesRows} with a handler evaluating on <code>executor</code>,
+     * for a UDF that returns a list of cells or addresses as it takes.
+     */
+    private void assertBlockMatchesRows(
+            BatchExecutor executor, String name, List<Object[]> rows, Class<?>... parameterTypes)
+            throws Exception {
+        H3AthenaUDFHandler handler =
+                new H3AthenaUDFHandler(h3Core, IndexingEngine.JNI, new ResultCache(0), executor);
+        Method method = H3AthenaUDFHandler.class.getMethod(name, parameterTypes);
+        UDFBatches.assertBlockMatchesRows(
+                handler,
+                allocator,
+                method,
+                UDFBatches.inputFields(method),
+                UDFBatches.listField("out", UDFBatches.arrowType(parameterTypes[0])),
+                rows);
+    }
+}
@@ -0,0 +1,114 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.exceptions.DistanceUndefinedException;
+import com.uber.h3core.exceptions.LineUndefinedException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CellPairsTest {
+    private H3Core h3Core;
+    private CellPairs cellPairs;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.cellPairs = new CellPairs(h3Core);
+    }
+
+    /** Siblings, cells across parents and base cells, and around pentagons, at every resolution. */
+    @Test
+    public void checkNeighbors_MatchesH3() {
+        for (int res = 0; res <= H3Index.MAX_RES; res++) {
+            List<Long> origins = new ArrayList<>(h3Core.getPentagonIndexes(res));
+            origins.add(h3Core.geoToH3(52.5, 13.4, res));
+            origins.add(h3Core.geoToH3(-33.9, 151.2, res));
+            for (long origin : origins) {
+                for (long a : h3Core.kRing(origin, 2)) {
+                    for (long b : h3Core.kRing(origin, 2)) {
+                        assertEquals(
+                                String.format("%x %x %s", a, b, cellPairs.checkNeighbors(a, b)),
+                                h3Core.h3IndexesAreNeighbors(a, b),
+                                cellPairs.checkNeighbors(a, b) == null);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void checkNeighbors_Reasons() {
+        long cell = h3Core.geoToH3(52.5, 13.4, 9);
+        assertEquals(UDFMetrics.NullReason.INVALID_CELL, cellPairs.checkNeighbors(cell, 0L));
+        assertEquals(
+                UDFMetrics.NullReason.RESOLUTION_MISMATCH,
+                cellPairs.checkNeighbors(cell, h3Core.h3ToParent(cell, 8)));
+        assertEquals(UDFMetrics.NullReason.NOT_NEIGHBORS, cellPairs.checkNeighbors(cell, cell));
+        assertEquals(
+                UDFMetrics.NullReason.NOT_NEIGHBORS,
+                cellPairs.checkNeighbors(cell, h3Core.geoToH3(-33.9, 151.2, 9)));
+    }
+
+    /** Cells too far apart have no distance, and all others but some near pentagons have one. */
+    @Test
+    public void checkPath_MatchesH3() {
+        Random random = new Random(42L);
+        int tooFar = 0;
+        for (int n = 0; n < 2000; n++) {
+            long a = randomCell(random, 2);
+            long b = randomCell(random, 2);
+            UDFMetrics.NullReason reason = cellPairs.checkPath(a, b);
+            try {
+                int distance = h3Core.h3Distance(a, b);
+                assertNull(reason);
+                assertEquals(distance + 1, h3Core.h3Line(a, b).size());
+            } catch (DistanceUndefinedException | LineUndefinedException e) {
+                if (reason == null && !nearPentagon(a) && !nearPentagon(b)) {
+                    fail(String.format("No distance between %x and %x", a, b));
+                }
+                tooFar += reason == UDFMetrics.NullReason.TOO_FAR_APART ? 1 : 0;
+            }
+        }
+        assertTrue(tooFar > 0);
+    }
+
+    @Test
+    public void checkPath_Reasons() {
+        long cell = h3Core.geoToH3(52.5, 13.4, 9);
+        assertNull(cellPairs.checkPath(cell, cell));
+        assertEquals(UDFMetrics.NullReason.INVALID_CELL, cellPairs.checkPath(0L, cell));
+        assertEquals(
+                UDFMetrics.NullReason.RESOLUTION_MISMATCH,
+                cellPairs.checkPath(cell, h3Core.h3ToParent(cell, 8)));
+        assertEquals(
+                UDFMetrics.NullReason.TOO_FAR_APART,
+                cellPairs.checkPath(cell, h3Core.geoToH3(-33.9, 151.2, 9)));
+    }
+
+    private long randomCell(Random random, int res) {
+        return h3Core.geoToH3(
+                Math.toDegrees(Math.asin(2 * random.nextDouble() - 1)),
+                360 * random.nextDouble() - 180,
+                res);
+    }
+
+    /** Whether the base cell of the cell is a pentagon or a neighbor of one. */
+    private boolean nearPentagon(long cell) {
+        for (long baseCell : h3Core.kRing(h3Core.h3ToParent(cell, 0), 1)) {
+            if (h3Core.h3IsPentagon(baseCell)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
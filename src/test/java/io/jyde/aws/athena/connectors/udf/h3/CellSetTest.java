@@ -0,0 +1,259 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.util.GeoCoord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CellSetTest {
+    private static final int FINE_RES = 8;
+
+    private H3Core h3Core;
+    private Random random;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.random = new Random(42L);
+    }
+
+    @Test
+    public void of_Compacts() {
+        for (int n = 0; n < 20; n++) {
+            List<Long> cells = randomKRing(7);
+            CellSet set = of(cells);
+            assertEquals(new HashSet<>(h3Core.compact(cells)), toSet(set.cells()));
+            assertOrdered(set);
+        }
+        for (long pentagon : h3Core.getPentagonIndexes(5)) {
+            List<Long> cells = h3Core.kRing(pentagon, 6);
+            assertEquals(new HashSet<>(h3Core.compact(cells)), toSet(of(cells).cells()));
+        }
+    }
+
+    /** Repeated cells, and cells in other cells of the array, are dropped. */
+    @Test
+    public void of_MixedResolutions() {
+        long cell = h3Core.geoToH3(52.5, 13.4, 6);
+        List<Long> cells = new ArrayList<>(h3Core.h3ToChildren(cell, 8));
+        cells.add(h3Core.h3ToCenterChild(cell, 10));
+        cells.addAll(h3Core.h3ToChildren(cell, 7).subList(0, 3));
+        cells.add(cells.get(0));
+        long other = h3Core.kRing(cell, 1).get(1);
+        cells.add(h3Core.h3ToCenterChild(other, 9));
+        assertArrayEquals(
+                sorted(new long[] {cell, h3Core.h3ToCenterChild(other, 9)}),
+                sorted(of(cells).cells()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void of_Invalid() {
+        of(Arrays.asList(h3Core.geoToH3(52.5, 13.4, 6), 0L));
+    }
+
+    @Test
+    public void encode() {
+        List<Long> cells = h3Core.polyfill(square(52.5, 13.4, 0.2), null, 9);
+        CellSet set = of(cells);
+        byte[] bytes = set.encode();
+        assertEquals(set, CellSet.decode(bytes));
+        // a byte or two per compacted cell
+        assertTrue(bytes.length < 2 * set.size() + 16);
+        assertTrue(bytes.length < cells.size() / 2);
+
+        CellSet empty = of(new ArrayList<>());
+        assertEquals(0, CellSet.decode(empty.encode()).size());
+        for (long pentagon : h3Core.getPentagonIndexes(3)) {
+            CellSet pentagons = of(h3Core.kRing(pentagon, 4));
+            assertEquals(pentagons, CellSet.decode(pentagons.encode()));
+        }
+        List<Long> baseCells = new ArrayList<>(h3Core.getRes0Indexes());
+        for (int i = 1; i < baseCells.size(); i++) {
+            CellSet bases =
+                    of(
+                            Arrays.asList(
+                                    baseCells.get(i - 1),
+                                    h3Core.h3ToCenterChild(baseCells.get(i), 15)));
+            assertEquals(bases, CellSet.decode(bases.encode()));
+        }
+    }
+
+    @Test
+    public void decode_Invalid() {
+        byte[] bytes = of(randomKRing(5)).encode();
+        assertDecodeFails(new byte[0]);
+        assertDecodeFails(new byte[] {2, 0});
+        assertDecodeFails(Arrays.copyOf(bytes, bytes.length - 1));
+        assertDecodeFails(Arrays.copyOf(bytes, bytes.length + 1));
+        // a cell of resolution 9 twice
+        byte[] one = of(Arrays.asList(h3Core.geoToH3(52.5, 13.4, 9))).encode();
+        byte[] repeated = Arrays.copyOf(one, one.length + 1);
+        repeated[1] = 2;
+        repeated[one.length] = 0x09;
+        assertDecodeFails(repeated);
+    }
+
+    @Test
+    public void contains() {
+        long cell = h3Core.geoToH3(52.5, 13.4, 6);
+        CellSet set =
+                of(Arrays.asList(cell, h3Core.h3ToCenterChild(h3Core.kRing(cell, 2).get(9), 9)));
+        assertTrue(set.contains(cell));
+        assertTrue(set.contains(h3Core.h3ToCenterChild(cell, 15)));
+        for (long child : h3Core.h3ToChildren(cell, 8)) {
+            assertTrue(set.contains(child));
+        }
+        assertFalse(set.contains(h3Core.h3ToParent(cell, 5)));
+        assertFalse(set.contains(h3Core.kRing(cell, 1).get(1)));
+        // only partly covered by the cell of resolution 9
+        assertFalse(set.contains(h3Core.h3ToCenterChild(h3Core.kRing(cell, 2).get(9), 8)));
+        assertFalse(set.contains(0L));
+        assertFalse(of(new ArrayList<>()).contains(cell));
+    }
+
+    @Test
+    public void contains_MatchesExpanded() {
+        for (int n = 0; n < 10; n++) {
+            List<Long> cells = randomKRing(FINE_RES);
+            CellSet set = of(cells);
+            Set<Long> expected = new HashSet<>(cells);
+            for (long cell : h3Core.kRing(cells.get(0), 30)) {
+                assertEquals(expected.contains(cell), set.contains(cell));
+            }
+        }
+    }
+
+    @Test
+    public void union_Intersect_Difference() {
+        for (int n = 0; n < 30; n++) {
+            List<Long> a = randomKRing(FINE_RES);
+            List<Long> b = new ArrayList<>();
+            for (long cell : h3Core.kRing(a.get(random.nextInt(a.size())), random.nextInt(20))) {
+                // a mix of resolutions, so that sets are merged at several resolutions
+                b.add(random.nextBoolean() ? cell : h3Core.h3ToParent(cell, FINE_RES - 1));
+            }
+            assertSetOperations(a, b);
+        }
+        for (long pentagon : h3Core.getPentagonIndexes(6)) {
+            List<Long> a = h3Core.kRing(h3Core.h3ToCenterChild(pentagon, FINE_RES), 12);
+            List<Long> b = h3Core.kRing(h3Core.h3ToCenterChild(pentagon, FINE_RES - 2), 1);
+            assertSetOperations(a, b);
+        }
+    }
+
+    /** Asserts set operations of the compacted sets of <code>a</code> and <code>b</code>. */
+    private void assertSetOperations(List<Long> a, List<Long> b) {
+        CellSet setA = of(a);
+        CellSet setB = of(b);
+        Set<Long> cellsA = expand(setA);
+        Set<Long> cellsB = expand(setB);
+
+        Set<Long> union = new HashSet<>(cellsA);
+        union.addAll(cellsB);
+        assertSet(union, setA.union(setB));
+        assertEquals(setA.union(setB), setB.union(setA));
+
+        Set<Long> intersection = new HashSet<>(cellsA);
+        intersection.retainAll(cellsB);
+        assertSet(intersection, setA.intersect(setB));
+        assertEquals(setA.intersect(setB), setB.intersect(setA));
+
+        Set<Long> difference = new HashSet<>(cellsA);
+        difference.removeAll(cellsB);
+        assertSet(difference, setA.difference(setB));
+        assertEquals(0, setA.difference(setA).size());
+        assertEquals(setA, setA.difference(of(new ArrayList<>())));
+    }
+
+    /** Asserts a set has the cells, and is the compacted set of them. */
+    private void assertSet(Set<Long> expected, CellSet actual) {
+        assertEquals(expected, expand(actual));
+        assertEquals(of(new ArrayList<>(expected)), actual);
+        assertEquals(actual, CellSet.decode(actual.encode()));
+        assertOrdered(actual);
+    }
+
+    private Set<Long> expand(CellSet set) {
+        return new HashSet<>(h3Core.uncompact(toList(set.cells()), FINE_RES));
+    }
+
+    private List<Long> randomKRing(int res) {
+        double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+        double lng = 360 * random.nextDouble() - 180;
+        return h3Core.kRing(h3Core.geoToH3(lat, lng, res), random.nextInt(30));
+    }
+
+    private static CellSet of(Collection<Long> cells) {
+        long[] array = toArray(cells);
+        return CellSet.of(array, array.length);
+    }
+
+    private static void assertOrdered(CellSet set) {
+        long[] cells = set.cells();
+        long position = H3Index.INIT | H3Index.BASE_CELL_MASK;
+        for (int i = 1; i < cells.length; i++) {
+            // the last finest cell of a cell is before the first one of the next cell
+            int res = H3Index.getResolution(cells[i]);
+            long start = cells[i] & position & -(1L << (15 - res) * 3);
+            assertTrue((cells[i - 1] & position) < start);
+        }
+    }
+
+    private static void assertDecodeFails(byte[] bytes) {
+        try {
+            CellSet.decode(bytes);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new AssertionError("Decoded " + Arrays.toString(bytes));
+    }
+
+    private static List<GeoCoord> square(double lat, double lng, double size) {
+        return Arrays.asList(
+                new GeoCoord(lat, lng),
+                new GeoCoord(lat + size, lng),
+                new GeoCoord(lat + size, lng + size),
+                new GeoCoord(lat, lng + size));
+    }
+
+    private static long[] toArray(Collection<Long> cells) {
+        long[] array = new long[cells.size()];
+        int i = 0;
+        for (long cell : cells) {
+            array[i++] = cell;
+        }
+        return array;
+    }
+
+    private static long[] sorted(long[] cells) {
+        long[] copy = cells.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static List<Long> toList(long[] cells) {
+        List<Long> list = new ArrayList<>(cells.length);
+        for (long cell : cells) {
+            list.add(cell);
+        }
+        return list;
+    }
+
+    private static Set<Long> toSet(long[] cells) {
+        return new HashSet<>(toList(cells));
+    }
+}
@@ -0,0 +1,126 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.util.GeoCoord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CoveragePagesTest {
+    // concave, with a hole
+    private static final String POLYGON =
+            "POLYGON ((13.3 52.4, 13.6 52.4, 13.6 52.6, 13.45 52.5, 13.3 52.6, 13.3 52.4),"
+                    + " (13.35 52.45, 13.4 52.45, 13.4 52.5, 13.35 52.45))";
+    private static final String MULTI_POLYGON =
+            "MULTIPOLYGON (((13.3 52.4, 13.4 52.4, 13.4 52.5, 13.3 52.4)),"
+                    + " ((13.5 52.4, 13.6 52.4, 13.55 52.5, 13.5 52.4)))";
+
+    private H3Core h3Core;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+    }
+
+    @Test
+    public void page_Polygon() {
+        assertPagesMatchPolyfill(Polygons.fromWKT(POLYGON), 6, 9);
+        assertPagesMatchPolyfill(Polygons.fromWKT(POLYGON), 8, 8);
+    }
+
+    @Test
+    public void page_MultiPolygon() {
+        assertPagesMatchPolyfill(Polygons.fromWKT(MULTI_POLYGON), 6, 9);
+    }
+
+    /** The interior cells of a coverage around a pentagon include pentagons. */
+    @Test
+    public void page_Pentagon() {
+        for (long pentagon : h3Core.getPentagonIndexes(1)) {
+            GeoCoord center = h3Core.h3ToGeo(pentagon);
+            List<GeoCoord> square =
+                    Arrays.asList(
+                            new GeoCoord(center.lat - 3, center.lng - 3),
+                            new GeoCoord(center.lat - 3, center.lng + 3),
+                            new GeoCoord(center.lat + 3, center.lng + 3),
+                            new GeoCoord(center.lat + 3, center.lng - 3));
+            List<Polygons.Polygon> polygons =
+                    Collections.singletonList(
+                            new Polygons.Polygon(square, Collections.emptyList()));
+            assertPagesMatchPolyfill(polygons, 2, 5);
+        }
+    }
+
+    @Test
+    public void page_Empty() {
+        PolygonCoverage coverage =
+                PolygonCoverage.compile(
+                        h3Core, BatchExecutor.SEQUENTIAL, Polygons.fromWKT(POLYGON), 5);
+        CoveragePages pages = coverage.pages(5, BatchExecutor.SEQUENTIAL);
+        assertTrue(pages.page(pages.count(), 10).isEmpty());
+        assertTrue(pages.page(pages.count() + 10, 10).isEmpty());
+    }
+
+    @Test
+    public void descendantCount() {
+        long hexagon = h3Core.geoToH3(52.5, 13.4, 5);
+        long pentagon = h3Core.getPentagonIndexes(5).iterator().next();
+        for (int res = 5; res <= 9; res++) {
+            assertEquals(
+                    h3Core.h3ToChildren(hexagon, res).size(),
+                    CoveragePages.descendantCount(hexagon, res));
+            assertEquals(
+                    h3Core.h3ToChildren(pentagon, res).size(),
+                    CoveragePages.descendantCount(pentagon, res));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pages_CoarserThanCoverage() {
+        PolygonCoverage.compile(h3Core, BatchExecutor.SEQUENTIAL, Polygons.fromWKT(POLYGON), 7)
+                .pages(6, BatchExecutor.SEQUENTIAL);
+    }
+
+    /**
+     * Asserts that the pages of a coverage, read whole and from random offsets, are the sorted
+     * cells of <code>polyfill</code>.
+     */
+    private void assertPagesMatchPolyfill(
+            List<Polygons.Polygon> polygons, int coverageRes, int res) {
+        List<Long> expected =
+                new ArrayList<>(
+                        TiledPolyfill.polyfill(h3Core, BatchExecutor.SEQUENTIAL, polygons, res));
+        Collections.sort(expected);
+        CoveragePages pages =
+                PolygonCoverage.compile(h3Core, new BatchExecutor(2), polygons, coverageRes)
+                        .pages(res, new BatchExecutor(2));
+        assertEquals(expected.size(), pages.count());
+
+        int pageSize = Math.max(1, expected.size() / 7);
+        List<Long> actual = new ArrayList<>();
+        for (long offset = 0; offset < pages.count(); offset += pageSize) {
+            List<Long> page = pages.page(offset, pageSize);
+            assertEquals(Math.min(pageSize, expected.size() - offset), page.size());
+            actual.addAll(page);
+        }
+        assertEquals(expected, actual);
+
+        Random random = new Random(42L);
+        for (int n = 0; n < 20; n++) {
+            int offset = random.nextInt(expected.size());
+            int limit = 1 + random.nextInt(100);
+            assertEquals(
+                    expected.subList(offset, Math.min(expected.size(), offset + limit)),
+                    pages.page(offset, limit));
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.amazonaws.athena.connector.lambda.data.FieldResolver;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DistinctCellKernelTest {
+    private static final Long h3 = 628064021095030783L;
+
+    private H3AthenaUDFHandler handler;
+    private H3Core h3Core;
+    private BlockAllocatorImpl allocator;
+
+    private Long parent;
+    private Long edge;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.handler = new H3AthenaUDFHandler(h3Core);
+        this.allocator = new BlockAllocatorImpl();
+
+        this.parent = h3Core.h3ToParent(h3, 7);
+        this.edge = h3Core.getH3UnidirectionalEdgesFromHexagon(h3).get(0);
+    }
+
+    @After
+    public void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    public void evaluatesDistinctCellsOnce() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        DistinctCellKernel kernel =
+                new DistinctCellKernel(
+                        arguments -> {
+                            int offset = (Integer) arguments[1];
+                            return cell -> {
+                                calls.incrementAndGet();
+                                return cell + offset;
+                            };
+                        });
+        Schema schema =
+                SchemaBuilder.newBuilder()
+                        .addBigIntField("h3")
+                        .addIntField("offset")
+                        .addBigIntField("out")
+                        .build();
+        try (Block block = allocator.createBlock(schema)) {
+            Long[] cells = {h3, parent, null, h3, h3, parent};
+            for (int row = 0; row < cells.length; row++) {
+                block.setValue("h3", row, cells[row]);
+                block.setValue("offset", row, 1);
+            }
+            List<FieldVector> inputs = block.getFieldVectors().subList(0, 2);
+            assertTrue(kernel.supports(inputs, cells.length));
+
+            FieldVector out = block.getFieldVector("out");
+            kernel.evaluate(inputs, out, cells.length);
+            out.setValueCount(cells.length);
+            assertEquals(2, calls.get());
+            for (int row = 0; row < cells.length; row++) {
+                assertEquals(cells[row] == null ? null : cells[row] + 1, out.getObject(row));
+            }
+        }
+    }
+
+    @Test
+    public void supports_ConstantArguments() throws Exception {
+        DistinctCellKernel kernel = DistinctCellKernel.of(cell -> cell);
+        Schema schema =
+                SchemaBuilder.newBuilder()
+                        .addBigIntField("h3")
+                        .addIntField("res")
+                        .addStringField("unit")
+                        .build();
+        try (Block block = allocator.createBlock(schema)) {
+            List<FieldVector> inputs = block.getFieldVectors();
+            for (int row = 0; row < 3; row++) {
+                block.setValue("h3", row, h3);
+                block.setValue("res", row, 9);
+                block.setValue("unit", row, "km2");
+            }
+            assertTrue(kernel.supports(inputs, 3));
+
+            block.setValue("unit", 2, "m2");
+            assertFalse(kernel.supports(inputs, 3));
+
+            block.setValue("unit", 2, "km2");
+            block.setValue("res", 1, 10);
+            assertFalse(kernel.supports(inputs, 3));
+
+            block.setValue("res", 1, null);
+            assertFalse(kernel.supports(inputs, 3));
+        }
+    }
+
+    /** Lists, such as the WKT Points of a polygon, compared in place. */
+    @Test
+    public void supports_ConstantLists() throws Exception {
+        DistinctCellKernel kernel = DistinctCellKernel.of(cell -> cell);
+        ArrowType varchar = Types.MinorType.VARCHAR.getType();
+        Field holes = UDFBatches.listField("holes", UDFBatches.listField("item", varchar));
+        Schema schema =
+                SchemaBuilder.newBuilder()
+                        .addBigIntField("h3")
+                        .addListField("points", varchar)
+                        .addField(holes)
+                        .addIntField("res")
+                        .build();
+        List<String> points = Arrays.asList("POINT (0 0)", "POINT (1 0)", "POINT (0 1)");
+        List<List<String>> hole =
+                Collections.singletonList(
+                        Arrays.asList("POINT (0.1 0.1)", "POINT (0.2 0.1)", "POINT (0.1 0.2)"));
+        try (Block block = allocator.createBlock(schema)) {
+            for (int row = 0; row < 3; row++) {
+                block.setValue("h3", row, h3Core.geoToH3(0.1 * row, 0.1 * row, 9));
+                block.setComplexValue("points", row, FieldResolver.DEFAULT, points);
+                block.setComplexValue("holes", row, FieldResolver.DEFAULT, hole);
+                block.setValue("res", row, 7);
+            }
+            block.setRowCount(3);
+            List<FieldVector> inputs = block.getFieldVectors();
+            assertTrue(kernel.supports(inputs, 3));
+
+            Method method =
+                    H3AthenaUDFHandler.class.getMethod(
+                            "h3_in_polygon", Long.class, List.class, List.class, Integer.class);
+            try (Block output =
+                    handler.processRows(
+                            allocator,
+                            method,
+                            block,
+                            SchemaBuilder.newBuilder().addBitField("out").build())) {
+                for (int row = 0; row < 3; row++) {
+                    assertEquals(
+                            handler.h3_in_polygon(
+                                    (Long) block.getFieldVector("h3").getObject(row),
+                                    points,
+                                    hole,
+                                    7),
+                            output.getFieldVector("out").getObject(row));
+                }
+            }
+
+            block.setComplexValue(
+                    "points",
+                    2,
+                    FieldResolver.DEFAULT,
+                    Arrays.asList("POINT (0 0)", "POINT (1 0)", "POINT (0 2)"));
+            block.setRowCount(3);
+            assertFalse(kernel.supports(inputs, 3));
+        }
+    }
+
+    @Test
+    public void h3_to_geo() throws Exception {
+        assertBlockMatchesRows(
+                "h3_to_geo", Types.MinorType.VARCHAR.getType(), null, column(h3, parent, null, h3));
+    }
+
+    @Test
+    public void h3_to_geo_boundary() throws Exception {
+        assertBlockMatchesRows(
+                "h3_to_geo_boundary",
+                null,
+                Types.MinorType.VARCHAR.getType(),
+                column(h3, h3, null, parent));
+    }
+
+    @Test
+    public void h3_to_geo_coords() throws Exception {
+        assertBlockMatchesRows(
+                "h3_to_geo_coords",
+                null,
+                Types.MinorType.FLOAT8.getType(),
+                column(h3, parent, null, h3));
+    }
+
+    @Test
+    public void h3_to_geo_boundary_coords() throws Exception {
+        assertBlockMatchesRows(
+                "h3_to_geo_boundary_coords",
+                null,
+                Types.MinorType.FLOAT8.getType(),
+                column(h3, h3, null, parent));
+    }
+
+    @Test
+    public void h3_get_faces() throws Exception {
+        assertBlockMatchesRows(
+                "h3_get_faces", null, Types.MinorType.INT.getType(), column(parent, null, parent));
+    }
+
+    @Test
+    public void get_h3_unidirectional_edge_boundary() throws Exception {
+        assertBlockMatchesRows(
+                "get_h3_unidirectional_edge_boundary",
+                null,
+                Types.MinorType.VARCHAR.getType(),
+                column(edge, edge, null));
+    }
+
+    @Test
+    public void k_ring() throws Exception {
+        assertBlockMatchesRows(
+                "k_ring",
+                null,
+                Types.MinorType.BIGINT.getType(),
+                column(h3, null, h3, parent),
+                column(2, 2, 2, 2));
+    }
+
+    @Test
+    public void k_ring_VaryingK() throws Exception {
+        assertBlockMatchesRows(
+                "k_ring",
+                null,
+                Types.MinorType.BIGINT.getType(),
+                column(h3, null, h3, parent),
+                column(1, 2, 2, 3));
+    }
+
+    /** Nested lists, of the cells and their distances. */
+    @Test
+    public void k_ring_distances() throws Exception {
+        Field out =
+                UDFBatches.listField(
+                        "out", UDFBatches.listField("item", Types.MinorType.BIGINT.getType()));
+        Schema schema = SchemaBuilder.newBuilder().addBigIntField("h3").addIntField("k").build();
+        Long[] cells = {h3, null, parent, h3};
+        try (Block block = allocator.createBlock(schema)) {
+            for (int row = 0; row < cells.length; row++) {
+                block.setValue("h3", row, cells[row]);
+                block.setValue("k", row, 2);
+            }
+            block.setRowCount(cells.length);
+            Method method =
+                    H3AthenaUDFHandler.class.getMethod(
+                            "k_ring_distances", Long.class, Integer.class);
+            try (Block output =
+                    handler.processRows(
+                            allocator,
+                            method,
+                            block,
+                            SchemaBuilder.newBuilder().addField(out).build())) {
+                for (int row = 0; row < cells.length; row++) {
+                    assertEquals(
+                            handler.k_ring_distances(cells[row], 2),
+                            output.getFieldVector("out").getObject(row));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void h3_to_children() throws Exception {
+        assertBlockMatchesRows(
+                "h3_to_children",
+                null,
+                Types.MinorType.BIGINT.getType(),
+                column(parent, parent, null),
+                column(9, 9, 9));
+    }
+
+    @Test
+    public void cell_area() throws Exception {
+        assertBlockMatchesRows(
+                "cell_area",
+                Types.MinorType.FLOAT8.getType(),
+                null,
+                column(h3, parent, h3, null),
+                column("m2", "m2", "m2", "m2"));
+    }
+
+    @Test
+    public void cell_area_VaryingUnit() throws Exception {
+        assertBlockMatchesRows(
+                "cell_area",
+                Types.MinorType.FLOAT8.getType(),
+                null,
+                column(h3, parent, h3, null),
+                column("m2", "km2", "rads2", "m2"));
+    }
+
+    /** The unit is not parsed for a batch without cells, as on the row path. */
+    @Test
+    public void cell_area_NullCellsInvalidUnit() throws Exception {
+        assertBlockMatchesRows(
+                "cell_area",
+                Types.MinorType.FLOAT8.getType(),
+                null,
+                column(null, null, null),
+                column("bogus", "bogus", "bogus"));
+        assertBlockMatchesRows(
+                "exact_edge_length",
+                Types.MinorType.FLOAT8.getType(),
+                null,
+                column(null, null),
+                column("bogus", "bogus"));
+    }
+
+    @Test
+    public void exact_edge_length() throws Exception {
+        assertBlockMatchesRows(
+                "exact_edge_length",
+                Types.MinorType.FLOAT8.getType(),
+                null,
+                column(edge, null, edge),
+                column("km", "km", "km"));
+    }
+
+    @Test
+    public void h3_cell_set_contains() throws Exception {
+        byte[] set = handler.h3_cell_set(h3Core.kRing(parent, 1));
+        assertBlockMatchesRows(
+                "h3_cell_set_contains",
+                Types.MinorType.BIT.getType(),
+                null,
+                column(h3, parent, null, h3Core.h3ToParent(parent, 5), h3),
+                column(set, set, set, set, set));
+    }
+
+    private static Object[] column(Object... values) {
+        return values;
+    }
+
+    /**
+     * {@link UDFBatches#assertBlockMatchesRows} for the <code>BIGINT</code> overload of a UDF.
+     *
+     * @param outputType Type of a scalar output, or <code>null</code> for a list output.
+     * @param elementType Type of the elements of a list output.
+     * @param columns Values of each argument, by row.
+     */
+    private void assertBlockMatchesRows(
+            String name, ArrowType outputType, ArrowType elementType, Object[]... columns)
+            throws Exception {
+        Class<?>[] parameterTypes = new Class<?>[columns.length];
+        parameterTypes[0] = Long.class;
+        for (int col = 1; col < columns.length; col++) {
+            parameterTypes[col] = columns[col][0].getClass();
+        }
+        Method method = H3AthenaUDFHandler.class.getMethod(name, parameterTypes);
+        List<Object[]> rows = new ArrayList<>();
+        for (int row = 0; row < columns[0].length; row++) {
+            Object[] values = new Object[columns.length];
+            for (int col = 0; col < columns.length; col++) {
+                values[col] = columns[col][row];
+            }
+            rows.add(values);
+        }
+        UDFBatches.assertBlockMatchesRows(
+                handler,
+                allocator,
+                method,
+                UDFBatches.inputFields(method),
+                outputType == null
+                        ? UDFBatches.listField("out", elementType)
+                        : UDFBatches.field("out", outputType),
+                rows);
+    }
+}
@@ -0,0 +1,104 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.util.GeoCoord;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FaceIJKTest {
+    private H3Core h3Core;
+    private Random random;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.random = new Random(42);
+    }
+
+    @Test
+    public void geoToH3_Global() {
+        for (int n = 0; n < 500_000; n++) {
+            double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            double lng = 360 * random.nextDouble() - 180;
+            assertGeoToH3(lat, lng, random.nextInt(H3Index.MAX_RES + 1));
+        }
+    }
+
+    @Test
+    public void geoToH3_Urban() {
+        for (int n = 0; n < 100_000; n++) {
+            double lat = 52.52 + 0.05 * random.nextGaussian();
+            double lng = 13.405 + 0.05 * random.nextGaussian();
+            for (int res = 0; res <= H3Index.MAX_RES; res++) {
+                assertGeoToH3(lat, lng, res);
+            }
+        }
+    }
+
+    /** Points around the vertices of the base cells, which lie on the edges of the faces. */
+    @Test
+    public void geoToH3_BaseCellVertices() {
+        for (long baseCell : h3Core.getRes0Indexes()) {
+            for (GeoCoord vertex : h3Core.h3ToGeoBoundary(baseCell)) {
+                for (int n = 0; n < 500; n++) {
+                    double lat = vertex.lat + 1e-3 * random.nextGaussian();
+                    double lng = vertex.lng + 1e-3 * random.nextGaussian();
+                    assertGeoToH3(lat, lng, random.nextInt(H3Index.MAX_RES + 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void geoToH3_Pentagons() {
+        for (long pentagon : h3Core.getPentagonIndexes(0)) {
+            GeoCoord center = h3Core.h3ToGeo(pentagon);
+            for (int res = 0; res <= H3Index.MAX_RES; res++) {
+                assertGeoToH3(center.lat, center.lng, res);
+                for (int n = 0; n < 200; n++) {
+                    double scale = Math.pow(7, -res / 2.0);
+                    double lat = center.lat + scale * random.nextGaussian();
+                    double lng = center.lng + scale * random.nextGaussian();
+                    assertGeoToH3(lat, lng, res);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void geoToH3_Extremes() {
+        double[] lats = {90, -90, 0, 89.999999, -89.999999, 91, -200};
+        double[] lngs = {180, -180, 0, 179.999999, -179.999999, 360, 540, -720};
+        for (double lat : lats) {
+            for (double lng : lngs) {
+                for (int res = 0; res <= H3Index.MAX_RES; res++) {
+                    assertGeoToH3(lat, lng, res);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void geoToH3_Invalid() {
+        assertEquals(0, FaceIJK.geoToH3(Double.NaN, 0, 9));
+        assertEquals(0, FaceIJK.geoToH3(0, Double.POSITIVE_INFINITY, 9));
+        assertEquals(0, FaceIJK.geoToH3(0, 0, -1));
+        assertEquals(0, FaceIJK.geoToH3(0, 0, 16));
+    }
+
+    private void assertGeoToH3(double lat, double lng, int res) {
+        long expected = h3Core.geoToH3(lat, lng, res);
+        long actual = FaceIJK.geoToH3(lat, lng, res);
+        if (expected != actual) {
+            assertEquals(
+                    String.format("geoToH3(%s, %s, %d)", lat, lng, res),
+                    h3Core.h3ToString(expected),
+                    h3Core.h3ToString(actual));
+        }
+    }
+}
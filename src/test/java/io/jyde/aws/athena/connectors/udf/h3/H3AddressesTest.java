@@ -0,0 +1,61 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.Test;
+
+public class H3AddressesTest {
+    @Test
+    public void parse() {
+        for (String address :
+                new String[] {
+                    "8928308280fffff",
+                    "8928308280FFFFF",
+                    "08928308280fffff",
+                    "0000000000000008928308280fffff",
+                    "+8928308280fffff",
+                    "0",
+                    "ffffffffffffffff"
+                }) {
+            assertEquals(address, Long.parseUnsignedLong(address, 16), parse(address));
+        }
+    }
+
+    /** Invalid addresses fail as with <code>Long.parseUnsignedLong</code>. */
+    @Test
+    public void parse_Invalid() {
+        for (String address :
+                new String[] {
+                    "", "+", "-1", "8928308280fffffg", "10000000000000000", "8928 3082", "\u00e9"
+                }) {
+            try {
+                parse(address);
+                fail(address);
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void format() {
+        Random random = new Random(42L);
+        byte[] out = new byte[H3Addresses.MAX_LENGTH];
+        for (int i = 0; i < 1000; i++) {
+            long h3 = random.nextLong() >>> random.nextInt(Long.SIZE);
+            int length = H3Addresses.format(h3, out);
+            assertEquals(
+                    Long.toHexString(h3), new String(out, 0, length, StandardCharsets.US_ASCII));
+            assertEquals(h3, H3Addresses.parse(out, 0, length));
+        }
+    }
+
+    private static long parse(String address) {
+        byte[] bytes = address.getBytes(StandardCharsets.UTF_8);
+        return H3Addresses.parse(bytes, 0, bytes.length);
+    }
+}
@@ -3,15 +3,27 @@ package io.jyde.aws.athena.connectors.udf.h3;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.uber.h3core.AreaUnit;
 import com.uber.h3core.H3Core;
 import com.uber.h3core.exceptions.DistanceUndefinedException;
 import com.uber.h3core.exceptions.LineUndefinedException;
+import com.uber.h3core.util.GeoCoord;
 import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -82,22 +94,388 @@ public class H3AthenaUDFHandlerTest {
         assertEquals(h3Core.geoToH3(lat, lng, res), handler.geo_to_h3(lat, lng, res).longValue());
     }
 
+    /** The parents of the index at the finest resolution, as h3_to_parent of geo_to_h3. */
+    @Test
+    public void geo_to_h3_multi() {
+        Random random = new Random(42L);
+        List<Integer> resolutions = Arrays.asList(11, 0, 7, 9, 9);
+        for (int n = 0; n < 1000; n++) {
+            double pointLat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            double pointLng = 360 * random.nextDouble() - 180;
+            List<Long> cells = handler.geo_to_h3_multi(pointLat, pointLng, resolutions);
+            long finest = h3Core.geoToH3(pointLat, pointLng, 11);
+            assertEquals(resolutions.size(), cells.size());
+            for (int i = 0; i < cells.size(); i++) {
+                assertEquals(h3Core.h3ToParent(finest, resolutions.get(i)), (long) cells.get(i));
+            }
+        }
+        assertEquals(
+                Collections.emptyList(),
+                handler.geo_to_h3_multi(lat, lng, Collections.<Integer>emptyList()));
+        assertNull(handler.geo_to_h3_multi(null, lng, resolutions));
+        assertNull(handler.geo_to_h3_multi(lat, lng, null));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> handler.geo_to_h3_multi(lat, lng, Arrays.asList(7, 16)));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> handler.geo_to_h3_multi(lat, lng, Arrays.asList(7, null)));
+    }
+
     @Test
     public void geo_to_h3_address() {
         assertEquals(
                 h3Core.geoToH3Address(lat, lng, res), handler.geo_to_h3_address(lat, lng, res));
     }
 
+    @Test
+    public void h3_to_geo() {
+        GeoCoord expected = h3Core.h3ToGeo(h3);
+        GeoCoord actual = WKTPoints.toGeoCoord(handler.h3_to_geo(h3));
+        assertEquals(expected.lat, actual.lat, 0.);
+        assertEquals(expected.lng, actual.lng, 0.);
+    }
+
+    @Test
+    public void h3_to_geo_boundary() {
+        List<GeoCoord> expected = h3Core.h3ToGeoBoundary(h3address);
+        List<GeoCoord> actual =
+                handler.h3_to_geo_boundary(h3address).stream()
+                        .map(WKTPoints::toGeoCoord)
+                        .collect(Collectors.toList());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void h3_to_geo_coords() {
+        GeoCoord expected = h3Core.h3ToGeo(h3);
+        assertEquals(Arrays.asList(expected.lat, expected.lng), handler.h3_to_geo_coords(h3));
+        assertEquals(expected.lat, handler.h3_to_geo_lat(h3address), 0.);
+        assertEquals(expected.lng, handler.h3_to_geo_lng(h3address), 0.);
+        assertEquals(handler.h3_to_geo_coords(h3), handler.h3_to_geo_coords(h3address));
+        assertNull(handler.h3_to_geo_coords((Long) null));
+        assertNull(handler.h3_to_geo_lat((Long) null));
+    }
+
+    @Test
+    public void h3_to_geo_boundary_coords() {
+        List<GeoCoord> expected = h3Core.h3ToGeoBoundary(h3);
+        List<Double> actual = handler.h3_to_geo_boundary_coords(h3address);
+        assertEquals(2 * expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), new GeoCoord(actual.get(2 * i), actual.get(2 * i + 1)));
+        }
+        assertNull(handler.h3_to_geo_boundary_coords((String) null));
+    }
+
+    @Test
+    public void point_dist() {
+        String a = "POINT (13.4149 52.496)";
+        String b = "POINT (151.2093 -33.8688)";
+        for (String unit : new String[] {"km", "m", "rads"}) {
+            assertEquals(
+                    handler.point_dist(a, b, unit),
+                    handler.point_dist(52.496, 13.4149, -33.8688, 151.2093, unit));
+        }
+        assertNull(handler.point_dist(52.496, 13.4149, null, 151.2093, "km"));
+    }
+
+    @Test
+    public void polyfill_SouthWest() {
+        List<GeoCoord> outline =
+                Arrays.asList(
+                        new GeoCoord(-23.50, -46.70),
+                        new GeoCoord(-23.50, -46.55),
+                        new GeoCoord(-23.60, -46.55),
+                        new GeoCoord(-23.60, -46.70));
+        List<String> points =
+                outline.stream()
+                        .map(c -> "POINT (" + c.lng + " " + c.lat + ")")
+                        .collect(Collectors.toList());
+        assertEquals(
+                h3Core.polyfill(outline, new ArrayList<>(), 9), handler.polyfill(points, null, 9));
+    }
+
+    @Test
+    public void polyfill_compact() {
+        List<String> points = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            double angle = 2 * Math.PI * i / 64;
+            double radius = 0.8 + 0.2 * Math.sin(5 * angle);
+            points.add(
+                    WKTPoints.format(
+                            new GeoCoord(
+                                    52.52 + radius * Math.sin(angle),
+                                    13.405 + radius * Math.cos(angle))));
+        }
+        List<String> hole =
+                h3Core.h3ToGeoBoundary(h3Core.geoToH3(52.52, 13.405, 5)).stream()
+                        .map(WKTPoints::format)
+                        .collect(Collectors.toList());
+        List<List<String>> holes = Collections.singletonList(hole);
+        for (int res : new int[] {7, 9}) {
+            List<Long> expected = h3Core.compact(handler.polyfill(points, holes, res));
+            assertEquals(
+                    new HashSet<>(expected),
+                    new HashSet<>(handler.polyfill_compact(points, holes, res)));
+            assertEquals(
+                    expected.stream().map(h3Core::h3ToString).collect(Collectors.toSet()),
+                    new HashSet<>(handler.polyfill_address_compact(points, holes, res)));
+        }
+        assertNull(handler.polyfill_compact(null, holes, 9));
+    }
+
+    @Test
+    public void polyfill_Geometry() {
+        String shell = "(13.3 52.4, 13.5 52.4, 13.5 52.6, 13.3 52.6, 13.3 52.4)";
+        String hole = "(13.35 52.45, 13.4 52.45, 13.4 52.5, 13.35 52.45)";
+        String island = "(13.7 52.4, 13.8 52.4, 13.8 52.5, 13.7 52.4)";
+        Polygons.Polygon shellPolygon =
+                Polygons.fromWKT("POLYGON (" + shell + ", " + hole + ")").get(0);
+        Polygons.Polygon islandPolygon = Polygons.fromWKT("POLYGON (" + island + ")").get(0);
+        List<Long> shellCells = h3Core.polyfill(shellPolygon.points, shellPolygon.holes, 8);
+        List<Long> islandCells = h3Core.polyfill(islandPolygon.points, islandPolygon.holes, 8);
+        Set<Long> expected = new HashSet<>(shellCells);
+        expected.addAll(islandCells);
+
+        String wkt = "MULTIPOLYGON ((" + shell + ", " + hole + "), (" + island + "))";
+        assertEquals(shellCells, handler.polyfill("POLYGON (" + shell + ", " + hole + ")", 8));
+        List<Long> cells = handler.polyfill(wkt, 8);
+        assertEquals(expected.size(), cells.size());
+        assertEquals(expected, new HashSet<>(cells));
+        assertEquals(
+                expected.stream().map(h3Core::h3ToString).collect(Collectors.toSet()),
+                new HashSet<>(handler.polyfill_address(wkt, 8)));
+        assertEquals(
+                new HashSet<>(h3Core.compact(cells)),
+                new HashSet<>(handler.polyfill_compact(wkt, 8)));
+
+        byte[] wkb =
+                PolygonsTest.polygonWKB(
+                        ByteOrder.LITTLE_ENDIAN,
+                        3,
+                        2,
+                        new double[][] {{13.3, 52.4}, {13.5, 52.4}, {13.5, 52.6}, {13.3, 52.6}},
+                        new double[][] {{13.35, 52.45}, {13.4, 52.45}, {13.4, 52.5}});
+        assertEquals(shellCells, handler.polyfill(wkb, 8));
+        assertEquals(
+                h3Core.compact(shellCells).stream()
+                        .map(h3Core::h3ToString)
+                        .collect(Collectors.toSet()),
+                new HashSet<>(handler.polyfill_address_compact(wkb, 8)));
+
+        assertTrue(handler.polyfill("POLYGON EMPTY", 8).isEmpty());
+        assertNull(handler.polyfill((String) null, 8));
+        assertNull(handler.polyfill_address_compact((byte[]) null, 8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void polyfill_GeometryInvalidResolution() {
+        handler.polyfill(
+                "MULTIPOLYGON (((13.3 52.4, 13.5 52.4, 13.5 52.6, 13.3 52.4)),"
+                        + " ((13.7 52.4, 13.8 52.4, 13.8 52.5, 13.7 52.4)))",
+                16);
+    }
+
+    @Test
+    public void h3_in_polygon() {
+        List<String> points =
+                Arrays.asList(
+                        "POINT (13.3 52.4)",
+                        "POINT (13.5 52.4)",
+                        "POINT (13.5 52.6)",
+                        "POINT (13.3 52.6)");
+        List<List<String>> holes =
+                Collections.singletonList(
+                        Arrays.asList(
+                                "POINT (13.35 52.45)", "POINT (13.4 52.45)", "POINT (13.4 52.5)"));
+        String wkt =
+                "POLYGON ((13.3 52.4, 13.5 52.4, 13.5 52.6, 13.3 52.6, 13.3 52.4),"
+                        + " (13.35 52.45, 13.4 52.45, 13.4 52.5, 13.35 52.45))";
+        byte[] wkb =
+                PolygonsTest.polygonWKB(
+                        ByteOrder.LITTLE_ENDIAN,
+                        3,
+                        2,
+                        new double[][] {
+                            {13.3, 52.4}, {13.5, 52.4}, {13.5, 52.6}, {13.3, 52.6}, {13.3, 52.4}
+                        },
+                        new double[][] {
+                            {13.35, 52.45}, {13.4, 52.45}, {13.4, 52.5}, {13.35, 52.45}
+                        });
+        Set<Long> expected = new HashSet<>(handler.polyfill(points, holes, 9));
+        long missesBefore = handler.getCoverageCache().missCount();
+        for (long cell : h3Core.kRing(h3Core.geoToH3(52.5, 13.4, 9), 60)) {
+            assertEquals(expected.contains(cell), handler.h3_in_polygon(cell, points, holes, 7));
+            assertEquals(expected.contains(cell), handler.h3_in_polygon(cell, wkt, 7));
+            assertEquals(expected.contains(cell), handler.h3_in_polygon(cell, wkb, 7));
+        }
+        // one coverage per form of the polygon
+        assertEquals(3, handler.getCoverageCache().missCount() - missesBefore);
+
+        assertTrue(handler.h3_in_polygon(h3Core.geoToH3(52.55, 13.45, 9), points, null, 7));
+        assertNull(handler.h3_in_polygon(null, points, holes, 7));
+        assertNull(handler.h3_in_polygon(h3, (String) null, 7));
+        assertNull(handler.h3_in_polygon(h3, wkb, null));
+        assertThrows(IllegalArgumentException.class, () -> handler.h3_in_polygon(h3, wkt, 16));
+    }
+
+    @Test
+    public void polyfill_page() {
+        List<String> points =
+                Arrays.asList(
+                        "POINT (13.3 52.4)",
+                        "POINT (13.5 52.4)",
+                        "POINT (13.5 52.6)",
+                        "POINT (13.3 52.6)");
+        List<List<String>> holes =
+                Collections.singletonList(
+                        Arrays.asList(
+                                "POINT (13.35 52.45)", "POINT (13.4 52.45)", "POINT (13.4 52.5)"));
+        String wkt =
+                "POLYGON ((13.3 52.4, 13.5 52.4, 13.5 52.6, 13.3 52.6, 13.3 52.4),"
+                        + " (13.35 52.45, 13.4 52.45, 13.4 52.5, 13.35 52.45))";
+        byte[] wkb =
+                PolygonsTest.polygonWKB(
+                        ByteOrder.LITTLE_ENDIAN,
+                        3,
+                        2,
+                        new double[][] {
+                            {13.3, 52.4}, {13.5, 52.4}, {13.5, 52.6}, {13.3, 52.6}, {13.3, 52.4}
+                        },
+                        new double[][] {
+                            {13.35, 52.45}, {13.4, 52.45}, {13.4, 52.5}, {13.35, 52.45}
+                        });
+        List<Long> expected = new ArrayList<>(handler.polyfill(points, holes, 10));
+        Collections.sort(expected);
+        assertEquals(expected.size(), (long) handler.polyfill_count(points, holes, 10));
+        assertEquals(expected.size(), (long) handler.polyfill_count(wkt, 10));
+        assertEquals(expected.size(), (long) handler.polyfill_count(wkb, 10));
+
+        int pageSize = 10000;
+        List<Long> pages = new ArrayList<>();
+        for (long page = 0; page * pageSize < expected.size(); page++) {
+            pages.addAll(handler.polyfill_page(points, holes, 10, page, pageSize));
+            assertEquals(
+                    handler.polyfill_page(points, holes, 10, page, pageSize),
+                    handler.polyfill_page(wkt, 10, page, pageSize));
+        }
+        assertEquals(expected, pages);
+        assertEquals(expected.subList(5, 10), handler.polyfill_page(wkb, 10, 1L, 5));
+        assertTrue(handler.polyfill_page(wkt, 10, Long.MAX_VALUE, pageSize).isEmpty());
+
+        // coarser than the coverage of a paged polyfill
+        assertEquals(handler.polyfill(wkt, 2), handler.polyfill_page(wkt, 2, 0L, 10));
+        assertNull(handler.polyfill_page(null, holes, 10, 0L, pageSize));
+        assertNull(handler.polyfill_count(wkt, null));
+        assertThrows(IllegalArgumentException.class, () -> handler.polyfill_page(wkt, 10, -1L, 10));
+        assertThrows(IllegalArgumentException.class, () -> handler.polyfill_page(wkt, 10, 0L, 0));
+        assertThrows(IllegalArgumentException.class, () -> handler.polyfill_count(wkt, 16));
+    }
+
+    @Test
+    public void h3_cell_set() {
+        List<Long> ring = h3Core.kRing(h3, 10);
+        List<Long> inner = new ArrayList<>(h3Core.kRing(h3, 3));
+        inner.add(null);
+        byte[] set = handler.h3_cell_set(ring);
+        byte[] innerSet = handler.h3_cell_set(inner);
+        assertEquals(
+                new HashSet<>(h3Core.compact(ring)), new HashSet<>(handler.h3_cell_set_cells(set)));
+        assertTrue(handler.h3_cell_set_contains(h3, set));
+        assertTrue(handler.h3_cell_set_contains(h3Core.h3ToCenterChild(h3, 15), set));
+        assertFalse(handler.h3_cell_set_contains(h3Core.h3ToParent(h3, 3), set));
+
+        assertArrayEquals(set, handler.h3_cell_set_union(innerSet, set));
+        assertArrayEquals(innerSet, handler.h3_cell_set_intersect(set, innerSet));
+        Set<Long> difference = new HashSet<>(ring);
+        difference.removeAll(h3Core.kRing(h3, 3));
+        assertEquals(
+                difference,
+                new HashSet<>(
+                        h3Core.uncompact(
+                                handler.h3_cell_set_cells(
+                                        handler.h3_cell_set_difference(set, innerSet)),
+                                h3Core.h3GetResolution(h3))));
+
+        assertNull(handler.h3_cell_set(null));
+        assertNull(handler.h3_cell_set_contains(null, set));
+        assertNull(handler.h3_cell_set_union(set, null));
+        assertThrows(
+                IllegalArgumentException.class, () -> handler.h3_cell_set_cells(new byte[] {1, 1}));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> handler.h3_cell_set(Collections.singletonList(0L)));
+    }
+
+    @Test
+    public void h3_set_to_multipolygon() {
+        List<Long> cells = new ArrayList<>(h3Core.kRing(h3, 2));
+        cells.remove(h3);
+        cells.add(null);
+        List<Polygons.Polygon> wkt = Polygons.fromWKT(handler.h3_set_to_multipolygon(cells));
+        List<Polygons.Polygon> wkb = Polygons.fromWKB(handler.h3_set_to_multipolygon_wkb(cells));
+        assertEquals(1, wkt.size());
+        assertEquals(30, wkt.get(0).points.size());
+        assertEquals(h3Core.h3ToGeoBoundary(h3).size(), wkt.get(0).holes.get(0).size());
+        assertEquals(wkt.get(0).points, wkb.get(0).points);
+        assertEquals(wkt.get(0).holes, wkb.get(0).holes);
+
+        assertEquals("MULTIPOLYGON EMPTY", handler.h3_set_to_multipolygon(Collections.emptyList()));
+        assertNull(handler.h3_set_to_multipolygon(null));
+        assertNull(handler.h3_set_to_multipolygon_wkb(null));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> handler.h3_set_to_multipolygon(Arrays.asList(h3, h3Core.h3ToParent(h3, 3))));
+    }
+
     @Test
     public void k_ring() {
         assertEquals(h3Core.kRing(h3, k), handler.k_ring(h3, k));
     }
 
+    @Test
+    public void k_ring_distances() throws DistanceUndefinedException {
+        List<List<Long>> result = handler.k_ring_distances(h3, 3);
+        List<Long> cells = result.get(0);
+        List<Long> distances = result.get(1);
+        assertEquals(new HashSet<>(h3Core.kRing(h3, 3)), new HashSet<>(cells));
+        assertEquals(cells.size(), distances.size());
+        for (int i = 0; i < cells.size(); i++) {
+            assertEquals(h3Core.h3Distance(h3, cells.get(i)), (long) distances.get(i));
+            assertTrue(i == 0 || distances.get(i - 1) <= distances.get(i));
+        }
+        assertEquals(
+                Arrays.asList(Collections.singletonList(h3), Collections.singletonList(0L)),
+                handler.k_ring_distances(h3, 0));
+        assertNull(handler.k_ring_distances(null, 3));
+        assertThrows(IllegalArgumentException.class, () -> handler.k_ring_distances(h3, -1));
+    }
+
     @Test
     public void address_k_ring() {
         assertEquals(h3Core.kRing(h3address, k), handler.k_ring(h3address, k));
     }
 
+    @Test
+    public void k_ring_compact() {
+        assertEquals(
+                new HashSet<>(h3Core.compact(h3Core.kRing(h3, 20))),
+                new HashSet<>(handler.k_ring_compact(h3, 20)));
+        long pentagon = h3Core.getPentagonIndexes(5).iterator().next();
+        assertEquals(
+                new HashSet<>(h3Core.compact(h3Core.kRing(pentagon, 20))),
+                new HashSet<>(handler.k_ring_compact(pentagon, 20)));
+        assertNull(handler.k_ring_compact((Long) null, 20));
+    }
+
+    @Test
+    public void address_k_ring_compact() {
+        assertEquals(
+                new HashSet<>(h3Core.compactAddress(h3Core.kRing(h3address, 20))),
+                new HashSet<>(handler.k_ring_compact(h3address, 20)));
+    }
+
     @Test
     public void h3_distance() throws DistanceUndefinedException {
         assertEquals(h3Core.h3Distance(h3, secondH3), handler.h3_distance(h3, secondH3).intValue());
@@ -157,6 +535,92 @@ public class H3AthenaUDFHandlerTest {
                 handler.h3_line(h3address, secondH3Address).toArray());
     }
 
+    @Test
+    public void h3_line_Undefined() {
+        assertNull(handler.h3_line(h3, tooFarAwayH3));
+        assertNull(handler.h3_line(h3, nearbyH3WithDifferentResolution));
+        assertNull(handler.h3_line(h3address, nearbyH3AddressWithDifferentResolution));
+        assertNull(handler.h3_line(h3, 0L));
+    }
+
+    @Test
+    public void get_h3_unidirectional_edge() {
+        for (long neighbor : h3Core.kRing(h3, 1)) {
+            if (neighbor != h3) {
+                assertEquals(
+                        h3Core.getH3UnidirectionalEdge(h3, neighbor),
+                        handler.get_h3_unidirectional_edge(h3, neighbor).longValue());
+            }
+        }
+        assertEquals(
+                h3Core.getH3UnidirectionalEdge(h3address, h3Core.kRing(h3address, 1).get(1)),
+                handler.get_h3_unidirectional_edge(h3address, h3Core.kRing(h3address, 1).get(1)));
+        assertNull(handler.get_h3_unidirectional_edge(h3, secondH3));
+        assertNull(handler.get_h3_unidirectional_edge(h3, tooFarAwayH3));
+        assertNull(handler.get_h3_unidirectional_edge(h3, nearbyH3WithDifferentResolution));
+        assertNull(handler.get_h3_unidirectional_edge(h3address, h3address));
+    }
+
+    @Test
+    public void get_h3_unidirectional_edge_InvalidAddress() {
+        assertNull(handler.get_h3_unidirectional_edge("not an index", h3address));
+        assertNull(handler.get_h3_unidirectional_edge(h3address, "8928308280fffz"));
+    }
+
+    @Test
+    public void h3_trajectory() {
+        List<Double> lats = Arrays.asList(52.5, 52.5, null, 52.52, 52.56, 52.6);
+        List<Double> lngs = Arrays.asList(13.4, 13.4, 13.0, 13.45, 13.5, 13.6);
+        List<Long> cells = handler.h3_trajectory(lats, lngs, 9);
+        assertEquals(h3Core.geoToH3(52.5, 13.4, 9), cells.get(0).longValue());
+        assertEquals(h3Core.geoToH3(52.6, 13.6, 9), cells.get(cells.size() - 1).longValue());
+        assertPath(cells, handler.h3_trajectory_edges(lats, lngs, 9));
+
+        assertEquals(
+                Collections.singletonList(h3Core.geoToH3(52.5, 13.4, 9)),
+                handler.h3_trajectory(lats.subList(0, 3), lngs.subList(0, 3), 9));
+        assertTrue(
+                handler.h3_trajectory_edges(lats.subList(0, 3), lngs.subList(0, 3), 9).isEmpty());
+        assertNull(handler.h3_trajectory(null, lngs, 9));
+        assertNull(handler.h3_trajectory_edges(lats, lngs, null));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> handler.h3_trajectory(lats, lngs.subList(1, lngs.size()), 9));
+    }
+
+    /** A track across a pentagon, between cells without an <code>h3_line</code>. */
+    @Test
+    public void h3_trajectory_Pentagon() {
+        long pentagon = h3Core.getPentagonIndexes(5).iterator().next();
+        for (long a : h3Core.kRing(pentagon, 3)) {
+            for (long b : h3Core.kRing(pentagon, 3)) {
+                if (handler.h3_line(a, b) == null) {
+                    GeoCoord start = h3Core.h3ToGeo(a);
+                    GeoCoord end = h3Core.h3ToGeo(b);
+                    List<Double> lats = Arrays.asList(start.lat, end.lat);
+                    List<Double> lngs = Arrays.asList(start.lng, end.lng);
+                    List<Long> cells = handler.h3_trajectory(lats, lngs, 5);
+                    assertEquals(a, cells.get(0).longValue());
+                    assertEquals(b, cells.get(cells.size() - 1).longValue());
+                    assertPath(cells, handler.h3_trajectory_edges(lats, lngs, 5));
+                    return;
+                }
+            }
+        }
+        fail("No cells without a line around the pentagon");
+    }
+
+    /** Asserts that each cell is a neighbor of the one before, across the edge between them. */
+    private void assertPath(List<Long> cells, List<Long> edges) {
+        assertEquals(cells.size() - 1, edges.size());
+        for (int i = 1; i < cells.size(); i++) {
+            assertTrue(h3Core.h3IndexesAreNeighbors(cells.get(i - 1), cells.get(i)));
+            assertEquals(
+                    Arrays.asList(cells.get(i - 1), cells.get(i)),
+                    h3Core.getH3IndexesFromUnidirectionalEdge(edges.get(i - 1)));
+        }
+    }
+
     @Test
     public void h3_get_resolution() {
         assertEquals(h3Core.h3GetResolution(h3), handler.h3_get_resolution(h3).intValue());
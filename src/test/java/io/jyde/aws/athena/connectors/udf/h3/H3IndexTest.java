@@ -0,0 +1,134 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+
+public class H3IndexTest {
+    private H3Core h3Core;
+    private List<Long> indexes;
+
+    /**
+     * Valid cells of every resolution, including pentagons, and the same cells with random bits or
+     * digits changed, edges and random longs.
+     */
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.indexes = new ArrayList<>();
+        Random random = new Random(42);
+
+        List<Long> cells = new ArrayList<>();
+        for (int res = 0; res <= H3Index.MAX_RES; res++) {
+            cells.addAll(h3Core.getPentagonIndexes(res));
+            for (int n = 0; n < 2_000; n++) {
+                double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+                double lng = 360 * random.nextDouble() - 180;
+                cells.add(h3Core.geoToH3(lat, lng, res));
+            }
+        }
+        indexes.addAll(cells);
+
+        for (long cell : cells) {
+            indexes.add(cell ^ (1L << random.nextInt(64)));
+            int res = H3Index.getResolution(cell);
+            if (res > 0) {
+                int digitRes = 1 + random.nextInt(res);
+                indexes.add(H3Index.setDigit(cell, digitRes, random.nextInt(8)));
+                // the deleted K axes subsequence of pentagons
+                indexes.add(H3Index.setDigit(cell, 1, H3Index.K_AXES_DIGIT));
+            }
+            if (res < H3Index.MAX_RES) {
+                indexes.add(H3Index.setDigit(cell, res + 1, random.nextInt(7)));
+            }
+            indexes.add(h3Core.getH3UnidirectionalEdgesFromHexagon(cell).get(0));
+        }
+        for (int n = 0; n < 10_000; n++) {
+            indexes.add(random.nextLong());
+        }
+        indexes.add(0L);
+        indexes.add(-1L);
+    }
+
+    @Test
+    public void getResolution() {
+        for (long h3 : indexes) {
+            assertEquals(h3Core.h3GetResolution(h3), H3Index.getResolution(h3));
+        }
+    }
+
+    @Test
+    public void getBaseCell() {
+        for (long h3 : indexes) {
+            assertEquals(h3Core.h3GetBaseCell(h3), H3Index.getBaseCell(h3));
+        }
+    }
+
+    @Test
+    public void isResClassIII() {
+        for (long h3 : indexes) {
+            assertEquals(h3Core.h3IsResClassIII(h3), H3Index.isResClassIII(h3));
+        }
+    }
+
+    @Test
+    public void isPentagon() {
+        for (long h3 : indexes) {
+            if (H3Index.isValid(h3)) {
+                assertEquals(h3Core.h3IsPentagon(h3), H3Index.isPentagon(h3));
+            }
+        }
+    }
+
+    @Test
+    public void isValid() {
+        for (long h3 : indexes) {
+            assertEquals(Long.toHexString(h3), h3Core.h3IsValid(h3), H3Index.isValid(h3));
+        }
+    }
+
+    @Test
+    public void toParent() {
+        for (long h3 : indexes) {
+            for (int res = -1; res <= H3Index.MAX_RES + 1; res++) {
+                int parentRes = res;
+                assertSameOutcome(
+                        () -> h3Core.h3ToParent(h3, parentRes),
+                        () -> H3Index.toParent(h3, parentRes));
+            }
+        }
+    }
+
+    @Test
+    public void toCenterChild() {
+        for (long h3 : indexes) {
+            for (int res = -1; res <= H3Index.MAX_RES + 1; res++) {
+                int childRes = res;
+                assertSameOutcome(
+                        () -> h3Core.h3ToCenterChild(h3, childRes),
+                        () -> H3Index.toCenterChild(h3, childRes));
+            }
+        }
+    }
+
+    /** Asserts that both return the same value, or throw the same exception. */
+    private static void assertSameOutcome(Supplier<Object> expected, Supplier<Object> actual) {
+        assertEquals(outcome(expected), outcome(actual));
+    }
+
+    private static Object outcome(Supplier<Object> supplier) {
+        try {
+            return supplier.get();
+        } catch (RuntimeException e) {
+            return e.getClass() + ": " + e.getMessage();
+        }
+    }
+}
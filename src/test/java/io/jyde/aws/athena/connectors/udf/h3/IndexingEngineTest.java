@@ -0,0 +1,66 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexingEngineTest {
+    private static final Double lat = 52.496;
+    private static final Double lng = 13.4149;
+    private static final Integer res = 13;
+
+    private H3Core h3Core;
+    private H3AthenaUDFHandler handler;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.handler = new H3AthenaUDFHandler(h3Core, IndexingEngine.JAVA);
+    }
+
+    @Test
+    public void fromName() {
+        assertEquals(IndexingEngine.JNI, IndexingEngine.fromName(null));
+        assertEquals(IndexingEngine.JNI, IndexingEngine.fromName(""));
+        assertEquals(IndexingEngine.JNI, IndexingEngine.fromName("jni"));
+        assertEquals(IndexingEngine.JAVA, IndexingEngine.fromName(" Java "));
+        assertThrows(IllegalArgumentException.class, () -> IndexingEngine.fromName("c"));
+    }
+
+    @Test
+    public void geo_to_h3() {
+        assertEquals(h3Core.geoToH3(lat, lng, res), handler.geo_to_h3(lat, lng, res).longValue());
+        assertNull(handler.geo_to_h3(null, lng, res));
+    }
+
+    @Test
+    public void geo_to_h3_address() {
+        assertEquals(
+                h3Core.geoToH3Address(lat, lng, res), handler.geo_to_h3_address(lat, lng, res));
+        assertNull(handler.geo_to_h3_address(lat, null, res));
+    }
+
+    @Test
+    public void geoToH3_Invalid() {
+        for (IndexingEngine engine : IndexingEngine.values()) {
+            IllegalArgumentException badResolution =
+                    assertThrows(
+                            IllegalArgumentException.class,
+                            () -> engine.geoToH3(h3Core, lat, lng, 16));
+            assertEquals(
+                    "resolution 16 is out of range (must be 0 <= res <= 15)",
+                    badResolution.getMessage());
+            IllegalArgumentException badCoordinates =
+                    assertThrows(
+                            IllegalArgumentException.class,
+                            () -> engine.geoToH3(h3Core, Double.NaN, lng, res));
+            assertEquals("Latitude or longitude were invalid.", badCoordinates.getMessage());
+        }
+    }
+}
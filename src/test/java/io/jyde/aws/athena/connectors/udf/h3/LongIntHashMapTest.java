@@ -0,0 +1,57 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class LongIntHashMapTest {
+    @Test
+    public void putIfAbsent() {
+        LongIntHashMap map = new LongIntHashMap(4);
+        assertEquals(LongIntHashMap.ABSENT, map.putIfAbsent(0L, 0));
+        assertEquals(LongIntHashMap.ABSENT, map.putIfAbsent(-1L, 1));
+        assertEquals(0, map.putIfAbsent(0L, 2));
+        assertEquals(1, map.get(-1L));
+        assertEquals(LongIntHashMap.ABSENT, map.get(1L));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void holdsExpectedSize() {
+        for (int expectedSize = 0; expectedSize < 100; expectedSize++) {
+            LongIntHashMap map = new LongIntHashMap(expectedSize);
+            for (int i = 0; i < expectedSize; i++) {
+                assertEquals(LongIntHashMap.ABSENT, map.putIfAbsent(i, i));
+            }
+            assertEquals(expectedSize, map.size());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void putIfAbsent_Full() {
+        LongIntHashMap map = new LongIntHashMap(2);
+        for (int i = 0; i < 100; i++) {
+            map.putIfAbsent(i, i);
+        }
+    }
+
+    /** Keys that share their low bits, against a reference implementation. */
+    @Test
+    public void matchesHashMap() {
+        int size = 4096;
+        LongIntHashMap map = new LongIntHashMap(size);
+        Map<Long, Integer> reference = new HashMap<>();
+        Random random = new Random(42);
+        for (int n = 0; n < size; n++) {
+            long key = 628064021095030783L + ((long) random.nextInt(1000) << 45);
+            Integer expected = reference.putIfAbsent(key, n);
+            assertEquals(
+                    expected == null ? LongIntHashMap.ABSENT : expected, map.putIfAbsent(key, n));
+            assertEquals(reference.size(), map.size());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class LongLruCacheTest {
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LongLruCache<String> cache = new LongLruCache<>(3, 1, value -> 1);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        assertEquals("a", cache.get(1));
+        cache.put(4, "d");
+
+        assertNull(cache.get(2));
+        assertEquals("a", cache.get(1));
+        assertEquals("c", cache.get(3));
+        assertEquals("d", cache.get(4));
+        assertEquals(1, cache.evictionCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void boundsWeight() {
+        LongLruCache<String> cache = new LongLruCache<>(10, 1, String::length);
+        cache.put(1, "aaaa");
+        cache.put(2, "bbbb");
+        cache.put(3, "cccc");
+        assertEquals(8, cache.weight());
+        assertNull(cache.get(1));
+
+        // heavier than the whole cache
+        cache.put(4, "eeeeeeeeeee");
+        assertNull(cache.get(4));
+        assertEquals(8, cache.weight());
+    }
+
+    @Test
+    public void replacesValue() {
+        LongLruCache<String> cache = new LongLruCache<>(10, 1, String::length);
+        cache.put(1, "a");
+        cache.put(1, "bbb");
+        assertEquals("bbb", cache.get(1));
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.weight());
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        LongLruCache<String> cache = new LongLruCache<>(10, 1, value -> 1);
+        cache.put(1, "a");
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    /** Random operations on keys that share their low bits, against a reference implementation. */
+    @Test
+    public void matchesLinkedHashMap() {
+        int maxWeight = 1000;
+        LongLruCache<Integer> cache = new LongLruCache<>(maxWeight, 1, value -> value);
+        Map<Long, Integer> reference = new LinkedHashMap<>(16, 0.75f, true);
+        Random random = new Random(42);
+        for (int n = 0; n < 200_000; n++) {
+            long key = 628064021095030783L + ((long) random.nextInt(400) << 45);
+            if (random.nextBoolean()) {
+                assertEquals(reference.get(key), cache.get(key));
+            } else {
+                int value = 1 + random.nextInt(20);
+                cache.put(key, value);
+                reference.remove(key);
+                reference.put(key, value);
+                int weight = reference.values().stream().mapToInt(Integer::intValue).sum();
+                Iterator<Integer> eldest = reference.values().iterator();
+                while (weight > maxWeight) {
+                    weight -= eldest.next();
+                    eldest.remove();
+                }
+            }
+            assertEquals(reference.size(), cache.size());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.exceptions.LineUndefinedException;
+import com.uber.h3core.exceptions.PentagonEncounteredException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NativeCellsTest {
+    private static final long h3 = 628064021095030783L;
+
+    private H3Core h3Core;
+    private NativeCells nativeCells;
+    private CellBuffer scratch;
+    private CellBuffer out;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.nativeCells = new NativeCells(h3Core);
+        this.scratch = new CellBuffer(1);
+        this.out = new CellBuffer(1);
+    }
+
+    @Test
+    public void isNative() {
+        assertTrue(nativeCells.isNative());
+    }
+
+    /** The scratch buffer is reused for rings of decreasing size, and the cells are appended. */
+    @Test
+    public void kRing() {
+        long pentagon = h3Core.getPentagonIndexes(9).iterator().next();
+        List<Long> expected = new ArrayList<>();
+        for (int k : new int[] {5, 0, 2}) {
+            for (long cell : Arrays.asList(h3, pentagon)) {
+                expected.addAll(h3Core.kRing(cell, k));
+                nativeCells.kRing(cell, k, scratch, out);
+            }
+        }
+        assertEquals(expected, cells(out));
+    }
+
+    /** The cells and distances of every ring, nearest first. */
+    @Test
+    public void kRingDistances() {
+        long pentagon = h3Core.getPentagonIndexes(9).iterator().next();
+        CellBuffer distances = new CellBuffer(1);
+        for (int k : new int[] {4, 0, 2}) {
+            for (long cell : Arrays.asList(h3, pentagon)) {
+                out.clear();
+                distances.clear();
+                nativeCells.kRingDistances(cell, k, scratch, out, distances);
+                List<List<Long>> rings = h3Core.kRingDistances(cell, k);
+                assertEquals(h3Core.kRing(cell, k).size(), out.size());
+                int i = 0;
+                for (int distance = 0; distance <= k; distance++) {
+                    int ringSize = rings.get(distance).size();
+                    assertEquals(
+                            new HashSet<>(rings.get(distance)),
+                            new HashSet<>(cells(out).subList(i, i + ringSize)));
+                    for (long d : cells(distances).subList(i, i + ringSize)) {
+                        assertEquals(distance, d);
+                    }
+                    i += ringSize;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void hexRing() throws PentagonEncounteredException {
+        List<Long> expected = new ArrayList<>();
+        for (int k : new int[] {3, 0, 1}) {
+            expected.addAll(h3Core.hexRing(h3, k));
+            nativeCells.hexRing(h3, k, scratch, out);
+        }
+        assertEquals(expected, cells(out));
+    }
+
+    @Test(expected = PentagonEncounteredException.class)
+    public void hexRing_Pentagon() throws PentagonEncounteredException {
+        long pentagon = h3Core.getPentagonIndexes(9).iterator().next();
+        nativeCells.hexRing(pentagon, 1, scratch, out);
+    }
+
+    @Test
+    public void h3Line() throws LineUndefinedException {
+        long end = h3Core.kRing(h3, 20).get(500);
+        nativeCells.h3Line(h3, end, scratch, out);
+        assertEquals(h3Core.h3Line(h3, end), cells(out));
+    }
+
+    @Test(expected = LineUndefinedException.class)
+    public void h3Line_Undefined() throws LineUndefinedException {
+        nativeCells.h3Line(h3, h3Core.geoToH3(-33.9, 151.2, 9), scratch, out);
+    }
+
+    @Test
+    public void h3ToChildren() {
+        long pentagon = h3Core.getPentagonIndexes(5).iterator().next();
+        List<Long> expected = new ArrayList<>();
+        for (long parent : Arrays.asList(h3Core.h3ToParent(h3, 6), pentagon, h3)) {
+            expected.addAll(h3Core.h3ToChildren(parent, 8));
+            nativeCells.h3ToChildren(parent, 8, scratch, out);
+        }
+        assertEquals(expected, cells(out));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void h3ToChildren_InvalidResolution() {
+        nativeCells.h3ToChildren(h3, -1, scratch, out);
+    }
+
+    @Test
+    public void edgesFromHexagon() {
+        long pentagon = h3Core.getPentagonIndexes(9).iterator().next();
+        List<Long> expected = new ArrayList<>();
+        for (long cell : Arrays.asList(h3, pentagon, h3)) {
+            expected.addAll(h3Core.getH3UnidirectionalEdgesFromHexagon(cell));
+            nativeCells.edgesFromHexagon(cell, scratch, out);
+        }
+        assertEquals(expected, cells(out));
+    }
+
+    private static List<Long> cells(CellBuffer buffer) {
+        List<Long> cells = new ArrayList<>();
+        for (int i = 0; i < buffer.size(); i++) {
+            cells.add(buffer.cells()[i]);
+        }
+        return cells;
+    }
+}
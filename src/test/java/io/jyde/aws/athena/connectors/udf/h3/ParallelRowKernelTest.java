@@ -0,0 +1,161 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static io.jyde.aws.athena.connectors.udf.h3.UDFBatches.field;
+import static io.jyde.aws.athena.connectors.udf.h3.UDFBatches.listField;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelRowKernelTest {
+    private static final Long h3 = 628064021095030783L;
+    private static final ArrowType VARCHAR = Types.MinorType.VARCHAR.getType();
+    private static final ArrowType BIGINT = Types.MinorType.BIGINT.getType();
+    private static final ArrowType INT = Types.MinorType.INT.getType();
+
+    private H3AthenaUDFHandler handler;
+    private H3Core h3Core;
+    private BlockAllocatorImpl allocator;
+
+    private List<Long> cells;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.handler =
+                new H3AthenaUDFHandler(
+                        h3Core, IndexingEngine.JNI, new ResultCache(0), new BatchExecutor(4));
+        this.allocator = new BlockAllocatorImpl();
+        this.cells = h3Core.kRing(h3, 8);
+    }
+
+    @After
+    public void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    public void polyfill() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            List<String> polygon =
+                    h3Core.h3ToGeoBoundary(h3Core.h3ToParent(cells.get(i * 10), 7)).stream()
+                            .map(WKTPoints::format)
+                            .collect(Collectors.toList());
+            List<List<String>> holes =
+                    i % 2 == 0
+                            ? Collections.emptyList()
+                            : Collections.singletonList(
+                                    h3Core.h3ToGeoBoundary(cells.get(i * 10)).stream()
+                                            .map(WKTPoints::format)
+                                            .collect(Collectors.toList()));
+            rows.add(new Object[] {i % 7 == 3 ? null : polygon, holes, 9 + i % 3});
+        }
+        assertBlockMatchesRows(
+                method("polyfill", List.class, List.class, Integer.class),
+                Arrays.asList(
+                        listField("arg0", VARCHAR),
+                        listField("arg1", listField("item", VARCHAR)),
+                        field("arg2", INT)),
+                listField("out", BIGINT),
+                rows);
+    }
+
+    @Test
+    public void h3_line() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < cells.size(); i++) {
+            rows.add(new Object[] {i == 5 ? null : h3, cells.get(i)});
+        }
+        assertBlockMatchesRows(
+                method("h3_line", Long.class, Long.class),
+                Arrays.asList(field("arg0", BIGINT), field("arg1", BIGINT)),
+                listField("out", BIGINT),
+                rows);
+    }
+
+    @Test
+    public void h3_line_Address() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (Long cell : cells) {
+            rows.add(new Object[] {h3Core.h3ToString(h3), h3Core.h3ToString(cell)});
+        }
+        assertBlockMatchesRows(
+                method("h3_line", String.class, String.class),
+                Arrays.asList(field("arg0", VARCHAR), field("arg1", VARCHAR)),
+                listField("out", VARCHAR),
+                rows);
+    }
+
+    @Test
+    public void cell_area_Address() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < cells.size(); i++) {
+            rows.add(new Object[] {h3Core.h3ToString(cells.get(i)), i % 2 == 0 ? "m2" : "km2"});
+        }
+        assertBlockMatchesRows(
+                method("cell_area", String.class, String.class),
+                Arrays.asList(field("arg0", VARCHAR), field("arg1", VARCHAR)),
+                field("out", Types.MinorType.FLOAT8.getType()),
+                rows);
+    }
+
+    /** Distinct cells of a batch go through the executor too. */
+    @Test
+    public void h3_to_geo_boundary() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 2 * cells.size(); i++) {
+            rows.add(new Object[] {i == 7 ? null : cells.get(i % cells.size())});
+        }
+        assertBlockMatchesRows(
+                method("h3_to_geo_boundary", Long.class),
+                Collections.singletonList(field("arg0", BIGINT)),
+                listField("out", VARCHAR),
+                rows);
+    }
+
+    @Test
+    public void k_ring_compact_InvalidRow() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(new Object[] {i == 50 ? "not an index" : h3Core.h3ToString(cells.get(i)), 1});
+        }
+        try {
+            assertBlockMatchesRows(
+                    method("k_ring_compact", String.class, Integer.class),
+                    Arrays.asList(field("arg0", VARCHAR), field("arg1", INT)),
+                    listField("out", VARCHAR),
+                    rows);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    private static Method method(String name, Class<?>... parameterTypes)
+            throws NoSuchMethodException {
+        return H3AthenaUDFHandler.class.getMethod(name, parameterTypes);
+    }
+
+    private void assertBlockMatchesRows(
+            Method method, List<Field> inputFields, Field outputField, List<Object[]> rows)
+            throws Exception {
+        UDFBatches.assertBlockMatchesRows(
+                handler, allocator, method, inputFields, outputField, rows);
+    }
+}
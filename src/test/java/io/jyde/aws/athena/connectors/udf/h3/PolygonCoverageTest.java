@@ -0,0 +1,104 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.LengthUnit;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PolygonCoverageTest {
+    // concave, with a hole and a hole smaller than a cell of res 7
+    private static final String POLYGON =
+            "POLYGON ((13.3 52.4, 13.6 52.4, 13.6 52.6, 13.45 52.5, 13.3 52.6, 13.3 52.4),"
+                    + " (13.35 52.45, 13.4 52.45, 13.4 52.5, 13.35 52.45),"
+                    + " (13.5 52.43, 13.503 52.43, 13.503 52.433, 13.5 52.43))";
+    private static final String MULTI_POLYGON =
+            "MULTIPOLYGON (((13.3 52.4, 13.4 52.4, 13.4 52.5, 13.3 52.4)),"
+                    + " ((13.5 52.4, 13.6 52.4, 13.55 52.5, 13.5 52.4)))";
+    private static final String TRANSMERIDIAN =
+            "POLYGON ((179.8 -16.9, -179.9 -16.9, -179.9 -16.7, 179.8 -16.7, 179.8 -16.9))";
+
+    private H3Core h3Core;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+    }
+
+    @Test
+    public void contains_Polygon() {
+        assertMatchesPolyfill(POLYGON, 13.45, 52.5);
+    }
+
+    @Test
+    public void contains_MultiPolygon() {
+        assertMatchesPolyfill(MULTI_POLYGON, 13.45, 52.45);
+    }
+
+    @Test
+    public void contains_Transmeridian() {
+        assertMatchesPolyfill(TRANSMERIDIAN, 179.95, -16.8);
+    }
+
+    /** Interior cells are compacted, and only cells near an edge are boundary cells. */
+    @Test
+    public void compile_Compacted() {
+        PolygonCoverage coverage = compile(POLYGON, 9);
+        int polyfillCells =
+                TiledPolyfill.polyfill(h3Core, BatchExecutor.SEQUENTIAL, polygons(POLYGON), 9)
+                        .size();
+        assertTrue(coverage.interiorCount() > 0);
+        assertTrue(coverage.interiorCount() < polyfillCells / 4);
+        assertTrue(coverage.boundaryCount() < polyfillCells / 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compile_InvalidResolution() {
+        compile(POLYGON, 16);
+    }
+
+    /**
+     * Asserts that the cells of a few resolutions within 20 km of a point are in the polygon if and
+     * only if <code>polyfill</code> at their resolution keeps them, for coverages of a few
+     * resolutions.
+     */
+    private void assertMatchesPolyfill(String wkt, double lng, double lat) {
+        List<Polygons.Polygon> polygons = polygons(wkt);
+        for (int res : new int[] {5, 7, 8}) {
+            PolygonCoverage coverage = compile(wkt, res);
+            for (int cellRes : new int[] {6, 8, 10}) {
+                Set<Long> expected =
+                        new HashSet<>(
+                                TiledPolyfill.polyfill(
+                                        h3Core, BatchExecutor.SEQUENTIAL, polygons, cellRes));
+                int inside = 0;
+                long center = h3Core.geoToH3(lat, lng, cellRes);
+                int k = (int) Math.ceil(20 / h3Core.edgeLength(cellRes, LengthUnit.km));
+                for (long cell : h3Core.kRing(center, k)) {
+                    boolean contains = coverage.contains(cell);
+                    assertEquals(
+                            "res " + res + " cell " + h3Core.h3ToString(cell),
+                            expected.contains(cell),
+                            contains);
+                    inside += contains ? 1 : 0;
+                }
+                assertEquals(expected.size(), inside);
+            }
+        }
+    }
+
+    private PolygonCoverage compile(String wkt, int res) {
+        return PolygonCoverage.compile(h3Core, BatchExecutor.SEQUENTIAL, polygons(wkt), res);
+    }
+
+    private static List<Polygons.Polygon> polygons(String wkt) {
+        return Polygons.fromWKT(wkt);
+    }
+}
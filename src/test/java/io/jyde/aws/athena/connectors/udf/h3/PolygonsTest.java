@@ -0,0 +1,208 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.uber.h3core.util.GeoCoord;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class PolygonsTest {
+    private static final double[][] SHELL = {
+        {13.4, 52.5}, {13.6, 52.5}, {13.6, 52.7}, {13.4, 52.7}, {13.4, 52.5}
+    };
+    private static final double[][] HOLE = {
+        {13.45, 52.55}, {13.5, 52.55}, {13.5, 52.6}, {13.45, 52.55}
+    };
+    private static final double[][] ISLAND = {
+        {-0.5, 0.5}, {-0.25, 0.5}, {-0.25, 0.75}, {-0.5, 0.5}
+    };
+
+    @Test
+    public void fromWKT_Polygon() {
+        List<Polygons.Polygon> polygons =
+                Polygons.fromWKT(
+                        "POLYGON ((13.4 52.5, 13.6 52.5, 13.6 52.7, 13.4 52.7, 13.4 52.5),"
+                                + " (13.45 52.55, 13.5 52.55, 13.5 52.6, 13.45 52.55))");
+        assertEquals(1, polygons.size());
+        assertPolygon(polygons.get(0), SHELL, HOLE);
+    }
+
+    @Test
+    public void fromWKT_MultiPolygon() {
+        List<Polygons.Polygon> polygons =
+                Polygons.fromWKT(
+                        "SRID=4326;multipolygon Z(((13.4 52.5 1, 13.6 52.5 1, 13.6 52.7 1, 13.4"
+                                + " 52.7 1, 13.4 52.5 1),(13.45 52.55 2,13.5 52.55 2,13.5 52.6"
+                                + " 2,13.45 52.55 2)), EMPTY, ((-0.5 0.5 0, -.25 .5 0, -2.5e-1"
+                                + " 0.75 0, -0.5 0.5 0)))");
+        assertEquals(2, polygons.size());
+        assertPolygon(polygons.get(0), SHELL, HOLE);
+        assertPolygon(polygons.get(1), ISLAND);
+    }
+
+    @Test
+    public void fromWKT_Empty() {
+        assertTrue(Polygons.fromWKT("POLYGON EMPTY").isEmpty());
+        assertTrue(Polygons.fromWKT(" MULTIPOLYGON EMPTY ").isEmpty());
+    }
+
+    @Test
+    public void fromWKT_Invalid() {
+        for (String wkt :
+                new String[] {
+                    "",
+                    "POINT (13.4 52.5)",
+                    "POLYGON ((13.4 52.5, 13.6 52.5, 13.6 52.7)",
+                    "POLYGON ((13.4 52.5, 13.6, 13.6 52.7))",
+                    "POLYGON ((13.4 52.5, 13.6 52.5, 13.6 52.7)) trailing",
+                    "MULTIPOLYGON ((13.4 52.5, 13.6 52.5, 13.6 52.7))"
+                }) {
+            try {
+                Polygons.fromWKT(wkt);
+                fail("Expected an IllegalArgumentException for " + wkt);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void fromWKB_Polygon() {
+        for (ByteOrder order : new ByteOrder[] {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN}) {
+            List<Polygons.Polygon> polygons =
+                    Polygons.fromWKB(polygonWKB(order, 3, 2, new double[][][] {SHELL, HOLE}));
+            assertEquals(1, polygons.size());
+            assertPolygon(polygons.get(0), SHELL, HOLE);
+        }
+    }
+
+    @Test
+    public void fromWKB_MultiPolygon() {
+        byte[] shellAndHole = polygonWKB(ByteOrder.BIG_ENDIAN, 3, 2, SHELL, HOLE);
+        byte[] island = polygonWKB(ByteOrder.LITTLE_ENDIAN, 3, 2, ISLAND);
+        byte[] empty = polygonWKB(ByteOrder.LITTLE_ENDIAN, 3, 2);
+        ByteBuffer buffer =
+                ByteBuffer.allocate(9 + shellAndHole.length + island.length + empty.length)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1).putInt(6).putInt(3).put(shellAndHole).put(empty).put(island);
+        List<Polygons.Polygon> polygons = Polygons.fromWKB(buffer.array());
+        assertEquals(2, polygons.size());
+        assertPolygon(polygons.get(0), SHELL, HOLE);
+        assertPolygon(polygons.get(1), ISLAND);
+    }
+
+    /** Z and M ordinates of ISO WKB and EWKB, and the SRID of EWKB. */
+    @Test
+    public void fromWKB_Dimensions() {
+        assertPolygon(
+                Polygons.fromWKB(polygonWKB(ByteOrder.LITTLE_ENDIAN, 1003, 3, SHELL)).get(0),
+                SHELL);
+        assertPolygon(
+                Polygons.fromWKB(polygonWKB(ByteOrder.LITTLE_ENDIAN, 3003, 4, SHELL)).get(0),
+                SHELL);
+        byte[] wkb = polygonWKB(ByteOrder.BIG_ENDIAN, 0x80000003, 3, SHELL);
+        assertPolygon(Polygons.fromWKB(wkb).get(0), SHELL);
+
+        byte[] withSrid = new byte[wkb.length + 4];
+        ByteBuffer.wrap(withSrid).put((byte) 0).putInt(0xa0000003).putInt(4326);
+        System.arraycopy(wkb, 5, withSrid, 9, wkb.length - 5);
+        assertPolygon(Polygons.fromWKB(withSrid).get(0), SHELL);
+    }
+
+    @Test
+    public void fromWKB_Invalid() {
+        byte[] wkb = polygonWKB(ByteOrder.LITTLE_ENDIAN, 3, 2, SHELL, HOLE);
+        byte[] point = ByteBuffer.allocate(21).put((byte) 0).putInt(1).array();
+        byte[] trailing = Arrays.copyOf(wkb, wkb.length + 1);
+        byte[] badOrder = wkb.clone();
+        badOrder[0] = 2;
+        for (byte[] invalid :
+                new byte[][] {
+                    new byte[0], Arrays.copyOf(wkb, wkb.length - 1), point, trailing, badOrder
+                }) {
+            try {
+                Polygons.fromWKB(invalid);
+                fail("Expected an IllegalArgumentException for " + Arrays.toString(invalid));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void toWKT() {
+        List<Polygons.Polygon> polygons =
+                Arrays.asList(
+                        new Polygons.Polygon(ring(SHELL), Collections.singletonList(ring(HOLE))),
+                        new Polygons.Polygon(ring(ISLAND), Collections.emptyList()));
+        String wkt = Polygons.toWKT(polygons);
+        assertEquals(
+                "MULTIPOLYGON (((13.4 52.5, 13.6 52.5, 13.6 52.7, 13.4 52.7, 13.4 52.5),"
+                        + " (13.45 52.55, 13.5 52.55, 13.5 52.6, 13.45 52.55)),"
+                        + " ((-0.5 0.5, -0.25 0.5, -0.25 0.75, -0.5 0.5)))",
+                wkt);
+        List<Polygons.Polygon> read = Polygons.fromWKT(wkt);
+        assertPolygon(read.get(0), SHELL, HOLE);
+        assertPolygon(read.get(1), ISLAND);
+        assertEquals("MULTIPOLYGON EMPTY", Polygons.toWKT(Collections.emptyList()));
+    }
+
+    @Test
+    public void toWKB() {
+        List<Polygons.Polygon> polygons =
+                Arrays.asList(
+                        new Polygons.Polygon(ring(SHELL), Collections.singletonList(ring(HOLE))),
+                        new Polygons.Polygon(ring(ISLAND), Collections.emptyList()));
+        List<Polygons.Polygon> read = Polygons.fromWKB(Polygons.toWKB(polygons));
+        assertEquals(2, read.size());
+        assertPolygon(read.get(0), SHELL, HOLE);
+        assertPolygon(read.get(1), ISLAND);
+        assertTrue(Polygons.fromWKB(Polygons.toWKB(Collections.emptyList())).isEmpty());
+    }
+
+    /** Writes a WKB polygon of rings of (lng, lat), padding each point to its ordinates. */
+    static byte[] polygonWKB(ByteOrder order, int type, int ordinates, double[][]... rings) {
+        int size = 9;
+        for (double[][] ring : rings) {
+            size += 4 + ring.length * ordinates * Double.BYTES;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(order);
+        buffer.put(order == ByteOrder.BIG_ENDIAN ? (byte) 0 : (byte) 1);
+        buffer.putInt(type).putInt(rings.length);
+        for (double[][] ring : rings) {
+            buffer.putInt(ring.length);
+            for (double[] point : ring) {
+                buffer.putDouble(point[0]).putDouble(point[1]);
+                for (int i = 2; i < ordinates; i++) {
+                    buffer.putDouble(7.0);
+                }
+            }
+        }
+        return buffer.array();
+    }
+
+    private static void assertPolygon(
+            Polygons.Polygon polygon, double[][] shell, double[][]... holes) {
+        assertEquals(ring(shell), polygon.points);
+        assertEquals(holes.length, polygon.holes.size());
+        for (int i = 0; i < holes.length; i++) {
+            assertEquals(ring(holes[i]), polygon.holes.get(i));
+        }
+    }
+
+    /** The vertices of a closed ring of (lng, lat), without the closing one. */
+    private static List<GeoCoord> ring(double[][] points) {
+        GeoCoord[] ring = new GeoCoord[points.length - 1];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new GeoCoord(points[i][1], points[i][0]);
+        }
+        return Collections.unmodifiableList(Arrays.asList(ring));
+    }
+}
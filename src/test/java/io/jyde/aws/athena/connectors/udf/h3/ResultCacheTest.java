@@ -0,0 +1,80 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.uber.h3core.AreaUnit;
+import com.uber.h3core.H3Core;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultCacheTest {
+    private static final Long h3 = 628064021095030783L;
+    private static final String h3address = "8b754e649929fff";
+
+    private H3Core h3Core;
+    private ResultCache resultCache;
+    private H3AthenaUDFHandler handler;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.resultCache = new ResultCache(1);
+        this.handler = new H3AthenaUDFHandler(h3Core, IndexingEngine.JNI, resultCache);
+    }
+
+    @Test
+    public void get() {
+        assertEquals("a", resultCache.get(h3, ResultCache.H3_TO_GEO, cell -> "a"));
+        assertEquals("a", resultCache.get(h3, ResultCache.H3_TO_GEO, cell -> "b"));
+        assertEquals("b", resultCache.get(h3, ResultCache.H3_TO_GEO_BOUNDARY, cell -> "b"));
+        assertEquals(1, resultCache.hitCount());
+        assertEquals(2, resultCache.missCount());
+    }
+
+    @Test
+    public void get_Uncacheable() {
+        long reserved = h3 | H3Index.RESERVED_MASK;
+        assertEquals("a", resultCache.get(reserved, ResultCache.H3_TO_GEO, cell -> "a"));
+        assertEquals("b", resultCache.get(reserved, ResultCache.H3_TO_GEO, cell -> "b"));
+        assertEquals(0, resultCache.missCount());
+    }
+
+    @Test
+    public void get_Disabled() {
+        ResultCache disabled = new ResultCache(0);
+        assertEquals("a", disabled.get(h3, ResultCache.H3_TO_GEO, cell -> "a"));
+        assertEquals("b", disabled.get(h3, ResultCache.H3_TO_GEO, cell -> "b"));
+    }
+
+    @Test
+    public void cell_area() {
+        for (AreaUnit unit : AreaUnit.values()) {
+            assertEquals(h3Core.cellArea(h3, unit), handler.cell_area(h3, unit.name()), 0.);
+            assertEquals(h3Core.cellArea(h3, unit), handler.cell_area(h3address, unit.name()), 0.);
+        }
+        assertEquals(3, resultCache.hitCount());
+        assertEquals(3, resultCache.missCount());
+    }
+
+    @Test
+    public void h3_to_geo_boundary() {
+        assertSame(handler.h3_to_geo_boundary(h3), handler.h3_to_geo_boundary(h3address));
+        assertEquals(1, resultCache.hitCount());
+    }
+
+    @Test
+    public void h3_to_geo() {
+        assertEquals(handler.h3_to_geo(h3), handler.h3_to_geo(h3address));
+        assertEquals(1, resultCache.hitCount());
+    }
+
+    @Test
+    public void h3_get_faces() {
+        assertEquals(h3Core.h3GetFaces(h3), handler.h3_get_faces(h3));
+        assertEquals(h3Core.h3GetFaces(h3), handler.h3_get_faces(h3address));
+        assertEquals(1, resultCache.hitCount());
+    }
+}
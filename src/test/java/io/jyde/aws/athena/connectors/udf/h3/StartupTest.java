@@ -0,0 +1,70 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.uber.h3core.H3Core;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class StartupTest {
+    @Test
+    public void libraryResource() {
+        String resource = Startup.libraryResource();
+        Assume.assumeNotNull(resource);
+        assertNotNull(H3Core.class.getResource(resource));
+    }
+
+    /** The h3 jar of the tests is not unpacked. */
+    @Test
+    public void unpackedLibrary_Jar() {
+        assertNull(Startup.unpackedLibrary());
+    }
+
+    @Test
+    public void loadH3Core_File() throws IOException {
+        String resource = Startup.libraryResource();
+        Assume.assumeNotNull(resource);
+        File library = File.createTempFile("libh3-java", resource.substring(resource.indexOf('.')));
+        library.deleteOnExit();
+        try (InputStream in = H3Core.class.getResourceAsStream(resource)) {
+            Files.copy(in, library.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        H3Core h3Core = new Startup(library, 0).loadH3Core();
+        assertEquals(
+                0x8928308280fffffL, h3Core.geoToH3(37.775938728915946, -122.41795063018799, 9));
+    }
+
+    /** A missing library is extracted from the jar. */
+    @Test
+    public void loadH3Core_Missing() throws IOException {
+        H3Core h3Core = new Startup(new File("/nonexistent/libh3-java.so"), 0).loadH3Core();
+        assertEquals(
+                0x8928308280fffffL, h3Core.geoToH3(37.775938728915946, -122.41795063018799, 9));
+    }
+
+    @Test
+    public void primeOrThrow() throws Exception {
+        Startup startup = new Startup(null, 128);
+        H3AthenaUDFHandler handler =
+                new H3AthenaUDFHandler(
+                        H3Core.newInstance(),
+                        IndexingEngine.JNI,
+                        new ResultCache(0),
+                        new BatchExecutor(2));
+        startup.primeOrThrow(handler);
+        startup.onBatch(128);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativePrimingRows() {
+        new Startup(null, -1);
+    }
+}
@@ -0,0 +1,139 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.uber.h3core.H3Core;
+import com.uber.h3core.util.GeoCoord;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TiledPolyfillTest {
+    private static final BatchExecutor EXECUTOR = new BatchExecutor(4);
+
+    private H3Core h3Core;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+    }
+
+    @Test
+    public void polyfill_StarPolygons() {
+        Random random = new Random(42L);
+        double[][] centers = {{52.52, 13.405}, {-23.551, -46.633}, {0.1, 32.5}, {-0.3, -78.5}};
+        for (double[] center : centers) {
+            for (int i = 0; i < 5; i++) {
+                List<GeoCoord> points = star(random, center[0], center[1], 1.5, 40 + i * 30);
+                List<List<GeoCoord>> holes =
+                        Arrays.asList(
+                                star(random, center[0] + 0.3, center[1], 0.2, 12),
+                                star(random, center[0] - 0.4, center[1] + 0.2, 0.3, 9));
+                for (int bandCount : new int[] {2, 3, 7, 16}) {
+                    assertSameCells(points, holes, 6, bandCount);
+                }
+                assertSameCells(points, Collections.emptyList(), 7, 5);
+            }
+        }
+    }
+
+    /** Cells on a regular grid, whose centers lie on the bounds of bands and on the edges. */
+    @Test
+    public void polyfill_CellBoundaries() {
+        long parent = h3Core.geoToH3(40.0, -3.7, 3);
+        List<GeoCoord> points = h3Core.h3ToGeoBoundary(parent);
+        List<List<GeoCoord>> holes =
+                Collections.singletonList(
+                        h3Core.h3ToGeoBoundary(h3Core.h3ToCenterChild(parent, 4)));
+        for (int bandCount = 2; bandCount <= 12; bandCount++) {
+            assertSameCells(points, holes, 6, bandCount);
+        }
+        List<GeoCoord> rectangle =
+                Arrays.asList(
+                        new GeoCoord(40.0, -4.0),
+                        new GeoCoord(40.0, -3.0),
+                        new GeoCoord(41.0, -3.0),
+                        new GeoCoord(41.0, -4.0));
+        assertSameCells(rectangle, Collections.emptyList(), 6, 4);
+    }
+
+    /** Polygons across the antimeridian are filled in one piece. */
+    @Test
+    public void polyfill_Transmeridian() {
+        List<GeoCoord> points =
+                Arrays.asList(
+                        new GeoCoord(-16.0, 179.0),
+                        new GeoCoord(-16.0, -179.0),
+                        new GeoCoord(-18.0, -179.0),
+                        new GeoCoord(-18.0, 179.0));
+        assertSameCells(points, Collections.emptyList(), 5, 4);
+    }
+
+    @Test
+    public void polyfill_EstimatesBands() {
+        List<GeoCoord> points = star(new Random(7L), 52.52, 13.405, 1.0, 64);
+        assertEquals(
+                new HashSet<>(h3Core.polyfill(points, Collections.emptyList(), 9)),
+                new HashSet<>(
+                        TiledPolyfill.polyfill(
+                                h3Core, EXECUTOR, points, Collections.emptyList(), 9)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void polyfill_InvalidResolution() {
+        List<GeoCoord> points = star(new Random(7L), 52.52, 13.405, 1.0, 64);
+        TiledPolyfill.polyfill(h3Core, EXECUTOR, points, Collections.emptyList(), 16);
+    }
+
+    @Test
+    public void bandRing() {
+        List<GeoCoord> ring =
+                Arrays.asList(
+                        new GeoCoord(0.0, 0.0),
+                        new GeoCoord(0.0, 1.0),
+                        new GeoCoord(2.0, 1.0),
+                        new GeoCoord(2.0, 0.0));
+        assertSame(ring, TiledPolyfill.bandRing(ring, 0, Math.toRadians(2.0)));
+        assertNull(TiledPolyfill.bandRing(ring, Math.toRadians(3.0), Math.toRadians(4.0)));
+        // a flat spike from the first vertex outside the band keeps the longitudes of the ring
+        assertEquals(
+                Arrays.asList(
+                        new GeoCoord(0.0, 0.0),
+                        new GeoCoord(0.0, 0.0),
+                        new GeoCoord(0.0, 1.0),
+                        new GeoCoord(0.0, 0.0),
+                        new GeoCoord(0.0, 1.0),
+                        new GeoCoord(2.0, 1.0),
+                        new GeoCoord(2.0, 0.0)),
+                TiledPolyfill.bandRing(ring, Math.toRadians(0.5), Math.toRadians(1.5)));
+    }
+
+    private void assertSameCells(
+            List<GeoCoord> points, List<List<GeoCoord>> holes, int res, int bandCount) {
+        List<Long> expected = h3Core.polyfill(points, holes, res);
+        List<Long> actual = TiledPolyfill.polyfill(h3Core, EXECUTOR, points, holes, res, bandCount);
+        assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+        assertEquals("duplicate cells", expected.size(), actual.size());
+    }
+
+    /** Returns a concave ring around a center, with a random radius at every vertex. */
+    private static List<GeoCoord> star(
+            Random random, double lat, double lng, double radiusDegrees, int vertices) {
+        List<GeoCoord> ring = new ArrayList<>(vertices);
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = radiusDegrees * (0.3 + 0.7 * random.nextDouble());
+            ring.add(new GeoCoord(lat + radius * Math.sin(angle), lng + radius * Math.cos(angle)));
+        }
+        return ring;
+    }
+}
@@ -0,0 +1,132 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocator;
+import com.amazonaws.athena.connector.lambda.data.FieldResolver;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.arrow.vector.util.Text;
+
+/**
+ * Batches of UDF arguments for the tests of {@link H3AthenaUDFHandler#processRows}, and the check
+ * of its results against the row-at-a-time methods.
+ */
+final class UDFBatches {
+    private UDFBatches() {}
+
+    static Field field(String name, ArrowType type) {
+        return new Field(name, FieldType.nullable(type), null);
+    }
+
+    static Field listField(String name, ArrowType elementType) {
+        return listField(name, field("item", elementType));
+    }
+
+    static Field listField(String name, Field element) {
+        return new Field(
+                name,
+                FieldType.nullable(Types.MinorType.LIST.getType()),
+                Collections.singletonList(element));
+    }
+
+    /** Returns the Arrow type of a scalar UDF parameter or result type. */
+    static ArrowType arrowType(Class<?> javaType) {
+        if (javaType == Long.class) {
+            return Types.MinorType.BIGINT.getType();
+        } else if (javaType == Integer.class) {
+            return Types.MinorType.INT.getType();
+        } else if (javaType == Double.class) {
+            return Types.MinorType.FLOAT8.getType();
+        } else if (javaType == Boolean.class) {
+            return Types.MinorType.BIT.getType();
+        } else if (javaType == byte[].class) {
+            return Types.MinorType.VARBINARY.getType();
+        }
+        return Types.MinorType.VARCHAR.getType();
+    }
+
+    /** Returns the fields <code>arg0, arg1, ...</code> of the scalar parameters of a UDF. */
+    static List<Field> inputFields(Method method) {
+        List<Field> fields = new ArrayList<>();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int col = 0; col < parameterTypes.length; col++) {
+            fields.add(field("arg" + col, arrowType(parameterTypes[col])));
+        }
+        return fields;
+    }
+
+    /** Returns a block of the rows, with list fields set from lists. */
+    static Block createBlock(BlockAllocator allocator, List<Field> fields, List<Object[]> rows) {
+        SchemaBuilder schemaBuilder = SchemaBuilder.newBuilder();
+        fields.forEach(schemaBuilder::addField);
+        Block block = allocator.createBlock(schemaBuilder.build());
+        for (int row = 0; row < rows.size(); row++) {
+            for (int col = 0; col < fields.size(); col++) {
+                Field field = fields.get(col);
+                Object value = rows.get(row)[col];
+                if (field.getChildren().isEmpty()) {
+                    block.setValue(field.getName(), row, value);
+                } else {
+                    block.setComplexValue(field.getName(), row, FieldResolver.DEFAULT, value);
+                }
+            }
+        }
+        block.setRowCount(rows.size());
+        return block;
+    }
+
+    /**
+     * Evaluates the UDF on a batch of the rows through {@link H3AthenaUDFHandler#processRows} and
+     * asserts that every row is equal to the result of the row-at-a-time method.
+     */
+    static void assertBlockMatchesRows(
+            H3AthenaUDFHandler handler,
+            BlockAllocator allocator,
+            Method method,
+            List<Field> inputFields,
+            Field outputField,
+            List<Object[]> rows)
+            throws Exception {
+        Schema outputSchema = SchemaBuilder.newBuilder().addField(outputField).build();
+        try (Block input = createBlock(allocator, inputFields, rows);
+                Block output = handler.processRows(allocator, method, input, outputSchema)) {
+            assertEquals(rows.size(), output.getRowCount());
+            FieldVector out = output.getFieldVector(outputField.getName());
+            for (int row = 0; row < rows.size(); row++) {
+                Object expected = method.invoke(handler, rows.get(row));
+                assertEquals(
+                        method.getName() + Arrays.toString(rows.get(row)),
+                        expected,
+                        javaValue(out.getObject(row)));
+            }
+        }
+    }
+
+    /** Converts the Arrow text of a vector value to strings, also in lists. */
+    static Object javaValue(Object value) {
+        if (value instanceof Text) {
+            return value.toString();
+        }
+        if (value instanceof List) {
+            List<Object> values = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                values.add(javaValue(element));
+            }
+            return values;
+        }
+        return value;
+    }
+}
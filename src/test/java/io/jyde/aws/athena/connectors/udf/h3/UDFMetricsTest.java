@@ -0,0 +1,310 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.amazonaws.athena.connector.lambda.data.Block;
+import com.amazonaws.athena.connector.lambda.data.BlockAllocatorImpl;
+import com.amazonaws.athena.connector.lambda.data.SchemaBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.uber.h3core.H3Core;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import org.apache.arrow.vector.types.Types;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UDFMetricsTest {
+    private static final long h3 = 0x8928308280fffffL;
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private H3Core h3Core;
+    private BlockAllocatorImpl allocator;
+    private List<String> lines;
+    private H3AthenaUDFHandler handler;
+
+    @Before
+    public void setup() throws IOException {
+        this.h3Core = H3Core.newInstance();
+        this.allocator = new BlockAllocatorImpl();
+        this.lines = new ArrayList<>();
+        this.handler = newHandler(new UDFMetrics("Test", lines::add));
+    }
+
+    @After
+    public void tearDown() {
+        allocator.close();
+    }
+
+    @Test
+    public void flush_Batches() throws Exception {
+        evaluate("geo_to_h3", 3, row -> new Object[] {row == 1 ? null : 37.77, -122.41, 9});
+        assertEquals(1, lines.size());
+        JsonNode line = mapper.readTree(lines.get(0));
+        JsonNode directive = line.get("_aws").get("CloudWatchMetrics").get(0);
+        assertEquals("Test", directive.get("Namespace").asText());
+        assertEquals(2, directive.get("Dimensions").size());
+        for (JsonNode metric : directive.get("Metrics")) {
+            assertTrue(metric.get("Name").asText(), line.has(metric.get("Name").asText()));
+        }
+        assertEquals("geo_to_h3", line.get("Function").asText());
+        assertEquals("DOUBLE, DOUBLE, INTEGER", line.get("Overload").asText());
+        assertEquals(1, line.get("Batches").asLong());
+        assertEquals(3, line.get("Rows").asLong());
+        assertEquals(1, line.get("NullRows").asLong());
+        assertEquals(0, line.get("Exceptions").asLong());
+        assertFalse(line.has("OutputElements"));
+        assertEquals(1, line.get("BatchLatency").size());
+
+        // counts are reset by the flush
+        lines.clear();
+        evaluate("k_ring", 2, row -> new Object[] {h3, row + 1});
+        assertEquals(1, lines.size());
+        line = mapper.readTree(lines.get(0));
+        assertEquals("k_ring", line.get("Function").asText());
+        assertEquals("BIGINT, INTEGER", line.get("Overload").asText());
+        assertEquals(2, line.get("Rows").asLong());
+        assertEquals(7 + 19, line.get("OutputElements").asLong());
+    }
+
+    @Test
+    public void flush_Exception() throws Exception {
+        long pentagon = h3Core.getPentagonIndexes(9).iterator().next();
+        try {
+            evaluate("hex_ring", 2, row -> new Object[] {row == 0 ? h3 : pentagon, 2});
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+        assertEquals(1, lines.size());
+        JsonNode line = mapper.readTree(lines.get(0));
+        assertEquals(0, line.get("Batches").asLong());
+        assertEquals(1, line.get("Exceptions").asLong());
+        assertEquals(2, line.get("Rows").asLong());
+    }
+
+    @Test
+    public void flush_NullReasons() throws Exception {
+        long[][] pairs = {
+            {h3, h3Core.kRing(h3, 2).get(10)},
+            {h3, h3Core.geoToH3(-33.9, 151.2, 9)},
+            {h3, h3Core.h3ToParent(h3, 8)},
+            {h3, 0L}
+        };
+        evaluate("h3_line", pairs.length, row -> new Object[] {pairs[row][0], pairs[row][1]});
+        JsonNode line = null;
+        for (String emf : lines) {
+            if (!mapper.readTree(emf).has("Overload")) {
+                line = mapper.readTree(emf);
+            }
+        }
+        JsonNode directive = line.get("_aws").get("CloudWatchMetrics").get(0);
+        assertEquals(1, directive.get("Dimensions").size());
+        assertEquals(UDFMetrics.NullReason.values().length, directive.get("Metrics").size());
+        assertEquals("h3_line", line.get("Function").asText());
+        assertEquals(1, line.get("NullTooFarApart").asLong());
+        assertEquals(1, line.get("NullResolutionMismatch").asLong());
+        assertEquals(1, line.get("NullInvalidCell").asLong());
+        assertEquals(0, line.get("NullUndefined").asLong());
+
+        // only functions with NULL results since the last flush have a line
+        lines.clear();
+        evaluate("h3_line", 1, row -> new Object[] {pairs[0][0], pairs[0][1]});
+        assertEquals(1, lines.size());
+    }
+
+    @Test
+    public void flush_NullReasons_InvalidAddress() throws Exception {
+        UDFMetrics metrics = new UDFMetrics("Test", lines::add);
+        handler = newHandler(metrics);
+        String address = h3Core.h3ToString(h3);
+        assertNull(handler.get_h3_unidirectional_edge("not an index", address));
+        metrics.flush();
+        assertEquals(1, lines.size());
+        JsonNode line = mapper.readTree(lines.get(0));
+        assertEquals("get_h3_unidirectional_edge", line.get("Function").asText());
+        assertEquals(1, line.get("NullInvalidCell").asLong());
+    }
+
+    @Test
+    public void flush_Caches() throws Exception {
+        UDFMetrics metrics = new UDFMetrics("Test", lines::add);
+        handler =
+                new H3AthenaUDFHandler(
+                        h3Core,
+                        IndexingEngine.JNI,
+                        new ResultCache(1),
+                        BatchExecutor.SEQUENTIAL,
+                        metrics);
+        handler.h3_to_geo(h3);
+        handler.h3_to_geo(h3);
+        metrics.flush();
+        // the coverage cache was not used
+        assertEquals(1, lines.size());
+        JsonNode line = mapper.readTree(lines.get(0));
+        JsonNode directive = line.get("_aws").get("CloudWatchMetrics").get(0);
+        assertEquals("Cache", directive.get("Dimensions").get(0).get(0).asText());
+        assertEquals("ResultCache", line.get("Cache").asText());
+        assertEquals(1, line.get("CacheHits").asLong());
+        assertEquals(1, line.get("CacheMisses").asLong());
+        assertEquals(0, line.get("CacheEvictions").asLong());
+
+        // only the counts since the last flush
+        lines.clear();
+        handler.h3_to_geo(h3);
+        metrics.flush();
+        line = mapper.readTree(lines.get(0));
+        assertEquals(1, line.get("CacheHits").asLong());
+        assertEquals(0, line.get("CacheMisses").asLong());
+        lines.clear();
+        metrics.flush();
+        assertTrue(lines.isEmpty());
+    }
+
+    @Test
+    public void flush_Disabled() throws Exception {
+        handler = newHandler(new UDFMetrics(null, lines::add));
+        evaluate("geo_to_h3", 1, row -> new Object[] {37.77, -122.41, 9});
+        assertTrue(lines.isEmpty());
+    }
+
+    /** EMF lines go to the <code>Lambda</code> appender, which writes to stdout outside Lambda. */
+    @Test
+    public void flush_Log() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(out, true, "UTF-8"));
+        try {
+            handler = newHandler(new UDFMetrics("Test"));
+            evaluate("geo_to_h3", 1, row -> new Object[] {37.77, -122.41, 9});
+        } finally {
+            System.setOut(stdout);
+        }
+        String emf = null;
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            if (line.contains("\"_aws\"")) {
+                emf = line;
+            }
+        }
+        assertTrue(emf != null && emf.startsWith("{"));
+        assertEquals("geo_to_h3", mapper.readTree(emf).get("Function").asText());
+    }
+
+    @Test
+    public void batchLatency_Capped() throws Exception {
+        UDFMetrics metrics = new UDFMetrics("Test", lines::add);
+        Method method = H3AthenaUDFHandler.class.getMethod("h3_is_valid", Long.class);
+        try (Block output =
+                allocator.createBlock(SchemaBuilder.newBuilder().addBitField("out").build())) {
+            for (int i = 0; i < 1000; i++) {
+                metrics.recordBatch(
+                        method,
+                        0,
+                        output.getFieldVectors().get(0),
+                        TimeUnit.MICROSECONDS.toNanos(i < 990 ? 100 : 10_000));
+            }
+        }
+        metrics.flush();
+        JsonNode latency = mapper.readTree(lines.get(0)).get("BatchLatency");
+        assertTrue(latency.size() <= UDFMetrics.MAX_VALUES);
+        assertEquals(10.0, latency.get(latency.size() - 1).asDouble(), 2.5);
+        assertEquals(0.1, latency.get(0).asDouble(), 0.025);
+    }
+
+    @Test
+    public void batchLatency_CappedBuckets() throws Exception {
+        UDFMetrics metrics = new UDFMetrics("Test", lines::add);
+        Method method = H3AthenaUDFHandler.class.getMethod("h3_is_valid", Long.class);
+        Set<Integer> buckets = new HashSet<>();
+        try (Block output =
+                allocator.createBlock(SchemaBuilder.newBuilder().addBitField("out").build())) {
+            for (long micros = 1; micros < 1L << 40; micros += 1 + micros / 7) {
+                long nanos = TimeUnit.MICROSECONDS.toNanos(micros);
+                buckets.add(UDFMetrics.bucket(nanos));
+                metrics.recordBatch(method, 0, output.getFieldVectors().get(0), nanos);
+            }
+        }
+        assertTrue(buckets.size() > UDFMetrics.MAX_VALUES);
+        metrics.flush();
+        JsonNode latency = mapper.readTree(lines.get(0)).get("BatchLatency");
+        assertEquals(UDFMetrics.MAX_VALUES, latency.size());
+        for (int i = 1; i < latency.size(); i++) {
+            assertTrue(latency.get(i - 1).asDouble() <= latency.get(i).asDouble());
+        }
+    }
+
+    @Test
+    public void bucket() {
+        int previous = -1;
+        for (long micros = 1; micros < 1L << 40; micros += 1 + micros / 7) {
+            int bucket = UDFMetrics.bucket(TimeUnit.MICROSECONDS.toNanos(micros));
+            assertTrue(bucket >= previous);
+            previous = bucket;
+            assertEquals(micros / 1000.0, UDFMetrics.bucketMillis(bucket), micros / 1000.0 / 4);
+        }
+        assertEquals(0, UDFMetrics.bucket(0));
+        UDFMetrics.bucket(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void overload() throws NoSuchMethodException {
+        assertEquals(
+                "ARRAY(VARCHAR), ARRAY(ARRAY(VARCHAR)), INTEGER",
+                UDFMetrics.overload(
+                        H3AthenaUDFHandler.class.getMethod(
+                                "polyfill", List.class, List.class, Integer.class)));
+        assertEquals(
+                "VARBINARY, INTEGER",
+                UDFMetrics.overload(
+                        H3AthenaUDFHandler.class.getMethod(
+                                "polyfill", byte[].class, Integer.class)));
+    }
+
+    private H3AthenaUDFHandler newHandler(UDFMetrics metrics) {
+        return new H3AthenaUDFHandler(
+                h3Core, IndexingEngine.JNI, new ResultCache(0), BatchExecutor.SEQUENTIAL, metrics);
+    }
+
+    /** Evaluates a batch of rows through {@link H3AthenaUDFHandler#processRows}. */
+    private void evaluate(String name, int rowCount, IntFunction<Object[]> rows) throws Exception {
+        Method method = null;
+        Object[] first = rows.apply(0);
+        for (Method candidate : H3AthenaUDFHandler.class.getMethods()) {
+            if (candidate.getName().equals(name)
+                    && candidate.getParameterCount() == first.length
+                    && !candidate.getParameterTypes()[0].equals(String.class)) {
+                method = candidate;
+            }
+        }
+        Field outputField =
+                List.class.equals(method.getReturnType())
+                        ? UDFBatches.listField("out", Types.MinorType.BIGINT.getType())
+                        : UDFBatches.field("out", UDFBatches.arrowType(method.getReturnType()));
+        Schema outputSchema = SchemaBuilder.newBuilder().addField(outputField).build();
+        List<Object[]> values = new ArrayList<>();
+        for (int row = 0; row < rowCount; row++) {
+            values.add(rows.apply(row));
+        }
+        try (Block input =
+                UDFBatches.createBlock(allocator, UDFBatches.inputFields(method), values)) {
+            handler.processRows(allocator, method, input, outputSchema).close();
+        }
+    }
+}
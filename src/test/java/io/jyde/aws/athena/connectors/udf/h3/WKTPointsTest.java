@@ -0,0 +1,96 @@
+/* Licensed under Apache-2.0 2021. */
+package io.jyde.aws.athena.connectors.udf.h3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.uber.h3core.util.GeoCoord;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+
+public class WKTPointsTest {
+    @Test
+    public void format() {
+        assertEquals("POINT (13.4 52.5)", WKTPoints.format(52.5, 13.4));
+    }
+
+    @Test
+    public void format_Negative() {
+        assertEquals("POINT (-46.633 -23.551)", WKTPoints.format(-23.551, -46.633));
+    }
+
+    @Test
+    public void format_NoExponent() {
+        assertEquals("POINT (0.0001 -0.00000123)", WKTPoints.format(-1.23e-6, 1e-4));
+        assertEquals("POINT (0.0 -0.0)", WKTPoints.format(-0.0, 0.0));
+    }
+
+    @Test
+    public void toGeoCoord() {
+        assertGeoCoord(52.5, 13.4, WKTPoints.toGeoCoord("POINT (13.4 52.5)"));
+    }
+
+    @Test
+    public void toGeoCoord_Signs() {
+        assertGeoCoord(-23.551, -46.633, WKTPoints.toGeoCoord("POINT (-46.633 -23.551)"));
+        assertGeoCoord(23.551, 46.633, WKTPoints.toGeoCoord("POINT (+46.633 +23.551)"));
+    }
+
+    @Test
+    public void toGeoCoord_Exponents() {
+        assertGeoCoord(-1.5e-5, 1e-4, WKTPoints.toGeoCoord("POINT (1E-4 -1.5e-05)"));
+        assertGeoCoord(52.5, 13.4, WKTPoints.toGeoCoord("POINT (1.34e1 0.525E+2)"));
+    }
+
+    @Test
+    public void toGeoCoord_Whitespace() {
+        assertGeoCoord(52.0, 13.0, WKTPoints.toGeoCoord("point(13 52)"));
+        assertGeoCoord(52.0, 0.5, WKTPoints.toGeoCoord("  POINT  (  .5\t52.  )  "));
+    }
+
+    @Test
+    public void toGeoCoord_LongMantissa() {
+        assertGeoCoord(
+                52.49601563544626,
+                13.414849276069362,
+                WKTPoints.toGeoCoord("POINT (13.414849276069362 52.49601563544626)"));
+    }
+
+    @Test
+    public void toGeoCoord_Invalid() {
+        assertThrows(IllegalArgumentException.class, () -> WKTPoints.toGeoCoord("POINT EMPTY"));
+        assertThrows(IllegalArgumentException.class, () -> WKTPoints.toGeoCoord("POINT (13.4)"));
+        assertThrows(IllegalArgumentException.class, () -> WKTPoints.toGeoCoord("POINT (1e 2)"));
+    }
+
+    @Test
+    public void roundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            double lat = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+            double lng = 360 * random.nextDouble() - 180;
+            if (i % 10 == 0) {
+                lat *= 1e-6;
+            }
+            String wkt = WKTPoints.format(lat, lng);
+            assertGeoCoord(lat, lng, WKTPoints.toGeoCoord(wkt));
+        }
+    }
+
+    @Test
+    public void roundTrip_ShortDecimals() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String lng = String.format(Locale.ROOT, "%.6f", 360 * random.nextDouble() - 180);
+            String lat = String.format(Locale.ROOT, "%.6f", 180 * random.nextDouble() - 90);
+            GeoCoord parsed = WKTPoints.toGeoCoord("POINT (" + lng + " " + lat + ")");
+            assertGeoCoord(Double.parseDouble(lat), Double.parseDouble(lng), parsed);
+        }
+    }
+
+    private static void assertGeoCoord(double lat, double lng, GeoCoord actual) {
+        assertEquals(Double.doubleToLongBits(lat), Double.doubleToLongBits(actual.lat));
+        assertEquals(Double.doubleToLongBits(lng), Double.doubleToLongBits(actual.lng));
+    }
+}